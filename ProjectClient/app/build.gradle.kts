@@ -29,6 +29,12 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        unitTests.all {
+            // Length of the simulator soak test, e.g. -Psoak.seconds=600
+            it.systemProperty("soak.seconds", providers.gradleProperty("soak.seconds").getOrElse("3"))
+        }
+    }
 }
 
 dependencies {
@@ -40,6 +46,7 @@ dependencies {
     implementation ("org.java-websocket:Java-WebSocket:1.6.0")
     implementation ("com.github.PhilJay:MPAndroidChart:v3.1.0")
     testImplementation(libs.junit)
+    testImplementation(project(":simulator"))
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+package com.example.project_client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/*
+AlertCoalescer decides when threshold alerts become notifications. Alerts are not posted one by
+one: the first one opens a short window, and everything that arrives until it closes (from any
+channel or device) goes out together, as one notification or one grouped summary. Each of those
+takes a token from a TokenBucket, so a burst gets through at once but a flapping sensor cannot
+keep the phone buzzing; while the bucket is empty the alerts wait, merged, for the next token.
+A newer alert of the same channel and device replaces the one still waiting.
+
+It only holds the logic, with times passed in; the AlertDispatcher runs it on its own thread and
+posts the notifications. It is not safe to share between threads.
+ */
+public class AlertCoalescer
+{
+    /*
+    One broken threshold of a channel, e.g. "Temperature Above Threshold".
+    source is the device it came from, or null for the app's own session.
+     */
+    public static final class Alert
+    {
+        private final String source;
+        private final int channel;
+        private final String title;
+        private final String message;
+
+        public Alert(String source, int channel, String title, String message)
+        {
+            this.source = source;
+            this.channel = channel;
+            this.title = title;
+            this.message = message;
+        }
+
+        public String getSource()
+        {
+            return source;
+        }
+
+        public int getChannel()
+        {
+            return channel;
+        }
+
+        public String getTitle()
+        {
+            return title;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        boolean isSameChannel(Alert other)
+        {
+            return channel == other.channel && Objects.equals(source, other.source);
+        }
+    }
+
+    /*
+    Alerts to post together, oldest channel first. mergedCount is how many more alerts arrived
+    for them and were replaced by a newer one.
+     */
+    public static final class Dispatch
+    {
+        private final List<Alert> alerts;
+        private final int mergedCount;
+
+        Dispatch(List<Alert> alerts, int mergedCount)
+        {
+            this.alerts = alerts;
+            this.mergedCount = mergedCount;
+        }
+
+        public List<Alert> getAlerts()
+        {
+            return alerts;
+        }
+
+        public int getMergedCount()
+        {
+            return mergedCount;
+        }
+
+        // More than one channel or device, shown as a grouped summary
+        public boolean isSummary()
+        {
+            return alerts.size() > 1;
+        }
+    }
+
+    // How long the first alert of a burst waits for the others
+    public static final long DEFAULT_WINDOW_MS = 2000;
+
+    // Three notifications at once, then one every two minutes while alerts keep coming
+    public static final int DEFAULT_BURST = 3;
+    public static final long DEFAULT_REFILL_MS = 2 * 60 * 1000;
+
+    private final long windowMs;
+    private final TokenBucket bucket;
+
+    private final List<Alert> pending = new ArrayList<>();
+    private int mergedCount;
+    private long flushTimeMs = Long.MAX_VALUE;
+
+    public AlertCoalescer()
+    {
+        this(DEFAULT_WINDOW_MS, new TokenBucket(DEFAULT_BURST, DEFAULT_REFILL_MS));
+    }
+
+    public AlertCoalescer(long windowMs, TokenBucket bucket)
+    {
+        this.windowMs = windowMs;
+        this.bucket = bucket;
+    }
+
+    /*
+    Adds an alert. The first one waiting opens the window: getFlushTime() tells when it closes.
+     */
+    public void offer(Alert alert, long nowMs)
+    {
+        for (int i = 0; i < pending.size(); i++)
+        {
+            if (pending.get(i).isSameChannel(alert))
+            {
+                pending.set(i, alert);
+                mergedCount++;
+                return;
+            }
+        }
+        pending.add(alert);
+        if (flushTimeMs == Long.MAX_VALUE)
+        {
+            flushTimeMs = nowMs + windowMs;
+        }
+    }
+
+    /*
+    Returns when flush() should be called next, or Long.MAX_VALUE if nothing is waiting.
+     */
+    public long getFlushTime()
+    {
+        return flushTimeMs;
+    }
+
+    public int getPendingCount()
+    {
+        return pending.size();
+    }
+
+    /*
+    Returns the alerts to post now, or null if nothing is due yet or the bucket is empty,
+    in which case the alerts keep waiting until the next token (see getFlushTime()).
+     */
+    public Dispatch flush(long nowMs)
+    {
+        if (pending.isEmpty() || nowMs < flushTimeMs)
+        {
+            return null;
+        }
+        if (!bucket.tryTake(nowMs))
+        {
+            flushTimeMs = bucket.getNextTokenTime(nowMs);
+            return null;
+        }
+
+        Dispatch dispatch = new Dispatch(Collections.unmodifiableList(new ArrayList<>(pending)), mergedCount);
+        pending.clear();
+        mergedCount = 0;
+        flushTimeMs = Long.MAX_VALUE;
+        return dispatch;
+    }
+
+    /*
+    Drops every waiting alert, e.g. because the thresholds changed.
+     */
+    public void clear()
+    {
+        pending.clear();
+        mergedCount = 0;
+        flushTimeMs = Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.project_client;
+
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.core.app.NotificationCompat;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+AlertDispatcher posts the threshold notifications from its own thread, so neither the WebSocket
+thread nor the UI waits for the notification system. An AlertCoalescer decides when: alerts that
+fire together, from any channel or device, become one grouped summary, and a token bucket limits
+how often the phone alerts at all.
+The notification channels are registered once, the NotificationManager is looked up once, and a
+single builder is reused for every notification; all of it is only touched on the dispatch thread.
+ */
+public class AlertDispatcher
+{
+    private static final String GROUP_KEY = "com.example.project_client.SENSOR_ALERTS";
+
+    private final NotificationManager notificationManager;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "alert-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only touched on the dispatch thread
+    private final AlertCoalescer coalescer;
+    private final NotificationCompat.Builder builder;
+    private ScheduledFuture<?> flushTask;
+
+    private final MetricsRegistry.Counter alertsOffered = MetricsRegistry.getDefault().counter("alerts.offered");
+    private final MetricsRegistry.Counter alertsMerged = MetricsRegistry.getDefault().counter("alerts.merged");
+    private final MetricsRegistry.Counter notificationsSent = MetricsRegistry.getDefault().counter("notifications.sent");
+
+    public AlertDispatcher(Context context)
+    {
+        this(context, new AlertCoalescer());
+    }
+
+    public AlertDispatcher(Context context, AlertCoalescer coalescer)
+    {
+        Context appContext = context.getApplicationContext();
+        NotificationHelper.createChannels(appContext);
+        notificationManager = appContext.getSystemService(NotificationManager.class);
+        builder = NotificationHelper.alertBuilder(appContext).setGroup(GROUP_KEY);
+        this.coalescer = coalescer;
+    }
+
+    /*
+    Queues an alert for a channel. source is the device it came from, or null for the app's own
+    session. Returns straight away; the notification follows on the dispatch thread.
+     */
+    public void offer(String source, int channel, String title, String message)
+    {
+        alertsOffered.increment();
+        AlertCoalescer.Alert alert = new AlertCoalescer.Alert(source, channel, title, message);
+        executor.execute(() ->
+        {
+            coalescer.offer(alert, SystemClock.elapsedRealtime());
+            scheduleFlush();
+        });
+    }
+
+    /*
+    Drops the alerts that are still waiting, e.g. because the thresholds were changed.
+     */
+    public void clear()
+    {
+        executor.execute(() ->
+        {
+            coalescer.clear();
+            if (flushTask != null)
+            {
+                flushTask.cancel(false);
+                flushTask = null;
+            }
+        });
+    }
+
+    /*
+    Stops the dispatch thread. Alerts that are still waiting are dropped.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    private void scheduleFlush()
+    {
+        long flushTime = coalescer.getFlushTime();
+        if (flushTask != null || flushTime == Long.MAX_VALUE)
+        {
+            return;
+        }
+        long delay = Math.max(0, flushTime - SystemClock.elapsedRealtime());
+        flushTask = executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush()
+    {
+        flushTask = null;
+        AlertCoalescer.Dispatch dispatch = coalescer.flush(SystemClock.elapsedRealtime());
+        if (dispatch != null)
+        {
+            post(dispatch);
+        }
+        // Alerts that found the bucket empty wait for the next token
+        scheduleFlush();
+    }
+
+    /*
+    Posts every alert under its own channel's notification, so a new alert replaces the previous
+    one of the same channel. Several at once are grouped under a summary that alerts only once.
+     */
+    private void post(AlertCoalescer.Dispatch dispatch)
+    {
+        List<AlertCoalescer.Alert> alerts = dispatch.getAlerts();
+        boolean summary = dispatch.isSummary();
+        builder.setStyle(null)
+                .setGroupSummary(false)
+                .setNumber(0)
+                .setGroupAlertBehavior(summary ? NotificationCompat.GROUP_ALERT_SUMMARY : NotificationCompat.GROUP_ALERT_ALL);
+        for (AlertCoalescer.Alert alert : alerts)
+        {
+            builder.setContentTitle(alert.getTitle()).setContentText(alert.getMessage());
+            notificationManager.notify(alert.getSource(), alert.getChannel() + 1, builder.build());
+        }
+        notificationsSent.add(alerts.size());
+        alertsMerged.add(dispatch.getMergedCount());
+
+        if (summary)
+        {
+            int total = alerts.size() + dispatch.getMergedCount();
+            NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+            for (AlertCoalescer.Alert alert : alerts)
+            {
+                style.addLine(alert.getMessage());
+            }
+            builder.setContentTitle(total + " sensor alerts")
+                    .setContentText(alerts.get(0).getTitle() + " and " + (alerts.size() - 1) + " more")
+                    .setStyle(style)
+                    .setNumber(total)
+                    .setGroupSummary(true);
+            notificationManager.notify(NotificationHelper.ALERT_SUMMARY_NOTIFICATION_ID, builder.build());
+            notificationsSent.increment();
+        }
+    }
+}
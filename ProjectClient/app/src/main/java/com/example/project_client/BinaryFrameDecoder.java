@@ -0,0 +1,424 @@
+package com.example.project_client;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+BinaryFrameDecoder reads the compact binary sensor frames that the server sends instead of JSON
+when the client offers the SUBPROTOCOL in the WebSocket handshake and the server accepts it.
+A frame is a fixed little-endian layout:
+
+    offset 0   u8    format version (VERSION)
+    offset 1   u8    flags, FLAG_SENSOR_TIME or zero
+    offset 2   2 bytes reserved, zero
+    offset 4   u32   channel mask, bit i set if the frame has a value for channel id i
+    offset 8   i64   server timestamp of the reading, in milliseconds since the epoch
+    offset 16  f32   one value per set bit, lowest channel id first
+    then       i64   with FLAG_SENSOR_TIME only: the server's monotonic clock at the reading,
+                     in microseconds, for the LatencyTracker
+
+With the three Sense HAT channels that is 28 bytes, against about 90 for the JSON frame.
+
+A server sampling faster than it sends frames packs N consecutive samples into a batch frame:
+
+    offset 0   u8    BATCH_VERSION
+    offset 1   u8    flags, as above
+    offset 2   u16   sample count N, at least 1
+    offset 4   u32   channel mask, as above
+    offset 8   i64   base timestamp, in milliseconds since the epoch
+    offset 16  u16   N offsets: milliseconds since the previous sample (the base for the first),
+                     padded with zeros to a multiple of 4 bytes
+    then       f32   the values of every sample in turn, each as in a single frame
+    then       i64   with FLAG_SENSOR_TIME only: the server's monotonic clock at the newest sample
+
+The server only sets FLAG_SENSOR_TIME for clients that offered SENSOR_TIME_SUBPROTOCOL, so older
+clients, which insist on the exact length, never get it.
+
+At 100 Hz a batch of 10 samples is 156 bytes in one WebSocket frame, against 280 bytes in ten.
+The values are read straight out of the received ByteBuffer with absolute gets, so decoding
+does not copy the frame or create any objects. Like SensorFrameDecoder it keeps the values of
+the last frame in a reused array and is not safe to share between threads.
+ */
+public class BinaryFrameDecoder
+{
+    // Offered in Sec-WebSocket-Protocol; a server that does not know it keeps sending JSON
+    public static final String SUBPROTOCOL = "sensor-frame.v1";
+
+    // The same frames with the server's sensor clock; offered first by clients that can read it
+    public static final String SENSOR_TIME_SUBPROTOCOL = "sensor-frame.v1+time";
+
+    public static final int FLAG_SENSOR_TIME = 0x01;
+    public static final int SENSOR_TIME_SIZE = 8;
+
+    public static final int VERSION = 1;
+    public static final int BATCH_VERSION = 2;
+    public static final int HEADER_SIZE = 16;
+
+    // Largest batch the u16 sample count allows
+    public static final int MAX_BATCH_SAMPLES = 0xFFFF;
+
+    private static final int FLAGS_OFFSET = 1;
+    private static final int COUNT_OFFSET = 2;
+    private static final int MASK_OFFSET = 4;
+    private static final int TIMESTAMP_OFFSET = 8;
+
+    // Frame values and required flags by channel id
+    private final boolean[] required;
+    private final double[] values;
+    private long timestamp;
+    private long sensorTime;
+
+    public BinaryFrameDecoder()
+    {
+        this(ChannelRegistry.getDefault());
+    }
+
+    public BinaryFrameDecoder(ChannelRegistry registry)
+    {
+        int channelCount = registry.size();
+        required = new boolean[channelCount];
+        for (int i = 0; i < channelCount; i++)
+        {
+            required[i] = registry.get(i).isRequired();
+        }
+        values = new double[channelCount];
+    }
+
+    /*
+    Decodes the frame between the buffer's position and limit. Returns true if it has a known
+    version, the right length for its mask and every required channel, false otherwise.
+    The buffer's position, limit and byte order are not changed.
+     */
+    public boolean decode(ByteBuffer frame)
+    {
+        int start = frame.position();
+        int length = frame.remaining();
+        if (length < HEADER_SIZE || frame.get(start) != VERSION)
+        {
+            return false;
+        }
+
+        // Java buffers default to big-endian; swap the bytes rather than change the caller's order
+        boolean swap = frame.order() != ByteOrder.LITTLE_ENDIAN;
+        int mask = readInt(frame, start + MASK_OFFSET, swap);
+        int valuesEnd = HEADER_SIZE + 4 * Integer.bitCount(mask);
+        if (length != valuesEnd + sensorTimeSize(frame, start))
+        {
+            return false;
+        }
+        timestamp = readLong(frame, start + TIMESTAMP_OFFSET, swap);
+        sensorTime = readSensorTime(frame, start, valuesEnd, swap);
+
+        // Values of channels this client does not know come after the known ones and are ignored
+        int offset = start + HEADER_SIZE;
+        for (int channel = 0; channel < values.length; channel++)
+        {
+            if (channel < 32 && (mask & (1 << channel)) != 0)
+            {
+                values[channel] = Float.intBitsToFloat(readInt(frame, offset, swap));
+                offset += 4;
+            }
+            else if (required[channel])
+            {
+                return false;
+            }
+            else
+            {
+                values[channel] = Double.NaN;
+            }
+        }
+        return true;
+    }
+
+    /*
+    Unpacks a batch frame between the buffer's position and limit into the batch, in one pass,
+    with the server timestamp of every sample. Returns false, with the batch in an undefined
+    state, if the frame is malformed or a sample lacks a required channel.
+    The buffer's position, limit and byte order are not changed.
+     */
+    public boolean decodeBatch(ByteBuffer frame, ReadingBatch batch)
+    {
+        if (batch.getChannelCount() != values.length)
+        {
+            throw new IllegalArgumentException("Batch has " + batch.getChannelCount() + " channels, expected " + values.length);
+        }
+        int start = frame.position();
+        int length = frame.remaining();
+        if (length < HEADER_SIZE || frame.get(start) != BATCH_VERSION)
+        {
+            return false;
+        }
+
+        boolean swap = frame.order() != ByteOrder.LITTLE_ENDIAN;
+        short rawCount = frame.getShort(start + COUNT_OFFSET);
+        int count = (swap ? Short.reverseBytes(rawCount) : rawCount) & 0xFFFF;
+        int mask = readInt(frame, start + MASK_OFFSET, swap);
+        int channelsInFrame = Integer.bitCount(mask);
+        int valuesEnd = batchFrameSize(count, channelsInFrame);
+        if (count == 0 || length != valuesEnd + sensorTimeSize(frame, start))
+        {
+            return false;
+        }
+        for (int channel = 0; channel < values.length; channel++)
+        {
+            boolean present = channel < 32 && (mask & (1 << channel)) != 0;
+            if (!present && required[channel])
+            {
+                return false;
+            }
+        }
+
+        long sampleTimestamp = readLong(frame, start + TIMESTAMP_OFFSET, swap);
+        sensorTime = readSensorTime(frame, start, valuesEnd, swap);
+        int deltaOffset = start + HEADER_SIZE;
+        int valueOffset = deltaOffset + deltaBytes(count);
+
+        // Values of channels this client does not know come last in every sample and are skipped
+        int unknownBytes = 4 * (channelsInFrame - Integer.bitCount(mask & lowBits(values.length)));
+
+        batch.reset(count);
+        double[] batchValues = batch.valueArray();
+        for (int sample = 0; sample < count; sample++)
+        {
+            short rawDelta = frame.getShort(deltaOffset + 2 * sample);
+            sampleTimestamp += (swap ? Short.reverseBytes(rawDelta) : rawDelta) & 0xFFFF;
+            int base = batch.appendSample(sampleTimestamp);
+            for (int channel = 0; channel < values.length; channel++)
+            {
+                if (channel < 32 && (mask & (1 << channel)) != 0)
+                {
+                    batchValues[base + channel] = Float.intBitsToFloat(readInt(frame, valueOffset, swap));
+                    valueOffset += 4;
+                }
+                else
+                {
+                    batchValues[base + channel] = Double.NaN;
+                }
+            }
+            valueOffset += unknownBytes;
+        }
+        return true;
+    }
+
+    private static int lowBits(int count)
+    {
+        return count >= 32 ? -1 : (1 << count) - 1;
+    }
+
+    private static int readInt(ByteBuffer frame, int index, boolean swap)
+    {
+        int value = frame.getInt(index);
+        return swap ? Integer.reverseBytes(value) : value;
+    }
+
+    private static long readLong(ByteBuffer frame, int index, boolean swap)
+    {
+        long value = frame.getLong(index);
+        return swap ? Long.reverseBytes(value) : value;
+    }
+
+    private static int sensorTimeSize(ByteBuffer frame, int start)
+    {
+        return (frame.get(start + FLAGS_OFFSET) & FLAG_SENSOR_TIME) != 0 ? SENSOR_TIME_SIZE : 0;
+    }
+
+    private static long readSensorTime(ByteBuffer frame, int start, int valuesEnd, boolean swap)
+    {
+        return sensorTimeSize(frame, start) != 0
+                ? readLong(frame, start + valuesEnd, swap)
+                : SensorFrameDecoder.NO_TIMESTAMP;
+    }
+
+    /*
+    Writes a frame with every channel that is not NaN at the buffer's position and advances it.
+    Used by tests and tools that stand in for the server.
+     */
+    public static void encode(ByteBuffer out, long timestamp, double[] values)
+    {
+        encode(out, timestamp, values, SensorFrameDecoder.NO_TIMESTAMP);
+    }
+
+    /*
+    Like encode(out, timestamp, values), with the server's sensor clock in microseconds unless
+    it is SensorFrameDecoder.NO_TIMESTAMP.
+     */
+    public static void encode(ByteBuffer out, long timestamp, double[] values, long sensorTime)
+    {
+        if (values.length > 32)
+        {
+            throw new IllegalArgumentException("At most 32 channels fit in the mask: " + values.length);
+        }
+        int mask = 0;
+        for (int channel = 0; channel < values.length; channel++)
+        {
+            if (!Double.isNaN(values[channel]))
+            {
+                mask |= 1 << channel;
+            }
+        }
+
+        ByteOrder order = out.order();
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        try
+        {
+            out.put((byte) VERSION).put(flagsFor(sensorTime)).put((byte) 0).put((byte) 0);
+            out.putInt(mask);
+            out.putLong(timestamp);
+            for (int channel = 0; channel < values.length; channel++)
+            {
+                if ((mask & (1 << channel)) != 0)
+                {
+                    out.putFloat((float) values[channel]);
+                }
+            }
+            if (sensorTime != SensorFrameDecoder.NO_TIMESTAMP)
+            {
+                out.putLong(sensorTime);
+            }
+        }
+        finally
+        {
+            out.order(order);
+        }
+    }
+
+    /*
+    Writes a batch frame with every sample of the batch at the buffer's position and advances it.
+    Channels that are NaN in the first sample are left out of the whole batch.
+    The samples must be in timestamp order and at most 65535 ms apart.
+     */
+    public static void encodeBatch(ByteBuffer out, ReadingBatch batch)
+    {
+        encodeBatch(out, batch, SensorFrameDecoder.NO_TIMESTAMP);
+    }
+
+    /*
+    Like encodeBatch(out, batch), with the server's sensor clock at the newest sample in
+    microseconds unless it is SensorFrameDecoder.NO_TIMESTAMP.
+     */
+    public static void encodeBatch(ByteBuffer out, ReadingBatch batch, long sensorTime)
+    {
+        int count = batch.size();
+        int channelCount = batch.getChannelCount();
+        if (count == 0 || count > MAX_BATCH_SAMPLES || channelCount > 32)
+        {
+            throw new IllegalArgumentException("Cannot encode a batch of " + count + " samples of "
+                    + channelCount + " channels");
+        }
+        int mask = 0;
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            if (!Double.isNaN(batch.getValue(0, channel)))
+            {
+                mask |= 1 << channel;
+            }
+        }
+
+        ByteOrder order = out.order();
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        try
+        {
+            long previous = batch.getTimestamp(0);
+            out.put((byte) BATCH_VERSION).put(flagsFor(sensorTime)).putShort((short) count);
+            out.putInt(mask);
+            out.putLong(previous);
+            for (int sample = 0; sample < count; sample++)
+            {
+                long delta = batch.getTimestamp(sample) - previous;
+                if (delta < 0 || delta > 0xFFFF)
+                {
+                    throw new IllegalArgumentException("Samples " + delta + " ms apart");
+                }
+                out.putShort((short) delta);
+                previous = batch.getTimestamp(sample);
+            }
+            for (int pad = 2 * count; pad < deltaBytes(count); pad++)
+            {
+                out.put((byte) 0);
+            }
+            for (int sample = 0; sample < count; sample++)
+            {
+                for (int channel = 0; channel < channelCount; channel++)
+                {
+                    if ((mask & (1 << channel)) != 0)
+                    {
+                        out.putFloat((float) batch.getValue(sample, channel));
+                    }
+                }
+            }
+            if (sensorTime != SensorFrameDecoder.NO_TIMESTAMP)
+            {
+                out.putLong(sensorTime);
+            }
+        }
+        finally
+        {
+            out.order(order);
+        }
+    }
+
+    private static byte flagsFor(long sensorTime)
+    {
+        return (byte) (sensorTime != SensorFrameDecoder.NO_TIMESTAMP ? FLAG_SENSOR_TIME : 0);
+    }
+
+    /*
+    Returns the size in bytes of a batch frame with the given number of samples and channels,
+    without the sensor clock.
+     */
+    public static int batchFrameSize(int samples, int channelCount)
+    {
+        return HEADER_SIZE + deltaBytes(samples) + 4 * samples * channelCount;
+    }
+
+    /*
+    Returns the version byte of the frame at the buffer's position, to tell single frames from
+    batch frames, or -1 if the frame is empty.
+     */
+    public static int peekVersion(ByteBuffer frame)
+    {
+        return frame.hasRemaining() ? frame.get(frame.position()) & 0xFF : -1;
+    }
+
+    // The u16 offsets, padded so the values start on a 4 byte boundary
+    private static int deltaBytes(int samples)
+    {
+        return (2 * samples + 3) & ~3;
+    }
+
+    /*
+    Returns the size in bytes of a frame with the given number of channels, without the sensor clock.
+     */
+    public static int frameSize(int channelCount)
+    {
+        return HEADER_SIZE + 4 * channelCount;
+    }
+
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /*
+    Returns the server's monotonic clock in microseconds at the last decoded frame (the newest
+    sample of a batch), or SensorFrameDecoder.NO_TIMESTAMP if the frame did not carry it.
+     */
+    public long getSensorTime()
+    {
+        return sensorTime;
+    }
+
+    public double getValue(int channel)
+    {
+        return values[channel];
+    }
+
+    /*
+    Returns the values of the last decoded frame, indexed by channel id.
+    The array is reused for the next frame.
+     */
+    public double[] getValues()
+    {
+        return values;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.project_client;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ChannelRegistry lists the sensor channels the app knows about. Everything that handles readings
+(the frame decoder, stores, history, rollups, threshold rules, charts and exports) sizes its arrays
+and loops from the registry, so adding a Sense HAT channel is one more entry in DEFAULT.
+A registry holds at most MAX_CHANNELS channels: ThresholdEngine reports broken rules as the bits
+of a long, and each channel can have a minimum, a maximum and a rate rule.
+ */
+public final class ChannelRegistry
+{
+    // Ids of the default channels
+    public static final int TEMPERATURE = 0;
+    public static final int HUMIDITY = 1;
+    public static final int PRESSURE = 2;
+
+    // Up to three threshold rules per channel, each a bit of ThresholdEngine's 64-bit mask
+    public static final int MAX_CHANNELS = ThresholdEngine.MAX_RULES / 3;
+
+    private static final ChannelRegistry DEFAULT = new ChannelRegistry(
+            new SensorChannel(TEMPERATURE, "temperature", "Temperature", "°C", "temp", "TEMP", "0", "100", true),
+            new SensorChannel(HUMIDITY, "humidity", "Humidity", "%", "hum", "HUM", "0", "100", true),
+            new SensorChannel(PRESSURE, "pressure", "Pressure", "hPa", "pres", "PRES", "0", "1000", true));
+
+    private final List<SensorChannel> channels;
+
+    public ChannelRegistry(SensorChannel... channels)
+    {
+        if (channels.length > MAX_CHANNELS)
+        {
+            throw new IllegalArgumentException("At most " + MAX_CHANNELS + " channels are supported (three threshold rules each"
+                    + " in a 64-bit mask), got " + channels.length);
+        }
+        for (int i = 0; i < channels.length; i++)
+        {
+            if (channels[i].getId() != i)
+            {
+                throw new IllegalArgumentException("Channel " + channels[i].getKey() + " must have id " + i);
+            }
+        }
+        this.channels = Collections.unmodifiableList(Arrays.asList(channels.clone()));
+    }
+
+    /*
+    Returns the channels of the Sense HAT server.
+     */
+    public static ChannelRegistry getDefault()
+    {
+        return DEFAULT;
+    }
+
+    public int size()
+    {
+        return channels.size();
+    }
+
+    public SensorChannel get(int id)
+    {
+        return channels.get(id);
+    }
+
+    public List<SensorChannel> getChannels()
+    {
+        return channels;
+    }
+
+    /*
+    Returns the channel with the given frame key, or null if there is none.
+     */
+    public SensorChannel findByKey(String key)
+    {
+        for (SensorChannel channel : channels)
+        {
+            if (channel.getKey().equals(key))
+            {
+                return channel;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.project_client;
+
+/*
+ChartDownsampler reduces the readings of one channel in a ReadingStore to about as many points
+as the chart has room for, so the chart never has to draw more points than it has pixels.
+
+The time range is split into a fixed number of buckets aligned to the clock. Each bucket keeps a
+small summary (count, average, min, max, first and last point) that is updated as readings arrive,
+so new readings only touch the newest buckets and the rest of the output stays the same.
+Two modes are supported:
+- LTTB (Largest-Triangle-Three-Buckets) picks one real reading per bucket, the one that forms the
+  largest triangle with the point picked in the previous bucket and the average of the next bucket.
+  It keeps the shape of the line, including peaks.
+- MIN_MAX keeps the lowest and the highest reading of every bucket, so no peak or threshold
+  crossing can ever be lost.
+
+Not thread safe, it is meant to be updated from the UI thread.
+ */
+public class ChartDownsampler extends ChartSeries
+{
+    private static final long NO_BUCKET = Long.MIN_VALUE;
+
+    private final ReadingStore store;
+    private final int channel;
+    private final int bucketCount;
+    private final long bucketWidth;
+
+    // Bucket summaries in a ring, a bucket number b is kept in slot b % bucketCount
+    private final int[] counts;
+    private final double[] valueSums;
+    private final double[] timeOffsetSums;  // Offsets from the bucket start, so the sums stay exact
+    private final long[] firstTimes, lastTimes, minTimes, maxTimes, selectedTimes;
+    private final float[] firstValues, lastValues, minValues, maxValues, selectedValues;
+    private final boolean[] hasSelection;
+
+    private long newestBucket = NO_BUCKET;
+    private long appendCountSeen = 0;
+    private long oldestChangedBucket;
+
+    // State used while scanning a bucket for the LTTB point
+    private double scanAnchorTime, scanAnchorValue, scanAverageTime, scanAverageValue, scanBestArea;
+    private long scanBestTime;
+    private float scanBestValue;
+
+    private final ReadingStore.ReadingVisitor ingestVisitor = this::ingest;
+    private final ReadingStore.ReadingVisitor scanVisitor = this::scan;
+
+    /*
+    Creates a downsampler showing bucketCount buckets of bucketWidth milliseconds each,
+    ending at the newest reading in the store.
+     */
+    public ChartDownsampler(ReadingStore store, int channel, Mode mode, int bucketCount, long bucketWidth)
+    {
+        // MIN_MAX can produce two points per bucket
+        super(mode, 2 * bucketCount);
+        if (bucketCount < 2 || bucketWidth <= 0)
+        {
+            throw new IllegalArgumentException("Need at least 2 buckets and a positive bucket width");
+        }
+        this.store = store;
+        this.channel = channel;
+        this.bucketCount = bucketCount;
+        this.bucketWidth = bucketWidth;
+
+        counts = new int[bucketCount];
+        valueSums = new double[bucketCount];
+        timeOffsetSums = new double[bucketCount];
+        firstTimes = new long[bucketCount];
+        lastTimes = new long[bucketCount];
+        minTimes = new long[bucketCount];
+        maxTimes = new long[bucketCount];
+        selectedTimes = new long[bucketCount];
+        firstValues = new float[bucketCount];
+        lastValues = new float[bucketCount];
+        minValues = new float[bucketCount];
+        maxValues = new float[bucketCount];
+        selectedValues = new float[bucketCount];
+        hasSelection = new boolean[bucketCount];
+    }
+
+    /*
+    Reads the readings that arrived since the last update and recomputes the affected buckets.
+    Returns true if any output point changed.
+     */
+    @Override
+    public boolean update()
+    {
+        oldestChangedBucket = NO_BUCKET;
+        long fromTimestamp = newestBucket == NO_BUCKET
+                ? store.getLatestTimestamp() - bucketCount * bucketWidth
+                : oldestBucket() * bucketWidth;
+        appendCountSeen = store.forEachAppendedSince(appendCountSeen, fromTimestamp, ingestVisitor);
+
+        if (oldestChangedBucket == NO_BUCKET)
+        {
+            keepPoints();
+            return false;
+        }
+
+        if (getMode() == Mode.LTTB)
+        {
+            // The pick of a bucket depends on the average of the next one, so start one bucket earlier
+            long bucket = previousNonEmptyBucket(oldestChangedBucket);
+            if (bucket == NO_BUCKET)
+            {
+                bucket = oldestChangedBucket;
+            }
+            for (; bucket < newestBucket; bucket++)
+            {
+                if (counts[slotOf(bucket)] > 0)
+                {
+                    selectLargestTriangle(bucket);
+                }
+            }
+        }
+
+        return buildPoints();
+    }
+
+    /*
+    Adds one reading from the store to its bucket.
+     */
+    private void ingest(long timestamp, float[] values)
+    {
+        float value = values[channel];
+        long bucket = Math.floorDiv(timestamp, bucketWidth);
+
+        if (newestBucket == NO_BUCKET || bucket > newestBucket)
+        {
+            startBuckets(bucket);
+        }
+        else if (bucket < oldestBucket())
+        {
+            return;  // Older than the time range shown
+        }
+
+        int slot = slotOf(bucket);
+        if (counts[slot] == 0)
+        {
+            firstTimes[slot] = timestamp;
+            firstValues[slot] = value;
+            minTimes[slot] = timestamp;
+            minValues[slot] = value;
+            maxTimes[slot] = timestamp;
+            maxValues[slot] = value;
+        }
+        else if (value < minValues[slot])
+        {
+            minTimes[slot] = timestamp;
+            minValues[slot] = value;
+        }
+        else if (value > maxValues[slot])
+        {
+            maxTimes[slot] = timestamp;
+            maxValues[slot] = value;
+        }
+        counts[slot]++;
+        valueSums[slot] += value;
+        timeOffsetSums[slot] += timestamp - bucket * bucketWidth;
+        lastTimes[slot] = timestamp;
+        lastValues[slot] = value;
+
+        if (oldestChangedBucket == NO_BUCKET || bucket < oldestChangedBucket)
+        {
+            oldestChangedBucket = bucket;
+        }
+    }
+
+    /*
+    Moves the time range forward so that it ends with the given bucket, emptying the
+    slots of the buckets that fall out of the range.
+     */
+    private void startBuckets(long bucket)
+    {
+        long firstNewBucket = newestBucket == NO_BUCKET
+                ? bucket - bucketCount + 1
+                : Math.max(newestBucket + 1, bucket - bucketCount + 1);
+        for (long b = firstNewBucket; b <= bucket; b++)
+        {
+            int slot = slotOf(b);
+            counts[slot] = 0;
+            valueSums[slot] = 0;
+            timeOffsetSums[slot] = 0;
+            hasSelection[slot] = false;
+        }
+        newestBucket = bucket;
+    }
+
+    /*
+    Picks the LTTB point of a bucket: the reading that forms the largest triangle with the point
+    picked in the previous bucket and the average of the next bucket. The readings of the bucket
+    are scanned straight from the store.
+     */
+    private void selectLargestTriangle(long bucket)
+    {
+        int slot = slotOf(bucket);
+        long previous = previousNonEmptyBucket(bucket);
+        long next = nextNonEmptyBucket(bucket);
+        if (previous == NO_BUCKET || next == NO_BUCKET)
+        {
+            // The first bucket keeps its first reading, like the first point in plain LTTB
+            if (!hasSelection[slot])
+            {
+                selectedTimes[slot] = previous == NO_BUCKET ? firstTimes[slot] : lastTimes[slot];
+                selectedValues[slot] = previous == NO_BUCKET ? firstValues[slot] : lastValues[slot];
+                hasSelection[slot] = true;
+            }
+            return;
+        }
+
+        int previousSlot = slotOf(previous);
+        int nextSlot = slotOf(next);
+        long bucketStart = bucket * bucketWidth;
+
+        // Times are relative to the bucket start to keep the area calculation precise
+        scanAnchorTime = previousPointTime(previousSlot) - bucketStart;
+        scanAnchorValue = previousPointValue(previousSlot);
+        scanAverageTime = next * bucketWidth - bucketStart + timeOffsetSums[nextSlot] / counts[nextSlot];
+        scanAverageValue = valueSums[nextSlot] / counts[nextSlot];
+        scanBestArea = -1;
+
+        store.forEach(bucketStart, bucketStart + bucketWidth, scanVisitor);
+
+        if (scanBestArea >= 0)
+        {
+            selectedTimes[slot] = scanBestTime;
+            selectedValues[slot] = scanBestValue;
+            hasSelection[slot] = true;
+        }
+        else if (!hasSelection[slot])
+        {
+            // The readings were already overwritten in the store, fall back to the summary
+            selectedTimes[slot] = lastTimes[slot];
+            selectedValues[slot] = lastValues[slot];
+            hasSelection[slot] = true;
+        }
+    }
+
+    /*
+    Checks one reading of the bucket being scanned by selectLargestTriangle().
+     */
+    private void scan(long timestamp, float[] values)
+    {
+        float value = values[channel];
+        double time = timestamp - (Math.floorDiv(timestamp, bucketWidth) * bucketWidth);
+        double area = Math.abs((scanAnchorTime - scanAverageTime) * (value - scanAnchorValue)
+                - (scanAnchorTime - time) * (scanAverageValue - scanAnchorValue));
+        if (area > scanBestArea)
+        {
+            scanBestArea = area;
+            scanBestTime = timestamp;
+            scanBestValue = value;
+        }
+    }
+
+    private long previousPointTime(int slot)
+    {
+        return hasSelection[slot] ? selectedTimes[slot] : lastTimes[slot];
+    }
+
+    private float previousPointValue(int slot)
+    {
+        return hasSelection[slot] ? selectedValues[slot] : lastValues[slot];
+    }
+
+    /*
+    Writes the output points for the current buckets and works out which of them changed.
+     */
+    private boolean buildPoints()
+    {
+        beginPoints();
+        for (long bucket = oldestBucket(); bucket <= newestBucket; bucket++)
+        {
+            int slot = slotOf(bucket);
+            if (counts[slot] == 0)
+            {
+                continue;
+            }
+
+            if (getMode() == Mode.LTTB)
+            {
+                // The newest bucket is still filling up, so it shows its latest reading
+                if (bucket == newestBucket)
+                {
+                    addPoint(lastTimes[slot], lastValues[slot]);
+                }
+                else
+                {
+                    addPoint(selectedTimes[slot], selectedValues[slot]);
+                }
+            }
+            else
+            {
+                boolean minFirst = minTimes[slot] <= maxTimes[slot];
+                addPoint(minFirst ? minTimes[slot] : maxTimes[slot], minFirst ? minValues[slot] : maxValues[slot]);
+                if (minTimes[slot] != maxTimes[slot])
+                {
+                    addPoint(minFirst ? maxTimes[slot] : minTimes[slot], minFirst ? maxValues[slot] : minValues[slot]);
+                }
+            }
+        }
+
+        // Points of the previous output that are older than the range were removed from the front
+        return endPoints(oldestBucket() * bucketWidth);
+    }
+
+    private long previousNonEmptyBucket(long bucket)
+    {
+        for (long b = bucket - 1; b >= oldestBucket(); b--)
+        {
+            if (counts[slotOf(b)] > 0)
+            {
+                return b;
+            }
+        }
+        return NO_BUCKET;
+    }
+
+    private long nextNonEmptyBucket(long bucket)
+    {
+        for (long b = bucket + 1; b <= newestBucket; b++)
+        {
+            if (counts[slotOf(b)] > 0)
+            {
+                return b;
+            }
+        }
+        return NO_BUCKET;
+    }
+
+    private long oldestBucket()
+    {
+        return newestBucket - bucketCount + 1;
+    }
+
+    private int slotOf(long bucket)
+    {
+        return (int) Math.floorMod(bucket, (long) bucketCount);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.project_client;
+
+/*
+ChartSeries is the list of points drawn for one sensor channel on a chart.
+Subclasses rebuild the points in update(); this class remembers the previous points so it can tell
+the chart which ones changed. getRemovedPointCount() points fell off the start of the time range,
+and after dropping those everything before getFirstChangedPoint() is unchanged, so a chart only
+has to replace the points from there on.
+Not thread safe, it is meant to be updated from the UI thread.
+ */
+public abstract class ChartSeries
+{
+    /*
+    How a series reduces many readings to the few points that fit on the chart.
+     */
+    public enum Mode
+    {
+        // One representative point per bucket (Largest-Triangle-Three-Buckets, or the mean of a rollup)
+        LTTB,
+        // The lowest and the highest reading of every bucket
+        MIN_MAX
+    }
+
+    private final Mode mode;
+
+    // Points of the current and the previous update, swapped every time points are rebuilt
+    private long[] pointTimes, previousPointTimes;
+    private float[] pointValues, previousPointValues;
+    private int pointCount, previousPointCount;
+    private int removedPointCount, firstChangedPoint;
+
+    protected ChartSeries(Mode mode, int maxPoints)
+    {
+        this.mode = mode;
+        pointTimes = new long[maxPoints];
+        previousPointTimes = new long[maxPoints];
+        pointValues = new float[maxPoints];
+        previousPointValues = new float[maxPoints];
+    }
+
+    /*
+    Brings the points up to date with the readings that arrived since the last update.
+    Returns true if any point changed.
+     */
+    public abstract boolean update();
+
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    public int getPointCount()
+    {
+        return pointCount;
+    }
+
+    public long getPointTimestamp(int index)
+    {
+        return pointTimes[index];
+    }
+
+    public float getPointValue(int index)
+    {
+        return pointValues[index];
+    }
+
+    /*
+    Number of points at the start of the previous output that fell out of the time range.
+     */
+    public int getRemovedPointCount()
+    {
+        return removedPointCount;
+    }
+
+    /*
+    Index of the first point that is new or different, after the removed points are dropped.
+    Points before it are the same as in the previous output.
+     */
+    public int getFirstChangedPoint()
+    {
+        return firstChangedPoint;
+    }
+
+    /*
+    Starts a new set of points; the current ones become the previous ones.
+     */
+    protected final void beginPoints()
+    {
+        long[] times = previousPointTimes;
+        float[] values = previousPointValues;
+        previousPointTimes = pointTimes;
+        previousPointValues = pointValues;
+        previousPointCount = pointCount;
+        pointTimes = times;
+        pointValues = values;
+        pointCount = 0;
+    }
+
+    /*
+    Adds a point to the set started by beginPoints(). Points must be added oldest first.
+     */
+    protected final void addPoint(long timestamp, float value)
+    {
+        pointTimes[pointCount] = timestamp;
+        pointValues[pointCount] = value;
+        pointCount++;
+    }
+
+    /*
+    Finishes the set of points and works out which of them changed.
+    Points of the previous set older than rangeStart are counted as removed from the front.
+    Returns true if anything changed.
+     */
+    protected final boolean endPoints(long rangeStart)
+    {
+        int removed = 0;
+        while (removed < previousPointCount && previousPointTimes[removed] < rangeStart)
+        {
+            removed++;
+        }
+        removedPointCount = removed;
+
+        int same = 0;
+        while (same < pointCount && removed + same < previousPointCount
+                && previousPointTimes[removed + same] == pointTimes[same]
+                && previousPointValues[removed + same] == pointValues[same])
+        {
+            same++;
+        }
+        firstChangedPoint = same;
+        return removed > 0 || same < pointCount || pointCount != previousPointCount;
+    }
+
+    /*
+    Reports that nothing changed since the last update.
+     */
+    protected final void keepPoints()
+    {
+        removedPointCount = 0;
+        firstChangedPoint = pointCount;
+    }
+}
@@ -4,9 +4,9 @@ import android.content.SharedPreferences;
 import android.graphics.Color;
 import android.os.Bundle;
 import android.os.Handler;
-import android.util.Log;
 import android.view.View;
 import android.widget.Button;
+import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
@@ -22,7 +22,9 @@ import com.github.mikephil.charting.data.LineData;
 import com.github.mikephil.charting.data.LineDataSet;
 import com.github.mikephil.charting.formatter.ValueFormatter;
 
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
@@ -30,32 +32,58 @@ import java.util.Locale;
 ChartViewScreen activity displays real-time sensor data in line charts for temperature,
 humidity, and pressure. The user can toggle between different charts and see threshold lines
 when thresholds are enabled in settings.
+Each chart shows the last MAX_CHART_POINTS time intervals of readings, reduced to about one point
+per few pixels of screen width. Short ranges are downsampled from the shared ReadingStore by a
+ChartDownsampler; ranges long enough to fill the chart with minute, hour or day rollups are drawn
+from the RollupStore instead. Long pressing a chart's button switches that chart between LTTB and
+min/max downsampling.
+Each chart's description shows the mean and the 5th and 95th percentiles over the chart's time
+range, merged from the running ReadingStatistics of the session rather than from the points, with
+the time they start from, since those are kept in whole windows and for a limited time.
+The charts and buttons are kept in arrays indexed by channel id; channels of the ChannelRegistry
+that the layout has no chart for are still stored, just not drawn here.
  */
-public class ChartViewScreen extends AppCompatActivity implements WebSocketClientHandler.MessageListener
+public class ChartViewScreen extends AppCompatActivity
 {
-    private Button showTemperatureButton, showHumidityButton, showPressureButton;
-    private LineChart temperatureChart, humidityChart, pressureChart;
-    private WebSocketClientHandler webSocketClientHandler;
-    private List<Entry> temperatureEntries = new ArrayList<>();
-    private List<Entry> humidityEntries = new ArrayList<>();
-    private List<Entry> pressureEntries = new ArrayList<>();
-    private int timeIndex = 0;
+    private final ChannelRegistry registry = ChannelRegistry.getDefault();
+
+    // The chart and button of each channel, indexed by channel id; null for channels without a chart
+    private Button[] showChartButtons;
+    private LineChart[] charts;
+    private SensorConnectionManager connectionManager;
+
+    // Data sets are created once in setupChart() and only the changed points are replaced
+    private LineDataSet[] dataSets;
+
+    // Reduce the stored readings to the points drawn on each chart
+    private ChartSeries[] downsamplers;
+
+    // Threshold lines of each chart, created once and stretched over the points on every update
+    private LineDataSet[][] thresholdSets;
+
+    private LineChart visibleChart;
+
+    // Each chart covers this many time intervals
+    private static final int MAX_CHART_POINTS = 600;
+
+    // Screen pixels per downsampling bucket
+    private static final int PIXELS_PER_BUCKET = 4;
 
     private SharedPreferences settings_database;
 
     private Handler handler = new Handler(); // Handler to schedule periodic updates
     private Runnable updateRunnable; // Runnable to update charts every 2 minutes
 
-    // Buffer lists to store incoming data
-    private List<Float> temperatureBuffer = new ArrayList<>();
-    private List<Float> humidityBuffer = new ArrayList<>();
-    private List<Float> pressureBuffer = new ArrayList<>();
+    // Shared stores of received readings and of their rollups (null if the history could not be opened)
+    private ReadingStore readingStore;
+    private RollupStore rollupStore;
+    private ReadingStatistics readingStatistics;
+
+    // X values are seconds since this time, so they fit in a float
+    private final long baseTimestamp = System.currentTimeMillis();
 
     // Threshold values for the sensors
-    private float minTempThreshold, maxTempThreshold;
-    private float minHumThreshold, maxHumThreshold;
-    private float minPresThreshold, maxPresThreshold;
-    private boolean isThresholdEnabled;
+    private ThresholdRules thresholdRules;
 
     private float timeInterval;
 
@@ -74,47 +102,65 @@ public class ChartViewScreen extends AppCompatActivity implements WebSocketClien
         });
 
         // Initialize charts
-        temperatureChart = findViewById(R.id.tempChart);
-        humidityChart = findViewById(R.id.humidityChart);
-        pressureChart = findViewById(R.id.pressureChart);
+        int channelCount = registry.size();
+        charts = new LineChart[channelCount];
+        showChartButtons = new Button[channelCount];
+        dataSets = new LineDataSet[channelCount];
+        downsamplers = new ChartSeries[channelCount];
+        thresholdSets = new LineDataSet[channelCount][];
 
-        // Setup chart configurations
-        setupChart(temperatureChart, "Temperature Data");
-        setupChart(humidityChart, "Humidity Data");
-        setupChart(pressureChart, "Pressure Data");
+        charts[ChannelRegistry.TEMPERATURE] = findViewById(R.id.tempChart);
+        charts[ChannelRegistry.HUMIDITY] = findViewById(R.id.humidityChart);
+        charts[ChannelRegistry.PRESSURE] = findViewById(R.id.pressureChart);
 
         // Initialise buttons
-        showTemperatureButton = findViewById(R.id.showTemperatureButton);
-        showHumidityButton = findViewById(R.id.showHumidityButton);
-        showPressureButton = findViewById(R.id.showPressureButton);
+        showChartButtons[ChannelRegistry.TEMPERATURE] = findViewById(R.id.showTemperatureButton);
+        showChartButtons[ChannelRegistry.HUMIDITY] = findViewById(R.id.showHumidityButton);
+        showChartButtons[ChannelRegistry.PRESSURE] = findViewById(R.id.showPressureButton);
 
-        // Set click listeners for buttons
-        showTemperatureButton.setOnClickListener(v -> showChart(temperatureChart));
-        showHumidityButton.setOnClickListener(v -> showChart(humidityChart));
-        showPressureButton.setOnClickListener(view -> showChart(pressureChart));
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            if (charts[channel] == null)
+            {
+                continue;
+            }
+            int id = channel;
 
-        // Initialize WebSocket and SharedPreferences
-        webSocketClientHandler = new WebSocketClientHandler();
-        webSocketClientHandler.setMessageListener(this);
+            // Set click listeners for buttons
+            showChartButtons[channel].setOnClickListener(v -> showChart(id));
 
+            // Long press switches the downsampling mode of a chart
+            showChartButtons[channel].setOnLongClickListener(v ->
+            {
+                switchDownsamplingMode(id);
+                return true;
+            });
+        }
+
+        // Initialize SharedPreferences
         settings_database = getSharedPreferences("settings_prefs", MODE_PRIVATE);
 
-        minTempThreshold = Float.parseFloat(settings_database.getString("saved_min_temp", "0"));
-        maxTempThreshold = Float.parseFloat(settings_database.getString("saved_max_temp", "100"));
-        minHumThreshold = Float.parseFloat(settings_database.getString("saved_min_hum", "0"));
-        maxHumThreshold = Float.parseFloat(settings_database.getString("saved_max_hum", "100"));
-        minPresThreshold = Float.parseFloat(settings_database.getString("saved_min_pres", "0"));
-        maxPresThreshold = Float.parseFloat(settings_database.getString("saved_max_pres", "1000"));
+        thresholdRules = ThresholdRules.compile(settings_database.getAll(), registry);
 
         timeInterval = Float.parseFloat(settings_database.getString("saved_time_interval", "1000"));
 
-        isThresholdEnabled = settings_database.getBoolean("threshold_enabled", false);
-
-        String savedIPAddress = settings_database.getString("saved_ip_address", "0");
-        String savedPortNumber = settings_database.getString("saved_port_number", "0");
+        // The shared WebSocket session is kept open by the SensorService even while no screen is
+        // shown, so the store already holds the readings of the last minutes; the charts poll it
+        SensorService.start(this);
+        connectionManager = SensorConnectionManager.getInstance();
+        readingStore = connectionManager.getReadingStore();
+        rollupStore = connectionManager.getRollupStore();
+        readingStatistics = connectionManager.getReadingStatistics();
 
-        String serverUrl = "ws://" + savedIPAddress + ":" + savedPortNumber;
-        webSocketClientHandler.connectWebSocket(serverUrl);
+        // Setup chart configurations
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            if (charts[channel] != null)
+            {
+                dataSets[channel] = setupChart(channel);
+                downsamplers[channel] = createDownsampler(channel);
+            }
+        }
 
         // Set up a Runnable to update the charts every given time interval
         updateRunnable = new Runnable()
@@ -122,76 +168,130 @@ public class ChartViewScreen extends AppCompatActivity implements WebSocketClien
             @Override
             public void run()
             {
-                // Add only the last value from the buffer to each chart (one entry for each sensor)
+                // Add the readings that arrived since the last update to each chart
                 addBufferedDataToCharts();
 
-                // Clear buffers after updating the chart
-                temperatureBuffer.clear();
-                humidityBuffer.clear();
-                pressureBuffer.clear();
-
                 // Schedule the next update after given time interval
                 handler.postDelayed(this, (long) timeInterval);  // Correcting this to ensure it happens after given time interval.
             }
         };
-        // Start the first update after given time interval
+        // Show the readings that are already in the store, then update every given time interval
+        addBufferedDataToCharts();
         handler.postDelayed(updateRunnable, (long) timeInterval);  // Start the given time interval here
 
         // Initially show the temperature chart
-        showChart(temperatureChart);
+        showChart(ChannelRegistry.TEMPERATURE);
     }
 
     /*
-    This method configures a LineChart with basic settings.
+    This method configures a LineChart with basic settings and creates its data set and
+    threshold lines. Returns the data set that holds the downsampled readings.
      */
-    private void setupChart(LineChart chart, String descriptionText)
+    private LineDataSet setupChart(int channel)
     {
+        LineChart chart = charts[channel];
+        String label = registry.get(channel).getName();
         Description description = new Description();
-        description.setText(descriptionText);
+        description.setText(label + " Data");
         chart.setDescription(description);
-        chart.setData(new LineData());
+        chart.getXAxis().setValueFormatter(timeFormatter);
+
+        LineDataSet dataSet = new LineDataSet(new ArrayList<>(), label);
+        dataSet.setValueFormatter(twoDecimalFormatter); // Apply formatter
+        dataSet.setColor(Color.GREEN);
+        dataSet.setLineWidth(4f);
+        dataSet.setCircleRadius(5f);
+        dataSet.setCircleHoleRadius(3.5f);
+        dataSet.setValueTextSize(10f);
+
+        LineData lineData = new LineData(dataSet);
+        thresholdSets[channel] = new LineDataSet[0];
+        if (thresholdRules.isEnabled() && thresholdRules.hasRange(channel))
+        {
+            // Threshold lines are separate data sets
+            thresholdSets[channel] = new LineDataSet[] {
+                    createThresholdLine(Float.parseFloat(thresholdRules.getMinText(channel))),
+                    createThresholdLine(Float.parseFloat(thresholdRules.getMaxText(channel)))};
+            for (LineDataSet thresholdSet : thresholdSets[channel])
+            {
+                lineData.addDataSet(thresholdSet);
+            }
+        }
+
+        chart.setData(lineData);
         chart.invalidate();
+        return dataSet;
     }
 
     /*
-    This method shows the specified chart while hiding the other charts.
+    Creates the series for one chart, using the mode saved for that chart (LTTB by default)
+    under saved_chart_mode_<key> with the channel's setting key.
+    The chart covers MAX_CHART_POINTS time intervals split into one bucket per few pixels.
+    The coarsest rollup tier that still has a bucket for every few pixels is used if there is one,
+    otherwise the raw readings are downsampled.
      */
-    private void showChart(LineChart chartToShow)
+    private ChartSeries createDownsampler(int channel)
     {
-        // Hide all charts
-        temperatureChart.setVisibility(View.GONE);
-        humidityChart.setVisibility(View.GONE);
-        pressureChart.setVisibility(View.GONE);
+        ChartSeries.Mode mode = ChartSeries.Mode.valueOf(
+                settings_database.getString(modeKey(channel), ChartSeries.Mode.LTTB.name()));
+        int bucketCount = Math.max(2, getResources().getDisplayMetrics().widthPixels / PIXELS_PER_BUCKET);
+        long rangeLength = (long) (timeInterval * MAX_CHART_POINTS);
 
-        // Show the selected chart
-        chartToShow.setVisibility(View.VISIBLE);
+        RollupStore.Tier tier = rollupStore == null ? null : RollupStore.selectTier(rangeLength, bucketCount);
+        if (tier != null)
+        {
+            return new RollupChartSeries(rollupStore, tier, channel, mode, rangeLength);
+        }
+        long bucketWidth = Math.max(1, rangeLength / bucketCount);
+        return new ChartDownsampler(readingStore, channel, mode, bucketCount, bucketWidth);
     }
 
     /*
-    Callback for receiving new sensor data from WebSocket.
-    Stores data in buffers for later chart updates.
+    Switches a chart between LTTB and min/max downsampling, saves the choice and redraws the chart.
      */
-    @Override
-    public void onSensorDataReceived(String temperature, String humidity, String pressure)
+    private void switchDownsamplingMode(int channel)
+    {
+        ChartSeries.Mode newMode = downsamplers[channel].getMode() == ChartSeries.Mode.LTTB
+                ? ChartSeries.Mode.MIN_MAX
+                : ChartSeries.Mode.LTTB;
+        settings_database.edit().putString(modeKey(channel), newMode.name()).apply();
+        Toast.makeText(this, "Chart mode: " + newMode.name(), Toast.LENGTH_SHORT).show();
+
+        downsamplers[channel] = createDownsampler(channel);
+        dataSets[channel].clear();
+        downsamplers[channel].update();
+        updateDataSet(dataSets[channel], downsamplers[channel]);
+        stretchThresholdLines(channel);
+        charts[channel].getData().notifyDataChanged();
+        showChart(channel);
+    }
+
+    private String modeKey(int channel)
     {
-        runOnUiThread(() ->
+        return "saved_chart_mode_" + registry.get(channel).getSettingKey();
+    }
+
+    /*
+    This method shows the chart of the specified channel while hiding the other charts.
+     */
+    private void showChart(int channel)
+    {
+        // Hide all charts
+        for (LineChart chart : charts)
         {
-            try
-            {
-                // Store the incoming data in buffers (every reading, but only one is used for each 2-minute period)
-                float temperatureReading = Float.parseFloat(temperature);
-                float humidityReading = Float.parseFloat(humidity);
-                float pressureReading = Float.parseFloat(pressure);
-
-                temperatureBuffer.add(temperatureReading);
-                humidityBuffer.add(humidityReading);
-                pressureBuffer.add(pressureReading);
-            }
-            catch (NumberFormatException e)
+            if (chart != null)
             {
-                Log.e("ChartViewScreen", "Error parsing sensor data", e);
+                chart.setVisibility(View.GONE);
             }
-        });
+        }
+
+        // Show the selected chart
+        LineChart chartToShow = charts[channel];
+        chartToShow.setVisibility(View.VISIBLE);
+
+        // Hidden charts are not redrawn while new points arrive, so catch up now
+        visibleChart = chartToShow;
+        refreshChart(chartToShow);
     }
 
     // Add this with your other class fields
@@ -204,110 +304,127 @@ public class ChartViewScreen extends AppCompatActivity implements WebSocketClien
         }
     };
 
+    // Shows the x values (seconds since baseTimestamp) as the time of day
+    private final ValueFormatter timeFormatter = new ValueFormatter()
+    {
+        private final SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.US);
+
+        @Override
+        public String getFormattedValue(float value)
+        {
+            return timeFormat.format(new Date(baseTimestamp + (long) (value * 1000)));
+        }
+    };
+
     /*
-    Adds the latest buffered data points to each chart and updates the display.
+    Adds the readings that arrived since the last update to each chart and updates the display.
+    Only the downsampled points that changed are replaced, and only the visible chart is redrawn.
      */
     private void addBufferedDataToCharts()
     {
-        if (temperatureEntries.isEmpty())
+        boolean changed = false;
+        for (int channel = 0; channel < charts.length; channel++)
         {
-            temperatureEntries.add(new Entry(0, temperatureBuffer.get(temperatureBuffer.size() - 1)));
-            temperatureEntries.add(new Entry(timeIndex, temperatureBuffer.get(temperatureBuffer.size() - 1)));
+            if (charts[channel] != null && downsamplers[channel].update())
+            {
+                updateDataSet(dataSets[channel], downsamplers[channel]);
+                stretchThresholdLines(channel);
+                updateDescription(channel);
+                charts[channel].getData().notifyDataChanged();
+                changed = true;
+            }
         }
 
-        // Only add the latest data from the buffer for each sensor (temperature, humidity, pressure)
-        if (!temperatureBuffer.isEmpty())
+        if (changed)
         {
-            temperatureEntries.add(new Entry(timeIndex, temperatureBuffer.get(temperatureBuffer.size() - 1)));
+            refreshChart(visibleChart);
+            LatencyTracker.getInstance().recordSinceReceived(LatencyTracker.Stage.CHART);
         }
-        if (!humidityBuffer.isEmpty())
+    }
+
+    /*
+    Applies the changes of the last downsampler update to a chart's data set: points that fell
+    out of the time range are removed from the front and the changed points at the end replaced.
+     */
+    private void updateDataSet(LineDataSet dataSet, ChartSeries downsampler)
+    {
+        for (int i = 0; i < downsampler.getRemovedPointCount() && dataSet.getEntryCount() > 0; i++)
         {
-            humidityEntries.add(new Entry(timeIndex, humidityBuffer.get(humidityBuffer.size() - 1)));
+            dataSet.removeFirst();
         }
-        if (!pressureBuffer.isEmpty())
+        while (dataSet.getEntryCount() > downsampler.getFirstChangedPoint())
         {
-            pressureEntries.add(new Entry(timeIndex, pressureBuffer.get(pressureBuffer.size() - 1)));
+            dataSet.removeLast();
         }
-        timeIndex++;
-
-        // Create and update LineDataSets for sensor data
-        LineDataSet temperatureDataSet = new LineDataSet(temperatureEntries, "Temperature");
-        LineDataSet humidityDataSet = new LineDataSet(humidityEntries, "Humidity");
-        LineDataSet pressureDataSet = new LineDataSet(pressureEntries, "Pressure");
-
-        temperatureDataSet.setValueFormatter(twoDecimalFormatter); // Apply formatter
-        temperatureDataSet.setColor(Color.GREEN);
-        temperatureDataSet.setLineWidth(4f);
-        temperatureDataSet.setCircleRadius(5f);
-        temperatureDataSet.setCircleHoleRadius(3.5f);
-        temperatureDataSet.setValueTextSize(10f);
-
-        humidityDataSet.setValueFormatter(twoDecimalFormatter); // Apply formatter
-        humidityDataSet.setColor(Color.GREEN);
-        humidityDataSet.setLineWidth(4f);
-        humidityDataSet.setCircleRadius(5f);
-        humidityDataSet.setCircleHoleRadius(3.5f);
-        humidityDataSet.setValueTextSize(10f);
-
-        pressureDataSet.setValueFormatter(twoDecimalFormatter); // Apply formatter
-        pressureDataSet.setColor(Color.GREEN);
-        pressureDataSet.setLineWidth(4f);
-        pressureDataSet.setCircleRadius(5f);
-        pressureDataSet.setCircleHoleRadius(3.5f);
-        pressureDataSet.setValueTextSize(10f);
-
-        LineDataSet temperatureMinThresholdSet;
-        LineDataSet temperatureMaxThresholdSet;
-        LineDataSet humidityMinThresholdSet;
-        LineDataSet humidityMaxThresholdSet;
-        LineDataSet pressureMinThresholdSet;
-        LineDataSet pressureMaxThresholdSet;
-
-        LineData temperatureData;
-        LineData humidityData;
-        LineData pressureData;
-
-        if (isThresholdEnabled)
+        for (int i = dataSet.getEntryCount(); i < downsampler.getPointCount(); i++)
         {
-            // Create and add threshold lines as separate data sets
-            temperatureMinThresholdSet = createThresholdLine(minTempThreshold);
-            temperatureMaxThresholdSet = createThresholdLine(maxTempThreshold);
-            humidityMinThresholdSet = createThresholdLine(minHumThreshold);
-            humidityMaxThresholdSet = createThresholdLine(maxHumThreshold);
-            pressureMinThresholdSet = createThresholdLine(minPresThreshold);
-            pressureMaxThresholdSet = createThresholdLine(maxPresThreshold);
-
-            // Create LineData for all data sets
-            temperatureData = new LineData(temperatureDataSet, temperatureMinThresholdSet, temperatureMaxThresholdSet);
-            humidityData = new LineData(humidityDataSet, humidityMinThresholdSet, humidityMaxThresholdSet);
-            pressureData = new LineData(pressureDataSet, pressureMinThresholdSet, pressureMaxThresholdSet);
+            float x = (downsampler.getPointTimestamp(i) - baseTimestamp) / 1000f;
+            dataSet.addEntry(new Entry(x, downsampler.getPointValue(i)));
         }
-        else
+    }
+
+    /*
+    Shows the statistics of the chart's time range in its description, with the time they start
+    from: the statistics are kept in whole windows of ReadingStatistics.WINDOW_MS, so they may
+    start a little before the chart, and only for ReadingStatistics.RETAINED_MS, so for a longer
+    chart they cover only its most recent part.
+     */
+    private void updateDescription(int channel)
+    {
+        long now = System.currentTimeMillis();
+        long since = now - (long) (timeInterval * MAX_CHART_POINTS);
+        StreamingStats statistics = readingStatistics.getStatistics(channel, since);
+        long coveredSince = readingStatistics.getCoveredSince(since);
+        String text = registry.get(channel).getName() + " Data";
+        if (statistics.getCount() > 0 && coveredSince != Long.MIN_VALUE)
         {
-            // Create LineData for all data sets
-            temperatureData = new LineData(temperatureDataSet);
-            humidityData = new LineData(humidityDataSet);
-            pressureData = new LineData(pressureDataSet);
+            double[] percentiles = statistics.getQuantiles(0.05, 0.95);
+            String start = new SimpleDateFormat("HH:mm", Locale.US).format(new Date(coveredSince));
+            String limit = since < now - ReadingStatistics.RETAINED_MS
+                    ? String.format(Locale.US, " (last %d h only)", ReadingStatistics.RETAINED_MS / 3_600_000)
+                    : "";
+            text += String.format(Locale.US, "  since %s%s: mean %.2f  p5 %.2f  p95 %.2f",
+                    start, limit, statistics.getMean(), percentiles[0], percentiles[1]);
         }
+        charts[channel].getDescription().setText(text);
+    }
 
-        // Update the charts
-        temperatureChart.setData(temperatureData);
-        humidityChart.setData(humidityData);
-        pressureChart.setData(pressureData);
+    /*
+    Stretches the threshold lines of a chart over the points currently on it.
+     */
+    private void stretchThresholdLines(int channel)
+    {
+        LineDataSet dataSet = dataSets[channel];
+        if (dataSet.getEntryCount() == 0)
+        {
+            return;
+        }
+        for (LineDataSet thresholdSet : thresholdSets[channel])
+        {
+            thresholdSet.getEntryForIndex(0).setX(dataSet.getXMin());
+            thresholdSet.getEntryForIndex(1).setX(dataSet.getXMax());
+            thresholdSet.notifyDataSetChanged();
+        }
+    }
 
-        temperatureChart.invalidate();
-        humidityChart.invalidate();
-        pressureChart.invalidate();
+    /*
+    Lets the chart pick up the changed points and redraws it.
+     */
+    private void refreshChart(LineChart chart)
+    {
+        chart.notifyDataSetChanged();
+        chart.invalidate();
     }
 
     /*
     Creates horizontal threshold lines at the specified values.
+    The line is stretched over the current points on every update.
      */
     private LineDataSet createThresholdLine(float thresholdValue)
     {
         List<Entry> thresholdEntries = new ArrayList<>();
         thresholdEntries.add(new Entry(0, thresholdValue)); // Start of the line
-        thresholdEntries.add(new Entry(timeIndex, thresholdValue)); // End of the line
+        thresholdEntries.add(new Entry(0, thresholdValue)); // End of the line
 
         LineDataSet thresholdSet = new LineDataSet(thresholdEntries, null);
         thresholdSet.setColor(Color.RED);
@@ -320,36 +437,13 @@ public class ChartViewScreen extends AppCompatActivity implements WebSocketClien
     }
 
     /*
-    Method for connection error between the client and the server.
-     */
-    @Override
-    public void onConnectionError(String errorMessage)
-    {
-
-    }
-
-    /*
-    Called when the WebSocketClientHandler updates the connection status.
-    Runs on the UI thread to safely update button visibility based on status.
-     */
-    @Override
-    public void onConnectionStatusChanged(boolean isConnected)
-    {
-
-    }
-
-    /*
-    This method disconnects from the WebSocket server and stops periodic updates when
-    the user closes the activity.
+    This method stops periodic updates when the user closes the activity.
+    The session itself stays open for the main screen.
      */
     @Override
     protected void onDestroy()
     {
         super.onDestroy();
-        if (webSocketClientHandler != null)
-        {
-            webSocketClientHandler.disconnectWebSocket();
-        }
         // Stop the periodic update when the activity is destroyed
         handler.removeCallbacks(updateRunnable);  // Remove callback to stop periodic updates
     }
@@ -0,0 +1,113 @@
+package com.example.project_client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+CommandQueue holds the commands waiting to be sent to the Pi, e.g. "TEMP_OUT_THRESHOLD:31.20".
+Only the newest command of each key (a channel's command prefix) is kept: the Pi shows every
+command on its LEDs one after the other, so an older state of the same channel would only be
+stale text scrolling past. The queue is bounded; when it is full the oldest command is dropped.
+The WebSocketClientHandler keeps commands here while the connection is down and sends everything
+that is waiting as one batched frame.
+It is safe to use from several threads.
+ */
+public class CommandQueue
+{
+    public static final int DEFAULT_CAPACITY = 16;
+
+    // What offer() did with the command
+    public static final int ADDED = 0;
+    public static final int REPLACED = 1;
+    public static final int DROPPED_OLDEST = 2;
+
+    private final int capacity;
+
+    // Oldest first, guarded by this
+    private final LinkedHashMap<String, String> commands = new LinkedHashMap<>();
+
+    public CommandQueue()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CommandQueue(int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /*
+    Queues a command, replacing the one waiting with the same key. The newest command goes last.
+    Returns ADDED, REPLACED, or DROPPED_OLDEST if the queue was full and its oldest command was
+    dropped to make room.
+     */
+    public synchronized int offer(String key, String command)
+    {
+        if (commands.remove(key) != null)
+        {
+            commands.put(key, command);
+            return REPLACED;
+        }
+        int result = ADDED;
+        if (commands.size() == capacity)
+        {
+            Iterator<String> oldest = commands.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+            result = DROPPED_OLDEST;
+        }
+        commands.put(key, command);
+        return result;
+    }
+
+    /*
+    Takes every waiting command, oldest first, by key. Returns null if there are none.
+     */
+    public synchronized Map<String, String> drain()
+    {
+        if (commands.isEmpty())
+        {
+            return null;
+        }
+        Map<String, String> drained = new LinkedHashMap<>(commands);
+        commands.clear();
+        return drained;
+    }
+
+    /*
+    Puts drained commands back, e.g. because the connection closed while they were being sent.
+    A command queued since then for the same key is newer and is kept instead; the restored ones
+    go first, and only as many as there is room for.
+     */
+    public synchronized void restore(Map<String, String> drained)
+    {
+        LinkedHashMap<String, String> merged = new LinkedHashMap<>();
+        int room = capacity - commands.size();
+        for (Map.Entry<String, String> entry : drained.entrySet())
+        {
+            if (room > 0 && !commands.containsKey(entry.getKey()))
+            {
+                merged.put(entry.getKey(), entry.getValue());
+                room--;
+            }
+        }
+        merged.putAll(commands);
+        commands.clear();
+        commands.putAll(merged);
+    }
+
+    public synchronized int size()
+    {
+        return commands.size();
+    }
+
+    public synchronized void clear()
+    {
+        commands.clear();
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.project_client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+DeviceFleetManager keeps WebSocket sessions to many Raspberry Pis at once, e.g. one per room.
+Each device is added with an id and its server URL; every reading it sends is kept in that
+device's own ReadingStore and passed to the FleetListener tagged with the device id.
+
+A Java-WebSocket client starts its own threads, so a fleet of them would cost a few threads per
+device. Here all devices share a fixed number of FleetIoLoop threads instead, each serving its
+sockets through one Selector, so the thread count does not grow with the fleet, an idle device
+costs only its socket and store, and CPU time is spent on the messages that actually arrive.
+ */
+public class DeviceFleetManager implements Closeable
+{
+    /*
+    Interface for receiving readings and connection events from the devices of a fleet.
+    The methods are called on an I/O thread that also serves other devices, so they should be
+    quick and hand any real work to another thread.
+     */
+    public interface FleetListener
+    {
+        /*
+        Called for every reading of a device. values holds one value per channel of the
+        ChannelRegistry and is reused for the next reading, so copy it if it is needed later.
+         */
+        void onReading(String deviceId, long timestamp, double[] values);
+
+        /*
+        Called when a device's session opens or closes.
+         */
+        void onDeviceStatusChanged(String deviceId, boolean isConnected);
+
+        /*
+        Called when a device cannot be reached, drops the connection or sends a bad frame.
+         */
+        void onDeviceError(String deviceId, String errorMessage);
+    }
+
+    public static final int DEFAULT_IO_THREADS = 2;
+
+    // Readings kept per device, an hour at the default rate of one per second
+    public static final int DEFAULT_STORE_CAPACITY = 60 * 60;
+
+    private final ChannelRegistry registry;
+    private final int storeCapacity;
+    private final FleetIoLoop[] loops;
+    private final ConcurrentHashMap<String, Device> devices = new ConcurrentHashMap<>();
+    private volatile FleetListener listener;
+    private int nextLoop;
+
+    private static final class Device
+    {
+        final String serverUrl;
+        final FleetIoLoop loop;
+        final FleetIoLoop.Connection connection;
+
+        Device(String serverUrl, FleetIoLoop loop, FleetIoLoop.Connection connection)
+        {
+            this.serverUrl = serverUrl;
+            this.loop = loop;
+            this.connection = connection;
+        }
+    }
+
+    public DeviceFleetManager() throws IOException
+    {
+        this(ChannelRegistry.getDefault(), DEFAULT_IO_THREADS, DEFAULT_STORE_CAPACITY);
+    }
+
+    public DeviceFleetManager(ChannelRegistry registry, int ioThreads, int storeCapacity) throws IOException
+    {
+        if (ioThreads < 1)
+        {
+            throw new IllegalArgumentException("At least one I/O thread is needed: " + ioThreads);
+        }
+        this.registry = registry;
+        this.storeCapacity = storeCapacity;
+        loops = new FleetIoLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++)
+        {
+            loops[i] = new FleetIoLoop(this, registry, "fleet-io-" + i);
+        }
+    }
+
+    public void setListener(FleetListener listener)
+    {
+        this.listener = listener;
+    }
+
+    /*
+    Adds a device and starts connecting to it. Adding a device that is already in the fleet
+    with the same URL does nothing; with a different URL its session is replaced and its
+    readings start over. The host is resolved on the calling thread, so pass an IP address
+    when calling from the main thread.
+     */
+    public synchronized void addDevice(String deviceId, String serverUrl)
+    {
+        Device existing = devices.get(deviceId);
+        if (existing != null && existing.serverUrl.equals(serverUrl) && !existing.connection.closed)
+        {
+            return;
+        }
+        removeDevice(deviceId);
+
+        URI uri;
+        try
+        {
+            uri = new URI(serverUrl);
+        }
+        catch (URISyntaxException e)
+        {
+            throw new IllegalArgumentException("Invalid server URL: " + serverUrl, e);
+        }
+        if (!"ws".equals(uri.getScheme()) || uri.getHost() == null)
+        {
+            throw new IllegalArgumentException("Invalid server URL: " + serverUrl);
+        }
+        int port = uri.getPort() == -1 ? 80 : uri.getPort();
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null)
+        {
+            path += "?" + uri.getRawQuery();
+        }
+
+        // Spread the devices evenly over the I/O threads
+        FleetIoLoop loop = loops[nextLoop];
+        nextLoop = (nextLoop + 1) % loops.length;
+
+        FleetIoLoop.Connection connection = new FleetIoLoop.Connection(deviceId,
+                new InetSocketAddress(uri.getHost(), port), uri.getHost() + ":" + port, path,
+                new ReadingStore(registry.size(), storeCapacity));
+        devices.put(deviceId, new Device(serverUrl, loop, connection));
+        loop.open(connection);
+    }
+
+    /*
+    Closes a device's session and forgets its readings.
+     */
+    public synchronized void removeDevice(String deviceId)
+    {
+        Device device = devices.remove(deviceId);
+        if (device != null)
+        {
+            device.loop.close(device.connection);
+        }
+    }
+
+    /*
+    Sends a message to one device. Returns false if the device is unknown or not connected.
+     */
+    public boolean sendMessage(String deviceId, String message)
+    {
+        Device device = devices.get(deviceId);
+        return device != null && device.loop.send(device.connection, message);
+    }
+
+    /*
+    Returns the readings received from a device, or null if it is not in the fleet.
+     */
+    public ReadingStore getReadingStore(String deviceId)
+    {
+        Device device = devices.get(deviceId);
+        return device == null ? null : device.connection.readingStore;
+    }
+
+    public boolean isConnected(String deviceId)
+    {
+        Device device = devices.get(deviceId);
+        return device != null && device.connection.connected;
+    }
+
+    public Set<String> getDeviceIds()
+    {
+        return Collections.unmodifiableSet(devices.keySet());
+    }
+
+    /*
+    Returns how many devices currently have an open session.
+     */
+    public int getConnectedCount()
+    {
+        int count = 0;
+        for (Device device : devices.values())
+        {
+            if (device.connection.connected)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getIoThreadCount()
+    {
+        return loops.length;
+    }
+
+    /*
+    Closes every session and stops the I/O threads.
+     */
+    @Override
+    public synchronized void close()
+    {
+        for (String deviceId : devices.keySet())
+        {
+            removeDevice(deviceId);
+        }
+        for (FleetIoLoop loop : loops)
+        {
+            try
+            {
+                loop.shutdown();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    void onReading(FleetIoLoop.Connection connection, long timestamp, double[] values)
+    {
+        FleetListener listener = this.listener;
+        if (listener != null)
+        {
+            listener.onReading(connection.deviceId, timestamp, values);
+        }
+    }
+
+    void onStatusChanged(FleetIoLoop.Connection connection, boolean isConnected)
+    {
+        FleetListener listener = this.listener;
+        if (listener != null)
+        {
+            listener.onDeviceStatusChanged(connection.deviceId, isConnected);
+        }
+    }
+
+    void onError(FleetIoLoop.Connection connection, String errorMessage)
+    {
+        FleetListener listener = this.listener;
+        if (listener != null)
+        {
+            listener.onDeviceError(connection.deviceId, errorMessage);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.project_client;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.EdgeToEdge;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.graphics.Insets;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.WindowInsetsCompat;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+Diagnostics Screen, opened with a long press on the settings icon of the main screen.
+It is also reachable from the Settings Screen.
+It shows the metrics of the MetricsRegistry (message and failure rates, reconnects, threshold
+checks, notifications, the UI backlog), the latencies of the LatencyTracker (p50, p99 and maximum
+of every stage from the sensor to the screen) and the startup timings, refreshed every second.
+Export writes the full latency histograms as CSV to the app's external files folder; Reset starts
+the measurements over.
+ */
+public class DiagnosticsScreen extends AppCompatActivity
+{
+    private static final long REFRESH_INTERVAL_MS = 1000;
+
+    private TextView diagnosticsText;
+    private Button resetButton, exportButton;
+
+    private final LatencyTracker latencyTracker = LatencyTracker.getInstance();
+    private final MetricsRegistry metrics = MetricsRegistry.getDefault();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
+
+    private final Runnable refreshRunnable = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            refresh();
+            handler.postDelayed(this, REFRESH_INTERVAL_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        super.onCreate(savedInstanceState);
+        EdgeToEdge.enable(this);
+        setContentView(R.layout.activity_diagnostics_screen);
+        ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) ->
+        {
+            Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
+            v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
+            return insets;
+        });
+
+        diagnosticsText = findViewById(R.id.diagnosticsText);
+        resetButton = findViewById(R.id.resetButton);
+        exportButton = findViewById(R.id.exportButton);
+
+        resetButton.setOnClickListener(view ->
+        {
+            latencyTracker.reset();
+            metrics.reset();
+            refresh();
+        });
+        exportButton.setOnClickListener(view -> startExport());
+    }
+
+    @Override
+    protected void onResume()
+    {
+        super.onResume();
+        handler.post(refreshRunnable);
+    }
+
+    @Override
+    protected void onPause()
+    {
+        super.onPause();
+        handler.removeCallbacks(refreshRunnable);
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+        exportExecutor.shutdown();
+    }
+
+    private void refresh()
+    {
+        StringBuilder text = new StringBuilder("Metrics\n\n")
+                .append(metrics.format())
+                .append("\nLatency since ")
+                .append(new SimpleDateFormat("HH:mm:ss", Locale.US).format(new Date(latencyTracker.getSinceMillis())))
+                .append("\n\n")
+                .append(latencyTracker.format());
+
+        StartupPipeline startup = StartupPipeline.getLast();
+        if (startup != null)
+        {
+            text.append("\nStartup (ms since process start)\n\n").append(startup.format());
+        }
+        diagnosticsText.setText(text);
+    }
+
+    /*
+    Writes the latency histograms to a CSV file in the background.
+     */
+    private void startExport()
+    {
+        File directory = getExternalFilesDir("exports");
+        if (directory == null)
+        {
+            directory = new File(getFilesDir(), "exports");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            Toast.makeText(this, "Unable to create the export folder.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        File file = new File(directory, new SimpleDateFormat("'latency-'yyyyMMdd-HHmmss'.csv'", Locale.US).format(new Date()));
+
+        exportButton.setEnabled(false);
+        exportExecutor.execute(() ->
+        {
+            String result;
+            try (Writer out = new FileWriter(file))
+            {
+                latencyTracker.writeCsv(out);
+                result = "Exported latencies to " + file.getAbsolutePath();
+            }
+            catch (IOException e)
+            {
+                Log.e("DiagnosticsScreen", "Export failed", e);
+                result = "Export failed: " + e.getMessage();
+            }
+
+            String message = result;
+            runOnUiThread(() ->
+            {
+                exportButton.setEnabled(true);
+                Toast.makeText(DiagnosticsScreen.this, message, Toast.LENGTH_LONG).show();
+            });
+        });
+    }
+}
@@ -0,0 +1,754 @@
+package com.example.project_client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+FleetIoLoop is one I/O thread of the DeviceFleetManager. It waits on a single Selector for any of
+its device sockets to connect, have data or accept more data, and speaks just enough of the
+WebSocket protocol (RFC 6455) for the Pi server: the opening handshake, text frames in either
+direction, ping/pong and close.
+
+Everything about a connection is only touched on this thread; other threads hand work over
+through execute(). Received bytes go into one read buffer shared by all connections of the loop,
+and only a frame that arrives split over several reads is copied into a buffer of its own, so
+an idle connection holds no buffers at all. Text frames are decoded straight from the buffer.
+ */
+final class FleetIoLoop implements Runnable
+{
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // Largest message accepted from a device; sensor frames are well under a kilobyte
+    static final int MAX_MESSAGE_SIZE = 1024 * 1024;
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private static final int OPCODE_CONTINUATION = 0x0;
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+
+    // Connection states
+    private static final int CONNECTING = 0;
+    private static final int HANDSHAKE = 1;
+    private static final int OPEN = 2;
+    private static final int CLOSED = 3;
+
+    /*
+    The state of one device's session. Only the fields marked volatile, and the outbound queue,
+    are used outside the loop's thread.
+     */
+    static final class Connection
+    {
+        final String deviceId;
+        final InetSocketAddress address;
+        final String hostHeader;
+        final String path;
+        final ReadingStore readingStore;
+
+        final ConcurrentLinkedQueue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        volatile boolean connected;
+
+        // Set once the session has ended, and once the device was removed from the fleet
+        volatile boolean closed;
+        volatile boolean removed;
+
+        private SocketChannel channel;
+        private SelectionKey key;
+        private int state = CONNECTING;
+        private String expectedAccept;
+
+        // Bytes of a frame (or of the handshake response) that has not fully arrived, or null
+        private ByteBuffer pending;
+
+        // A text message sent in several fragments, or null
+        private ByteBuffer fragments;
+
+        Connection(String deviceId, InetSocketAddress address, String hostHeader, String path, ReadingStore readingStore)
+        {
+            this.deviceId = deviceId;
+            this.address = address;
+            this.hostHeader = hostHeader;
+            this.path = path;
+            this.readingStore = readingStore;
+        }
+    }
+
+    private final DeviceFleetManager manager;
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final SensorFrameDecoder frameDecoder;
+    private final ByteText text = new ByteText();
+
+    FleetIoLoop(DeviceFleetManager manager, ChannelRegistry registry, String threadName) throws IOException
+    {
+        this.manager = manager;
+        frameDecoder = new SensorFrameDecoder(registry);
+        selector = Selector.open();
+        thread = new Thread(this, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+    Runs a task on the loop's thread.
+     */
+    void execute(Runnable task)
+    {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /*
+    Starts connecting a device. Failures are reported to the manager's listener.
+     */
+    void open(Connection connection)
+    {
+        execute(() -> startConnect(connection));
+    }
+
+    /*
+    Closes a device's session. The listener is told if it was connected.
+     */
+    void close(Connection connection)
+    {
+        connection.removed = true;
+        execute(() ->
+        {
+            if (connection.state == OPEN)
+            {
+                // Say goodbye with a normal closure if the socket takes it straight away
+                ByteBuffer code = ByteBuffer.allocate(2).putShort(0, (short) 1000);
+                connection.outbound.add(controlFrame(OPCODE_CLOSE, code, 0, 2));
+                try
+                {
+                    writeOutbound(connection);
+                }
+                catch (IOException e)
+                {
+                    // Closing anyway
+                }
+            }
+            closeConnection(connection, null);
+        });
+    }
+
+    /*
+    Queues a text message for a device. Returns false if its session is not open.
+     */
+    boolean send(Connection connection, String message)
+    {
+        if (!connection.connected)
+        {
+            return false;
+        }
+        connection.outbound.add(textFrame(message));
+        execute(() -> enableWrites(connection));
+        return true;
+    }
+
+    /*
+    Closes every connection of the loop and stops its thread.
+     */
+    void shutdown() throws InterruptedException
+    {
+        running = false;
+        selector.wakeup();
+        thread.join();
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (running)
+            {
+                selector.select();
+                runTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext())
+                {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handleKey(key);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            // The selector itself failed, nothing on this loop can continue
+        }
+        finally
+        {
+            runTasks();
+            for (SelectionKey key : selector.keys())
+            {
+                closeConnection((Connection) key.attachment(), null);
+            }
+            try
+            {
+                selector.close();
+            }
+            catch (IOException e)
+            {
+                // Nothing left to release
+            }
+        }
+    }
+
+    private void runTasks()
+    {
+        Runnable task;
+        while ((task = tasks.poll()) != null)
+        {
+            task.run();
+        }
+    }
+
+    private void handleKey(SelectionKey key)
+    {
+        Connection connection = (Connection) key.attachment();
+        try
+        {
+            if (!key.isValid())
+            {
+                return;
+            }
+            if (key.isConnectable())
+            {
+                finishConnect(connection);
+            }
+            if (key.isValid() && key.isWritable())
+            {
+                writeOutbound(connection);
+            }
+            if (key.isValid() && key.isReadable())
+            {
+                read(connection);
+            }
+        }
+        catch (IOException e)
+        {
+            closeConnection(connection, connection.state == OPEN
+                    ? "Device connection lost."
+                    : "Unable to connect to device.");
+        }
+    }
+
+    private void startConnect(Connection connection)
+    {
+        if (connection.removed)
+        {
+            return;
+        }
+        try
+        {
+            connection.channel = SocketChannel.open();
+            connection.channel.configureBlocking(false);
+            connection.channel.socket().setTcpNoDelay(true);
+            connection.key = connection.channel.register(selector, 0, connection);
+            if (connection.channel.connect(connection.address))
+            {
+                finishConnect(connection);
+            }
+            else
+            {
+                connection.key.interestOps(SelectionKey.OP_CONNECT);
+            }
+        }
+        catch (IOException e)
+        {
+            closeConnection(connection, "Unable to connect to device.");
+        }
+    }
+
+    /*
+    Completes the TCP connection and sends the opening handshake.
+     */
+    private void finishConnect(Connection connection) throws IOException
+    {
+        if (!connection.channel.finishConnect())
+        {
+            return;
+        }
+        byte[] nonce = new byte[16];
+        ThreadLocalRandom.current().nextBytes(nonce);
+        String key = base64(nonce);
+        connection.expectedAccept = base64(sha1((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII)));
+
+        String request = "GET " + connection.path + " HTTP/1.1\r\n"
+                + "Host: " + connection.hostHeader + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + "\r\n";
+        connection.state = HANDSHAKE;
+        connection.outbound.add(ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII)));
+        connection.key.interestOps(SelectionKey.OP_READ);
+        enableWrites(connection);
+    }
+
+    private void enableWrites(Connection connection)
+    {
+        SelectionKey key = connection.key;
+        if (key != null && key.isValid() && connection.state != CONNECTING)
+        {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void writeOutbound(Connection connection) throws IOException
+    {
+        ByteBuffer frame;
+        while ((frame = connection.outbound.peek()) != null)
+        {
+            connection.channel.write(frame);
+            if (frame.hasRemaining())
+            {
+                return;  // The socket is full, carry on when it is writable again
+            }
+            connection.outbound.poll();
+        }
+        connection.key.interestOps(connection.key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /*
+    Reads what the socket has and handles every complete frame in it.
+     */
+    private void read(Connection connection) throws IOException
+    {
+        ByteBuffer buffer;
+        if (connection.pending == null)
+        {
+            buffer = readBuffer;
+            buffer.clear();
+        }
+        else
+        {
+            buffer = connection.pending;
+        }
+
+        int count = connection.channel.read(buffer);
+        if (count < 0)
+        {
+            closeConnection(connection, connection.state == OPEN
+                    ? "Device connection lost."
+                    : "Unable to connect to device.");
+            return;
+        }
+
+        buffer.flip();
+        int needed = connection.state == HANDSHAKE ? readHandshake(connection, buffer) : 0;
+        if (connection.state == OPEN)
+        {
+            needed = readFrames(connection, buffer);
+        }
+        if (connection.state == CLOSED)
+        {
+            return;
+        }
+        keepRemaining(connection, buffer, needed);
+    }
+
+    /*
+    Keeps the bytes of an incomplete frame for the next read, in a buffer that can hold
+    at least the needed number of bytes.
+     */
+    private void keepRemaining(Connection connection, ByteBuffer buffer, int needed)
+    {
+        if (!buffer.hasRemaining())
+        {
+            connection.pending = null;
+            return;
+        }
+        if (buffer == connection.pending && buffer.capacity() >= needed)
+        {
+            buffer.compact();
+            return;
+        }
+        ByteBuffer pending = ByteBuffer.allocate(Math.max(needed, 2 * buffer.remaining()));
+        pending.put(buffer);
+        connection.pending = pending;
+    }
+
+    /*
+    Checks the server's handshake response once all of it has arrived.
+    Returns the number of bytes needed to continue.
+     */
+    private int readHandshake(Connection connection, ByteBuffer buffer) throws IOException
+    {
+        int end = -1;
+        for (int i = buffer.position(); i + 3 < buffer.limit(); i++)
+        {
+            if (buffer.get(i) == '\r' && buffer.get(i + 1) == '\n' && buffer.get(i + 2) == '\r' && buffer.get(i + 3) == '\n')
+            {
+                end = i + 4;
+                break;
+            }
+        }
+        if (end < 0)
+        {
+            if (buffer.remaining() >= 16 * 1024)
+            {
+                throw new IOException("Handshake response too long");
+            }
+            return buffer.remaining() + 1024;
+        }
+
+        byte[] header = new byte[end - buffer.position()];
+        buffer.get(header);
+        String response = new String(header, StandardCharsets.ISO_8859_1);
+        if (!response.startsWith("HTTP/1.1 101") || !response.toLowerCase(Locale.US)
+                .contains("sec-websocket-accept: " + connection.expectedAccept.toLowerCase(Locale.US)))
+        {
+            throw new IOException("Server refused the WebSocket handshake");
+        }
+
+        connection.state = OPEN;
+        connection.connected = true;
+        manager.onStatusChanged(connection, true);
+        return 0;
+    }
+
+    /*
+    Handles every complete frame in the buffer and leaves its position at the first byte that
+    is not part of one. Returns the size of that incomplete frame, as far as is known.
+     */
+    private int readFrames(Connection connection, ByteBuffer buffer) throws IOException
+    {
+        while (connection.state == OPEN)
+        {
+            int start = buffer.position();
+            int available = buffer.remaining();
+            if (available < 2)
+            {
+                return 2;
+            }
+            int first = buffer.get(start) & 0xFF;
+            int second = buffer.get(start + 1) & 0xFF;
+            boolean finalFragment = (first & 0x80) != 0;
+            int opcode = first & 0x0F;
+            boolean masked = (second & 0x80) != 0;
+
+            long length = second & 0x7F;
+            int headerSize = 2;
+            if (length == 126)
+            {
+                if (available < 4)
+                {
+                    return 4;
+                }
+                length = buffer.getShort(start + 2) & 0xFFFF;
+                headerSize = 4;
+            }
+            else if (length == 127)
+            {
+                if (available < 10)
+                {
+                    return 10;
+                }
+                length = buffer.getLong(start + 2);
+                headerSize = 10;
+            }
+            if (length < 0 || length > MAX_MESSAGE_SIZE)
+            {
+                throw new IOException("Frame too large: " + length);
+            }
+            int maskOffset = start + headerSize;
+            if (masked)
+            {
+                headerSize += 4;  // Servers should not mask, but it is easy to accept
+            }
+            int frameSize = headerSize + (int) length;
+            if (available < frameSize)
+            {
+                return frameSize;
+            }
+
+            int payload = start + headerSize;
+            if (masked)
+            {
+                for (int i = 0; i < length; i++)
+                {
+                    buffer.put(payload + i, (byte) (buffer.get(payload + i) ^ buffer.get(maskOffset + (i & 3))));
+                }
+            }
+            handleFrame(connection, buffer, payload, (int) length, opcode, finalFragment);
+            buffer.position(start + frameSize);
+        }
+        return 0;
+    }
+
+    private void handleFrame(Connection connection, ByteBuffer buffer, int payload, int length, int opcode, boolean finalFragment)
+            throws IOException
+    {
+        switch (opcode)
+        {
+            case OPCODE_TEXT:
+                if (connection.fragments != null)
+                {
+                    // Fragments of different messages must not interleave (RFC 6455, 5.4)
+                    throw new IOException("New message before the end of the fragmented one");
+                }
+                if (finalFragment)
+                {
+                    onText(connection, buffer, payload, length);
+                }
+                else
+                {
+                    connection.fragments = ByteBuffer.allocate(Math.max(1024, 2 * length));
+                    appendFragment(connection, buffer, payload, length);
+                }
+                break;
+
+            case OPCODE_CONTINUATION:
+                if (connection.fragments == null)
+                {
+                    throw new IOException("Continuation without a message");
+                }
+                appendFragment(connection, buffer, payload, length);
+                if (finalFragment)
+                {
+                    ByteBuffer message = connection.fragments;
+                    connection.fragments = null;
+                    onText(connection, message, 0, message.position());
+                }
+                break;
+
+            case OPCODE_CLOSE:
+                // Answer with a close frame, then drop the connection
+                connection.outbound.add(controlFrame(OPCODE_CLOSE, buffer, payload, Math.min(length, 2)));
+                writeOutbound(connection);
+                closeConnection(connection, "Device closed the connection.");
+                break;
+
+            case OPCODE_PING:
+                connection.outbound.add(controlFrame(0xA, buffer, payload, length));
+                enableWrites(connection);
+                break;
+
+            default:
+                // Pongs and binary frames are not used by the Pi server
+                break;
+        }
+    }
+
+    private void appendFragment(Connection connection, ByteBuffer buffer, int payload, int length) throws IOException
+    {
+        ByteBuffer fragments = connection.fragments;
+        if (fragments.position() + length > MAX_MESSAGE_SIZE)
+        {
+            throw new IOException("Message too large");
+        }
+        if (fragments.remaining() < length)
+        {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * fragments.capacity(), fragments.position() + length));
+            fragments.flip();
+            larger.put(fragments);
+            connection.fragments = fragments = larger;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            fragments.put(buffer.get(payload + i));
+        }
+    }
+
+    /*
+    Decodes a sensor frame in place and passes the reading on.
+     */
+    private void onText(Connection connection, ByteBuffer buffer, int offset, int length)
+    {
+        long timestamp = System.currentTimeMillis();
+        text.set(buffer, offset, length);
+        if (!frameDecoder.decode(text))
+        {
+            manager.onError(connection, "Error parsing sensor data.");
+            return;
+        }
+        double[] values = frameDecoder.getValues();
+        connection.readingStore.append(timestamp, values);
+        manager.onReading(connection, timestamp, values);
+    }
+
+    private void closeConnection(Connection connection, String errorMessage)
+    {
+        if (connection.state == CLOSED)
+        {
+            return;
+        }
+        boolean wasConnected = connection.connected;
+        connection.state = CLOSED;
+        connection.connected = false;
+        connection.closed = true;
+        connection.pending = null;
+        connection.fragments = null;
+        connection.outbound.clear();
+        if (connection.key != null)
+        {
+            connection.key.cancel();
+        }
+        if (connection.channel != null)
+        {
+            try
+            {
+                connection.channel.close();
+            }
+            catch (IOException e)
+            {
+                // Already closed
+            }
+        }
+
+        if (errorMessage != null && !connection.removed)
+        {
+            manager.onError(connection, errorMessage);
+        }
+        if (wasConnected)
+        {
+            manager.onStatusChanged(connection, false);
+        }
+    }
+
+    /*
+    Builds a masked text frame, as clients must mask everything they send.
+     */
+    private static ByteBuffer textFrame(String message)
+    {
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        return frame(0x80 | OPCODE_TEXT, ByteBuffer.wrap(payload), 0, payload.length);
+    }
+
+    private static ByteBuffer controlFrame(int opcode, ByteBuffer buffer, int payload, int length)
+    {
+        return frame(0x80 | opcode, buffer, payload, length);
+    }
+
+    private static ByteBuffer frame(int first, ByteBuffer source, int offset, int length)
+    {
+        int headerSize = length < 126 ? 2 : length <= 0xFFFF ? 4 : 10;
+        ByteBuffer frame = ByteBuffer.allocate(headerSize + 4 + length);
+        frame.put((byte) first);
+        if (length < 126)
+        {
+            frame.put((byte) (0x80 | length));
+        }
+        else if (length <= 0xFFFF)
+        {
+            frame.put((byte) (0x80 | 126));
+            frame.putShort((short) length);
+        }
+        else
+        {
+            frame.put((byte) (0x80 | 127));
+            frame.putLong(length);
+        }
+        int mask = ThreadLocalRandom.current().nextInt();
+        frame.putInt(mask);
+        for (int i = 0; i < length; i++)
+        {
+            frame.put((byte) (source.get(offset + i) ^ (mask >>> (24 - 8 * (i & 3)))));
+        }
+        frame.flip();
+        return frame;
+    }
+
+    private static byte[] sha1(byte[] data)
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException("SHA-1 is always available", e);
+        }
+    }
+
+    private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /*
+    java.util.Base64 needs API level 26, so the handshake keys are encoded here.
+     */
+    static String base64(byte[] data)
+    {
+        StringBuilder encoded = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3)
+        {
+            int bytes = Math.min(3, data.length - i);
+            int group = (data[i] & 0xFF) << 16
+                    | (bytes > 1 ? (data[i + 1] & 0xFF) << 8 : 0)
+                    | (bytes > 2 ? data[i + 2] & 0xFF : 0);
+            encoded.append(BASE64[group >>> 18 & 0x3F]);
+            encoded.append(BASE64[group >>> 12 & 0x3F]);
+            encoded.append(bytes > 1 ? BASE64[group >>> 6 & 0x3F] : '=');
+            encoded.append(bytes > 2 ? BASE64[group & 0x3F] : '=');
+        }
+        return encoded.toString();
+    }
+
+    /*
+    A reusable view of the bytes of a text frame as characters, so a frame can be decoded
+    without creating a String. Sensor frames are ASCII; other bytes only appear inside
+    string values, which the decoder skips.
+     */
+    private static final class ByteText implements CharSequence
+    {
+        private ByteBuffer buffer;
+        private int offset;
+        private int length;
+
+        void set(ByteBuffer buffer, int offset, int length)
+        {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length()
+        {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index)
+        {
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end)
+        {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++)
+            {
+                bytes[i] = buffer.get(offset + start + i);
+            }
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString()
+        {
+            return subSequence(0, length).toString();
+        }
+    }
+}
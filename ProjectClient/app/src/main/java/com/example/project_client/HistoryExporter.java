@@ -0,0 +1,387 @@
+package com.example.project_client;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/*
+HistoryExporter writes a time range of stored readings to a file, either raw readings (from the
+HistoryLog or the ReadingStore) or the buckets of a RollupStore tier.
+
+The readings are streamed straight from the store into one fixed-size buffer that is written to a
+FileChannel whenever it fills up, so memory use is the same for a minute of history or a year.
+Two formats are supported:
+- CSV, one row per reading with the values rounded to two decimals like the rest of the app.
+- BINARY, a compact columnar format: after a header naming the columns, rows are written in blocks
+  of up to BLOCK_ROWS. A block holds its row count and first timestamp, then the timestamp of every
+  row as an int delta from the previous row, then each value column as floats. Little-endian.
+  The file ends with a block of zero rows.
+
+Exports can take a while, so they should be run off the main thread; the ProgressListener is
+called from the exporting thread.
+ */
+public class HistoryExporter
+{
+    public enum Format
+    {
+        CSV,
+        BINARY
+    }
+
+    /*
+    Provides raw readings; HistoryLog::forEach and ReadingStore::forEach both fit.
+     */
+    public interface ReadingSource
+    {
+        void forEach(long fromTimestamp, long toTimestamp, ReadingStore.ReadingVisitor visitor);
+    }
+
+    /*
+    Told how far an export has got, every PROGRESS_INTERVAL rows and once at the end.
+    fraction is the part of the time range written so far, from 0 to 1.
+     */
+    public interface ProgressListener
+    {
+        void onProgress(long rowsWritten, float fraction);
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int BINARY_MAGIC = 0x58484D45;  // "EMHX"
+    public static final short BINARY_VERSION = 1;
+    public static final int BLOCK_ROWS = 4096;
+
+    private static final int PROGRESS_INTERVAL = 64 * 1024;
+
+    // Longest CSV field: a sign, 19 digits, a point and two decimals, plus the separator
+    private static final int MAX_FIELD_BYTES = 24;
+
+    // Column names after the time column, built from the channel keys
+    private final String[] readingColumns;
+    private final String[] rollupColumns;
+
+    private final Format format;
+    private final ByteBuffer buffer;
+    private final ProgressListener progressListener;
+
+    private FileChannel channel;
+    private long rangeStart, rangeLength;
+    private long rowsWritten;
+
+    // Rows of the binary block being filled
+    private long[] blockTimes;
+    private float[][] blockValues;
+    private int blockRows;
+
+    public HistoryExporter(Format format, ProgressListener progressListener)
+    {
+        this(format, DEFAULT_BUFFER_SIZE, progressListener);
+    }
+
+    public HistoryExporter(Format format, int bufferSize, ProgressListener progressListener)
+    {
+        this(ChannelRegistry.getDefault(), format, bufferSize, progressListener);
+    }
+
+    public HistoryExporter(ChannelRegistry registry, Format format, int bufferSize, ProgressListener progressListener)
+    {
+        if (bufferSize < 1024)
+        {
+            throw new IllegalArgumentException("Buffer must be at least 1024 bytes: " + bufferSize);
+        }
+        int channelCount = registry.size();
+        readingColumns = new String[channelCount];
+        rollupColumns = new String[1 + 4 * channelCount];
+        rollupColumns[0] = "count";
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            String key = registry.get(channel).getKey();
+            readingColumns[channel] = key;
+            rollupColumns[1 + channel * 4] = key + "_min";
+            rollupColumns[2 + channel * 4] = key + "_max";
+            rollupColumns[3 + channel * 4] = key + "_mean";
+            rollupColumns[4 + channel * 4] = key + "_last";
+        }
+        this.format = format;
+        this.progressListener = progressListener;
+        buffer = ByteBuffer.allocate(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+    Exports the raw readings with fromTimestamp <= timestamp < toTimestamp.
+    Returns the number of rows written.
+     */
+    public long exportReadings(ReadingSource source, long fromTimestamp, long toTimestamp, File file) throws IOException
+    {
+        open(file, "timestamp", readingColumns, fromTimestamp, toTimestamp);
+        try
+        {
+            source.forEach(fromTimestamp, toTimestamp, this::writeRowUnchecked);
+            return finish();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        finally
+        {
+            closeChannel();
+        }
+    }
+
+    /*
+    Exports the buckets of a rollup tier starting in fromTimestamp <= start < toTimestamp.
+    Returns the number of rows written.
+     */
+    public long exportRollups(RollupStore store, RollupStore.Tier tier, long fromTimestamp, long toTimestamp, File file) throws IOException
+    {
+        float[] row = new float[rollupColumns.length];
+        int channelCount = readingColumns.length;
+        open(file, "bucket_start", rollupColumns, fromTimestamp, toTimestamp);
+        try
+        {
+            store.forEach(tier, fromTimestamp, toTimestamp, (bucketStart, count, min, max, mean, last) ->
+            {
+                // Bucket counts stay far below 2^24, so a float holds them exactly
+                row[0] = count;
+                for (int channel = 0; channel < channelCount; channel++)
+                {
+                    row[1 + channel * 4] = min[channel];
+                    row[2 + channel * 4] = max[channel];
+                    row[3 + channel * 4] = mean[channel];
+                    row[4 + channel * 4] = last[channel];
+                }
+                writeRowUnchecked(bucketStart, row);
+            });
+            return finish();
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        finally
+        {
+            closeChannel();
+        }
+    }
+
+    private void open(File file, String timeColumn, String[] columns, long fromTimestamp, long toTimestamp) throws IOException
+    {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer.clear();
+        rowsWritten = 0;
+        rangeStart = fromTimestamp;
+        rangeLength = Math.max(1, toTimestamp - fromTimestamp);
+
+        if (format == Format.CSV)
+        {
+            putAscii(timeColumn);
+            for (String column : columns)
+            {
+                buffer.put((byte) ',');
+                putAscii(column);
+            }
+            buffer.put((byte) '\n');
+        }
+        else
+        {
+            buffer.putInt(BINARY_MAGIC);
+            buffer.putShort(BINARY_VERSION);
+            buffer.putShort((short) columns.length);
+            for (String column : columns)
+            {
+                byte[] name = column.getBytes(StandardCharsets.UTF_8);
+                buffer.putShort((short) name.length);
+                buffer.put(name);
+            }
+            if (blockValues == null || blockValues.length != columns.length)
+            {
+                blockTimes = new long[BLOCK_ROWS];
+                blockValues = new float[columns.length][BLOCK_ROWS];
+            }
+            blockRows = 0;
+        }
+    }
+
+    private void writeRowUnchecked(long timestamp, float[] values)
+    {
+        try
+        {
+            writeRow(timestamp, values);
+        }
+        catch (IOException e)
+        {
+            // Visitors cannot throw checked exceptions, so this is unwrapped again by the export methods
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeRow(long timestamp, float[] values) throws IOException
+    {
+        if (format == Format.CSV)
+        {
+            if (buffer.remaining() < (values.length + 1) * MAX_FIELD_BYTES)
+            {
+                flushBuffer();
+            }
+            putLong(timestamp);
+            for (float value : values)
+            {
+                buffer.put((byte) ',');
+                putTwoDecimals(value);
+            }
+            buffer.put((byte) '\n');
+        }
+        else
+        {
+            // Start a new block when it is full or the gap does not fit in an int delta
+            if (blockRows == BLOCK_ROWS
+                    || (blockRows > 0 && timestamp - blockTimes[blockRows - 1] > Integer.MAX_VALUE))
+            {
+                writeBlock();
+            }
+            blockTimes[blockRows] = timestamp;
+            for (int column = 0; column < values.length; column++)
+            {
+                blockValues[column][blockRows] = values[column];
+            }
+            blockRows++;
+        }
+
+        rowsWritten++;
+        if (progressListener != null && rowsWritten % PROGRESS_INTERVAL == 0)
+        {
+            progressListener.onProgress(rowsWritten, Math.min(1f, (float) (timestamp - rangeStart) / rangeLength));
+        }
+    }
+
+    /*
+    Writes the block being filled to the buffer, column by column.
+     */
+    private void writeBlock() throws IOException
+    {
+        ensureRemaining(4 + 8);
+        buffer.putInt(blockRows);
+        buffer.putLong(blockRows > 0 ? blockTimes[0] : 0);
+        for (int row = 0; row < blockRows; row++)
+        {
+            ensureRemaining(4);
+            buffer.putInt(row == 0 ? 0 : (int) (blockTimes[row] - blockTimes[row - 1]));
+        }
+        for (float[] column : blockValues)
+        {
+            for (int row = 0; row < blockRows; row++)
+            {
+                ensureRemaining(4);
+                buffer.putFloat(column[row]);
+            }
+        }
+        blockRows = 0;
+    }
+
+    private long finish() throws IOException
+    {
+        if (format == Format.BINARY)
+        {
+            if (blockRows > 0)
+            {
+                writeBlock();
+            }
+            writeBlock();  // The empty block marks the end
+        }
+        flushBuffer();
+        channel.force(false);
+        if (progressListener != null)
+        {
+            progressListener.onProgress(rowsWritten, 1f);
+        }
+        return rowsWritten;
+    }
+
+    private void closeChannel() throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException
+    {
+        if (buffer.remaining() < bytes)
+        {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putAscii(String text)
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    /*
+    Writes a long in decimal without creating a String.
+     */
+    private void putLong(long value)
+    {
+        if (value < 0)
+        {
+            buffer.put((byte) '-');
+            if (value == Long.MIN_VALUE)
+            {
+                putAscii("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10)
+        {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10)
+        {
+            buffer.put((byte) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    /*
+    Writes a value rounded to two decimals, or an empty field if it is not a number.
+     */
+    private void putTwoDecimals(float value)
+    {
+        if (Float.isNaN(value) || Float.isInfinite(value))
+        {
+            return;
+        }
+        long hundredths = Math.round(value * 100.0);
+        if (hundredths < 0)
+        {
+            buffer.put((byte) '-');
+            hundredths = -hundredths;
+        }
+        putLong(hundredths / 100);
+        buffer.put((byte) '.');
+        buffer.put((byte) ('0' + (hundredths / 10) % 10));
+        buffer.put((byte) ('0' + hundredths % 10));
+    }
+}
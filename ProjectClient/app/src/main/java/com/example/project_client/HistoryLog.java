@@ -0,0 +1,397 @@
+package com.example.project_client;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+HistoryLog stores every sensor reading on disk so the history survives the app being closed.
+Readings are written as fixed-width binary records (timestamp followed by the value of every
+channel as a float, little-endian) into segment files of a fixed size that are memory-mapped,
+so an append is just a few writes into memory. The oldest segment is deleted when there are more
+than maxSegments.
+
+Appends never wait for the disk: a background thread flushes the written records with
+MappedByteBuffer.force() every COMMIT_INTERVAL_MS (group commit), so ingest costs the same at
+1 Hz and 100 Hz. Reads do not take any lock the appending thread uses; each segment publishes
+its record count through a volatile field after the record is written.
+Appends must come from a single thread (the WebSocket thread) in timestamp order, with positive
+timestamps: a zero timestamp marks the end of the records in a segment (the file starts out filled
+with zeros), so append() rejects a timestamp that is not positive or goes backwards rather than
+write a record that would cut the segment short, or break its binary search, once it is reopened.
+ */
+public class HistoryLog implements Closeable
+{
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 64 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 32;
+
+    // How often written records are flushed to disk
+    public static final long COMMIT_INTERVAL_MS = 1000;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /*
+    One memory-mapped segment file.
+     */
+    private static class Segment
+    {
+        final long sequence;
+        final File file;
+        final MappedByteBuffer buffer;
+
+        // Records written so far; written by the appending thread after the record itself
+        volatile int count;
+
+        // Records already flushed to disk, only used by the commit thread
+        int committedCount;
+
+        Segment(long sequence, File file, MappedByteBuffer buffer, int count)
+        {
+            this.sequence = sequence;
+            this.file = file;
+            this.buffer = buffer;
+            this.count = count;
+            this.committedCount = count;
+        }
+
+    }
+
+    private final File directory;
+    private final int channelCount;
+    private final int recordSize;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+
+    // Oldest first; readers iterate over a snapshot while the writer adds and removes segments
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private Segment currentSegment;
+
+    // Timestamp of the newest record, only used by the appending thread
+    private long lastTimestamp;
+
+    private final ScheduledExecutorService commitExecutor;
+    private volatile boolean closed = false;
+
+    // Passed to visitors by forEach(); readers may run on any thread, so each gets its own
+    private final ThreadLocal<float[]> visitValues;
+
+    public HistoryLog(File directory) throws IOException
+    {
+        this(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_MAX_SEGMENTS);
+    }
+
+    public HistoryLog(File directory, int recordsPerSegment, int maxSegments) throws IOException
+    {
+        this(directory, ChannelRegistry.getDefault().size(), recordsPerSegment, maxSegments);
+    }
+
+    public HistoryLog(File directory, int channelCount, int recordsPerSegment, int maxSegments) throws IOException
+    {
+        if (recordsPerSegment <= 0 || maxSegments <= 0)
+        {
+            throw new IllegalArgumentException("Segment size and count must be positive");
+        }
+        this.directory = directory;
+        this.channelCount = channelCount;
+        this.recordSize = 8 + 4 * channelCount;
+        this.visitValues = ThreadLocal.withInitial(() -> new float[channelCount]);
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxSegments = maxSegments;
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            throw new IOException("Cannot create history directory " + directory);
+        }
+        openExistingSegments();
+
+        commitExecutor = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "HistoryLog-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+        commitExecutor.scheduleWithFixedDelay(this::commit, COMMIT_INTERVAL_MS, COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+    Appends one reading, with one value per channel indexed by channel id.
+    Only writes to memory, the commit thread flushes it to disk later.
+    Throws IllegalArgumentException if the timestamp is not positive or older than the newest record.
+     */
+    public void append(long timestamp, double[] values) throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("History log is closed");
+        }
+        if (timestamp <= 0 || timestamp < lastTimestamp)
+        {
+            throw new IllegalArgumentException("Timestamp " + timestamp + " is not positive or older than the newest record, " + lastTimestamp);
+        }
+        Segment segment = currentSegment;
+        if (segment == null || segment.count == recordsPerSegment)
+        {
+            segment = startSegment();
+        }
+
+        int record = segment.count;
+        int offset = record * recordSize;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putLong(offset, timestamp);
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            buffer.putFloat(offset + 8 + 4 * channel, (float) values[channel]);
+        }
+
+        // Publish the record to readers
+        segment.count = record + 1;
+        lastTimestamp = timestamp;
+    }
+
+    /*
+    Passes every stored reading with fromTimestamp <= timestamp < toTimestamp to the visitor,
+    oldest first. Runs on the caller's thread and never blocks appends.
+     */
+    public void forEach(long fromTimestamp, long toTimestamp, ReadingStore.ReadingVisitor visitor)
+    {
+        float[] values = visitValues.get();
+        for (Segment segment : segments)
+        {
+            int count = segment.count;
+            if (count == 0)
+            {
+                continue;
+            }
+            ByteBuffer view = segment.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            if (timestampAt(view, count - 1) < fromTimestamp)
+            {
+                continue;
+            }
+
+            for (int record = firstRecordAtOrAfter(view, count, fromTimestamp); record < count; record++)
+            {
+                int offset = record * recordSize;
+                long timestamp = view.getLong(offset);
+                if (timestamp >= toTimestamp)
+                {
+                    return;
+                }
+                for (int channel = 0; channel < channelCount; channel++)
+                {
+                    values[channel] = view.getFloat(offset + 8 + 4 * channel);
+                }
+                visitor.visit(timestamp, values);
+            }
+        }
+    }
+
+    /*
+    Returns the number of readings currently stored.
+     */
+    public long size()
+    {
+        long size = 0;
+        for (Segment segment : segments)
+        {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    /*
+    Returns the oldest stored timestamp, or 0 if the log is empty.
+     */
+    public long getOldestTimestamp()
+    {
+        for (Segment segment : segments)
+        {
+            if (segment.count > 0)
+            {
+                return timestampAt(segment.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN), 0);
+            }
+        }
+        return 0;
+    }
+
+    /*
+    Flushes every record written since the last commit to disk.
+    Called by the commit thread; can also be called directly, e.g. before the app is stopped.
+     */
+    public synchronized void commit()
+    {
+        for (Segment segment : segments)
+        {
+            int count = segment.count;
+            if (count > segment.committedCount)
+            {
+                segment.buffer.force();
+                segment.committedCount = count;
+            }
+        }
+    }
+
+    /*
+    Stops the commit thread and flushes the last records.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        commitExecutor.shutdown();
+        try
+        {
+            commitExecutor.awaitTermination(COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        commit();
+    }
+
+    /*
+    Maps the segments left by a previous run and finds where the newest one ends.
+     */
+    private void openExistingSegments() throws IOException
+    {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null)
+        {
+            return;
+        }
+        Arrays.sort(files);
+
+        for (File file : files)
+        {
+            String name = file.getName();
+            long sequence;
+            try
+            {
+                sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            }
+            catch (NumberFormatException e)
+            {
+                continue;
+            }
+            if (file.length() != (long) recordsPerSegment * recordSize)
+            {
+                continue;  // Written with a different segment size or channel count
+            }
+
+            MappedByteBuffer buffer = map(file);
+            Segment segment = new Segment(sequence, file, buffer, 0);
+            segment.count = countRecords(buffer);
+            segment.committedCount = segment.count;
+            segments.add(segment);
+        }
+
+        if (!segments.isEmpty())
+        {
+            currentSegment = segments.get(segments.size() - 1);
+        }
+        for (Segment segment : segments)
+        {
+            if (segment.count > 0)
+            {
+                lastTimestamp = timestampAt(segment.buffer, segment.count - 1);
+            }
+        }
+    }
+
+    /*
+    Finds the number of records in a segment: records are never written with a zero timestamp,
+    and the file starts out filled with zeros, so this is the first record with timestamp 0.
+     */
+    private int countRecords(ByteBuffer view)
+    {
+        int low = 0;
+        int high = recordsPerSegment;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (timestampAt(view, middle) != 0)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int firstRecordAtOrAfter(ByteBuffer view, int count, long timestamp)
+    {
+        int low = 0;
+        int high = count;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (timestampAt(view, middle) < timestamp)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+    Creates and maps the next segment file, deleting the oldest segment if there are too many.
+     */
+    private Segment startSegment() throws IOException
+    {
+        long sequence = currentSegment == null ? 0 : currentSegment.sequence + 1;
+        File file = new File(directory, String.format(Locale.US, "%s%019d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        Segment segment = new Segment(sequence, file, map(file), 0);
+        segments.add(segment);
+        currentSegment = segment;
+
+        while (segments.size() > maxSegments)
+        {
+            Segment oldest = segments.remove(0);
+            if (!oldest.file.delete())
+            {
+                throw new IOException("Cannot delete old history segment " + oldest.file);
+            }
+        }
+        return segment;
+    }
+
+    private long timestampAt(ByteBuffer view, int record)
+    {
+        return view.getLong(record * recordSize);
+    }
+
+    private MappedByteBuffer map(File file) throws IOException
+    {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+        {
+            long length = (long) recordsPerSegment * recordSize;
+            if (randomAccessFile.length() != length)
+            {
+                randomAccessFile.setLength(length);
+            }
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.project_client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+LatencyHistogram counts latencies in a fixed set of buckets, in microseconds, so recording one
+is a few shifts and an atomic increment and never creates an object.
+Below 16 us every microsecond has its own bucket; above that every power of two is split into 16
+buckets, so a latency is known to within about 6% of its value, up to 2^36 us (about 19 hours).
+Anything longer is counted in the last bucket. The maximum is kept exactly.
+
+Any thread may record and read at the same time; a reader racing a writer may see a count
+that is one reading ahead of the buckets, which does not matter for the percentiles.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+
+    public static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /*
+    Records one latency given in nanoseconds. Negative latencies count as zero.
+     */
+    public void recordNanos(long nanos)
+    {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordMicros(long micros)
+    {
+        if (micros < 0)
+        {
+            micros = 0;
+        }
+        buckets.incrementAndGet(bucketOf(micros));
+        totalMicros.addAndGet(micros);
+        count.incrementAndGet();
+
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros))
+        {
+            max = maxMicros.get();
+        }
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public long getMaxMicros()
+    {
+        return maxMicros.get();
+    }
+
+    public long getMeanMicros()
+    {
+        long readings = count.get();
+        return readings > 0 ? totalMicros.get() / readings : 0;
+    }
+
+    /*
+    Returns the latency that the given percentage (0 to 100) of the readings did not exceed,
+    as the upper end of its bucket but no more than the maximum, or 0 if nothing was recorded.
+     */
+    public long getPercentileMicros(double percent)
+    {
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+        {
+            total += buckets.get(bucket);
+        }
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percent)) / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+        {
+            seen += buckets.get(bucket);
+            if (seen >= rank)
+            {
+                return Math.min(upperBoundOf(bucket), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /*
+    Returns how many readings fell into a bucket, for exporting the whole distribution.
+     */
+    public long getBucketCount(int bucket)
+    {
+        return buckets.get(bucket);
+    }
+
+    /*
+    Returns the smallest latency in microseconds that falls into a bucket.
+     */
+    public static long lowerBoundOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /*
+    Returns the largest latency in microseconds that falls into a bucket.
+     */
+    public static long upperBoundOf(int bucket)
+    {
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : lowerBoundOf(bucket + 1) - 1;
+    }
+
+    static int bucketOf(long micros)
+    {
+        if (micros < SUB_BUCKETS)
+        {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT)
+        {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /*
+    Forgets every reading.
+     */
+    public void reset()
+    {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+        {
+            buckets.set(bucket, 0);
+        }
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.project_client;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/*
+LatencyTracker measures how stale a reading is at each step from the sensor to the screen, with
+one LatencyHistogram per Stage. The WebSocket thread marks when a frame arrives and when it is
+decoded; later steps (the threshold check, the main screen, the charts) record the time since
+the newest frame arrived. All times come from System.nanoTime(), so recording creates no objects.
+
+Frames from a server that sends its monotonic clock with each reading ("sensor_time", in
+microseconds) also give the NETWORK stage. The two clocks are not synchronised, so the difference
+between them is only known up to a constant: the stage counts the delay above the fastest frame
+since the connection opened. A steady delay (e.g. the network's minimum round trip) does not
+show, but every queue and stall between the sensor read and the client does.
+
+There is one tracker for the whole app, shown and exported by the DiagnosticsScreen.
+ */
+public class LatencyTracker
+{
+    public enum Stage
+    {
+        NETWORK("sensor read to receive"),
+        DECODE("receive to decoded"),
+        EVALUATE("receive to evaluated"),
+        RENDER("receive to rendered"),
+        CHART("receive to chart");
+
+        private final String description;
+
+        Stage(String description)
+        {
+            this.description = description;
+        }
+
+        public String getDescription()
+        {
+            return description;
+        }
+    }
+
+    private static final LatencyTracker INSTANCE = new LatencyTracker();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    // When the newest frame arrived, in System.nanoTime()
+    private volatile long receivedNanos;
+
+    // Smallest client minus sensor clock seen since the connection opened, only touched by the WebSocket thread
+    private long minClockOffsetMicros = Long.MAX_VALUE;
+
+    private volatile long sinceMillis = System.currentTimeMillis();
+
+    public LatencyTracker()
+    {
+        for (int stage = 0; stage < histograms.length; stage++)
+        {
+            histograms[stage] = new LatencyHistogram();
+        }
+    }
+
+    public static LatencyTracker getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /*
+    Marks the arrival of a frame, at the given System.nanoTime(). Called on the WebSocket thread
+    before anything else is done with the frame.
+     */
+    public void frameReceived(long nanos)
+    {
+        receivedNanos = nanos;
+    }
+
+    /*
+    Records the decoding of the frame that arrived last and, if it carried one, the delay from
+    the sensor's clock (in microseconds, or SensorFrameDecoder.NO_TIMESTAMP) to its arrival.
+     */
+    public void frameDecoded(long sensorTimeMicros)
+    {
+        long received = receivedNanos;
+        histograms[Stage.DECODE.ordinal()].recordNanos(System.nanoTime() - received);
+        if (sensorTimeMicros == SensorFrameDecoder.NO_TIMESTAMP)
+        {
+            return;
+        }
+
+        long offset = TimeUnit.NANOSECONDS.toMicros(received) - sensorTimeMicros;
+        if (offset < minClockOffsetMicros)
+        {
+            minClockOffsetMicros = offset;
+        }
+        histograms[Stage.NETWORK.ordinal()].recordMicros(offset - minClockOffsetMicros);
+    }
+
+    /*
+    Records the time since the newest frame arrived for a later stage.
+     */
+    public void recordSinceReceived(Stage stage)
+    {
+        long received = receivedNanos;
+        if (received != 0)
+        {
+            histograms[stage.ordinal()].recordNanos(System.nanoTime() - received);
+        }
+    }
+
+    /*
+    Forgets the sensor clock, e.g. because a new connection may be to a restarted server.
+    Called on the WebSocket thread.
+     */
+    public void connectionOpened()
+    {
+        minClockOffsetMicros = Long.MAX_VALUE;
+    }
+
+    public LatencyHistogram getHistogram(Stage stage)
+    {
+        return histograms[stage.ordinal()];
+    }
+
+    /*
+    Forgets every latency recorded so far.
+     */
+    public void reset()
+    {
+        for (LatencyHistogram histogram : histograms)
+        {
+            histogram.reset();
+        }
+        sinceMillis = System.currentTimeMillis();
+    }
+
+    /*
+    Returns the time latencies have been recorded since, in milliseconds since the epoch.
+     */
+    public long getSinceMillis()
+    {
+        return sinceMillis;
+    }
+
+    /*
+    Returns one line per stage with its count, p50, p99 and maximum in milliseconds, for the diagnostics.
+     */
+    public String format()
+    {
+        StringBuilder text = new StringBuilder(String.format(Locale.US, "%-22s %7s %8s %8s %8s%n",
+                "stage", "count", "p50 ms", "p99 ms", "max ms"));
+        for (Stage stage : Stage.values())
+        {
+            LatencyHistogram histogram = getHistogram(stage);
+            text.append(String.format(Locale.US, "%-22s %7d %8.1f %8.1f %8.1f%n", stage.getDescription(),
+                    histogram.getCount(), histogram.getPercentileMicros(50) / 1000.0,
+                    histogram.getPercentileMicros(99) / 1000.0, histogram.getMaxMicros() / 1000.0));
+        }
+        return text.toString();
+    }
+
+    /*
+    Writes every stage as CSV for offline analysis: a summary row per stage, then the count of
+    every non-empty bucket with its bounds in microseconds.
+     */
+    public void writeCsv(Writer out) throws IOException
+    {
+        out.write("# latencies since " + sinceMillis + " ms since the epoch\n");
+        out.write("stage,count,mean_us,p50_us,p90_us,p99_us,p999_us,max_us\n");
+        for (Stage stage : Stage.values())
+        {
+            LatencyHistogram histogram = getHistogram(stage);
+            out.write(String.format(Locale.US, "%s,%d,%d,%d,%d,%d,%d,%d\n", stage.name().toLowerCase(Locale.US),
+                    histogram.getCount(), histogram.getMeanMicros(), histogram.getPercentileMicros(50),
+                    histogram.getPercentileMicros(90), histogram.getPercentileMicros(99),
+                    histogram.getPercentileMicros(99.9), histogram.getMaxMicros()));
+        }
+
+        out.write("\nstage,from_us,to_us,count\n");
+        for (Stage stage : Stage.values())
+        {
+            LatencyHistogram histogram = getHistogram(stage);
+            for (int bucket = 0; bucket < LatencyHistogram.BUCKET_COUNT; bucket++)
+            {
+                long count = histogram.getBucketCount(bucket);
+                if (count > 0)
+                {
+                    long upper = LatencyHistogram.upperBoundOf(bucket);
+                    out.write(stage.name().toLowerCase(Locale.US) + "," + LatencyHistogram.lowerBoundOf(bucket) + ","
+                            + (upper == Long.MAX_VALUE ? "" : Long.toString(upper)) + "," + count + "\n");
+                }
+            }
+        }
+    }
+}
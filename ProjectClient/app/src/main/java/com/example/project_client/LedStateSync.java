@@ -0,0 +1,105 @@
+package com.example.project_client;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+LedStateSync keeps the Pi's LED display in step with the thresholds without a command per reading.
+It remembers the state of each channel (in range, out of range, or thresholds disabled) and
+update() reports only the readings that change it, so the commands sent follow the state changes
+rather than the sample rate. A channel that went out of range only comes back in once it is
+inside the range by the channel's hysteresis (see ThresholdRules.isBackInRange()), so a value
+wavering at a limit does not flip the display with every sample.
+It is not safe to share between threads; the SensorService uses it on the WebSocket thread.
+ */
+public class LedStateSync
+{
+    public static final int UNKNOWN = -1;
+    public static final int IN_RANGE = 0;
+    public static final int OUT_OF_RANGE = 1;
+    public static final int DISABLED = 2;
+
+    // The command of each state, after the channel's command prefix
+    private static final String[] COMMANDS = {"_IN_THRESHOLD:", "_OUT_THRESHOLD:", "_THRESHOLDS_DISABLED:"};
+
+    private final ChannelRegistry registry;
+    private final int[] states;
+
+    public LedStateSync(ChannelRegistry registry)
+    {
+        this.registry = registry;
+        states = new int[registry.size()];
+        Arrays.fill(states, UNKNOWN);
+    }
+
+    /*
+    Moves the channel to the state of the value. Returns true if the state changed, and a
+    command (see getCommand()) should be sent. Missing values (NaN) change nothing.
+     */
+    public boolean update(int channel, double value, ThresholdRules rules)
+    {
+        if (Double.isNaN(value))
+        {
+            return false;
+        }
+        int state;
+        if (!rules.isEnabled())
+        {
+            state = DISABLED;
+        }
+        else if (states[channel] == OUT_OF_RANGE)
+        {
+            state = rules.isBackInRange(channel, value) ? IN_RANGE : OUT_OF_RANGE;
+        }
+        else
+        {
+            state = rules.isOutOfRange(channel, value) ? OUT_OF_RANGE : IN_RANGE;
+        }
+
+        if (state == states[channel])
+        {
+            return false;
+        }
+        states[channel] = state;
+        return true;
+    }
+
+    public int getState(int channel)
+    {
+        return states[channel];
+    }
+
+    /*
+    Returns the command showing the channel's current state with the value,
+    e.g. "TEMP_OUT_THRESHOLD:31.20".
+     */
+    public String getCommand(int channel, double value)
+    {
+        return command(registry.get(channel), states[channel], value);
+    }
+
+    /*
+    Forgets every state, so the next reading of each channel is sent again.
+     */
+    public void reset()
+    {
+        Arrays.fill(states, UNKNOWN);
+    }
+
+    /*
+    Returns the state of a single value, without hysteresis, e.g. for a command the user asked for.
+     */
+    public static int stateOf(ThresholdRules rules, int channel, double value)
+    {
+        if (!rules.isEnabled())
+        {
+            return DISABLED;
+        }
+        return rules.isOutOfRange(channel, value) ? OUT_OF_RANGE : IN_RANGE;
+    }
+
+    public static String command(SensorChannel channel, int state, double value)
+    {
+        return channel.getCommandPrefix() + COMMANDS[state] + String.format(Locale.US, "%.2f", value);
+    }
+}
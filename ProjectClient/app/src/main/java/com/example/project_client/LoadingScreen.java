@@ -1,7 +1,11 @@
 package com.example.project_client;
 
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
@@ -9,11 +13,39 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import com.github.mikephil.charting.charts.LineChart;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+import com.github.mikephil.charting.utils.Utils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 /*
 Loading Screen shown when the user opens the app.
+While it is showing, a StartupPipeline loads the settings, starts the SensorService (which opens
+the WebSocket), loads the last hour of history from disk into the ReadingStore and loads the
+chart classes, all in parallel. The main screen opens as soon as that is done and the first
+reading has arrived, or after SPLASH_DEADLINE_MS. The phase timings are written to the log.
  */
-public class LoadingScreen extends AppCompatActivity
+public class LoadingScreen extends AppCompatActivity implements WebSocketClientHandler.MessageListener
 {
+    private static final String TAG = "Startup";
+
+    // The longest the splash waits for the first reading
+    private static final long SPLASH_DEADLINE_MS = 1500;
+
+    // History loaded into the ReadingStore, enough for the charts' default range
+    private static final long HISTORY_PRELOAD_MS = 60 * 60 * 1000;
+
+    private ScheduledExecutorService executor;
+    private StartupPipeline pipeline;
+    private SensorConnectionManager connectionManager;
+
     @Override
     protected void onCreate(Bundle savedInstanceState)
     {
@@ -27,26 +59,90 @@ public class LoadingScreen extends AppCompatActivity
             return insets;
         });
 
-        Thread splashTread = new Thread()
+        // Times are measured from the process start, so they include the launch of the app
+        long sinceProcessStartMs = SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+        executor = Executors.newScheduledThreadPool(4);
+        pipeline = new StartupPipeline(executor, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(sinceProcessStartMs));
+        pipeline.mark("splash");
+
+        // Listen before the session opens so the first reading is not missed
+        connectionManager = SensorConnectionManager.getInstance();
+        connectionManager.addListener(this);
+
+        pipeline.runPhase("settings", () ->
+        {
+            // Reads the settings file, so the screens find it cached
+            SharedPreferences settings_database = getSharedPreferences("settings_prefs", MODE_PRIVATE);
+            ThresholdRules.compile(settings_database.getAll());
+        });
+        pipeline.runPhase("session", () -> SensorService.start(getApplicationContext()));
+        pipeline.runPhase("history", () ->
+        {
+            // Only the first launch in this process loads anything; after that the store is kept
+            HistoryLog historyLog = connectionManager.openHistoryLog(new File(getFilesDir(), "history"));
+            connectionManager.getReadingStore().loadOlder(historyLog, System.currentTimeMillis() - HISTORY_PRELOAD_MS);
+        });
+        pipeline.runPhase("charts", () ->
+        {
+            // Loads and initialises the chart library's classes, so the chart screen only creates views
+            Utils.init(getApplicationContext());
+            ArrayList<Entry> entries = new ArrayList<>();
+            entries.add(new Entry(0, 0));
+            new LineData(new LineDataSet(entries, ""));
+            Class.forName(LineChart.class.getName());
+        });
+
+        pipeline.start(SPLASH_DEADLINE_MS, gotReading -> runOnUiThread(this::openMainScreen));
+    }
+
+    private void openMainScreen()
+    {
+        Log.i(TAG, "Startup timings (ms since process start):\n" + pipeline.format());
+        connectionManager.removeListener(this);
+        executor.shutdown();
+        if (isFinishing() || isDestroyed())
+        {
+            return;
+        }
+        finish();
+        Intent i = new Intent(LoadingScreen.this, MainActivity.class);
+        startActivity(i);
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+        connectionManager.removeListener(this);
+    }
+
+    @Override
+    public void onReading(long timestamp, double[] values)
+    {
+        pipeline.markFirstReading();
+    }
+
+    @Override
+    public void onReadingBatch(ReadingBatch batch)
+    {
+        pipeline.markFirstReading();
+    }
+
+    /*
+    No reading is coming from a server that cannot be reached, so do not keep the user waiting.
+     */
+    @Override
+    public void onConnectionError(String errorMessage)
+    {
+        pipeline.stopWaitingForReading();
+    }
+
+    @Override
+    public void onConnectionStatusChanged(boolean isConnected)
+    {
+        if (isConnected)
         {
-            public void run()
-            {
-                try
-                {
-                    sleep(3000);
-                }
-                catch(InterruptedException e)
-                {
-                    e.printStackTrace();
-                }
-                finally
-                {
-                    finish();
-                    Intent i = new Intent(LoadingScreen.this,MainActivity.class);
-                    startActivity(i);
-                }
-            }
-        };
-        splashTread.start();
+            pipeline.mark("connected");
+        }
     }
-}
\ No newline at end of file
+}
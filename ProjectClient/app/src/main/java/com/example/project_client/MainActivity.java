@@ -1,11 +1,17 @@
 package com.example.project_client;
 
+import android.content.ComponentName;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.content.SharedPreferences;
 import android.graphics.Color;
 import android.os.Bundle;
+import android.os.IBinder;
 import android.os.SystemClock;
-import android.util.Log;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.RelativeSizeSpan;
+import android.view.Choreographer;
 import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
@@ -17,29 +23,89 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import java.util.Arrays;
+import java.util.Locale;
+
 /*
 Main Activity class showing the real-time data from Raspberry Pi Server
 Using Sense Hat Temperature, Humidity, and Pressure Sensors.
+The session, the threshold checks and the notifications are run by the SensorService, which this
+screen binds to; closing the screen leaves the service receiving readings in the background.
+Under each reading it shows the mean and the 5th and 95th percentiles of the last hour, from the
+running ReadingStatistics of the session.
  */
 public class MainActivity extends AppCompatActivity implements WebSocketClientHandler.MessageListener
 {
-    private WebSocketClientHandler webSocketClientHandler;
-    private TextView realTimeTemp, realTimeHum, realTimePres, errorMessageText;
-    private TextView tempThreshold, humThreshold, presThreshold;
+    private final ChannelRegistry registry = ChannelRegistry.getDefault();
+
+    private SensorConnectionManager connectionManager;
+    private volatile SensorService sensorService;
+    private TextView errorMessageText;
 
-    private ImageView temperatureCheck, humidityCheck, pressureCheck;
+    // The views of each channel, indexed by channel id; null for channels the layout has no card for
+    private TextView[] readingViews, thresholdViews;
+    private ImageView[] checkViews;
     private Button viewChartsButton;
     private ImageView settingsImage;
 
-    private String sendingTemperature, sendingHumidity, sendingPressure;
+    // The latest reading of each channel, as a number and as the text shown and sent to the Pi
+    private double[] latestValues;
+    private String[] sendingValues;
+
+    // The statistics line of each channel, recomputed at most every STATISTICS_REFRESH_MS
+    private static final long STATISTICS_PERIOD_MS = 60 * 60 * 1000;
+    private static final long STATISTICS_REFRESH_MS = 1000;
+    private ReadingStatistics readingStatistics;
+    private String[] statisticsTexts;
+    private long statisticsTime;
 
     private SharedPreferences settings_database;
 
-    private static final long NOTIFICATION_COOLDOWN_MS = 5 * 60 * 1000;  // 5 minutes cooldown in milliseconds
+    // The threshold settings compiled into rules for the display; recompiled only when a setting
+    // changes. The readings themselves are checked by the SensorService
+    private ThresholdRules thresholdRules;
 
-    private long lastNotificationTimeTemp = 0;
-    private long lastNotificationTimeHum = 0;
-    private long lastNotificationTimePres = 0;
+    // Values of the newest reading of a batch, only used on the WebSocket thread
+    private final double[] batchValues = new double[registry.size()];
+
+    // The newest reading for the UI, drained once per display frame
+    private Choreographer choreographer;
+    private final Choreographer.FrameCallback drainCallback = frameTimeNanos -> drainReading();
+    private final MetricsRegistry.Counter readingsShown = MetricsRegistry.getDefault().counter("ui.readings_shown");
+    private final ReadingMailbox.Receiver readingReceiver = (timestamp, values) ->
+    {
+        showReading(values);
+        readingsShown.increment();
+        // Drained in the Choreographer's frame callback, so the views are drawn in this same frame
+        LatencyTracker.getInstance().recordSinceReceived(LatencyTracker.Stage.RENDER);
+    };
+    private final ReadingMailbox readingMailbox = new ReadingMailbox(registry.size(),
+            () -> choreographer.postFrameCallback(drainCallback));
+
+    // The UI backlog for the diagnostics: readings handed to the screen and the ones it skipped
+    private final MetricsRegistry.Gauge postedGauge = readingMailbox::getPostedCount;
+    private final MetricsRegistry.Gauge conflatedGauge = readingMailbox::getConflatedCount;
+
+    // Kept in a field because SharedPreferences only holds listeners weakly
+    private final SharedPreferences.OnSharedPreferenceChangeListener settingsListener =
+            (preferences, key) -> thresholdRules = ThresholdRules.compile(preferences.getAll());
+
+    // Attaches to the service's session as soon as the service is bound
+    private final ServiceConnection serviceConnection = new ServiceConnection()
+    {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder)
+        {
+            sensorService = ((SensorService.LocalBinder) binder).getService();
+            sensorService.addListener(MainActivity.this);
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name)
+        {
+            sensorService = null;
+        }
+    };
 
     private boolean isFirstRun = true;
 
@@ -58,33 +124,54 @@ public class MainActivity extends AppCompatActivity implements WebSocketClientHa
 
         // Initialise SharedPreferences
         settings_database = getSharedPreferences("settings_prefs", MODE_PRIVATE);
+        thresholdRules = ThresholdRules.compile(settings_database.getAll());
+        settings_database.registerOnSharedPreferenceChangeListener(settingsListener);
 
         // Initialise TextViews
-        realTimeTemp = findViewById(R.id.realTimeTemp);
-        realTimeHum = findViewById(R.id.realTimeHum);
-        realTimePres = findViewById(R.id.realTimePres);
+        int channelCount = registry.size();
+        readingViews = new TextView[channelCount];
+        thresholdViews = new TextView[channelCount];
+        checkViews = new ImageView[channelCount];
+        latestValues = new double[channelCount];
+        sendingValues = new String[channelCount];
+        statisticsTexts = new String[channelCount];
+        Arrays.fill(latestValues, Double.NaN);
+
+        readingViews[ChannelRegistry.TEMPERATURE] = findViewById(R.id.realTimeTemp);
+        readingViews[ChannelRegistry.HUMIDITY] = findViewById(R.id.realTimeHum);
+        readingViews[ChannelRegistry.PRESSURE] = findViewById(R.id.realTimePres);
         errorMessageText = findViewById(R.id.errorMessageText);  // Add a TextView to show error messages
 
-        tempThreshold = findViewById(R.id.tempTreshold);
-        humThreshold = findViewById(R.id.humTreshold);
-        presThreshold = findViewById(R.id.presTreshold);
+        thresholdViews[ChannelRegistry.TEMPERATURE] = findViewById(R.id.tempTreshold);
+        thresholdViews[ChannelRegistry.HUMIDITY] = findViewById(R.id.humTreshold);
+        thresholdViews[ChannelRegistry.PRESSURE] = findViewById(R.id.presTreshold);
 
-        temperatureCheck = findViewById(R.id.temperatureCheck);
-        humidityCheck = findViewById(R.id.humidityCheck);
-        pressureCheck = findViewById(R.id.pressureCheck);
+        checkViews[ChannelRegistry.TEMPERATURE] = findViewById(R.id.temperatureCheck);
+        checkViews[ChannelRegistry.HUMIDITY] = findViewById(R.id.humidityCheck);
+        checkViews[ChannelRegistry.PRESSURE] = findViewById(R.id.pressureCheck);
 
         viewChartsButton = findViewById(R.id.viewChartsButton);
         settingsImage = findViewById(R.id.settingsImage);
 
-        // Setup WebSocket client
-        webSocketClientHandler = new WebSocketClientHandler();
-        webSocketClientHandler.setMessageListener(this);
-
-        String savedIPAddress = settings_database.getString("saved_ip_address", "0");
-        String savedPortNumber = settings_database.getString("saved_port_number", "0");
-        String serverUrl = "ws://" + savedIPAddress + ":" + savedPortNumber;
-//        Log.e("WebSocket", serverUrl);
-        webSocketClientHandler.connectWebSocket(serverUrl);
+        // Attach to the shared WebSocket session through the service, which keeps it open
+        choreographer = Choreographer.getInstance();
+        connectionManager = SensorConnectionManager.getInstance();
+        readingStatistics = connectionManager.getReadingStatistics();
+        bindService(new Intent(this, SensorService.class), serviceConnection, BIND_AUTO_CREATE);
+        MetricsRegistry.getDefault().gauge("ui.readings_posted", postedGauge);
+        MetricsRegistry.getDefault().gauge("ui.readings_conflated", conflatedGauge);
+
+        // Show the last reading straight away if the session was already running
+        ReadingStore readingStore = connectionManager.getReadingStore();
+        if (readingStore.size() > 0)
+        {
+            double[] values = new double[channelCount];
+            for (int channel = 0; channel < channelCount; channel++)
+            {
+                values[channel] = readingStore.getLatestValue(channel);
+            }
+            showReading(values);
+        }
 
         viewChartsButton.setOnClickListener(view ->
         {
@@ -98,162 +185,189 @@ public class MainActivity extends AppCompatActivity implements WebSocketClientHa
             startActivity(i);
         });
 
-        temperatureCheck.setOnClickListener(view ->
+        // Hidden way to the diagnostics
+        settingsImage.setOnLongClickListener(view ->
         {
-            boolean isThresholdEnabled = settings_database.getBoolean("threshold_enabled", false);
-            if (!isThresholdEnabled)
-            {
-                String message = "TEMP_THRESHOLDS_DISABLED:" + sendingTemperature;
-                sendMessageIfConnected(message);
-                return;
-            }
-
-            String savedMinTempString = settings_database.getString("saved_min_temp", "0");
-            String savedMaxTempString = settings_database.getString("saved_max_temp", "100");
-
-            double savedMinTemp = Double.parseDouble(savedMinTempString);
-            double savedMaxTemp = Double.parseDouble(savedMaxTempString);
-            double tempValue = Double.parseDouble(sendingTemperature);
-
-            String message;// Use the method to safely send message
-            if(tempValue < savedMinTemp || tempValue > savedMaxTemp)
-            {
-                message = "TEMP_OUT_THRESHOLD:" + sendingTemperature;
-            }
-            else
-            {
-                message = "TEMP_IN_THRESHOLD:" + sendingTemperature;
-            }
-            sendMessageIfConnected(message);  // Use the method to safely send message
+            Intent i = new Intent(MainActivity.this, DiagnosticsScreen.class);
+            startActivity(i);
+            return true;
         });
 
-        humidityCheck.setOnClickListener(view ->
+        // Tell the Pi whether the latest reading is inside the thresholds, so it can show it on the LEDs
+        for (int channel = 0; channel < channelCount; channel++)
         {
-            boolean isThresholdEnabled = settings_database.getBoolean("threshold_enabled", false);
-            if (!isThresholdEnabled)
+            if (checkViews[channel] != null)
             {
-                String message = "HUM_THRESHOLDS_DISABLED:" + sendingHumidity;
-                sendMessageIfConnected(message);
-                return;
+                int id = channel;
+                checkViews[channel].setOnClickListener(view -> sendThresholdState(id));
             }
+        }
+    }
 
-            String savedMinHumString = settings_database.getString("saved_min_hum", "0");
-            String savedMaxHumString = settings_database.getString("saved_max_hum", "100");
-
-            double savedMinHum = Double.parseDouble(savedMinHumString);
-            double savedMaxHum = Double.parseDouble(savedMaxHumString);
-            double humValue = Double.parseDouble(sendingHumidity);
-
-            String message;// Use the method to safely send message
-            if(humValue < savedMinHum || humValue > savedMaxHum)
-            {
-                message = "HUM_OUT_THRESHOLD:" + sendingHumidity;
-            }
-            else
-            {
-                message = "HUM_IN_THRESHOLD:" + sendingHumidity;
-            }
-            sendMessageIfConnected(message);  // Use the method to safely send message
-        });
+    /*
+    Sends the threshold state of one sensor to the server, e.g. "TEMP_OUT_THRESHOLD:31.20".
+     */
+    private void sendThresholdState(int channel)
+    {
+        SensorChannel sensorChannel = registry.get(channel);
+        double value = latestValues[channel];
+        int state = LedStateSync.stateOf(thresholdRules, channel, value);
+        sendCommand(sensorChannel.getCommandPrefix(), LedStateSync.command(sensorChannel, state, value));
+    }
 
-        pressureCheck.setOnClickListener(view ->
+    /*
+    Queues a command for the server. Only the newest command per sensor is kept, and while the
+    server is not connected it waits for the connection to come back.
+     */
+    private void sendCommand(String prefix, String message)
+    {
+        connectionManager.sendCommand(prefix, message);
+        if (!connectionManager.isConnected())
         {
-            boolean isThresholdEnabled = settings_database.getBoolean("threshold_enabled", false);
-            if (!isThresholdEnabled)
-            {
-                String message = "PRES_THRESHOLDS_DISABLED:" + sendingPressure;
-                sendMessageIfConnected(message);
-                return;
-            }
+            errorMessageText.setText("Server is not connected. The display will update when it reconnects.");
+            errorMessageText.setVisibility(View.VISIBLE);
+        }
+    }
 
-            String savedMinPresString = settings_database.getString("saved_min_pres", "0");
-            String savedMaxPresString = settings_database.getString("saved_max_pres", "100");
+    /*
+    Method receiving the data from the server and displaying it to the user.
+    Runs on the WebSocket thread: the service has already checked the reading against the
+    threshold rules, and it is left in the mailbox for the UI's next frame.
+     */
+    @Override
+    public void onReading(long timestamp, double[] values)
+    {
+        readingMailbox.post(timestamp, values);
+    }
 
-            double savedMinPres = Double.parseDouble(savedMinPresString);
-            double savedMaxPres = Double.parseDouble(savedMaxPresString);
-            double presValue = Double.parseDouble(sendingPressure);
+    /*
+    Called once for a batch of readings from a server sampling fast. The service has checked every
+    reading so a short spike is not missed; the newest one is shown.
+     */
+    @Override
+    public void onReadingBatch(ReadingBatch batch)
+    {
+        batch.getValues(batch.size() - 1, batchValues);
+        readingMailbox.post(batch.getLatestTimestamp(), batchValues);
+    }
 
-            String message;// Use the method to safely send message
-            if(presValue < savedMinPres || presValue > savedMaxPres)
-            {
-                message = "PRES_OUT_THRESHOLD:" + sendingPressure;
-            }
-            else
-            {
-                message = "PRES_IN_THRESHOLD:" + sendingPressure;
-            }
-            sendMessageIfConnected(message);  // Use the method to safely send message
-        });
+    /*
+    Called by the Choreographer on the UI thread, at most once per display frame.
+     */
+    private void drainReading()
+    {
+        readingMailbox.drain(readingReceiver);
     }
 
     /*
-    Method checks if the server is connected before sending a message to the server.
+    Returns the number of readings that arrived faster than the display could show them
+    and were replaced by a newer one before being drawn.
      */
-    private void sendMessageIfConnected(String message)
+    public long getConflatedReadingCount()
     {
-        // Check if WebSocket is connected before sending the message
-        if (webSocketClientHandler != null && webSocketClientHandler.isConnected())
+        return readingMailbox.getConflatedCount();
+    }
+
+    /*
+    Shows a reading and the threshold state on the UI thread.
+     */
+    private void showReading(double[] reading)
+    {
+        long now = SystemClock.uptimeMillis();
+        boolean refreshStatistics = now - statisticsTime >= STATISTICS_REFRESH_MS;
+        if (refreshStatistics)
         {
-            webSocketClientHandler.sendMessage(message);
+            statisticsTime = now;
         }
-        else
+        for (int channel = 0; channel < reading.length; channel++)
         {
-            // Show an error message if the WebSocket is not connected
-            errorMessageText.setText("Unable to send data. Server is not connected.");
-            errorMessageText.setVisibility(View.VISIBLE);  // Optionally, show the error message
+            latestValues[channel] = reading[channel];
+
+            // Text versions are only needed for the display and the LED commands
+            sendingValues[channel] = String.format(Locale.US, "%.2f", reading[channel]);
+            if (readingViews[channel] != null)
+            {
+                SensorChannel sensorChannel = registry.get(channel);
+                if (refreshStatistics)
+                {
+                    statisticsTexts[channel] = statisticsText(channel);
+                }
+                readingViews[channel].setText(readingText(sensorChannel.getName() + ": " + sendingValues[channel] + " " + sensorChannel.getUnit(),
+                        statisticsTexts[channel]));
+            }
         }
+        updateThresholdValues(reading);
     }
 
     /*
-    Method receiving the data from the server and displaying it to the user.
+    Returns e.g. "1 h mean 21.30 · p5 20.10 · p95 22.80" for a channel, or null before any reading.
      */
-    @Override
-    public void onSensorDataReceived(final String temperature, final String humidity, final String pressure)
+    private String statisticsText(int channel)
     {
-        runOnUiThread(new Runnable()
+        StreamingStats statistics = readingStatistics.getStatistics(channel, System.currentTimeMillis() - STATISTICS_PERIOD_MS);
+        if (statistics.getCount() == 0)
         {
-            @Override
-            public void run()
-            {
-                sendingTemperature = temperature;
-                sendingHumidity = humidity;
-                sendingPressure = pressure;
-
-                realTimeTemp.setText(String.format("Temperature: %s °C", temperature));
-                realTimeHum.setText(String.format("Humidity: %s %%", humidity));
-                realTimePres.setText(String.format("Pressure: %s hPa", pressure));
+            return null;
+        }
+        double[] percentiles = statistics.getQuantiles(0.05, 0.95);
+        return String.format(Locale.US, "1 h mean %.2f · p5 %.2f · p95 %.2f", statistics.getMean(), percentiles[0], percentiles[1]);
+    }
 
-                // Update the threshold values and change colors
-                updateThresholdValues(temperature, humidity, pressure);
-            }
-        });
+    /*
+    The reading, with the statistics in a smaller line below it.
+     */
+    private static CharSequence readingText(String reading, String statistics)
+    {
+        if (statistics == null)
+        {
+            return reading;
+        }
+        SpannableStringBuilder text = new SpannableStringBuilder(reading).append('\n');
+        int start = text.length();
+        text.append(statistics);
+        text.setSpan(new RelativeSizeSpan(0.6f), start, text.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        return text;
     }
 
     /*
-    Method for disconnecting from the server if user closes the app.
+    Detaches from the service. The session stays open in the service, which keeps checking
+    the readings and sending notifications until it is stopped from its notification.
      */
     @Override
     protected void onDestroy()
     {
         super.onDestroy();
-        webSocketClientHandler.disconnectWebSocket();
+        SensorService service = sensorService;
+        if (service != null)
+        {
+            service.removeListener(this);
+        }
+        unbindService(serviceConnection);
+        choreographer.removeFrameCallback(drainCallback);
+        MetricsRegistry.getDefault().removeGauge("ui.readings_posted", postedGauge);
+        MetricsRegistry.getDefault().removeGauge("ui.readings_conflated", conflatedGauge);
+        settings_database.unregisterOnSharedPreferenceChangeListener(settingsListener);
     }
 
     /*
-    Method resetting the values of the cooldown timer, first run, and for displaying the threshold
-    values if the user navigates back to the main activity from another activity.
+    Method resetting the first run and displaying the threshold values if the user navigates
+    back to the main activity from another activity.
+    It also makes sure the service is running, which reconnects if the server address
+    was changed on the settings screen.
      */
     protected void onResume()
     {
         super.onResume();
-        resetNotificationTimestamps();  // Reset cooldown timers
-        updateThresholdValues(sendingTemperature, sendingHumidity, sendingPressure);
+        SensorService.start(this);
+
+        updateThresholdValues(latestValues);
         isFirstRun = true;
     }
 
     /*
     Method showing error message, and displaying the data in blue and not showing any values
     for the data if the client cannot connect to the server.
+    The session keeps reconnecting by itself, so it is left open.
      */
     @Override
     public void onConnectionError(final String errorMessage)
@@ -262,19 +376,24 @@ public class MainActivity extends AppCompatActivity implements WebSocketClientHa
         {
             // Show error message and default values
             errorMessageText.setText(errorMessage);
-            realTimeTemp.setText("Temperature: -- °C");
-            realTimeHum.setText("Humidity: -- %");
-            realTimePres.setText("Pressure: -- hPa");
-
-            // Optionally, you can set the text color to red
-            realTimeTemp.setTextColor(Color.BLUE);
-            realTimeHum.setTextColor(Color.BLUE);
-            realTimePres.setTextColor(Color.BLUE);
-            webSocketClientHandler.disconnectWebSocket();
+            for (int channel = 0; channel < registry.size(); channel++)
+            {
+                if (readingViews[channel] != null)
+                {
+                    SensorChannel sensorChannel = registry.get(channel);
+                    readingViews[channel].setText(sensorChannel.getName() + ": -- " + sensorChannel.getUnit());
+
+                    // Optionally, you can set the text color to red
+                    readingViews[channel].setTextColor(Color.BLUE);
+                }
+            }
         });
     }
 
-    private void updateThresholdValues(String temperature, String humidity, String pressure)
+    /*
+    Shows the thresholds and colors the readings against them. The alerts are the service's.
+     */
+    private void updateThresholdValues(double[] values)
     {
         if (isFirstRun)
         {
@@ -282,169 +401,65 @@ public class MainActivity extends AppCompatActivity implements WebSocketClientHa
             return;
         }
 
-        // Get the state of the threshold enabled setting from SharedPreferences
-        boolean isThresholdEnabled = settings_database.getBoolean("threshold_enabled", false);
+        ThresholdRules rules = thresholdRules;
 
-        // If the threshold is enabled, display the threshold values
-        if (isThresholdEnabled)
+        for (int channel = 0; channel < registry.size(); channel++)
         {
-            String savedMinTemp = settings_database.getString("saved_min_temp", "0");
-            String savedMaxTemp = settings_database.getString("saved_max_temp", "100");
-            String savedMinHum = settings_database.getString("saved_min_hum", "0");
-            String savedMaxHum = settings_database.getString("saved_max_hum", "100");
-            String savedMinPres = settings_database.getString("saved_min_pres", "0");
-            String savedMaxPres = settings_database.getString("saved_max_pres", "1000");
-
-            // Concatenate min and max values with a comma separator
-            tempThreshold.setText("Temperature: " + savedMinTemp + "°C, " + savedMaxTemp + "°C");
-            humThreshold.setText("Humidity: " + savedMinHum + "%, " + savedMaxHum + "%");
-            presThreshold.setText("Pressure: " + savedMinPres + "hPa, " + savedMaxPres + "hPa");
-
-            // Set text color based on the threshold condition for the sensor readings
-            setReadingColor(realTimeTemp, temperature, savedMinTemp, savedMaxTemp);
-            setReadingColor(realTimeHum, humidity, savedMinHum, savedMaxHum);
-            setReadingColor(realTimePres, pressure, savedMinPres, savedMaxPres);
-
-            // Send notifications if the readings are outside the threshold
-            checkAndNotify("Temperature", temperature, savedMinTemp, savedMaxTemp);
-            checkAndNotify("Humidity", humidity, savedMinHum, savedMaxHum);
-            checkAndNotify("Pressure", pressure, savedMinPres, savedMaxPres);
-
-            // Make the threshold card visible
-            //findViewById(R.id.cardThresholds).setVisibility(View.VISIBLE);
-        }
-        else
-        {
-            // If threshold is off, set values to '--'
-            tempThreshold.setText("Temperature: --°C, --°C");
-            humThreshold.setText("Humidity: --%, --%");
-            presThreshold.setText("Pressure: --hPa, --hPa");
-
-            // Reset text color to default (gray)
-            realTimeTemp.setTextColor(Color.GRAY);
-            realTimeHum.setTextColor(Color.GRAY);
-            realTimePres.setTextColor(Color.GRAY);
-
-            // Hide the threshold card if "Off"
-            //findViewById(R.id.cardThresholds).setVisibility(View.GONE);
-        }
-    }
+            SensorChannel sensorChannel = registry.get(channel);
+            String unit = sensorChannel.getUnit();
 
-    /*
-    This method sets the color based on the sensor data and thresholds.
-     */
-    private void setReadingColor(TextView textView, String reading, String minThreshold, String maxThreshold)
-    {
-        try
-        {
-            double readingValue = Double.parseDouble(reading);
-            double min = Double.parseDouble(minThreshold);
-            double max = Double.parseDouble(maxThreshold);
-
-            if (readingValue < min || readingValue > max)
+            // If the threshold is enabled, display the threshold values
+            if (rules.isEnabled())
             {
-                // Out of threshold range, set text color to red
-                textView.setTextColor(Color.rgb(230, 0, 0));
+                if (thresholdViews[channel] != null)
+                {
+                    // Concatenate min and max values with a comma separator
+                    thresholdViews[channel].setText(sensorChannel.getName() + ": " + rules.getMinText(channel) + unit + ", " + rules.getMaxText(channel) + unit);
+                }
+
+                // Set text color based on the threshold condition for the sensor readings
+                if (readingViews[channel] != null)
+                {
+                    setReadingColor(readingViews[channel], channel, values[channel]);
+                }
             }
             else
             {
-                // Within threshold range, set text color to green
-                textView.setTextColor(Color.rgb(0, 180, 0));
+                // If threshold is off, set values to '--'
+                if (thresholdViews[channel] != null)
+                {
+                    thresholdViews[channel].setText(sensorChannel.getName() + ": --" + unit + ", --" + unit);
+                }
+
+                // Reset text color to default (gray)
+                if (readingViews[channel] != null)
+                {
+                    readingViews[channel].setTextColor(Color.GRAY);
+                }
             }
         }
-        catch (NumberFormatException e)
-        {
-            // If parsing fails, set text color to default (magenta)
-            textView.setTextColor(Color.MAGENTA);
-        }
     }
 
     /*
-    This method handles all the readings from the server. For each data reading it checks
-    if it is under or above the threshold. If data is out of the thresholds it creates a notification
-    message.
-    The method also handles the cooldown timer. It sends notification every given time instead of
-    every second. If the cooldown timer is not expired it will not send a notification.
+    This method sets the color based on the sensor data and thresholds.
      */
-    private void checkAndNotify(String sensorType, String value, String minThreshold, String maxThreshold)
+    private void setReadingColor(TextView textView, int channel, double readingValue)
     {
-        try
+        ThresholdRules rules = thresholdRules;
+        if (!rules.hasRange(channel))
         {
-            double readingValue = Double.parseDouble(value);
-            double min = Double.parseDouble(minThreshold);
-            double max = Double.parseDouble(maxThreshold);
-
-            long currentTime = SystemClock.elapsedRealtime();
-
-            switch (sensorType)
-            {
-                // Notification for the temperature.
-                case "Temperature":
-                    if (currentTime - lastNotificationTimeTemp < NOTIFICATION_COOLDOWN_MS)
-                    {
-                        return;  // Don't send a notification if we're still in cooldown for temperature
-                    }
-
-                    if (readingValue < min)
-                    {
-                        String message = sensorType + " is below threshold! (" + value + ")";
-                        NotificationHelper.showNotificationTemperature(MainActivity.this, sensorType + " Below Threshold", message);
-                    }
-                    else if (readingValue > max)
-                    {
-                        String message = sensorType + " is above threshold! (" + value + ")";
-                        NotificationHelper.showNotificationTemperature(MainActivity.this, sensorType + " Above Threshold", message);
-                    }
-                    lastNotificationTimeTemp = currentTime;  // Update the last notification time for temperature
-
-                    break;
-
-                // Notification for the humidity.
-                case "Humidity":
-                    if (currentTime - lastNotificationTimeHum < NOTIFICATION_COOLDOWN_MS)
-                    {
-                        return;  // Don't send a notification if we're still in cooldown for humidity
-                    }
-
-                    if (readingValue < min)
-                    {
-                        String message = sensorType + " is below threshold! (" + value + ")";
-                        NotificationHelper.showNotificationHumidity(MainActivity.this, sensorType + " Below Threshold", message);
-                    }
-                    else if (readingValue > max)
-                    {
-                        String message = sensorType + " is above threshold! (" + value + ")";
-                        NotificationHelper.showNotificationHumidity(MainActivity.this, sensorType + " Above Threshold", message);
-                    }
-                    lastNotificationTimeHum = currentTime;  // Update the last notification time for humidity
-
-                    break;
-
-                // Notification for the pressure.
-                case "Pressure":
-                    if (currentTime - lastNotificationTimePres < NOTIFICATION_COOLDOWN_MS)
-                    {
-                        return;  // Don't send a notification if we're still in cooldown for pressure
-                    }
-
-                    if (readingValue < min)
-                    {
-                        String message = sensorType + " is below threshold! (" + value + ")";
-                        NotificationHelper.showNotificationPressure(MainActivity.this, sensorType + " Below Threshold", message);
-                    }
-                    else if (readingValue > max)
-                    {
-                        String message = sensorType + " is above threshold! (" + value + ")";
-                        NotificationHelper.showNotificationPressure(MainActivity.this, sensorType + " Above Threshold", message);
-                    }
-                    lastNotificationTimePres = currentTime;  // Update the last notification time for pressure
-
-                    break;
-            }
+            // If the saved thresholds are not numbers, set text color to default (magenta)
+            textView.setTextColor(Color.MAGENTA);
         }
-        catch (NumberFormatException e)
+        else if (rules.isOutOfRange(channel, readingValue))
         {
-            // Handle any parsing errors here
+            // Out of threshold range, set text color to red
+            textView.setTextColor(Color.rgb(230, 0, 0));
+        }
+        else
+        {
+            // Within threshold range, set text color to green
+            textView.setTextColor(Color.rgb(0, 180, 0));
         }
     }
 
@@ -456,17 +471,12 @@ public class MainActivity extends AppCompatActivity implements WebSocketClientHa
      */
     private void updateSensorButtonsVisibility(boolean isConnected)
     {
-        if (isConnected)
-        {
-            pressureCheck.setEnabled(true);
-            temperatureCheck.setEnabled(true);
-            humidityCheck.setEnabled(true);
-        }
-        else
+        for (ImageView checkView : checkViews)
         {
-            pressureCheck.setEnabled(false);
-            temperatureCheck.setEnabled(false);
-            humidityCheck.setEnabled(false);
+            if (checkView != null)
+            {
+                checkView.setEnabled(isConnected);
+            }
         }
     }
 
@@ -477,17 +487,14 @@ public class MainActivity extends AppCompatActivity implements WebSocketClientHa
     @Override
     public void onConnectionStatusChanged(boolean isConnected)
     {
-        runOnUiThread(() -> updateSensorButtonsVisibility(isConnected));
+        runOnUiThread(() ->
+        {
+            if (isConnected)
+            {
+                errorMessageText.setText("");  // Reconnected, clear the connection error
+            }
+            updateSensorButtonsVisibility(isConnected);
+        });
     }
 
-    /*
-    This method resets the cooldown timer when the user returns to the main activity
-    from another activity.
-     */
-    private void resetNotificationTimestamps()
-    {
-        lastNotificationTimeTemp = 0;
-        lastNotificationTimeHum = 0;
-        lastNotificationTimePres = 0;
-    }
 }
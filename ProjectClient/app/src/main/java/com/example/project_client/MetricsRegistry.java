@@ -0,0 +1,276 @@
+package com.example.project_client;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+MetricsRegistry keeps the live numbers of the pipeline (messages, parse failures, reconnects,
+threshold checks, notifications, the UI backlog) for the diagnostics, cheap enough to stay on in
+production. Counters and meters are striped LongAdders: a component looks its metrics up once,
+keeps them in fields, and recording is then a single add without locks or allocation, even with
+the WebSocket thread and the UI recording at the same time. Gauges are read only when shown.
+
+Names are dotted, component first, e.g. "websocket.messages". Looking up the same name again
+returns the same metric, so every handler of a fleet adds to the same counters.
+ */
+public class MetricsRegistry
+{
+    /*
+    A value read when the metrics are shown, e.g. the size of a queue.
+     */
+    public interface Gauge
+    {
+        long getValue();
+    }
+
+    /*
+    Reads the time in nanoseconds; replaced in tests.
+     */
+    interface Clock
+    {
+        long nanoTime();
+    }
+
+    /*
+    A count of events.
+     */
+    public static final class Counter
+    {
+        private final LongAdder count = new LongAdder();
+
+        public void increment()
+        {
+            count.increment();
+        }
+
+        public void add(long amount)
+        {
+            count.add(amount);
+        }
+
+        public long getCount()
+        {
+            return count.sum();
+        }
+
+        void reset()
+        {
+            count.reset();
+        }
+    }
+
+    /*
+    A count of events that also gives their rate: the mean since the start and a one minute
+    moving average. Marking is as cheap as a Counter; the average is brought up to date when it
+    is read, at most every TICK_NANOS, from the events counted since the last time.
+     */
+    public static final class Meter
+    {
+        private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(5);
+        private static final double AVERAGE_SECONDS = 60;
+
+        private final LongAdder count = new LongAdder();
+        private final Clock clock;
+
+        // Guarded by this
+        private long startNanos;
+        private long lastTickNanos;
+        private long lastCount;
+        private double oneMinuteRate = Double.NaN;
+
+        Meter(Clock clock)
+        {
+            this.clock = clock;
+            startNanos = clock.nanoTime();
+            lastTickNanos = startNanos;
+        }
+
+        public void mark()
+        {
+            count.increment();
+        }
+
+        public void mark(long events)
+        {
+            count.add(events);
+        }
+
+        public long getCount()
+        {
+            return count.sum();
+        }
+
+        /*
+        Returns the events per second since the meter was created or reset.
+         */
+        public synchronized double getMeanRate()
+        {
+            double seconds = (clock.nanoTime() - startNanos) / 1e9;
+            return seconds > 0 ? count.sum() / seconds : 0;
+        }
+
+        /*
+        Returns the events per second, averaged exponentially over about the last minute.
+        Until the first TICK_NANOS have passed it is the mean rate.
+         */
+        public synchronized double getOneMinuteRate()
+        {
+            long now = clock.nanoTime();
+            long elapsed = now - lastTickNanos;
+            if (elapsed >= TICK_NANOS)
+            {
+                long total = count.sum();
+                double seconds = elapsed / 1e9;
+                double rate = (total - lastCount) / seconds;
+                double alpha = 1 - Math.exp(-seconds / AVERAGE_SECONDS);
+                oneMinuteRate = Double.isNaN(oneMinuteRate) ? rate : oneMinuteRate + alpha * (rate - oneMinuteRate);
+                lastTickNanos = now;
+                lastCount = total;
+            }
+            return Double.isNaN(oneMinuteRate) ? getMeanRate() : oneMinuteRate;
+        }
+
+        synchronized void reset()
+        {
+            count.reset();
+            startNanos = clock.nanoTime();
+            lastTickNanos = startNanos;
+            lastCount = 0;
+            oneMinuteRate = Double.NaN;
+        }
+    }
+
+    private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final Clock clock;
+
+    // In the order they were first looked up, guarded by this
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+    private final Map<String, Meter> meters = new LinkedHashMap<>();
+    private final Map<String, Gauge> gauges = new LinkedHashMap<>();
+
+    public MetricsRegistry()
+    {
+        this(System::nanoTime);
+    }
+
+    MetricsRegistry(Clock clock)
+    {
+        this.clock = clock;
+    }
+
+    /*
+    Returns the registry of the whole app.
+     */
+    public static MetricsRegistry getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /*
+    Returns the counter with the given name, creating it the first time.
+     */
+    public synchronized Counter counter(String name)
+    {
+        Counter counter = counters.get(name);
+        if (counter == null)
+        {
+            counter = new Counter();
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+
+    /*
+    Returns the meter with the given name, creating it the first time.
+     */
+    public synchronized Meter meter(String name)
+    {
+        Meter meter = meters.get(name);
+        if (meter == null)
+        {
+            meter = new Meter(clock);
+            meters.put(name, meter);
+        }
+        return meter;
+    }
+
+    /*
+    Shows a gauge under the given name, replacing any gauge registered under it before.
+     */
+    public synchronized void gauge(String name, Gauge gauge)
+    {
+        gauges.put(name, gauge);
+    }
+
+    /*
+    Removes a gauge, if it is still the one registered under the name. Screens remove their
+    gauges when they are destroyed so the registry does not keep them alive.
+     */
+    public synchronized void removeGauge(String name, Gauge gauge)
+    {
+        if (gauges.get(name) == gauge)
+        {
+            gauges.remove(name);
+        }
+    }
+
+    /*
+    Returns the current value of a counter, meter or gauge, or 0 if there is none with that name.
+     */
+    public synchronized long getValue(String name)
+    {
+        if (counters.containsKey(name))
+        {
+            return counters.get(name).getCount();
+        }
+        if (meters.containsKey(name))
+        {
+            return meters.get(name).getCount();
+        }
+        Gauge gauge = gauges.get(name);
+        return gauge != null ? gauge.getValue() : 0;
+    }
+
+    /*
+    Sets every counter and meter back to zero. Gauges show live values and are not changed.
+     */
+    public synchronized void reset()
+    {
+        for (Counter counter : counters.values())
+        {
+            counter.reset();
+        }
+        for (Meter meter : meters.values())
+        {
+            meter.reset();
+        }
+    }
+
+    /*
+    Returns one line per metric, e.g. "websocket.messages  1234  (10.0/s, 1 min 9.8/s)",
+    for the diagnostics.
+     */
+    public synchronized String format()
+    {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Meter> entry : meters.entrySet())
+        {
+            Meter meter = entry.getValue();
+            text.append(String.format(Locale.US, "%-26s %9d  %7.1f/s  1 min %7.1f/s%n", entry.getKey(),
+                    meter.getCount(), meter.getMeanRate(), meter.getOneMinuteRate()));
+        }
+        for (Map.Entry<String, Counter> entry : counters.entrySet())
+        {
+            text.append(String.format(Locale.US, "%-26s %9d%n", entry.getKey(), entry.getValue().getCount()));
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet())
+        {
+            text.append(String.format(Locale.US, "%-26s %9d%n", entry.getKey(), entry.getValue().getValue()));
+        }
+        return text.toString();
+    }
+}
@@ -3,6 +3,7 @@ package com.example.project_client;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
+import android.app.PendingIntent;
 import android.content.Context;
 import android.graphics.Color;
 import android.os.Build;
@@ -10,7 +11,9 @@ import android.os.Build;
 import androidx.core.app.NotificationCompat;
 
 /*
-NotificationHelper creates the notifications from the generated notification texts.
+NotificationHelper registers the notification channels and sets up the notifications: the
+threshold alerts posted by the AlertDispatcher and the ongoing one of the SensorService.
+The channels are registered once per process rather than before every notification.
  */
 public class NotificationHelper
 {
@@ -18,96 +21,69 @@ public class NotificationHelper
     private static final String CHANNEL_NAME = "Sensor Data Notifications";
     private static final String CHANNEL_DESCRIPTION = "Notifications for sensor data updates and errors";
 
+    // The ongoing notification of the SensorService has its own quiet channel
+    private static final String SERVICE_CHANNEL_ID = "SensorServiceChannel";
+    private static final String SERVICE_CHANNEL_NAME = "Sensor Connection";
+    private static final String SERVICE_CHANNEL_DESCRIPTION = "Shown while the app receives sensor data in the background";
+
+    // Each sensor channel's alert has the channel id + 1; the summary of several and the service come above them
+    public static final int ALERT_SUMMARY_NOTIFICATION_ID = 999;
+    public static final int SERVICE_NOTIFICATION_ID = 1000;
+
+    private static volatile boolean channelsCreated;
+
     /*
-    This method creates the notifications for the temperature.
+    Registers both notification channels, the first time it is called in the process.
      */
-    public static void showNotificationTemperature(Context context, String title, String message)
+    public static void createChannels(Context context)
     {
-        // Create notification channel for Android 8 and above
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
+        if (channelsCreated || Build.VERSION.SDK_INT < Build.VERSION_CODES.O)
         {
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, CHANNEL_NAME, NotificationManager.IMPORTANCE_DEFAULT);
-            channel.setDescription(CHANNEL_DESCRIPTION);
-            channel.enableLights(true);
-            channel.setLightColor(Color.BLUE);
-            channel.enableVibration(true);
-            NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
-            notificationManager.createNotificationChannel(channel);
+            return;
         }
+        NotificationChannel channel = new NotificationChannel(CHANNEL_ID, CHANNEL_NAME, NotificationManager.IMPORTANCE_DEFAULT);
+        channel.setDescription(CHANNEL_DESCRIPTION);
+        channel.enableLights(true);
+        channel.setLightColor(Color.BLUE);
+        channel.enableVibration(true);
 
-        // Build notification
-        Notification notification = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.ic_dialog_alert) // Add an appropriate icon
-                .setContentTitle(title)
-                .setContentText(message)
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setAutoCancel(true)
-                .build();
+        NotificationChannel serviceChannel = new NotificationChannel(SERVICE_CHANNEL_ID, SERVICE_CHANNEL_NAME, NotificationManager.IMPORTANCE_LOW);
+        serviceChannel.setDescription(SERVICE_CHANNEL_DESCRIPTION);
+        serviceChannel.setShowBadge(false);
 
-        // Get notification manager and show notification
-        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        notificationManager.notify(1, notification); // The number is the notification ID
+        NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+        notificationManager.createNotificationChannel(channel);
+        notificationManager.createNotificationChannel(serviceChannel);
+        channelsCreated = true;
     }
 
     /*
-    This method creates the notifications for the humidity.
+    Returns a builder set up for threshold alerts, for the caller to fill in and reuse.
      */
-    public static void showNotificationHumidity(Context context, String title, String message)
+    public static NotificationCompat.Builder alertBuilder(Context context)
     {
-        // Create notification channel for Android 8 and above
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
-        {
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, CHANNEL_NAME, NotificationManager.IMPORTANCE_DEFAULT);
-            channel.setDescription(CHANNEL_DESCRIPTION);
-            channel.enableLights(true);
-            channel.setLightColor(Color.BLUE);
-            channel.enableVibration(true);
-            NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
-            notificationManager.createNotificationChannel(channel);
-        }
-
-        // Build notification
-        Notification notification = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.ic_dialog_alert) // Add an appropriate icon
-                .setContentTitle(title)
-                .setContentText(message)
+        return new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_dialog_alert)
                 .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setAutoCancel(true)
-                .build();
-
-        // Get notification manager and show notification
-        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        notificationManager.notify(2, notification); // The number is the notification ID
+                .setAutoCancel(true);
     }
 
     /*
-    This method creates the notifications for the pressure.
+    This method builds the ongoing notification shown while the SensorService runs.
+    Tapping it opens the app and its button stops the service.
      */
-    public static void showNotificationPressure(Context context, String title, String message)
+    public static Notification buildServiceNotification(Context context, String message, PendingIntent openIntent, PendingIntent stopIntent)
     {
-        // Create notification channel for Android 8 and above
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
-        {
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, CHANNEL_NAME, NotificationManager.IMPORTANCE_DEFAULT);
-            channel.setDescription(CHANNEL_DESCRIPTION);
-            channel.enableLights(true);
-            channel.setLightColor(Color.BLUE);
-            channel.enableVibration(true);
-            NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
-            notificationManager.createNotificationChannel(channel);
-        }
-
-        // Build notification
-        Notification notification = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.ic_dialog_alert) // Add an appropriate icon
-                .setContentTitle(title)
+        createChannels(context);
+        return new NotificationCompat.Builder(context, SERVICE_CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.stat_notify_sync)
+                .setContentTitle(context.getString(R.string.app_name))
                 .setContentText(message)
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setAutoCancel(true)
+                .setContentIntent(openIntent)
+                .addAction(android.R.drawable.ic_menu_close_clear_cancel, "Stop", stopIntent)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
                 .build();
-
-        // Get notification manager and show notification
-        NotificationManager notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        notificationManager.notify(3, notification); // The number is the notification ID
     }
 }
@@ -0,0 +1,246 @@
+package com.example.project_client;
+
+import java.util.Arrays;
+
+/*
+QuantileSketch estimates quantiles (p5, p50, p95, ...) of a stream of values in fixed memory,
+with a KLL sketch: values are kept in levels of compactors, a value on level h standing for 2^h
+of the original ones. When a level is full it is sorted and every other value moves up a level,
+so only about 3k values are kept however long the stream is, and adding a value is O(1)
+amortised. A quantile is within about 1.7 / k of the true rank (about 1% for the default k),
+whatever the range or distribution of the values.
+Sketches of different time windows or devices merge into a sketch of the combined stream.
+It is not safe to share between threads.
+ */
+public class QuantileSketch
+{
+    public static final int DEFAULT_K = 200;
+
+    // How much smaller each lower level is than the one above it
+    private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+    private final int k;
+
+    // The values of each level, unsorted except right after a compaction; level 0 is the newest
+    private double[][] levels = new double[1][];
+    private int[] levelSizes = new int[1];
+    private int levelCount = 1;
+
+    private int size;      // Values kept, on all levels
+    private int maxSize;   // Total capacity of the levels; compacts when reached
+    private long count;    // Values added, i.e. the total weight
+
+    // State of the coin flip that picks which half of a level moves up
+    private long random = 0x9E3779B97F4A7C15L;
+
+    public QuantileSketch()
+    {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k)
+    {
+        if (k < 8)
+        {
+            throw new IllegalArgumentException("k must be at least 8: " + k);
+        }
+        this.k = k;
+        levels[0] = new double[capacity(0)];
+        maxSize = capacity(0);
+    }
+
+    public void add(double value)
+    {
+        append(0, value);
+        size++;
+        count++;
+        if (size >= maxSize)
+        {
+            compress();
+        }
+    }
+
+    /*
+    Adds the values of another sketch, which must have the same k; the other one is not changed.
+     */
+    public void merge(QuantileSketch other)
+    {
+        if (other.k != k)
+        {
+            throw new IllegalArgumentException("Cannot merge sketches with k " + k + " and " + other.k);
+        }
+        while (levelCount < other.levelCount)
+        {
+            grow();
+        }
+        for (int h = 0; h < other.levelCount; h++)
+        {
+            for (int i = 0; i < other.levelSizes[h]; i++)
+            {
+                append(h, other.levels[h][i]);
+            }
+        }
+        size += other.size;
+        count += other.count;
+        while (size >= maxSize)
+        {
+            compress();
+        }
+    }
+
+    public QuantileSketch copy()
+    {
+        QuantileSketch copy = new QuantileSketch(k);
+        copy.merge(this);
+        copy.random = random;
+        return copy;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    /*
+    Returns the value at the given quantile (0.5 for the median), or NaN if nothing was added.
+     */
+    public double getQuantile(double quantile)
+    {
+        double[] quantiles = getQuantiles(quantile);
+        return quantiles[0];
+    }
+
+    /*
+    Returns the values at several quantiles at once, sorting the kept values only once.
+     */
+    public double[] getQuantiles(double... quantiles)
+    {
+        double[] result = new double[quantiles.length];
+        if (size == 0)
+        {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+
+        // Each level sorted on its own, then walked through in value order, lowest level first on ties
+        double[][] sorted = new double[levelCount][];
+        int[] positions = new int[levelCount];
+        for (int h = 0; h < levelCount; h++)
+        {
+            sorted[h] = Arrays.copyOf(levels[h], levelSizes[h]);
+            Arrays.sort(sorted[h]);
+        }
+
+        Integer[] order = new Integer[quantiles.length];
+        for (int q = 0; q < quantiles.length; q++)
+        {
+            order[q] = q;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(quantiles[a], quantiles[b]));
+
+        long cumulative = 0;
+        double value = Double.NaN;
+        int next = 0;
+        while (next < order.length)
+        {
+            int level = -1;
+            for (int h = 0; h < levelCount; h++)
+            {
+                if (positions[h] < sorted[h].length && (level < 0 || sorted[h][positions[h]] < sorted[level][positions[level]]))
+                {
+                    level = h;
+                }
+            }
+            if (level < 0)
+            {
+                break;  // Past the largest value; the remaining quantiles get it
+            }
+            value = sorted[level][positions[level]++];
+            cumulative += 1L << level;
+            while (next < order.length && cumulative >= Math.min(1, Math.max(0, quantiles[order[next]])) * count)
+            {
+                result[order[next++]] = value;
+            }
+        }
+        while (next < order.length)
+        {
+            result[order[next++]] = value;
+        }
+        return result;
+    }
+
+    /*
+    The capacity of a level: k at the top, shrinking by CAPACITY_RATIO for every level below it.
+     */
+    private int capacity(int level)
+    {
+        int depth = levelCount - level - 1;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    private void grow()
+    {
+        levels = Arrays.copyOf(levels, levelCount + 1);
+        levelSizes = Arrays.copyOf(levelSizes, levelCount + 1);
+        levels[levelCount] = new double[2];
+        levelCount++;
+        maxSize = 0;
+        for (int h = 0; h < levelCount; h++)
+        {
+            maxSize += capacity(h);
+        }
+    }
+
+    private void append(int level, double value)
+    {
+        if (levelSizes[level] == levels[level].length)
+        {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(4, 2 * levels[level].length));
+        }
+        levels[level][levelSizes[level]++] = value;
+    }
+
+    /*
+    Compacts the lowest level that is over its capacity: sorts it and moves every other value,
+    starting at a random one of the first two, up a level. An odd value out stays behind.
+     */
+    private void compress()
+    {
+        for (int h = 0; h < levelCount; h++)
+        {
+            if (levelSizes[h] < capacity(h))
+            {
+                continue;
+            }
+            if (h + 1 == levelCount)
+            {
+                grow();
+            }
+            double[] level = levels[h];
+            int length = levelSizes[h];
+            Arrays.sort(level, 0, length);
+            int kept = length % 2;
+            double leftover = level[length - 1];
+            for (int i = nextBit(); i < length - kept; i += 2)
+            {
+                append(h + 1, level[i]);
+            }
+            levelSizes[h] = 0;
+            if (kept == 1)
+            {
+                level[levelSizes[h]++] = leftover;
+            }
+            size -= (length - kept) / 2;
+            return;
+        }
+    }
+
+    private int nextBit()
+    {
+        // xorshift64
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random >>> 63);
+    }
+}
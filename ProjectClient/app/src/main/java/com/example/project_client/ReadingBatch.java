@@ -0,0 +1,143 @@
+package com.example.project_client;
+
+/*
+ReadingBatch holds the consecutive readings of one batch frame, for servers sampling faster than
+they send frames. Timestamps are kept in a long[] and the values in one flat double[], sample by
+sample with one value per channel indexed by channel id, so a batch of any size is three arrays.
+One batch is reused for every frame on the WebSocket thread; the arrays only grow when a bigger
+batch than any before arrives, so unpacking a batch does not create objects either.
+ */
+public class ReadingBatch
+{
+    /*
+    Receives a whole batch at once. The batch is reused for the next frame, so it must not be kept.
+     */
+    public interface Visitor
+    {
+        void visit(ReadingBatch batch);
+    }
+
+    private final int channelCount;
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+
+    public ReadingBatch(int channelCount, int initialCapacity)
+    {
+        this.channelCount = channelCount;
+        timestamps = new long[initialCapacity];
+        values = new double[initialCapacity * channelCount];
+    }
+
+    /*
+    Empties the batch and makes room for the given number of samples.
+     */
+    public void reset(int capacity)
+    {
+        if (capacity > timestamps.length)
+        {
+            timestamps = new long[capacity];
+            values = new double[capacity * channelCount];
+        }
+        size = 0;
+    }
+
+    /*
+    Adds a reading at the end, growing the batch if needed.
+     */
+    public void add(long timestamp, double[] readingValues)
+    {
+        if (size == timestamps.length)
+        {
+            grow(Math.max(16, size * 2));
+        }
+        timestamps[size] = timestamp;
+        System.arraycopy(readingValues, 0, values, size * channelCount, channelCount);
+        size++;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getChannelCount()
+    {
+        return channelCount;
+    }
+
+    public long getTimestamp(int sample)
+    {
+        return timestamps[sample];
+    }
+
+    public double getValue(int sample, int channel)
+    {
+        return values[sample * channelCount + channel];
+    }
+
+    /*
+    Copies the values of one sample into out, indexed by channel id.
+     */
+    public void getValues(int sample, double[] out)
+    {
+        System.arraycopy(values, sample * channelCount, out, 0, channelCount);
+    }
+
+    public long getLatestTimestamp()
+    {
+        return timestamps[size - 1];
+    }
+
+    /*
+    Returns a copy that can be handed to another thread.
+     */
+    public ReadingBatch copy()
+    {
+        ReadingBatch copy = new ReadingBatch(channelCount, size);
+        System.arraycopy(timestamps, 0, copy.timestamps, 0, size);
+        System.arraycopy(values, 0, copy.values, 0, size * channelCount);
+        copy.size = size;
+        return copy;
+    }
+
+    /*
+    Drops the first count samples, keeping the rest in order.
+     */
+    void removeFirst(int count)
+    {
+        System.arraycopy(timestamps, count, timestamps, 0, size - count);
+        System.arraycopy(values, count * channelCount, values, 0, (size - count) * channelCount);
+        size -= count;
+    }
+
+    void setTimestamp(int sample, long timestamp)
+    {
+        timestamps[sample] = timestamp;
+    }
+
+    /*
+    Appends a sample and returns the offset of its values in the array from valueArray(),
+    for the decoder to fill in. The batch must have been reset() to a big enough capacity.
+     */
+    int appendSample(long timestamp)
+    {
+        timestamps[size] = timestamp;
+        return size++ * channelCount;
+    }
+
+    double[] valueArray()
+    {
+        return values;
+    }
+
+    private void grow(int capacity)
+    {
+        long[] newTimestamps = new long[capacity];
+        double[] newValues = new double[capacity * channelCount];
+        System.arraycopy(timestamps, 0, newTimestamps, 0, size);
+        System.arraycopy(values, 0, newValues, 0, size * channelCount);
+        timestamps = newTimestamps;
+        values = newValues;
+    }
+}
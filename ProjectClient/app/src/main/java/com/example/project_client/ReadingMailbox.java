@@ -0,0 +1,140 @@
+package com.example.project_client;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ReadingMailbox hands the newest reading from the WebSocket thread to the UI thread, which drains
+it at most once per display frame instead of handling a posted Runnable for every message.
+If several readings arrive within one frame only the newest is shown; the others are counted as
+conflated; the SensorService has already checked every one of them against the thresholds.
+
+It is a triple buffer: the writer fills its own slot and swaps it into the mailbox, the reader
+swaps the mailbox empty and hands its previous slot back, so neither side ever waits for the
+other and, once warmed up, no objects are created. One thread may post and one thread may drain.
+ */
+public class ReadingMailbox
+{
+    /*
+    Asks the UI thread to call drain() on its next frame, e.g. with a Choreographer frame callback.
+    Called from the posting thread, at most once per drain.
+     */
+    public interface DrainScheduler
+    {
+        void scheduleDrain();
+    }
+
+    /*
+    Receives the newest reading on the UI thread. values is only valid during the call.
+     */
+    public interface Receiver
+    {
+        void receive(long timestamp, double[] values);
+    }
+
+    private static final class Slot
+    {
+        long timestamp;
+        final double[] values;
+
+        Slot(int channelCount)
+        {
+            values = new double[channelCount];
+        }
+    }
+
+    private final int channelCount;
+    private final DrainScheduler scheduler;
+
+    // The newest reading not drained yet, or null
+    private final AtomicReference<Slot> latest = new AtomicReference<>();
+
+    // A slot the reader has finished with, for the writer to reuse
+    private final AtomicReference<Slot> free = new AtomicReference<>();
+
+    private Slot writeSlot;  // Only touched by the posting thread
+    private Slot readSlot;   // Only touched by the draining thread
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private final AtomicLong postedCount = new AtomicLong();
+    private final AtomicLong conflatedCount = new AtomicLong();
+
+    public ReadingMailbox(int channelCount, DrainScheduler scheduler)
+    {
+        this.channelCount = channelCount;
+        this.scheduler = scheduler;
+        writeSlot = new Slot(channelCount);
+        free.set(new Slot(channelCount));
+    }
+
+    /*
+    Replaces the reading in the mailbox with this one and makes sure a drain is scheduled.
+    values is copied.
+     */
+    public void post(long timestamp, double[] values)
+    {
+        Slot slot = writeSlot;
+        slot.timestamp = timestamp;
+        System.arraycopy(values, 0, slot.values, 0, channelCount);
+
+        Slot previous = latest.getAndSet(slot);
+        postedCount.incrementAndGet();
+        if (previous != null)
+        {
+            // The previous reading was never drained, write the next one over it
+            conflatedCount.incrementAndGet();
+            writeSlot = previous;
+        }
+        else
+        {
+            Slot spare = free.getAndSet(null);
+            // Only missing if the reader is between taking a slot and handing its old one back
+            writeSlot = spare != null ? spare : new Slot(channelCount);
+        }
+
+        if (drainScheduled.compareAndSet(false, true))
+        {
+            scheduler.scheduleDrain();
+        }
+    }
+
+    /*
+    Passes the newest reading, if there is one since the last drain, to the receiver.
+    Returns false if there was nothing new.
+     */
+    public boolean drain(Receiver receiver)
+    {
+        // Cleared first, so a reading posted while draining schedules the next drain
+        drainScheduled.set(false);
+        Slot slot = latest.getAndSet(null);
+        if (slot == null)
+        {
+            return false;
+        }
+        if (readSlot != null)
+        {
+            free.set(readSlot);
+        }
+        readSlot = slot;
+        receiver.receive(slot.timestamp, slot.values);
+        return true;
+    }
+
+    /*
+    Returns the number of readings posted.
+     */
+    public long getPostedCount()
+    {
+        return postedCount.get();
+    }
+
+    /*
+    Returns the number of readings that were replaced by a newer one before they could be shown.
+     */
+    public long getConflatedCount()
+    {
+        return conflatedCount.get();
+    }
+}
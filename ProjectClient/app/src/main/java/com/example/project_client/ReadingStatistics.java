@@ -0,0 +1,152 @@
+package com.example.project_client;
+
+import java.util.Arrays;
+
+/*
+ReadingStatistics keeps running StreamingStats of every channel for the main screen and the
+charts, updated with each reading as it arrives. Each channel's statistics are kept per window of
+WINDOW_MS, for the last WINDOW_COUNT windows, so a screen asks for e.g. the last hour and gets
+the windows it covers merged, with no scan of the readings; the oldest window is dropped as a new
+one starts.
+Readings are added on the WebSocket thread and read on the UI thread; both take the lock of this
+object, and readers get a merged copy they can keep.
+ */
+public class ReadingStatistics
+{
+    // Ten minute windows for the last six hours
+    public static final long WINDOW_MS = 10 * 60 * 1000;
+    public static final int WINDOW_COUNT = 36;
+
+    // The longest period the statistics cover
+    public static final long RETAINED_MS = WINDOW_COUNT * WINDOW_MS;
+
+    private final int channelCount;
+
+    // The window of each slot of the ring and its statistics per channel, guarded by this
+    private final long[] windowStarts = new long[WINDOW_COUNT];
+    private final StreamingStats[][] windows;
+
+    public ReadingStatistics()
+    {
+        this(ChannelRegistry.getDefault().size());
+    }
+
+    public ReadingStatistics(int channelCount)
+    {
+        this.channelCount = channelCount;
+        windows = new StreamingStats[WINDOW_COUNT][];
+        Arrays.fill(windowStarts, Long.MIN_VALUE);
+    }
+
+    public synchronized void add(long timestamp, double[] values)
+    {
+        StreamingStats[] window = windowOf(timestamp);
+        if (window == null)
+        {
+            return;
+        }
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            window[channel].add(timestamp, values[channel]);
+        }
+    }
+
+    /*
+    Adds every reading of the batch under one lock.
+     */
+    public synchronized void addBatch(ReadingBatch batch)
+    {
+        for (int sample = 0; sample < batch.size(); sample++)
+        {
+            long timestamp = batch.getTimestamp(sample);
+            StreamingStats[] window = windowOf(timestamp);
+            if (window == null)
+            {
+                continue;
+            }
+            for (int channel = 0; channel < channelCount; channel++)
+            {
+                window[channel].add(timestamp, batch.getValue(sample, channel));
+            }
+        }
+    }
+
+    /*
+    Returns the statistics of a channel's readings from the windows that end after the given
+    time, merged into one copy. The windows are whole, so it may include up to WINDOW_MS more.
+     */
+    public synchronized StreamingStats getStatistics(int channel, long sinceMillis)
+    {
+        StreamingStats merged = new StreamingStats();
+        for (int slot = 0; slot < WINDOW_COUNT; slot++)
+        {
+            if (windowStarts[slot] != Long.MIN_VALUE && windowStarts[slot] + WINDOW_MS > sinceMillis)
+            {
+                merged.merge(windows[slot][channel]);
+            }
+        }
+        return merged;
+    }
+
+    /*
+    Returns the statistics of a channel's readings over all the windows kept.
+     */
+    public StreamingStats getStatistics(int channel)
+    {
+        return getStatistics(channel, Long.MIN_VALUE);
+    }
+
+    /*
+    Returns the start of the oldest window that getStatistics(channel, sinceMillis) merges, i.e.
+    the time the statistics actually cover from, or Long.MIN_VALUE if no window is kept. It is
+    up to WINDOW_MS before sinceMillis, or later than it if the windows kept do not go back so far.
+     */
+    public synchronized long getCoveredSince(long sinceMillis)
+    {
+        long oldest = Long.MAX_VALUE;
+        for (int slot = 0; slot < WINDOW_COUNT; slot++)
+        {
+            if (windowStarts[slot] != Long.MIN_VALUE && windowStarts[slot] + WINDOW_MS > sinceMillis)
+            {
+                oldest = Math.min(oldest, windowStarts[slot]);
+            }
+        }
+        return oldest == Long.MAX_VALUE ? Long.MIN_VALUE : oldest;
+    }
+
+    public synchronized void clear()
+    {
+        Arrays.fill(windowStarts, Long.MIN_VALUE);
+        Arrays.fill(windows, null);
+    }
+
+    /*
+    Returns the statistics of the window the time falls in, starting a new window in its slot
+    if needed, or null if the time is older than the window now in that slot.
+     */
+    private StreamingStats[] windowOf(long timestamp)
+    {
+        long start = Math.floorDiv(timestamp, WINDOW_MS) * WINDOW_MS;
+        int slot = (int) Math.floorMod(Math.floorDiv(timestamp, WINDOW_MS), (long) WINDOW_COUNT);
+        if (windowStarts[slot] == start)
+        {
+            return windows[slot];
+        }
+        if (windowStarts[slot] != Long.MIN_VALUE && windowStarts[slot] > start)
+        {
+            return null;
+        }
+        StreamingStats[] window = windows[slot];
+        if (window == null)
+        {
+            window = new StreamingStats[channelCount];
+        }
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            window[channel] = new StreamingStats();
+        }
+        windows[slot] = window;
+        windowStarts[slot] = start;
+        return window;
+    }
+}
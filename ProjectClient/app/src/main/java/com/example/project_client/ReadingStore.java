@@ -0,0 +1,346 @@
+package com.example.project_client;
+
+/*
+ReadingStore keeps the most recent sensor readings in fixed-size ring buffers.
+Timestamps are kept in a long[] and each channel of the ChannelRegistry in its own float[]
+indexed by channel id, all allocated once when the store is created. When the store is full the oldest reading
+is overwritten, so memory use never grows no matter how long the app runs.
+Index 0 is always the oldest reading that is still kept, and size() - 1 the newest.
+Readings are expected to arrive in timestamp order.
+ */
+public class ReadingStore
+{
+    // One day of readings at the server's rate of one per second
+    public static final int DEFAULT_CAPACITY = 24 * 60 * 60;
+
+    /*
+    Receives readings from forEach(). values holds the reading's value for every channel,
+    indexed by channel id; the array is reused for every reading, so it must not be kept.
+     */
+    public interface ReadingVisitor
+    {
+        void visit(long timestamp, float[] values);
+    }
+
+    private final int capacity;
+    private final int channelCount;
+    private final long[] timestamps;
+    private final float[][] values;
+
+    // Passed to visitors, filled in for every reading
+    private final float[] visitValues;
+
+    // Total number of readings ever appended; the next slot to write is appendCount % capacity
+    private long appendCount = 0;
+
+    // Set by the first loadOlder()
+    private boolean historyLoaded;
+
+    public ReadingStore()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ReadingStore(int capacity)
+    {
+        this(ChannelRegistry.getDefault().size(), capacity);
+    }
+
+    public ReadingStore(int channelCount, int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.channelCount = channelCount;
+        timestamps = new long[capacity];
+        values = new float[channelCount][capacity];
+        visitValues = new float[channelCount];
+    }
+
+    /*
+    Adds a reading, overwriting the oldest one if the store is full.
+    values holds one value per channel, indexed by channel id.
+     */
+    public synchronized void append(long timestamp, double[] values)
+    {
+        int slot = (int) (appendCount % capacity);
+        timestamps[slot] = timestamp;
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            this.values[channel][slot] = (float) values[channel];
+        }
+        appendCount++;
+    }
+
+    /*
+    Adds every reading of a batch in order, taking the lock once for the whole batch.
+     */
+    public synchronized void appendBatch(ReadingBatch batch)
+    {
+        int count = Math.min(batch.getChannelCount(), channelCount);
+        for (int sample = 0; sample < batch.size(); sample++)
+        {
+            int slot = (int) (appendCount % capacity);
+            timestamps[slot] = batch.getTimestamp(sample);
+            for (int channel = 0; channel < channelCount; channel++)
+            {
+                // A channel the batch does not have is missing, not the value left in the slot
+                values[channel][slot] = channel < count ? (float) batch.getValue(sample, channel) : Float.NaN;
+            }
+            appendCount++;
+        }
+    }
+
+    /*
+    Returns the number of readings currently kept (at most the capacity).
+     */
+    public synchronized int size()
+    {
+        return (int) Math.min(appendCount, capacity);
+    }
+
+    public int capacity()
+    {
+        return capacity;
+    }
+
+    public int getChannelCount()
+    {
+        return channelCount;
+    }
+
+    /*
+    Returns how many readings were ever appended, including the ones already overwritten.
+    Screens compare this between updates to find out if anything new arrived.
+     */
+    public synchronized long getAppendCount()
+    {
+        return appendCount;
+    }
+
+    public synchronized long getTimestamp(int index)
+    {
+        return timestamps[slotOf(index)];
+    }
+
+    public synchronized float getValue(int channel, int index)
+    {
+        return values[channel][slotOf(index)];
+    }
+
+    /*
+    Returns the newest value of a channel, or NaN if the store is empty.
+     */
+    public synchronized float getLatestValue(int channel)
+    {
+        if (appendCount == 0)
+        {
+            return Float.NaN;
+        }
+        return values[channel][(int) ((appendCount - 1) % capacity)];
+    }
+
+    /*
+    Returns the newest timestamp, or 0 if the store is empty.
+     */
+    public synchronized long getLatestTimestamp()
+    {
+        if (appendCount == 0)
+        {
+            return 0;
+        }
+        return timestamps[(int) ((appendCount - 1) % capacity)];
+    }
+
+    /*
+    Returns the index of the first reading at or after the given time,
+    or size() if every reading is older. Binary search, O(log n).
+     */
+    public synchronized int indexAtOrAfter(long timestamp)
+    {
+        int low = 0;
+        int high = size();
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (timestamps[slotOf(middle)] < timestamp)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+    Passes every reading with fromTimestamp <= timestamp < toTimestamp to the visitor, oldest first.
+    The visitor reads straight from the ring buffers while the store is locked,
+    so it should be quick and must not append to this store.
+     */
+    public synchronized void forEach(long fromTimestamp, long toTimestamp, ReadingVisitor visitor)
+    {
+        int size = size();
+        for (int index = indexAtOrAfter(fromTimestamp); index < size; index++)
+        {
+            int slot = slotOf(index);
+            if (timestamps[slot] >= toTimestamp)
+            {
+                return;
+            }
+            visit(slot, visitor);
+        }
+    }
+
+    /*
+    Passes the readings appended after appendCountSeen (a value earlier returned by
+    getAppendCount() or this method) to the visitor, skipping any older than fromTimestamp
+    and any that were already overwritten. Returns the new append count to pass next time,
+    so a reader can pick up new readings without missing or repeating any.
+     */
+    public synchronized long forEachAppendedSince(long appendCountSeen, long fromTimestamp, ReadingVisitor visitor)
+    {
+        int size = size();
+        long newReadings = Math.min(appendCount - appendCountSeen, size);
+        int index = Math.max(size - (int) newReadings, indexAtOrAfter(fromTimestamp));
+        for (; index < size; index++)
+        {
+            int slot = slotOf(index);
+            visit(slot, visitor);
+        }
+        return appendCount;
+    }
+
+    /*
+    Loads the readings of the on-disk history from fromTimestamp on in front of the readings
+    already kept, e.g. at startup while the first live readings may already be arriving.
+    Only the first call does anything, so a relaunch of the screens while the session kept running
+    does not load the history again. The history is read into a scratch store without the lock,
+    so live readings keep arriving meanwhile, and spliced in front under a short lock; only
+    readings older than the oldest kept one are used, so nothing is kept twice.
+    The append count goes up by the number loaded, so readers that track getAppendCount() take
+    them for new readings: this is meant for before any screen reads the store.
+    Returns the number of readings loaded.
+     */
+    public int loadOlder(HistoryLog historyLog, long fromTimestamp)
+    {
+        int room;
+        long untilTimestamp;
+        synchronized (this)
+        {
+            if (historyLoaded)
+            {
+                return 0;
+            }
+            historyLoaded = true;
+            int kept = size();
+            room = capacity - kept;
+            if (room == 0)
+            {
+                return 0;  // Already full of newer readings
+            }
+            untilTimestamp = kept > 0 ? timestamps[slotOf(0)] : Long.MAX_VALUE;
+        }
+
+        // The newest readings of the history that fit, read without holding up the live ones
+        ReadingStore scratch = new ReadingStore(channelCount, room);
+        historyLog.forEach(fromTimestamp, untilTimestamp, scratch::put);
+
+        synchronized (this)
+        {
+            return splice(scratch);
+        }
+    }
+
+    /*
+    Puts the readings of the scratch store in front of the ones kept, as many of the newest as
+    there is room for, skipping any not older than the oldest kept one. The kept readings move up
+    to make room, so the ring stays in order by append count. Called under the lock.
+     */
+    private int splice(ReadingStore scratch)
+    {
+        int kept = size();
+        int usable = scratch.size();
+        if (kept > 0)
+        {
+            usable = scratch.indexAtOrAfter(timestamps[slotOf(0)]);
+        }
+        int loaded = Math.min(usable, capacity - kept);
+        if (loaded == 0)
+        {
+            return 0;
+        }
+
+        long oldest = appendCount - kept;
+        for (int index = kept - 1; index >= 0; index--)
+        {
+            int from = (int) ((oldest + index) % capacity);
+            int to = (int) ((oldest + index + loaded) % capacity);
+            timestamps[to] = timestamps[from];
+            for (int channel = 0; channel < channelCount; channel++)
+            {
+                values[channel][to] = values[channel][from];
+            }
+        }
+        for (int index = 0; index < loaded; index++)
+        {
+            int from = scratch.slotOf(usable - loaded + index);
+            int to = (int) ((oldest + index) % capacity);
+            timestamps[to] = scratch.timestamps[from];
+            for (int channel = 0; channel < channelCount; channel++)
+            {
+                values[channel][to] = scratch.values[channel][from];
+            }
+        }
+        appendCount += loaded;
+        return loaded;
+    }
+
+    /*
+    Adds a reading of the history to a scratch store, which no other thread sees.
+     */
+    private void put(long timestamp, float[] loadedValues)
+    {
+        int slot = (int) (appendCount % capacity);
+        timestamps[slot] = timestamp;
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            values[channel][slot] = channel < loadedValues.length ? loadedValues[channel] : Float.NaN;
+        }
+        appendCount++;
+    }
+
+    /*
+    Removes every reading. The buffers are kept and reused.
+     */
+    public synchronized void clear()
+    {
+        appendCount = 0;
+    }
+
+    private void visit(int slot, ReadingVisitor visitor)
+    {
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            visitValues[channel] = values[channel][slot];
+        }
+        visitor.visit(timestamps[slot], visitValues);
+    }
+
+    /*
+    Converts an index (0 = oldest kept reading) into a position in the ring buffers.
+     */
+    private int slotOf(int index)
+    {
+        int size = size();
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return (int) ((appendCount - size + index) % capacity);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.project_client;
+
+import java.util.Random;
+
+/*
+ReconnectBackoff decides how long to wait before each attempt to reconnect to the server.
+The ceiling doubles with every failed attempt, from the base delay up to the maximum, and the
+actual delay is picked at random between half the ceiling and the ceiling ("equal jitter").
+The random half matters when the Pi restarts: every phone loses its session at the same moment,
+and without it they would all retry in lockstep, hitting the server together on every attempt.
+The fixed half keeps a single client from ever retrying in a tight loop.
+ */
+public class ReconnectBackoff
+{
+    public static final long DEFAULT_BASE_DELAY_MS = 500;
+    public static final long DEFAULT_MAX_DELAY_MS = 30_000;
+
+    private final long baseDelay;
+    private final long maxDelay;
+    private final Random random;
+
+    // Failed attempts since the last successful connection
+    private int attempts;
+
+    public ReconnectBackoff()
+    {
+        this(DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS, new Random());
+    }
+
+    public ReconnectBackoff(long baseDelay, long maxDelay, Random random)
+    {
+        if (baseDelay < 1 || maxDelay < baseDelay)
+        {
+            throw new IllegalArgumentException("Invalid delays: " + baseDelay + ", " + maxDelay);
+        }
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.random = random;
+    }
+
+    /*
+    Returns the delay in milliseconds before the next attempt and counts the attempt.
+     */
+    public synchronized long nextDelay()
+    {
+        long ceiling = getCeiling(attempts);
+        if (attempts < Integer.MAX_VALUE)
+        {
+            attempts++;
+        }
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * (ceiling - half + 1));
+    }
+
+    /*
+    Returns the longest delay before the given attempt (counting from 0).
+     */
+    public long getCeiling(int attempt)
+    {
+        // Past 2^30 times the base delay it is far beyond any sensible maximum
+        return attempt >= 30 ? maxDelay : Math.min(maxDelay, baseDelay << attempt);
+    }
+
+    public synchronized int getAttempts()
+    {
+        return attempts;
+    }
+
+    /*
+    Starts over from the base delay, after a successful connection.
+     */
+    public synchronized void reset()
+    {
+        attempts = 0;
+    }
+}
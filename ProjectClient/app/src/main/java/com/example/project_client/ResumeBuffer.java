@@ -0,0 +1,378 @@
+package com.example.project_client;
+
+import java.util.Arrays;
+
+/*
+ResumeBuffer keeps the readings of a session in order across a reconnect.
+
+It remembers the server timestamp of the newest reading passed on. After a reconnect the handler
+asks the server to resume from that timestamp, and live frames are held back until the server's
+backfill frame arrives (or the handler gives up waiting), so the missed readings are passed on
+before the newer live ones. Readings the client already has are dropped by their server
+timestamp, so overlapping backfill and live frames do not produce duplicates.
+
+Readings are passed on with client timestamps like live frames. Backfilled readings did not
+arrive when they were taken, so their client time is estimated from the server timestamp and the
+clock offset between the server and the client seen on the last live frame.
+Frames without a server timestamp (older servers) are passed straight on.
+
+Batch frames are passed on as a whole to the batch sink, with their server timestamps rewritten
+to client time in place. While resuming their samples are held like single live frames.
+
+Frames are handed in on the WebSocket thread, and the sinks are only called on it, never under the
+lock of this object: the sinks may take other locks (sending an LED command takes the handler's),
+while the handler calls finishResume() and reset() from other threads.
+ */
+public class ResumeBuffer
+{
+    // Live frames held at most while waiting for a backfill, a few minutes at one per second
+    public static final int MAX_HELD_FRAMES = 256;
+
+    // Returned by admitLive() for a reading that is not passed on
+    private static final long DROPPED = Long.MIN_VALUE;
+
+    private final SensorFrameDecoder.FrameVisitor sink;
+    private final ReadingBatch.Visitor batchSink;
+
+    // Values of one batch sample, only used on the WebSocket thread
+    private double[] sampleValues;
+
+    private long lastServerTimestamp = SensorFrameDecoder.NO_TIMESTAMP;
+    private long lastClientTimestamp = Long.MIN_VALUE;
+
+    // Client time minus server time, from the last live frame
+    private long clockOffset;
+
+    private boolean resuming;
+
+    // Live frames held while resuming
+    private final Readings held = new Readings(MAX_HELD_FRAMES);
+
+    // Held frames released by finishResume(), waiting to be passed on by the WebSocket thread
+    private Readings released = new Readings(MAX_HELD_FRAMES);
+
+    // The released frames of the last pass, reused for the next one; only taken under the lock
+    private Readings spare = new Readings(MAX_HELD_FRAMES);
+
+    public ResumeBuffer(SensorFrameDecoder.FrameVisitor sink)
+    {
+        this(sink, null);
+    }
+
+    /*
+    Without a batch sink the samples of a batch are passed to the sink one by one.
+     */
+    public ResumeBuffer(SensorFrameDecoder.FrameVisitor sink, ReadingBatch.Visitor batchSink)
+    {
+        this.sink = sink;
+        this.batchSink = batchSink;
+    }
+
+    /*
+    Starts holding live frames until finishResume(). Returns false, and does not start, if no
+    reading with a server timestamp has been passed on yet, since there is nothing to resume from.
+     */
+    public synchronized boolean beginResume()
+    {
+        if (lastServerTimestamp == SensorFrameDecoder.NO_TIMESTAMP)
+        {
+            return false;
+        }
+        resuming = true;
+        return true;
+    }
+
+    public synchronized boolean isResuming()
+    {
+        return resuming;
+    }
+
+    /*
+    Returns the server timestamp of the newest reading passed on, to resume from,
+    or SensorFrameDecoder.NO_TIMESTAMP.
+     */
+    public synchronized long getResumeTimestamp()
+    {
+        return lastServerTimestamp;
+    }
+
+    /*
+    Handles a live frame that arrived at clientTimestamp.
+     */
+    public void onLive(long clientTimestamp, long serverTimestamp, double[] values)
+    {
+        Readings toPassOn;
+        long passOnTimestamp = DROPPED;
+        synchronized (this)
+        {
+            if (resuming)
+            {
+                hold(clientTimestamp, serverTimestamp, values);
+            }
+            else
+            {
+                passOnTimestamp = admitLive(clientTimestamp, serverTimestamp);
+            }
+            toPassOn = takeReleased();
+        }
+        passOn(toPassOn);
+        if (passOnTimestamp != DROPPED)
+        {
+            sink.visit(passOnTimestamp, values);
+        }
+    }
+
+    /*
+    Handles a live batch frame that arrived at clientTimestamp, with server timestamps.
+    The newest sample is taken to have arrived at clientTimestamp and the others before it by
+    their difference in server time. The batch is changed in place.
+     */
+    public void onLiveBatch(long clientTimestamp, ReadingBatch batch)
+    {
+        long newestServerTimestamp = batch.getLatestTimestamp();
+        Readings toPassOn;
+        synchronized (this)
+        {
+            if (resuming)
+            {
+                double[] values = sampleValues(batch.getChannelCount());
+                for (int sample = 0; sample < batch.size(); sample++)
+                {
+                    batch.getValues(sample, values);
+                    long serverTimestamp = batch.getTimestamp(sample);
+                    hold(clientTimestamp - (newestServerTimestamp - serverTimestamp), serverTimestamp, values);
+                }
+                batch.removeFirst(batch.size());
+            }
+            else
+            {
+                // Drop the samples already passed on from a backfill
+                int seen = 0;
+                while (seen < batch.size() && batch.getTimestamp(seen) <= lastServerTimestamp)
+                {
+                    seen++;
+                }
+                batch.removeFirst(seen);
+
+                if (batch.size() > 0)
+                {
+                    clockOffset = clientTimestamp - newestServerTimestamp;
+                    lastServerTimestamp = newestServerTimestamp;
+                    for (int sample = 0; sample < batch.size(); sample++)
+                    {
+                        long clientSampleTimestamp = Math.max(batch.getTimestamp(sample) + clockOffset, lastClientTimestamp + 1);
+                        batch.setTimestamp(sample, clientSampleTimestamp);
+                        lastClientTimestamp = clientSampleTimestamp;
+                    }
+                }
+            }
+            toPassOn = takeReleased();
+        }
+        passOn(toPassOn);
+        if (batch.size() == 0)
+        {
+            return;
+        }
+
+        if (batchSink != null)
+        {
+            batchSink.visit(batch);
+            return;
+        }
+        double[] values = sampleValues(batch.getChannelCount());
+        for (int sample = 0; sample < batch.size(); sample++)
+        {
+            batch.getValues(sample, values);
+            sink.visit(batch.getTimestamp(sample), values);
+        }
+    }
+
+    /*
+    Handles one reading of a backfill frame.
+     */
+    public void onBackfill(long serverTimestamp, double[] values)
+    {
+        Readings toPassOn;
+        long clientTimestamp = Long.MIN_VALUE;
+        synchronized (this)
+        {
+            toPassOn = takeReleased();
+            if (serverTimestamp > lastServerTimestamp)
+            {
+                // Keep the client timestamps increasing even if the clocks drifted apart meanwhile
+                clientTimestamp = Math.max(serverTimestamp + clockOffset, lastClientTimestamp + 1);
+                lastServerTimestamp = serverTimestamp;
+                lastClientTimestamp = clientTimestamp;
+            }
+        }
+        passOn(toPassOn);
+        if (clientTimestamp != Long.MIN_VALUE)
+        {
+            sink.visit(clientTimestamp, values);
+        }
+    }
+
+    /*
+    Stops holding live frames and releases the ones that were held. They are passed on by the
+    next call of the WebSocket thread, flush() or the next frame, not by the thread calling this,
+    so it can be called from a timer or the main thread without running the sinks there.
+     */
+    public synchronized void finishResume()
+    {
+        resuming = false;
+        for (int i = 0; i < held.count; i++)
+        {
+            long clientTimestamp = admitLive(held.clientTimestamps[i], held.serverTimestamps[i]);
+            if (clientTimestamp != DROPPED)
+            {
+                released.add(clientTimestamp, held.serverTimestamps[i], held.values[i]);
+            }
+        }
+        held.count = 0;
+    }
+
+    /*
+    Passes on the frames released by finishResume(). Called on the WebSocket thread.
+     */
+    public void flush()
+    {
+        Readings toPassOn;
+        synchronized (this)
+        {
+            toPassOn = takeReleased();
+        }
+        passOn(toPassOn);
+    }
+
+    /*
+    Forgets the session, for a connection to a different server.
+     */
+    public synchronized void reset()
+    {
+        resuming = false;
+        held.count = 0;
+        released.count = 0;
+        lastServerTimestamp = SensorFrameDecoder.NO_TIMESTAMP;
+        lastClientTimestamp = Long.MIN_VALUE;
+        clockOffset = 0;
+    }
+
+    /*
+    Decides whether a live reading is passed on, and moves the session to it if so. Returns the
+    client timestamp to pass it on with, or DROPPED for a reading already passed on from a
+    backfill. The timestamp is kept after the last one passed on, as for backfilled readings,
+    since a backfill mapped by the clock offset can run past the arrival time of a live frame.
+    Called under the lock.
+     */
+    private long admitLive(long clientTimestamp, long serverTimestamp)
+    {
+        if (serverTimestamp != SensorFrameDecoder.NO_TIMESTAMP)
+        {
+            if (serverTimestamp <= lastServerTimestamp)
+            {
+                return DROPPED;
+            }
+            lastServerTimestamp = serverTimestamp;
+            clockOffset = clientTimestamp - serverTimestamp;
+        }
+        lastClientTimestamp = Math.max(clientTimestamp, lastClientTimestamp + 1);
+        return lastClientTimestamp;
+    }
+
+    /*
+    Called under the lock.
+     */
+    private void hold(long clientTimestamp, long serverTimestamp, double[] values)
+    {
+        held.add(clientTimestamp, serverTimestamp, values);
+        if (held.count == MAX_HELD_FRAMES)
+        {
+            // The backfill is not coming, stop holding up the live data
+            finishResume();
+        }
+    }
+
+    /*
+    Takes the released frames to pass on after the lock is let go, or null if there are none.
+    Called under the lock; the frames are older than anything the caller passes on after them.
+     */
+    private Readings takeReleased()
+    {
+        if (released.count == 0)
+        {
+            return null;
+        }
+        Readings taken = released;
+        released = spare != null ? spare : new Readings(MAX_HELD_FRAMES);
+        spare = null;
+        return taken;
+    }
+
+    /*
+    Passes on frames taken by takeReleased(), outside the lock, so a sink that takes other locks
+    (e.g. the handler's, to send a command) cannot deadlock with a thread holding one of those
+    and calling in here.
+     */
+    private void passOn(Readings readings)
+    {
+        if (readings == null)
+        {
+            return;
+        }
+        for (int i = 0; i < readings.count; i++)
+        {
+            sink.visit(readings.clientTimestamps[i], readings.values[i]);
+        }
+        readings.count = 0;
+        synchronized (this)
+        {
+            spare = readings;
+        }
+    }
+
+    private double[] sampleValues(int channelCount)
+    {
+        if (sampleValues == null || sampleValues.length != channelCount)
+        {
+            sampleValues = new double[channelCount];
+        }
+        return sampleValues;
+    }
+
+    /*
+    Readings with their client and server timestamps, the values copied into reused arrays.
+     */
+    private static final class Readings
+    {
+        long[] clientTimestamps;
+        long[] serverTimestamps;
+        double[][] values;
+        int count;
+
+        Readings(int capacity)
+        {
+            clientTimestamps = new long[capacity];
+            serverTimestamps = new long[capacity];
+            values = new double[capacity][];
+        }
+
+        void add(long clientTimestamp, long serverTimestamp, double[] readingValues)
+        {
+            if (count == clientTimestamps.length)
+            {
+                // Only if frames were released again before the last ones were passed on
+                clientTimestamps = Arrays.copyOf(clientTimestamps, 2 * count);
+                serverTimestamps = Arrays.copyOf(serverTimestamps, 2 * count);
+                values = Arrays.copyOf(values, 2 * count);
+            }
+            int slot = count++;
+            clientTimestamps[slot] = clientTimestamp;
+            serverTimestamps[slot] = serverTimestamp;
+            if (values[slot] == null || values[slot].length != readingValues.length)
+            {
+                values[slot] = new double[readingValues.length];
+            }
+            System.arraycopy(readingValues, 0, values[slot], 0, readingValues.length);
+        }
+    }
+}
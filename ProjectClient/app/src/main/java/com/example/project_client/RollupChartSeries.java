@@ -0,0 +1,75 @@
+package com.example.project_client;
+
+/*
+RollupChartSeries draws one channel from a tier of a RollupStore, for time ranges too long to
+draw from the raw readings. Every bucket in the range becomes one point (its mean) in LTTB mode,
+or two points (its minimum and maximum) in MIN_MAX mode. A rollup bucket does not know when its
+minimum and maximum happened, so they are drawn at the start and the middle of the bucket.
+
+The range has at most a few hundred buckets, so the points are simply rebuilt when the store
+changes; ChartSeries still works out which of them changed.
+Not thread safe, it is meant to be updated from the UI thread.
+ */
+public class RollupChartSeries extends ChartSeries
+{
+    private final RollupStore store;
+    private final RollupStore.Tier tier;
+    private final int channel;
+    private final long rangeLength;
+
+    private long updateCountSeen = -1;
+
+    private final RollupStore.RollupVisitor pointVisitor = this::addBucket;
+
+    /*
+    Creates a series showing the last rangeLength milliseconds of the given tier.
+     */
+    public RollupChartSeries(RollupStore store, RollupStore.Tier tier, int channel, Mode mode, long rangeLength)
+    {
+        // One bucket more than the range, because the range does not start on a bucket boundary
+        super(mode, 2 * (int) Math.min(rangeLength / tier.width + 1, tier.capacity));
+        this.store = store;
+        this.tier = tier;
+        this.channel = channel;
+        this.rangeLength = rangeLength;
+    }
+
+    @Override
+    public boolean update()
+    {
+        long updateCount = store.getUpdateCount();
+        if (updateCount == updateCountSeen)
+        {
+            keepPoints();
+            return false;
+        }
+        updateCountSeen = updateCount;
+
+        long latest = store.getLatestTimestamp();
+        long rangeStart = Math.floorDiv(latest - rangeLength, tier.width) * tier.width + tier.width;
+        beginPoints();
+        store.forEach(tier, rangeStart, latest + 1, pointVisitor);
+        return endPoints(rangeStart);
+    }
+
+    public RollupStore.Tier getTier()
+    {
+        return tier;
+    }
+
+    private void addBucket(long bucketStart, int count, float[] min, float[] max, float[] mean, float[] last)
+    {
+        if (getMode() == Mode.LTTB)
+        {
+            addPoint(bucketStart + tier.width / 2, mean[channel]);
+        }
+        else
+        {
+            addPoint(bucketStart, min[channel]);
+            if (max[channel] != min[channel])
+            {
+                addPoint(bucketStart + tier.width / 2, max[channel]);
+            }
+        }
+    }
+}
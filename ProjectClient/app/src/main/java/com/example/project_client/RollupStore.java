@@ -0,0 +1,302 @@
+package com.example.project_client;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+RollupStore keeps summaries of the readings at three resolutions (1 minute, 1 hour and 1 day)
+next to the raw HistoryLog, so a chart covering days or weeks reads a few hundred buckets
+instead of every raw reading.
+
+Each tier is a ring of fixed-size buckets holding the count and, for every channel of the
+ChannelRegistry, the minimum, maximum, sum (for the mean) and last value. Every reading updates
+the current bucket of each tier in place, so nothing is ever recomputed in bulk. When a tier
+wraps around, its oldest bucket is reused for the new one.
+
+The buckets live in a ByteBuffer: a memory-mapped file when the store is opened on a file, so
+the rollups survive restarts together with the history, or a heap buffer otherwise.
+ */
+public class RollupStore implements Closeable
+{
+    /*
+    The rollup resolutions, with how many buckets of each are kept.
+     */
+    public enum Tier
+    {
+        MINUTE(60_000L, 24 * 60),          // One day of minutes
+        HOUR(60 * 60_000L, 31 * 24),       // One month of hours
+        DAY(24 * 60 * 60_000L, 366);       // One year of days
+
+        public final long width;
+        public final int capacity;
+
+        Tier(long width, int capacity)
+        {
+            this.width = width;
+            this.capacity = capacity;
+        }
+    }
+
+    /*
+    Receives buckets from forEach(). The arrays are indexed by channel and reused for every
+    bucket, so they must not be kept after visit() returns.
+     */
+    public interface RollupVisitor
+    {
+        void visit(long bucketStart, int count, float[] min, float[] max, float[] mean, float[] last);
+    }
+
+    // Bucket layout: start time, count, then min, max, last (floats) and sum (double) per channel
+    private static final int BUCKET_HEADER_SIZE = 8 + 4 + 4;
+    private static final int CHANNEL_SIZE = 4 + 4 + 4 + 8;
+
+    private final int channelCount;
+    private final int bucketSize;
+    private final int[] tierOffsets = new int[Tier.values().length];
+    private final int totalSize;
+
+    private final ByteBuffer buffer;
+    private long updateCount = 0;
+    private long latestTimestamp = 0;
+
+    // Reused by forEach() to hand bucket values to the visitor
+    private final float[] visitMin;
+    private final float[] visitMax;
+    private final float[] visitMean;
+    private final float[] visitLast;
+
+    /*
+    Creates a store for the default channels that only lives in memory.
+     */
+    public RollupStore()
+    {
+        this(ChannelRegistry.getDefault().size());
+    }
+
+    /*
+    Creates a store that only lives in memory.
+     */
+    public RollupStore(int channelCount)
+    {
+        this.channelCount = channelCount;
+        bucketSize = BUCKET_HEADER_SIZE + channelCount * CHANNEL_SIZE;
+        totalSize = layoutTiers();
+        visitMin = new float[channelCount];
+        visitMax = new float[channelCount];
+        visitMean = new float[channelCount];
+        visitLast = new float[channelCount];
+        buffer = ByteBuffer.allocate(totalSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+    Opens (or creates) a store for the default channels backed by a memory-mapped file.
+     */
+    public RollupStore(File file) throws IOException
+    {
+        this(file, ChannelRegistry.getDefault().size());
+    }
+
+    /*
+    Opens (or creates) a store backed by a memory-mapped file.
+     */
+    public RollupStore(File file, int channelCount) throws IOException
+    {
+        this.channelCount = channelCount;
+        bucketSize = BUCKET_HEADER_SIZE + channelCount * CHANNEL_SIZE;
+        totalSize = layoutTiers();
+        visitMin = new float[channelCount];
+        visitMax = new float[channelCount];
+        visitMean = new float[channelCount];
+        visitLast = new float[channelCount];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+        {
+            if (randomAccessFile.length() != totalSize)
+            {
+                // New file, or written with a different layout or channel count; start over
+                randomAccessFile.setLength(0);
+                randomAccessFile.setLength(totalSize);
+            }
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, totalSize)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        for (Tier tier : Tier.values())
+        {
+            for (int slot = 0; slot < tier.capacity; slot++)
+            {
+                latestTimestamp = Math.max(latestTimestamp, buffer.getLong(bucketOffset(tier, slot)));
+            }
+        }
+    }
+
+    /*
+    Adds a reading, with one value per channel indexed by channel id, to the current bucket of
+    every tier. O(tiers * channels), no allocation.
+     */
+    public synchronized void add(long timestamp, double[] values)
+    {
+        for (Tier tier : Tier.values())
+        {
+            long bucketStart = Math.floorDiv(timestamp, tier.width) * tier.width;
+            int offset = bucketOffset(tier, slotOf(tier, bucketStart));
+
+            int count;
+            if (buffer.getLong(offset) != bucketStart)
+            {
+                // First reading of a new bucket, reusing the slot of the oldest one
+                buffer.putLong(offset, bucketStart);
+                count = 0;
+            }
+            else
+            {
+                count = buffer.getInt(offset + 8);
+            }
+
+            for (int channel = 0; channel < channelCount; channel++)
+            {
+                addToChannel(offset, channel, count, (float) values[channel]);
+            }
+            buffer.putInt(offset + 8, count + 1);
+        }
+        latestTimestamp = Math.max(latestTimestamp, timestamp);
+        updateCount++;
+    }
+
+    /*
+    Passes the buckets of a tier that start in fromTimestamp <= start < toTimestamp to the
+    visitor, oldest first. Empty buckets are skipped. Reads at most tier.capacity buckets,
+    however much raw history there is.
+     */
+    public synchronized void forEach(Tier tier, long fromTimestamp, long toTimestamp, RollupVisitor visitor)
+    {
+        long newestBucket = Math.floorDiv(latestTimestamp, tier.width);
+        long firstBucket = Math.max(Math.floorDiv(fromTimestamp, tier.width), newestBucket - tier.capacity + 1);
+        long lastBucket = Math.min(Math.floorDiv(toTimestamp - 1, tier.width), newestBucket);
+
+        for (long bucket = firstBucket; bucket <= lastBucket; bucket++)
+        {
+            long bucketStart = bucket * tier.width;
+            if (bucketStart < fromTimestamp)
+            {
+                continue;
+            }
+            int offset = bucketOffset(tier, slotOf(tier, bucketStart));
+            int count = buffer.getInt(offset + 8);
+            if (buffer.getLong(offset) != bucketStart || count == 0)
+            {
+                continue;
+            }
+
+            for (int channel = 0; channel < channelCount; channel++)
+            {
+                int channelOffset = offset + BUCKET_HEADER_SIZE + channel * CHANNEL_SIZE;
+                visitMin[channel] = buffer.getFloat(channelOffset);
+                visitMax[channel] = buffer.getFloat(channelOffset + 4);
+                visitLast[channel] = buffer.getFloat(channelOffset + 8);
+                visitMean[channel] = (float) (buffer.getDouble(channelOffset + 12) / count);
+            }
+            visitor.visit(bucketStart, count, visitMin, visitMax, visitMean, visitLast);
+        }
+    }
+
+    /*
+    Returns how many readings were added since the store was opened.
+    Charts compare this between updates to find out if anything changed.
+     */
+    public synchronized long getUpdateCount()
+    {
+        return updateCount;
+    }
+
+    public synchronized long getLatestTimestamp()
+    {
+        return latestTimestamp;
+    }
+
+    /*
+    Picks the coarsest tier that still has at least minBuckets buckets in a time range of the
+    given length, or null if even minutes are too coarse and the raw readings should be used.
+     */
+    public static Tier selectTier(long rangeLength, int minBuckets)
+    {
+        Tier[] tiers = Tier.values();
+        for (int i = tiers.length - 1; i >= 0; i--)
+        {
+            if (rangeLength / tiers[i].width >= minBuckets)
+            {
+                return tiers[i];
+            }
+        }
+        return null;
+    }
+
+    /*
+    Flushes the buckets to disk if the store is backed by a file.
+     */
+    public synchronized void commit()
+    {
+        if (buffer instanceof MappedByteBuffer)
+        {
+            ((MappedByteBuffer) buffer).force();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        commit();
+    }
+
+    private void addToChannel(int bucketOffset, int channel, int count, float value)
+    {
+        int offset = bucketOffset + BUCKET_HEADER_SIZE + channel * CHANNEL_SIZE;
+        if (count == 0)
+        {
+            buffer.putFloat(offset, value);
+            buffer.putFloat(offset + 4, value);
+            buffer.putDouble(offset + 12, value);
+        }
+        else
+        {
+            if (value < buffer.getFloat(offset))
+            {
+                buffer.putFloat(offset, value);
+            }
+            if (value > buffer.getFloat(offset + 4))
+            {
+                buffer.putFloat(offset + 4, value);
+            }
+            buffer.putDouble(offset + 12, buffer.getDouble(offset + 12) + value);
+        }
+        buffer.putFloat(offset + 8, value);
+    }
+
+    /*
+    Places the tiers one after the other in the buffer. Returns the total size.
+     */
+    private int layoutTiers()
+    {
+        int offset = 0;
+        for (Tier tier : Tier.values())
+        {
+            tierOffsets[tier.ordinal()] = offset;
+            offset += tier.capacity * bucketSize;
+        }
+        return offset;
+    }
+
+    private static int slotOf(Tier tier, long bucketStart)
+    {
+        return (int) Math.floorMod(bucketStart / tier.width, (long) tier.capacity);
+    }
+
+    private int bucketOffset(Tier tier, int slot)
+    {
+        return tierOffsets[tier.ordinal()] + slot * bucketSize;
+    }
+}
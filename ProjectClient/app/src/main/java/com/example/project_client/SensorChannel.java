@@ -0,0 +1,84 @@
+package com.example.project_client;
+
+/*
+SensorChannel describes one value the Raspberry Pi sends, e.g. temperature.
+The id is the channel's index in its ChannelRegistry and in every array of values
+(decoded frames, ReadingStore columns, history records, threshold rules, charts).
+ */
+public final class SensorChannel
+{
+    private final int id;
+    private final String key;
+    private final String name;
+    private final String unit;
+    private final String settingKey;
+    private final String commandPrefix;
+    private final String defaultMin;
+    private final String defaultMax;
+    private final boolean required;
+
+    /*
+    key is the field name in the server's JSON frames, settingKey the suffix of the channel's
+    settings (e.g. "temp" for saved_min_temp) and commandPrefix the prefix of the threshold
+    messages sent to the Pi (e.g. "TEMP" for TEMP_IN_THRESHOLD). A frame without a required
+    channel is rejected; an optional channel that is missing is stored as NaN.
+     */
+    public SensorChannel(int id, String key, String name, String unit, String settingKey, String commandPrefix,
+                         String defaultMin, String defaultMax, boolean required)
+    {
+        this.id = id;
+        this.key = key;
+        this.name = name;
+        this.unit = unit;
+        this.settingKey = settingKey;
+        this.commandPrefix = commandPrefix;
+        this.defaultMin = defaultMin;
+        this.defaultMax = defaultMax;
+        this.required = required;
+    }
+
+    public int getId()
+    {
+        return id;
+    }
+
+    public String getKey()
+    {
+        return key;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getUnit()
+    {
+        return unit;
+    }
+
+    public String getSettingKey()
+    {
+        return settingKey;
+    }
+
+    public String getCommandPrefix()
+    {
+        return commandPrefix;
+    }
+
+    public String getDefaultMin()
+    {
+        return defaultMin;
+    }
+
+    public String getDefaultMax()
+    {
+        return defaultMax;
+    }
+
+    public boolean isRequired()
+    {
+        return required;
+    }
+}
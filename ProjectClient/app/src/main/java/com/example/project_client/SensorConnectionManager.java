@@ -0,0 +1,243 @@
+package com.example.project_client;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+SensorConnectionManager keeps one WebSocket session to the Raspberry Pi for the whole app.
+Activities register themselves as listeners instead of creating their own WebSocketClientHandler,
+so moving between screens does not open a second connection or pay for a new handshake.
+Every event from the server is passed on to all registered listeners, and every reading
+is also kept in a shared ReadingStore so screens can show data that arrived before they opened,
+added to the running ReadingStatistics (means, moving averages, percentiles) of every channel,
+and written to the on-disk HistoryLog and RollupStore once they have been opened.
+ */
+public class SensorConnectionManager implements WebSocketClientHandler.MessageListener
+{
+    private static SensorConnectionManager instance;
+
+    private final WebSocketClientHandler webSocketClientHandler;
+    private final ReadingStore readingStore = new ReadingStore();
+    private final ReadingStatistics readingStatistics = new ReadingStatistics();
+    private volatile HistoryLog historyLog;
+    private volatile RollupStore rollupStore;
+
+    // Listeners are added and removed on the UI thread but notified from the WebSocket thread
+    private final CopyOnWriteArrayList<WebSocketClientHandler.MessageListener> listeners = new CopyOnWriteArrayList<>();
+
+    private String serverUrl;
+
+    // Values of one reading of a batch, only used on the WebSocket thread
+    private final double[] batchValues = new double[ChannelRegistry.getDefault().size()];
+
+    /*
+    Returns the process-wide connection manager, creating it on first use.
+     */
+    public static synchronized SensorConnectionManager getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new SensorConnectionManager();
+        }
+        return instance;
+    }
+
+    private SensorConnectionManager()
+    {
+        webSocketClientHandler = new WebSocketClientHandler();
+        webSocketClientHandler.setMessageListener(this);
+    }
+
+    /*
+    Registers a listener for sensor data and connection events.
+    The listener is told the current connection status straight away so a screen
+    that attaches to an already open session can update its UI without waiting.
+     */
+    public void addListener(WebSocketClientHandler.MessageListener listener)
+    {
+        if (listeners.addIfAbsent(listener))
+        {
+            listener.onConnectionStatusChanged(webSocketClientHandler.isConnected());
+        }
+    }
+
+    /*
+    Unregisters a listener. The session stays open for the other listeners.
+     */
+    public void removeListener(WebSocketClientHandler.MessageListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /*
+    Opens the session to the given server URL.
+    Does nothing if a session to the same URL is already open or still connecting,
+    so every screen can call this when it starts without causing a reconnect.
+     */
+    public synchronized void connect(String serverUrl)
+    {
+        if (serverUrl.equals(this.serverUrl) && webSocketClientHandler.isActive())
+        {
+            return;
+        }
+
+        // The server address changed (or the old session died), so replace the session
+        webSocketClientHandler.disconnectWebSocket();
+        this.serverUrl = serverUrl;
+        webSocketClientHandler.connectWebSocket(serverUrl);
+    }
+
+    /*
+    Closes the shared session for every listener.
+     */
+    public synchronized void disconnect()
+    {
+        webSocketClientHandler.disconnectWebSocket();
+    }
+
+    /*
+    Queues a command for the server on the shared session; see WebSocketClientHandler.sendCommand().
+     */
+    public void sendCommand(String key, String command)
+    {
+        webSocketClientHandler.sendCommand(key, command);
+    }
+
+    /*
+    Returns the store holding the most recent readings received on the shared session.
+     */
+    public ReadingStore getReadingStore()
+    {
+        return readingStore;
+    }
+
+    /*
+    Returns the running statistics of the readings received on the shared session.
+     */
+    public ReadingStatistics getReadingStatistics()
+    {
+        return readingStatistics;
+    }
+
+    /*
+    Opens the on-disk history and its rollups in the given directory, if they are not open yet.
+    From then on every reading received is also written to them.
+     */
+    public synchronized HistoryLog openHistoryLog(File directory) throws IOException
+    {
+        if (historyLog == null)
+        {
+            historyLog = new HistoryLog(directory);
+        }
+        if (rollupStore == null)
+        {
+            rollupStore = new RollupStore(new File(directory, "rollups.bin"));
+        }
+        return historyLog;
+    }
+
+    /*
+    Returns the on-disk history, or null if it has not been opened.
+     */
+    public HistoryLog getHistoryLog()
+    {
+        return historyLog;
+    }
+
+    /*
+    Returns the minute, hour and day rollups of the history, or null if they have not been opened.
+     */
+    public RollupStore getRollupStore()
+    {
+        return rollupStore;
+    }
+
+    /*
+    Checks if the shared session is currently connected.
+     */
+    public boolean isConnected()
+    {
+        return webSocketClientHandler.isConnected();
+    }
+
+    @Override
+    public void onReading(long timestamp, double[] values)
+    {
+        readingStore.append(timestamp, values);
+        readingStatistics.add(timestamp, values);
+        saveReading(timestamp, values);
+        for (WebSocketClientHandler.MessageListener listener : listeners)
+        {
+            listener.onReading(timestamp, values);
+        }
+    }
+
+    /*
+    Adds the whole batch to the store under one lock and saves every reading,
+    then tells the listeners once for the batch.
+     */
+    @Override
+    public void onReadingBatch(ReadingBatch batch)
+    {
+        readingStore.appendBatch(batch);
+        readingStatistics.addBatch(batch);
+        for (int sample = 0; sample < batch.size(); sample++)
+        {
+            batch.getValues(sample, batchValues);
+            saveReading(batch.getTimestamp(sample), batchValues);
+        }
+        for (WebSocketClientHandler.MessageListener listener : listeners)
+        {
+            listener.onReadingBatch(batch);
+        }
+    }
+
+    /*
+    Writes a reading to the on-disk history and its rollups, if they are open.
+     */
+    private void saveReading(long timestamp, double[] values)
+    {
+        HistoryLog log = historyLog;
+        if (log != null)
+        {
+            try
+            {
+                log.append(timestamp, values);
+            }
+            catch (IOException e)
+            {
+                // Keep the live data flowing even if the history cannot be written
+                historyLog = null;
+                onConnectionError("Unable to save sensor history.");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Older than the history already written (e.g. the clock was set back); not kept
+            }
+        }
+        RollupStore rollups = rollupStore;
+        if (rollups != null)
+        {
+            rollups.add(timestamp, values);
+        }
+    }
+
+    @Override
+    public void onConnectionError(String errorMessage)
+    {
+        for (WebSocketClientHandler.MessageListener listener : listeners)
+        {
+            listener.onConnectionError(errorMessage);
+        }
+    }
+
+    @Override
+    public void onConnectionStatusChanged(boolean isConnected)
+    {
+        for (WebSocketClientHandler.MessageListener listener : listeners)
+        {
+            listener.onConnectionStatusChanged(isConnected);
+        }
+    }
+}
@@ -0,0 +1,584 @@
+package com.example.project_client;
+
+/*
+SensorFrameDecoder reads the sensor frames sent by the Raspberry Pi server, e.g.
+{"timestamp": 1718000000000, "temperature": 24.31, "humidity": 41.5, "pressure": 1012.87}
+The timestamp is the server's time of the reading and is optional, as is "sensor_time": the
+server's monotonic clock at the reading in microseconds, for the LatencyTracker. After a reconnect the server
+can also send the readings the client missed in one backfill frame:
+{"backfill": [{"timestamp": ..., "temperature": ...}, ...]}
+It scans the text in place and stores the value of every channel in the ChannelRegistry in a
+primitive double array indexed by channel id, so decoding a frame does not create any objects.
+One decoder is reused for every frame on the WebSocket thread, which means it is not safe to
+share between threads.
+ */
+public class SensorFrameDecoder
+{
+    // getTimestamp() of a frame without a timestamp
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /*
+    Receives the readings of a backfill frame, oldest first.
+    values is reused for the next reading.
+     */
+    public interface FrameVisitor
+    {
+        void visit(long timestamp, double[] values);
+    }
+
+    private static final String TIMESTAMP_KEY = "timestamp";
+    private static final String SENSOR_TIME_KEY = "sensor_time";
+    private static final String BACKFILL_KEY = "backfill";
+
+    // Powers of ten that are exact as doubles, used to scale parsed numbers without rounding twice
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Largest mantissa that a double holds exactly (2^53)
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    // Frame keys and required flags by channel id, copied from the registry
+    private final String[] keys;
+    private final boolean[] required;
+
+    // Values of the last decoded frame by channel id; NaN for optional channels that were missing
+    private final double[] values;
+    private final boolean[] found;
+    private long timestamp;
+    private long sensorTime;
+
+    // Scan position inside the frame currently being decoded
+    private CharSequence frame;
+    private int position;
+
+    public SensorFrameDecoder()
+    {
+        this(ChannelRegistry.getDefault());
+    }
+
+    public SensorFrameDecoder(ChannelRegistry registry)
+    {
+        int channelCount = registry.size();
+        keys = new String[channelCount];
+        required = new boolean[channelCount];
+        for (int i = 0; i < channelCount; i++)
+        {
+            keys[i] = registry.get(i).getKey();
+            required[i] = registry.get(i).isRequired();
+        }
+        values = new double[channelCount];
+        found = new boolean[channelCount];
+    }
+
+    /*
+    Decodes one frame. Returns true if every required channel was found,
+    false if the frame is malformed or a required value is missing.
+     */
+    public boolean decode(CharSequence message)
+    {
+        frame = message;
+        position = 0;
+        try
+        {
+            return decodeObject();
+        }
+        finally
+        {
+            frame = null;
+        }
+    }
+
+    /*
+    Decodes a backfill frame, passing every reading in it to the visitor.
+    Returns the number of readings, or -1 if the message is not a valid backfill frame
+    (readings before the error have already been passed on). Every reading needs a timestamp.
+     */
+    public int decodeBackfill(CharSequence message, FrameVisitor visitor)
+    {
+        frame = message;
+        position = 0;
+        try
+        {
+            return decodeBackfillObject(visitor);
+        }
+        finally
+        {
+            frame = null;
+        }
+    }
+
+    /*
+    Returns the server timestamp of the last decoded frame, or NO_TIMESTAMP if it had none.
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /*
+    Returns the server's monotonic clock in microseconds at the reading of the last decoded
+    frame, or NO_TIMESTAMP if it had none. Only differences between two of them mean anything.
+     */
+    public long getSensorTime()
+    {
+        return sensorTime;
+    }
+
+    public double getValue(int channel)
+    {
+        return values[channel];
+    }
+
+    /*
+    Returns the values of the last decoded frame, indexed by channel id.
+    The array is reused for the next frame.
+     */
+    public double[] getValues()
+    {
+        return values;
+    }
+
+    /*
+    Walks over the top level JSON object and picks out the sensor fields.
+    Fields with other names are skipped so the server can add new ones later.
+     */
+    private boolean decodeObject()
+    {
+        for (int channel = 0; channel < values.length; channel++)
+        {
+            values[channel] = Double.NaN;
+            found[channel] = false;
+        }
+        timestamp = NO_TIMESTAMP;
+        sensorTime = NO_TIMESTAMP;
+
+        skipWhitespace();
+        if (!consume('{'))
+        {
+            return false;
+        }
+
+        skipWhitespace();
+        if (consume('}'))
+        {
+            return false;
+        }
+
+        while (true)
+        {
+            skipWhitespace();
+            int keyStart = position + 1;
+            if (!skipString())
+            {
+                return false;
+            }
+            int keyEnd = position - 1;
+
+            skipWhitespace();
+            if (!consume(':'))
+            {
+                return false;
+            }
+            skipWhitespace();
+
+            int channel = findChannel(keyStart, keyEnd);
+            if (channel >= 0)
+            {
+                values[channel] = parseNumber();
+                found[channel] = true;
+            }
+            else if (keyEquals(keyStart, keyEnd, TIMESTAMP_KEY))
+            {
+                timestamp = (long) parseNumber();
+            }
+            else if (keyEquals(keyStart, keyEnd, SENSOR_TIME_KEY))
+            {
+                sensorTime = (long) parseNumber();
+            }
+            else if (!skipValue())
+            {
+                return false;
+            }
+
+            if (position < 0)
+            {
+                // parseNumber() or skipValue() hit something it could not read
+                return false;
+            }
+
+            skipWhitespace();
+            if (consume(','))
+            {
+                continue;
+            }
+            if (consume('}'))
+            {
+                return allRequiredFound();
+            }
+            return false;
+        }
+    }
+
+    /*
+    Walks over a backfill frame: a top level object whose backfill field is an array of frames.
+    Returns the number of frames, or -1.
+     */
+    private int decodeBackfillObject(FrameVisitor visitor)
+    {
+        int count = -1;
+        skipWhitespace();
+        if (!consume('{'))
+        {
+            return -1;
+        }
+        while (true)
+        {
+            skipWhitespace();
+            int keyStart = position + 1;
+            if (!skipString())
+            {
+                return -1;
+            }
+            int keyEnd = position - 1;
+
+            skipWhitespace();
+            if (!consume(':'))
+            {
+                return -1;
+            }
+            skipWhitespace();
+
+            if (keyEquals(keyStart, keyEnd, BACKFILL_KEY))
+            {
+                count = decodeFrameArray(visitor);
+                if (count < 0)
+                {
+                    return -1;
+                }
+            }
+            else if (!skipValue() || position < 0)
+            {
+                return -1;
+            }
+
+            skipWhitespace();
+            if (consume(','))
+            {
+                continue;
+            }
+            return consume('}') ? count : -1;
+        }
+    }
+
+    /*
+    Decodes an array of frames, each of which must have a timestamp.
+     */
+    private int decodeFrameArray(FrameVisitor visitor)
+    {
+        if (!consume('['))
+        {
+            return -1;
+        }
+        skipWhitespace();
+        if (consume(']'))
+        {
+            return 0;
+        }
+        int count = 0;
+        while (true)
+        {
+            if (!decodeObject() || timestamp == NO_TIMESTAMP)
+            {
+                return -1;
+            }
+            visitor.visit(timestamp, values);
+            count++;
+
+            skipWhitespace();
+            if (consume(','))
+            {
+                skipWhitespace();
+                continue;
+            }
+            return consume(']') ? count : -1;
+        }
+    }
+
+    /*
+    Parses a JSON number at the current position.
+    Numbers with up to 15 significant digits (everything the Sense HAT produces) are built from a
+    long mantissa and an exact power of ten, which gives the same result as Double.parseDouble.
+    Anything bigger falls back to Double.parseDouble.
+     */
+    private double parseNumber()
+    {
+        int start = position;
+        int length = frame.length();
+        boolean negative = false;
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean exact = true;
+
+        if (position < length && frame.charAt(position) == '-')
+        {
+            negative = true;
+            position++;
+        }
+
+        // Integer part
+        int integerStart = position;
+        while (position < length && isDigit(frame.charAt(position)))
+        {
+            if (digits < 18)
+            {
+                mantissa = mantissa * 10 + (frame.charAt(position) - '0');
+                if (mantissa != 0)
+                {
+                    digits++;
+                }
+            }
+            else
+            {
+                exponent++;
+                exact = false;
+            }
+            position++;
+        }
+        if (position == integerStart)
+        {
+            position = -1;
+            return Double.NaN;
+        }
+
+        // Fraction part
+        if (position < length && frame.charAt(position) == '.')
+        {
+            position++;
+            int fractionStart = position;
+            while (position < length && isDigit(frame.charAt(position)))
+            {
+                if (digits < 18)
+                {
+                    mantissa = mantissa * 10 + (frame.charAt(position) - '0');
+                    exponent--;
+                    if (mantissa != 0)
+                    {
+                        digits++;
+                    }
+                }
+                else
+                {
+                    exact = false;
+                }
+                position++;
+            }
+            if (position == fractionStart)
+            {
+                position = -1;
+                return Double.NaN;
+            }
+        }
+
+        // Exponent part
+        if (position < length && (frame.charAt(position) == 'e' || frame.charAt(position) == 'E'))
+        {
+            position++;
+            boolean negativeExponent = false;
+            if (position < length && (frame.charAt(position) == '+' || frame.charAt(position) == '-'))
+            {
+                negativeExponent = frame.charAt(position) == '-';
+                position++;
+            }
+            int exponentStart = position;
+            int exponentValue = 0;
+            while (position < length && isDigit(frame.charAt(position)))
+            {
+                if (exponentValue < 10000)
+                {
+                    exponentValue = exponentValue * 10 + (frame.charAt(position) - '0');
+                }
+                position++;
+            }
+            if (position == exponentStart)
+            {
+                position = -1;
+                return Double.NaN;
+            }
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+
+        double value;
+        if (exact && mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22)
+        {
+            value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        }
+        else
+        {
+            // Rare slow path, allocates a String
+            value = Double.parseDouble(frame.subSequence(start, position).toString());
+            return value;
+        }
+        return negative ? -value : value;
+    }
+
+    /*
+    Skips over a value of a field this decoder does not use.
+     */
+    private boolean skipValue()
+    {
+        if (position >= frame.length())
+        {
+            return false;
+        }
+
+        char c = frame.charAt(position);
+        if (c == '"')
+        {
+            return skipString();
+        }
+        if (c == '{' || c == '[')
+        {
+            return skipNested();
+        }
+        if (c == '-' || isDigit(c))
+        {
+            parseNumber();
+            return position >= 0;
+        }
+        // true, false or null
+        while (position < frame.length() && Character.isLetter(frame.charAt(position)))
+        {
+            position++;
+        }
+        return true;
+    }
+
+    /*
+    Skips over a nested object or array, including any strings inside it.
+     */
+    private boolean skipNested()
+    {
+        int depth = 0;
+        while (position < frame.length())
+        {
+            char c = frame.charAt(position);
+            if (c == '"')
+            {
+                if (!skipString())
+                {
+                    return false;
+                }
+                continue;
+            }
+            if (c == '{' || c == '[')
+            {
+                depth++;
+            }
+            else if (c == '}' || c == ']')
+            {
+                depth--;
+            }
+            position++;
+            if (depth == 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+    Skips over a quoted string, leaving the position just after the closing quote.
+     */
+    private boolean skipString()
+    {
+        if (!consume('"'))
+        {
+            return false;
+        }
+        while (position < frame.length())
+        {
+            char c = frame.charAt(position++);
+            if (c == '\\')
+            {
+                position++;
+            }
+            else if (c == '"')
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int findChannel(int keyStart, int keyEnd)
+    {
+        for (int channel = 0; channel < keys.length; channel++)
+        {
+            if (keyEquals(keyStart, keyEnd, keys[channel]))
+            {
+                return channel;
+            }
+        }
+        return -1;
+    }
+
+    private boolean allRequiredFound()
+    {
+        for (int channel = 0; channel < found.length; channel++)
+        {
+            if (required[channel] && !found[channel])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean keyEquals(int start, int end, String key)
+    {
+        if (end - start != key.length())
+        {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++)
+        {
+            if (frame.charAt(start + i) != key.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean consume(char expected)
+    {
+        if (position < frame.length() && frame.charAt(position) == expected)
+        {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace()
+    {
+        while (position < frame.length())
+        {
+            char c = frame.charAt(position);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+            {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+}
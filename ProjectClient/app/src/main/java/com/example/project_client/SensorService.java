@@ -0,0 +1,388 @@
+package com.example.project_client;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.ServiceInfo;
+import android.os.Binder;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+SensorService is a foreground service that owns the sensor session while the app is running,
+whether or not a screen is open. It keeps the shared SensorConnectionManager connected to the
+server saved in the settings, writes every reading to the on-disk history, checks every reading
+against the threshold rules and hands the threshold alerts to the AlertDispatcher, also in the
+background. With the automatic display setting on, it also tells the Pi whenever a sensor's
+threshold state changes, so the LEDs follow the thresholds without the user tapping the sensors.
+
+Screens bind to it and register as listeners. Since the session, the ReadingStore and the rule
+state live here rather than in an Activity, a screen that opens shows the current state and the
+recent readings straight away instead of reconnecting and waiting for the first frame.
+The service runs until the user stops it from its notification.
+ */
+public class SensorService extends Service implements WebSocketClientHandler.MessageListener
+{
+    public static final String ACTION_STOP = "com.example.project_client.action.STOP_SENSOR_SERVICE";
+
+    // The setting that turns on the automatic LED display updates
+    public static final String LED_AUTO_SYNC_KEY = "led_auto_sync";
+
+    private static final String TAG = "SensorService";
+
+    /*
+    Given to the screens that bind to the service.
+     */
+    public class LocalBinder extends Binder
+    {
+        public SensorService getService()
+        {
+            return SensorService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final ChannelRegistry registry = ChannelRegistry.getDefault();
+
+    private SensorConnectionManager connectionManager;
+    private SharedPreferences settings_database;
+
+    // Set when the user stops the service; it then only lives on until the last screen unbinds
+    private volatile boolean stopped;
+
+    // The threshold settings compiled into rules; recompiled only when a setting changes
+    private final ThresholdEngine thresholdEngine = new ThresholdEngine();
+
+    // Rules that were already alerted and have stayed broken since; cleared when the settings change
+    private volatile long alertedRules;
+
+    private AlertDispatcher alertDispatcher;
+
+    // The display state of every sensor, or null while the automatic display updates are off.
+    // Replaced when the settings change, so the new state is sent; only used on the WebSocket thread
+    private volatile LedStateSync ledStateSync;
+
+    // Values of one reading of a batch, only used on the WebSocket thread
+    private final double[] batchValues = new double[registry.size()];
+
+    private final LatencyTracker latencyTracker = LatencyTracker.getInstance();
+
+    private final MetricsRegistry.Meter evaluations = MetricsRegistry.getDefault().meter("thresholds.evaluations");
+    private final MetricsRegistry.Counter breaches = MetricsRegistry.getDefault().counter("thresholds.breaches");
+    private final MetricsRegistry.Counter ledStateChanges = MetricsRegistry.getDefault().counter("leds.state_changes");
+
+    // Listeners are added and removed on the UI thread but notified from the WebSocket thread
+    private final CopyOnWriteArrayList<WebSocketClientHandler.MessageListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Kept in a field because SharedPreferences only holds listeners weakly
+    private final SharedPreferences.OnSharedPreferenceChangeListener settingsListener = (preferences, key) ->
+    {
+        thresholdEngine.setRules(ThresholdRules.compile(preferences.getAll()));
+        // Alerts of the old thresholds are dropped and the new ones alert straight away
+        alertedRules = 0;
+        alertDispatcher.clear();
+        ledStateSync = createLedStateSync(preferences);
+    };
+
+    /*
+    Starts the service, or makes it reconnect if the server address was changed in the settings.
+    Called by the screens whenever they come to the foreground.
+     */
+    public static void start(Context context)
+    {
+        ContextCompat.startForegroundService(context, new Intent(context, SensorService.class));
+    }
+
+    @Override
+    public void onCreate()
+    {
+        super.onCreate();
+        startInForeground(getString(R.string.app_name) + " is connecting to the sensors");
+
+        alertDispatcher = new AlertDispatcher(this);
+        settings_database = getSharedPreferences("settings_prefs", MODE_PRIVATE);
+        thresholdEngine.setRules(ThresholdRules.compile(settings_database.getAll()));
+        ledStateSync = createLedStateSync(settings_database);
+        settings_database.registerOnSharedPreferenceChangeListener(settingsListener);
+
+        connectionManager = SensorConnectionManager.getInstance();
+
+        // Keep a history of every reading on disk
+        try
+        {
+            connectionManager.openHistoryLog(new File(getFilesDir(), "history"));
+        }
+        catch (IOException e)
+        {
+            Log.e(TAG, "Unable to open sensor history", e);
+        }
+        connectionManager.addListener(this);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId)
+    {
+        if (intent != null && ACTION_STOP.equals(intent.getAction()))
+        {
+            stopped = true;
+            connectionManager.disconnect();
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+
+        // A started service has to call startForeground() every time, not only when created
+        stopped = false;
+        startInForeground(statusText(connectionManager.isConnected()));
+        String savedIPAddress = settings_database.getString("saved_ip_address", "0");
+        String savedPortNumber = settings_database.getString("saved_port_number", "0");
+        connectionManager.connect("ws://" + savedIPAddress + ":" + savedPortNumber);
+        return START_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent)
+    {
+        return binder;
+    }
+
+    /*
+    Data sync services get a few hours a day on Android 15; stop cleanly when the time is up.
+     */
+    @Override
+    public void onTimeout(int startId, int foregroundServiceType)
+    {
+        stopSelf();
+    }
+
+    /*
+    Closes the session and flushes the last readings of the history and its rollups to disk.
+     */
+    @Override
+    public void onDestroy()
+    {
+        super.onDestroy();
+        settings_database.unregisterOnSharedPreferenceChangeListener(settingsListener);
+        connectionManager.removeListener(this);
+        connectionManager.disconnect();
+        alertDispatcher.shutdown();
+
+        HistoryLog historyLog = connectionManager.getHistoryLog();
+        if (historyLog != null)
+        {
+            historyLog.commit();
+        }
+        RollupStore rollupStore = connectionManager.getRollupStore();
+        if (rollupStore != null)
+        {
+            rollupStore.commit();
+        }
+    }
+
+    /*
+    Registers a listener for sensor data and connection events. Like the connection manager,
+    the listener is told the current connection status straight away.
+     */
+    public void addListener(WebSocketClientHandler.MessageListener listener)
+    {
+        if (listeners.addIfAbsent(listener))
+        {
+            listener.onConnectionStatusChanged(connectionManager.isConnected());
+        }
+    }
+
+    public void removeListener(WebSocketClientHandler.MessageListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /*
+    Returns the newest threshold rules, for display.
+     */
+    public ThresholdRules getThresholdRules()
+    {
+        return thresholdEngine.getRules();
+    }
+
+    public SensorConnectionManager getConnectionManager()
+    {
+        return connectionManager;
+    }
+
+    /*
+    Checks the reading against the threshold rules, sends the notifications and passes it on.
+     */
+    @Override
+    public void onReading(long timestamp, double[] values)
+    {
+        long rules = thresholdEngine.evaluate(timestamp, values);
+        evaluations.mark();
+        notifyBrokenRules(values, rules);
+        syncLeds(values);
+        latencyTracker.recordSinceReceived(LatencyTracker.Stage.EVALUATE);
+        for (WebSocketClientHandler.MessageListener listener : listeners)
+        {
+            listener.onReading(timestamp, values);
+        }
+    }
+
+    /*
+    Checks every reading of the batch so a short spike is not missed, then passes the batch on.
+     */
+    @Override
+    public void onReadingBatch(ReadingBatch batch)
+    {
+        for (int sample = 0; sample < batch.size(); sample++)
+        {
+            batch.getValues(sample, batchValues);
+            long sampleRules = thresholdEngine.evaluate(batch.getTimestamp(sample), batchValues);
+            notifyBrokenRules(batchValues, sampleRules);
+            syncLeds(batchValues);
+        }
+        evaluations.mark(batch.size());
+        latencyTracker.recordSinceReceived(LatencyTracker.Stage.EVALUATE);
+        for (WebSocketClientHandler.MessageListener listener : listeners)
+        {
+            listener.onReadingBatch(batch);
+        }
+    }
+
+    @Override
+    public void onConnectionError(String errorMessage)
+    {
+        for (WebSocketClientHandler.MessageListener listener : listeners)
+        {
+            listener.onConnectionError(errorMessage);
+        }
+    }
+
+    @Override
+    public void onConnectionStatusChanged(boolean isConnected)
+    {
+        if (!stopped)
+        {
+            startInForeground(statusText(isConnected));
+        }
+        for (WebSocketClientHandler.MessageListener listener : listeners)
+        {
+            listener.onConnectionStatusChanged(isConnected);
+        }
+    }
+
+    private LedStateSync createLedStateSync(SharedPreferences preferences)
+    {
+        return preferences.getBoolean(LED_AUTO_SYNC_KEY, false) ? new LedStateSync(registry) : null;
+    }
+
+    /*
+    Sends the display command of every sensor whose threshold state the reading changed.
+    The commands are queued, so only the newest per sensor is sent, and only once connected.
+     */
+    private void syncLeds(double[] values)
+    {
+        LedStateSync sync = ledStateSync;
+        if (sync == null)
+        {
+            return;
+        }
+        // The table the reading was just checked against, not one set since then
+        ThresholdRules rules = thresholdEngine.getEvaluatedRules();
+        for (int channel = 0; channel < registry.size(); channel++)
+        {
+            if (sync.update(channel, values[channel], rules))
+            {
+                ledStateChanges.increment();
+                connectionManager.sendCommand(registry.get(channel).getCommandPrefix(), sync.getCommand(channel, values[channel]));
+            }
+        }
+    }
+
+    /*
+    Alerts the rules that have just been broken. A rule that stays broken is alerted once, not on
+    every reading; it alerts again if it clears and breaks again, and the AlertDispatcher's token
+    bucket keeps a value flapping around a threshold from alerting every time.
+     */
+    private void notifyBrokenRules(double[] values, long rules)
+    {
+        long newlyBroken = rules & ~alertedRules;
+        alertedRules = rules;
+        if (newlyBroken == 0)
+        {
+            return;
+        }
+        breaches.increment();
+        for (int channel = 0; channel < registry.size(); channel++)
+        {
+            checkAndNotify(channel, values[channel], newlyBroken);
+        }
+    }
+
+    /*
+    This method creates the alert for a sensor if one of the given rules is one of its own:
+    below the minimum, above the maximum, or changing faster than allowed.
+     */
+    private void checkAndNotify(int channel, double readingValue, long rules)
+    {
+        int rule = thresholdEngine.firstBrokenRule(rules, channel);
+        if (rule < 0)
+        {
+            return;
+        }
+
+        // The rule indices of the mask are those of the table that produced it
+        ThresholdRules thresholdRules = thresholdEngine.getEvaluatedRules();
+        String sensorType = registry.get(channel).getName();
+        String value = String.format(Locale.US, "%.2f", readingValue);
+        String title;
+        String message;
+        switch (thresholdRules.getKind(rule))
+        {
+            case ThresholdRules.BELOW:
+                title = sensorType + " Below Threshold";
+                message = sensorType + " is below threshold! (" + value + ")";
+                break;
+            case ThresholdRules.ABOVE:
+                title = sensorType + " Above Threshold";
+                message = sensorType + " is above threshold! (" + value + ")";
+                break;
+            default:
+                title = sensorType + " Changing Fast";
+                message = String.format(Locale.US, "%s is changing faster than %.2f per minute! (%s)", sensorType, thresholdRules.getLimit(rule), value);
+                break;
+        }
+
+        alertDispatcher.offer(null, channel, title, message);
+    }
+
+    private String statusText(boolean isConnected)
+    {
+        return isConnected ? "Receiving sensor readings" : "Waiting for the sensor server";
+    }
+
+    /*
+    Shows (or updates) the ongoing notification of the service, with a button to stop it.
+     */
+    private void startInForeground(String message)
+    {
+        PendingIntent openIntent = PendingIntent.getActivity(this, 0,
+                new Intent(this, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent stopIntent = PendingIntent.getService(this, 0,
+                new Intent(this, SensorService.class).setAction(ACTION_STOP), PendingIntent.FLAG_IMMUTABLE);
+        Notification notification = NotificationHelper.buildServiceNotification(this, message, openIntent, stopIntent);
+
+        int type = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q ? ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC : 0;
+        ServiceCompat.startForeground(this, NotificationHelper.SERVICE_NOTIFICATION_ID, notification, type);
+    }
+}
@@ -3,6 +3,7 @@ package com.example.project_client;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
@@ -10,18 +11,32 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SwitchCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /*
 Settings Screen lets the user change the threshold values for temperature, humidity, and pressure.
 Change the time interval for the charts, and set the IP Address and Port Number of the server.
+The display switch makes the app update the Pi's LEDs by itself whenever a sensor goes out of
+its thresholds or comes back, instead of only when a sensor is tapped on the main screen.
+The Export button writes the recorded history to a file in the app's external files folder,
+and the Diagnostics button opens the live metrics of the app.
  */
 public class SettingsScreen extends AppCompatActivity
 {
-    private Button updateButton;
+    private Button updateButton, exportButton, diagnosticsButton;
 
     private TextView minTemp, maxTemp, minHum, maxHum, minPres, maxPres;
     private TextView timeInterval;
@@ -29,9 +44,20 @@ public class SettingsScreen extends AppCompatActivity
 
     private RadioGroup thresholdSelectGroup;
     private RadioButton onButton, offButton;
+    private SwitchCompat ledSyncSwitch;
 
     private SharedPreferences settings_database;
 
+    // Exports run here so the screen stays responsive
+    private final ExecutorService exportExecutor = Executors.newSingleThreadExecutor();
+
+    // Export choices, in the order they are listed in the dialog
+    private static final String[] EXPORT_OPTIONS = {
+            "All readings (CSV)",
+            "All readings (binary)",
+            "Hourly summaries (CSV)",
+            "Daily summaries (CSV)"};
+
     @Override
     protected void onCreate(Bundle savedInstanceState)
     {
@@ -46,6 +72,8 @@ public class SettingsScreen extends AppCompatActivity
         });
 
         updateButton = findViewById(R.id.updateButton);
+        exportButton = findViewById(R.id.exportButton);
+        diagnosticsButton = findViewById(R.id.diagnosticsButton);
 
         minTemp = findViewById(R.id.minTemp);
         maxTemp = findViewById(R.id.maxTemp);
@@ -60,6 +88,7 @@ public class SettingsScreen extends AppCompatActivity
         thresholdSelectGroup = findViewById(R.id.thresholdSelectGroup);
         onButton = findViewById(R.id.onButton);
         offButton = findViewById(R.id.offButton);
+        ledSyncSwitch = findViewById(R.id.ledSyncSwitch);
 
         // Load SharedPreferences
         settings_database = getApplicationContext().getSharedPreferences("settings_prefs", MODE_PRIVATE);
@@ -86,6 +115,8 @@ public class SettingsScreen extends AppCompatActivity
             offButton.setChecked(true);
         }
 
+        ledSyncSwitch.setChecked(settings_database.getBoolean(SensorService.LED_AUTO_SYNC_KEY, false));
+
         // Enable/Disable input fields based on threshold state
         toggleThresholdInputs(isThresholdEnabled);
 
@@ -176,6 +207,7 @@ public class SettingsScreen extends AppCompatActivity
                 // Save threshold state
                 boolean isEnabled = onButton.isChecked();
                 editor.putBoolean("threshold_enabled", isEnabled);
+                editor.putBoolean(SensorService.LED_AUTO_SYNC_KEY, ledSyncSwitch.isChecked());
 
                 editor.apply();
 
@@ -186,6 +218,105 @@ public class SettingsScreen extends AppCompatActivity
                 Toast.makeText(SettingsScreen.this, "Invalid input! Please enter valid numbers.", Toast.LENGTH_SHORT).show();
             }
         });
+
+        exportButton.setOnClickListener(view -> new AlertDialog.Builder(this)
+                .setTitle("Export history")
+                .setItems(EXPORT_OPTIONS, (dialog, which) -> startExport(which))
+                .show());
+
+        diagnosticsButton.setOnClickListener(view ->
+        {
+            Intent i = new Intent(SettingsScreen.this, DiagnosticsScreen.class);
+            startActivity(i);
+        });
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        super.onDestroy();
+        // A running export is allowed to finish
+        exportExecutor.shutdown();
+    }
+
+    /*
+    Exports the history in the background, showing the progress on the Export button.
+    Raw readings come from the on-disk history, or from the readings kept in memory if it is not open.
+     */
+    private void startExport(int option)
+    {
+        File directory = getExternalFilesDir("exports");
+        if (directory == null)
+        {
+            directory = new File(getFilesDir(), "exports");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs())
+        {
+            Toast.makeText(this, "Unable to create the export folder.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        boolean binary = option == 1;
+        String name = new SimpleDateFormat("'history-'yyyyMMdd-HHmmss", Locale.US).format(new Date())
+                + (option == 2 ? "-hourly" : option == 3 ? "-daily" : "")
+                + (binary ? ".bin" : ".csv");
+        File file = new File(directory, name);
+
+        exportButton.setEnabled(false);
+        exportButton.setText("Exporting...");
+
+        SensorConnectionManager connectionManager = SensorConnectionManager.getInstance();
+        HistoryExporter exporter = new HistoryExporter(binary ? HistoryExporter.Format.BINARY : HistoryExporter.Format.CSV,
+                (rowsWritten, fraction) -> runOnUiThread(() ->
+                        exportButton.setText(String.format(Locale.US, "Exporting %d%%", (int) (fraction * 100)))));
+
+        exportExecutor.execute(() ->
+        {
+            String result;
+            try
+            {
+                long now = System.currentTimeMillis();
+                long rows;
+                if (option >= 2)
+                {
+                    RollupStore rollupStore = connectionManager.getRollupStore();
+                    if (rollupStore == null)
+                    {
+                        throw new IOException("No history has been recorded");
+                    }
+                    RollupStore.Tier tier = option == 2 ? RollupStore.Tier.HOUR : RollupStore.Tier.DAY;
+                    rows = exporter.exportRollups(rollupStore, tier, now - tier.width * tier.capacity, now + 1, file);
+                }
+                else
+                {
+                    HistoryLog historyLog = connectionManager.getHistoryLog();
+                    if (historyLog != null)
+                    {
+                        rows = exporter.exportReadings(historyLog::forEach, historyLog.getOldestTimestamp(), now + 1, file);
+                    }
+                    else
+                    {
+                        ReadingStore readingStore = connectionManager.getReadingStore();
+                        long oldest = readingStore.size() > 0 ? readingStore.getTimestamp(0) : now;
+                        rows = exporter.exportReadings(readingStore::forEach, oldest, now + 1, file);
+                    }
+                }
+                result = "Exported " + rows + " rows to " + file.getAbsolutePath();
+            }
+            catch (IOException e)
+            {
+                Log.e("SettingsScreen", "Export failed", e);
+                result = "Export failed: " + e.getMessage();
+            }
+
+            String message = result;
+            runOnUiThread(() ->
+            {
+                exportButton.setEnabled(true);
+                exportButton.setText("Export");
+                Toast.makeText(SettingsScreen.this, message, Toast.LENGTH_LONG).show();
+            });
+        });
     }
 
     /*
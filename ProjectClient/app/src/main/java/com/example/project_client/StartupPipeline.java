@@ -0,0 +1,272 @@
+package com.example.project_client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+StartupPipeline runs the warm-up work of the splash screen (loading the settings, opening the
+session, loading the recent history, loading the chart classes) in parallel and decides when the
+splash can go: as soon as every phase has finished and the first reading has arrived, or when the
+deadline passes, whichever comes first.
+
+Every phase is timed, as are the marks the caller sets (e.g. the first reading), in milliseconds
+since an origin such as the process start, so the time to the first reading can be tracked.
+The pipeline of the last startup is kept for the diagnostics.
+ */
+public class StartupPipeline
+{
+    /*
+    Told once when the splash can be dismissed, on a thread of the executor.
+    gotReading is false if the deadline passed or no reading is coming.
+     */
+    public interface ReadyListener
+    {
+        void onReady(boolean gotReading);
+    }
+
+    /*
+    The work of one phase. May throw; the error is recorded and the other phases go on.
+     */
+    public interface Task
+    {
+        void run() throws Exception;
+    }
+
+    /*
+    A finished phase or a mark (which has no duration).
+     */
+    public static final class Phase
+    {
+        private final String name;
+        private final long startMs;
+        private final long durationMs;
+        private final String error;
+
+        Phase(String name, long startMs, long durationMs, String error)
+        {
+            this.name = name;
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+            this.error = error;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public long getStartMs()
+        {
+            return startMs;
+        }
+
+        public long getDurationMs()
+        {
+            return durationMs;
+        }
+
+        // The message of the exception the phase threw, or null
+        public String getError()
+        {
+            return error;
+        }
+    }
+
+    public static final String FIRST_READING = "first reading";
+    public static final String READY = "ready";
+
+    private static volatile StartupPipeline last;
+
+    private final ScheduledExecutorService executor;
+    private final long originNanos;
+
+    // Guarded by this
+    private final List<Phase> phases = new ArrayList<>();
+
+    private final AtomicInteger runningPhases = new AtomicInteger();
+    private final AtomicBoolean readingDone = new AtomicBoolean();
+    private final AtomicBoolean gotReading = new AtomicBoolean();
+    private final AtomicBoolean ready = new AtomicBoolean();
+    private volatile ReadyListener readyListener;
+    private volatile ScheduledFuture<?> deadline;
+
+    public StartupPipeline(ScheduledExecutorService executor)
+    {
+        this(executor, System.nanoTime());
+    }
+
+    /*
+    originNanos is the System.nanoTime() every time is measured from, e.g. when the process started.
+     */
+    public StartupPipeline(ScheduledExecutorService executor, long originNanos)
+    {
+        this.executor = executor;
+        this.originNanos = originNanos;
+        last = this;
+    }
+
+    /*
+    Returns the pipeline of the last startup, or null if the app has not shown its splash.
+     */
+    public static StartupPipeline getLast()
+    {
+        return last;
+    }
+
+    /*
+    Starts a phase on the executor. All phases must be added before start().
+     */
+    public void runPhase(String name, Task task)
+    {
+        runningPhases.incrementAndGet();
+        executor.execute(() ->
+        {
+            long start = now();
+            String error = null;
+            try
+            {
+                task.run();
+            }
+            catch (Exception e)
+            {
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+            record(new Phase(name, start, now() - start, error));
+            if (runningPhases.decrementAndGet() == 0)
+            {
+                checkReady();
+            }
+        });
+    }
+
+    /*
+    Waits for the phases and the first reading, but no longer than deadlineMs from now.
+     */
+    public void start(long deadlineMs, ReadyListener listener)
+    {
+        readyListener = listener;
+        deadline = executor.schedule(() -> finish(gotReading.get()), deadlineMs, TimeUnit.MILLISECONDS);
+        checkReady();
+    }
+
+    /*
+    Records the time of the first reading. Later calls are ignored.
+     */
+    public void markFirstReading()
+    {
+        if (gotReading.compareAndSet(false, true))
+        {
+            mark(FIRST_READING);
+            readingDone.set(true);
+            checkReady();
+        }
+    }
+
+    /*
+    Stops waiting for a reading, e.g. because the server cannot be reached.
+     */
+    public void stopWaitingForReading()
+    {
+        if (readingDone.compareAndSet(false, true))
+        {
+            checkReady();
+        }
+    }
+
+    /*
+    Records an instant, e.g. when the splash was created.
+     */
+    public void mark(String name)
+    {
+        record(new Phase(name, now(), 0, null));
+    }
+
+    /*
+    Returns the phases and marks recorded so far, in the order they finished.
+     */
+    public synchronized List<Phase> getPhases()
+    {
+        return new ArrayList<>(phases);
+    }
+
+    /*
+    Returns the milliseconds from the origin to the first reading, or -1 if none arrived yet.
+     */
+    public long getTimeToFirstReadingMs()
+    {
+        for (Phase phase : getPhases())
+        {
+            if (FIRST_READING.equals(phase.getName()))
+            {
+                return phase.getStartMs();
+            }
+        }
+        return -1;
+    }
+
+    public boolean isReady()
+    {
+        return ready.get();
+    }
+
+    /*
+    Returns one line per phase, e.g. "history  +12 ms  35 ms", for the log and the diagnostics.
+     */
+    public String format()
+    {
+        StringBuilder text = new StringBuilder();
+        for (Phase phase : getPhases())
+        {
+            text.append(String.format(Locale.US, "%-14s +%d ms", phase.getName(), phase.getStartMs()));
+            if (phase.getDurationMs() > 0)
+            {
+                text.append(String.format(Locale.US, "  %d ms", phase.getDurationMs()));
+            }
+            if (phase.getError() != null)
+            {
+                text.append("  failed: ").append(phase.getError());
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    private void checkReady()
+    {
+        if (readyListener != null && runningPhases.get() == 0 && readingDone.get())
+        {
+            finish(gotReading.get());
+        }
+    }
+
+    private void finish(boolean withReading)
+    {
+        if (!ready.compareAndSet(false, true))
+        {
+            return;
+        }
+        ScheduledFuture<?> pending = deadline;
+        if (pending != null)
+        {
+            pending.cancel(false);
+        }
+        mark(READY);
+        readyListener.onReady(withReading);
+    }
+
+    private synchronized void record(Phase phase)
+    {
+        phases.add(phase);
+    }
+
+    private long now()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - originNanos);
+    }
+}
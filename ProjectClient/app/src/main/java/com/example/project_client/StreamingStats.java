@@ -0,0 +1,228 @@
+package com.example.project_client;
+
+import java.util.Arrays;
+
+/*
+StreamingStats summarises the values of one channel as they arrive, in O(1) per value and fixed
+memory, so averages and percentiles never need a scan of the history:
+- the count, minimum and maximum,
+- the mean and variance, with Welford's update, which stays accurate for long streams,
+- exponentially weighted moving averages for each of the half-lives, in milliseconds,
+- the quantiles, from a QuantileSketch.
+The moving averages are kept as a decayed sum and a decayed weight, both decayed to the time of
+the newest value, so they do not depend on a starting value and still merge exactly.
+Statistics of separate time windows or devices merge into the statistics of all their values.
+It is not safe to share between threads.
+ */
+public class StreamingStats
+{
+    // One minute, ten minutes and one hour
+    public static final long[] DEFAULT_HALF_LIVES_MS = {60_000, 600_000, 3_600_000};
+
+    private final long[] halfLivesMs;
+    private final double[] decayRates;  // ln 2 / half-life, per millisecond
+    private final int sketchK;
+
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    private double mean;
+    private double sumOfSquares;  // Of the differences from the mean
+
+    private final double[] decayedSums;
+    private final double[] decayedWeights;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private final QuantileSketch sketch;
+
+    public StreamingStats()
+    {
+        this(DEFAULT_HALF_LIVES_MS, QuantileSketch.DEFAULT_K);
+    }
+
+    public StreamingStats(long[] halfLivesMs, int sketchK)
+    {
+        this.halfLivesMs = halfLivesMs.clone();
+        decayRates = new double[halfLivesMs.length];
+        for (int i = 0; i < halfLivesMs.length; i++)
+        {
+            decayRates[i] = Math.log(2) / halfLivesMs[i];
+        }
+        decayedSums = new double[halfLivesMs.length];
+        decayedWeights = new double[halfLivesMs.length];
+        this.sketchK = sketchK;
+        sketch = new QuantileSketch(sketchK);
+    }
+
+    /*
+    Adds a value taken at the given time, in milliseconds. Missing values (NaN) are skipped.
+     */
+    public void add(long timestamp, double value)
+    {
+        if (Double.isNaN(value))
+        {
+            return;
+        }
+        count++;
+        if (count == 1)
+        {
+            min = value;
+            max = value;
+        }
+        else
+        {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double delta = value - mean;
+        mean += delta / count;
+        sumOfSquares += delta * (value - mean);
+
+        decayTo(timestamp);
+        for (int i = 0; i < decayRates.length; i++)
+        {
+            decayedSums[i] += value;
+            decayedWeights[i] += 1;
+        }
+        sketch.add(value);
+    }
+
+    /*
+    Adds the values of another StreamingStats with the same half-lives; the other is not changed.
+     */
+    public void merge(StreamingStats other)
+    {
+        if (!Arrays.equals(halfLivesMs, other.halfLivesMs))
+        {
+            throw new IllegalArgumentException("Cannot merge statistics with different half-lives");
+        }
+        if (other.count == 0)
+        {
+            return;
+        }
+        if (count == 0)
+        {
+            min = other.min;
+            max = other.max;
+        }
+        else
+        {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        // Chan et al.'s combination of two Welford states
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        sumOfSquares += other.sumOfSquares + delta * delta * ((double) count * other.count / total);
+        count = total;
+
+        // Both averages are decayed to the newer of the two times before they are added
+        decayTo(other.lastTimestamp);
+        for (int i = 0; i < decayRates.length; i++)
+        {
+            double factor = Math.exp(-decayRates[i] * (lastTimestamp - other.lastTimestamp));
+            decayedSums[i] += other.decayedSums[i] * factor;
+            decayedWeights[i] += other.decayedWeights[i] * factor;
+        }
+        sketch.merge(other.sketch);
+    }
+
+    public StreamingStats copy()
+    {
+        StreamingStats copy = new StreamingStats(halfLivesMs, sketchK);
+        copy.merge(this);
+        return copy;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    // NaN while empty
+    public double getMin()
+    {
+        return min;
+    }
+
+    public double getMax()
+    {
+        return max;
+    }
+
+    public double getMean()
+    {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /*
+    Returns the sample variance, or NaN with fewer than two values.
+     */
+    public double getVariance()
+    {
+        return count > 1 ? sumOfSquares / (count - 1) : Double.NaN;
+    }
+
+    public double getStandardDeviation()
+    {
+        return Math.sqrt(getVariance());
+    }
+
+    public long[] getHalfLives()
+    {
+        return halfLivesMs.clone();
+    }
+
+    /*
+    Returns the moving average with the half-life at the given index of getHalfLives(),
+    as of the newest value, or NaN while empty.
+     */
+    public double getMovingAverage(int halfLifeIndex)
+    {
+        double weight = decayedWeights[halfLifeIndex];
+        return weight > 0 ? decayedSums[halfLifeIndex] / weight : Double.NaN;
+    }
+
+    /*
+    Returns the estimated value at a quantile, e.g. 0.95 for p95, or NaN while empty.
+     */
+    public double getQuantile(double quantile)
+    {
+        return sketch.getQuantile(quantile);
+    }
+
+    public double[] getQuantiles(double... quantiles)
+    {
+        return sketch.getQuantiles(quantiles);
+    }
+
+    /*
+    Returns the time of the newest value, in milliseconds, or Long.MIN_VALUE while empty.
+     */
+    public long getLastTimestamp()
+    {
+        return lastTimestamp;
+    }
+
+    private void decayTo(long timestamp)
+    {
+        if (lastTimestamp == Long.MIN_VALUE)
+        {
+            lastTimestamp = timestamp;
+            return;
+        }
+        if (timestamp <= lastTimestamp)
+        {
+            return;  // A value older than the newest one counts as if taken with it
+        }
+        for (int i = 0; i < decayRates.length; i++)
+        {
+            double factor = Math.exp(-decayRates[i] * (timestamp - lastTimestamp));
+            decayedSums[i] *= factor;
+            decayedWeights[i] *= factor;
+        }
+        lastTimestamp = timestamp;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.project_client;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ThresholdEngine checks every reading against the current ThresholdRules in one pass over the
+rule table, keeping the little state that rate-of-change and sustained rules need between
+readings (the previous value of each channel and when each rule started being broken), so each
+reading costs O(1) per rule and allocates nothing.
+
+evaluate() returns a bit mask with bit i set if rule i is broken (and has been for its sustain
+time), rule i of the table in getEvaluatedRules(). setRules() swaps in a newly compiled table and
+starts the rule state over.
+Readings are expected on one thread. Rules can be changed from any thread: the new table is
+handed over atomically and takes effect from the next reading.
+ */
+public class ThresholdEngine
+{
+    // Rule masks are longs
+    public static final int MAX_RULES = 64;
+
+    private static final long NOT_BROKEN = Long.MIN_VALUE;
+
+    private final int channelCount;
+    // The table the last reading was checked against
+    private volatile ThresholdRules rules;
+
+    // Set by setRules(), taken over by the reading thread on the next evaluate()
+    private final AtomicReference<ThresholdRules> pendingRules = new AtomicReference<>();
+
+    // When each rule started being broken, or NOT_BROKEN
+    private final long[] brokenSince = new long[MAX_RULES];
+
+    // Previous reading per channel, for the rate of change
+    private final double[] previousValues;
+    private long previousTimestamp;
+    private boolean hasPrevious;
+
+    // Change per minute of every channel, reused for every reading
+    private final double[] rates;
+
+    public ThresholdEngine()
+    {
+        this(ChannelRegistry.getDefault().size());
+    }
+
+    public ThresholdEngine(int channelCount)
+    {
+        this.channelCount = channelCount;
+        previousValues = new double[channelCount];
+        rates = new double[channelCount];
+        setRules(ThresholdRules.disabled(channelCount));
+    }
+
+    public void setRules(ThresholdRules rules)
+    {
+        if (rules.getRuleCount() > MAX_RULES)
+        {
+            throw new IllegalArgumentException("At most " + MAX_RULES + " rules are supported");
+        }
+        pendingRules.set(rules);
+    }
+
+    /*
+    Returns the newest rules, including ones set but not yet used for a reading, for display.
+    Masks returned by evaluate() must be read with getEvaluatedRules() instead.
+     */
+    public ThresholdRules getRules()
+    {
+        ThresholdRules pending = pendingRules.get();
+        return pending != null ? pending : rules;
+    }
+
+    /*
+    Returns the rules the last evaluate() checked, whose indices its mask uses. Only meaningful
+    on the reading thread, where no evaluate() can swap in a newer table in between.
+     */
+    public ThresholdRules getEvaluatedRules()
+    {
+        return rules;
+    }
+
+    /*
+    Checks a reading, with one value per channel indexed by channel id, against every rule.
+    Returns the mask of broken rules.
+     */
+    public long evaluate(long timestamp, double[] values)
+    {
+        ThresholdRules pending = pendingRules.getAndSet(null);
+        if (pending != null)
+        {
+            rules = pending;
+            for (int i = 0; i < MAX_RULES; i++)
+            {
+                brokenSince[i] = NOT_BROKEN;
+            }
+        }
+
+        // Change per minute since the previous reading; zero for the first one
+        double minutes = hasPrevious && timestamp > previousTimestamp ? (timestamp - previousTimestamp) / 60_000.0 : 0;
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            rates[channel] = minutes > 0 ? Math.abs(values[channel] - previousValues[channel]) / minutes : 0;
+            previousValues[channel] = values[channel];
+        }
+        previousTimestamp = timestamp;
+        hasPrevious = true;
+
+        ThresholdRules rules = this.rules;
+        long mask = 0;
+        for (int rule = 0; rule < rules.getRuleCount(); rule++)
+        {
+            int kind = rules.getKind(rule);
+            int channel = rules.getChannel(rule);
+            double limit = rules.getLimit(rule);
+            boolean broken = kind == ThresholdRules.BELOW ? values[channel] < limit
+                    : kind == ThresholdRules.ABOVE ? values[channel] > limit
+                    : rates[channel] > limit;
+
+            if (!broken)
+            {
+                brokenSince[rule] = NOT_BROKEN;
+                continue;
+            }
+            if (brokenSince[rule] == NOT_BROKEN)
+            {
+                brokenSince[rule] = timestamp;
+            }
+            if (timestamp - brokenSince[rule] >= rules.getSustainTime(rule))
+            {
+                mask |= 1L << rule;
+            }
+        }
+        return mask;
+    }
+
+    /*
+    Returns the first broken rule of a channel in a mask returned by evaluate(), or -1 if none.
+     */
+    public int firstBrokenRule(long mask, int channel)
+    {
+        ThresholdRules rules = this.rules;
+        for (int rule = 0; rule < rules.getRuleCount(); rule++)
+        {
+            if ((mask & (1L << rule)) != 0 && rules.getChannel(rule) == channel)
+            {
+                return rule;
+            }
+        }
+        return -1;
+    }
+}
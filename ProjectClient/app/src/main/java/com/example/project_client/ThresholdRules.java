@@ -0,0 +1,253 @@
+package com.example.project_client;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/*
+ThresholdRules is the threshold settings compiled into a table of primitive rules, so checking a
+reading never has to look up or parse a setting. It is immutable; when the settings change a new
+table is compiled and swapped in.
+
+Each rule watches one channel and has a kind:
+- BELOW fires when the value is under the limit (the saved minimum),
+- ABOVE fires when the value is over the limit (the saved maximum),
+- RATE fires when the value changes faster than the limit, in units per minute.
+A rule only counts as broken once it has been broken for at least its sustain time, so a single
+noisy reading does not raise an alert. ThresholdEngine keeps that state between readings.
+
+Settings read (all strings, like the rest of the settings screen), where <key> is the channel's
+setting key from the ChannelRegistry (temp, hum, pres, ...):
+- threshold_enabled (boolean) turns all rules off when false,
+- saved_min_<key> and saved_max_<key>, defaulting to the channel's default range,
+- saved_max_rate_<key> (optional, units per minute),
+- saved_sustain_seconds (optional, applies to the minimum and maximum rules),
+- saved_hysteresis_<key> (optional): how far back inside its range a value that went out has to
+  come before it counts as in range again, for the Pi's display. Defaults to a fiftieth of the
+  range and is at most a quarter of it.
+ */
+public final class ThresholdRules
+{
+    public static final int BELOW = 0;
+    public static final int ABOVE = 1;
+    public static final int RATE = 2;
+
+    private static final String SUSTAIN_KEY = "saved_sustain_seconds";
+
+    // The default hysteresis, as a fraction of the range
+    public static final double DEFAULT_HYSTERESIS = 0.02;
+
+    private final boolean enabled;
+
+    // The rule table, one entry per rule
+    private final int[] channels;
+    private final int[] kinds;
+    private final double[] limits;
+    private final long[] sustainTimes;
+
+    // The saved minimum and maximum per channel, as entered and as numbers (NaN if invalid)
+    private final String[] minTexts, maxTexts;
+    private final double[] mins, maxes;
+    private final double[] hysteresis;
+
+    private ThresholdRules(boolean enabled, int[] channels, int[] kinds, double[] limits, long[] sustainTimes,
+                           String[] minTexts, String[] maxTexts, double[] mins, double[] maxes, double[] hysteresis)
+    {
+        this.enabled = enabled;
+        this.channels = channels;
+        this.kinds = kinds;
+        this.limits = limits;
+        this.sustainTimes = sustainTimes;
+        this.minTexts = minTexts;
+        this.maxTexts = maxTexts;
+        this.mins = mins;
+        this.maxes = maxes;
+        this.hysteresis = hysteresis;
+    }
+
+    /*
+    Returns rules for the given number of channels that never fire; used while thresholds are off.
+     */
+    public static ThresholdRules disabled(int channelCount)
+    {
+        double[] noLimits = new double[channelCount];
+        Arrays.fill(noLimits, Double.NaN);
+        return new ThresholdRules(false, new int[0], new int[0], new double[0], new long[0],
+                new String[channelCount], new String[channelCount], noLimits, noLimits, new double[channelCount]);
+    }
+
+    /*
+    Compiles the rules for the default channels from the saved settings.
+     */
+    public static ThresholdRules compile(Map<String, ?> settings)
+    {
+        return compile(settings, ChannelRegistry.getDefault());
+    }
+
+    /*
+    Compiles the rules from the saved settings, e.g. SharedPreferences.getAll().
+    Settings that are missing or not numbers produce no rule.
+     */
+    public static ThresholdRules compile(Map<String, ?> settings, ChannelRegistry registry)
+    {
+        int channelCount = registry.size();
+        Object enabledSetting = settings.get("threshold_enabled");
+        if (!(enabledSetting instanceof Boolean) || !(Boolean) enabledSetting)
+        {
+            return disabled(channelCount);
+        }
+
+        int[] channels = new int[3 * channelCount];
+        int[] kinds = new int[3 * channelCount];
+        double[] limits = new double[3 * channelCount];
+        long[] sustainTimes = new long[3 * channelCount];
+        String[] minTexts = new String[channelCount];
+        String[] maxTexts = new String[channelCount];
+        double[] mins = new double[channelCount];
+        double[] maxes = new double[channelCount];
+        double[] hysteresis = new double[channelCount];
+
+        double sustainSeconds = parse(settings.get(SUSTAIN_KEY));
+        long sustainTime = sustainSeconds > 0 ? (long) (sustainSeconds * 1000) : 0;
+
+        int count = 0;
+        for (int channel = 0; channel < channelCount; channel++)
+        {
+            SensorChannel sensorChannel = registry.get(channel);
+            String settingKey = sensorChannel.getSettingKey();
+            minTexts[channel] = text(settings.get("saved_min_" + settingKey), sensorChannel.getDefaultMin());
+            maxTexts[channel] = text(settings.get("saved_max_" + settingKey), sensorChannel.getDefaultMax());
+            mins[channel] = parse(minTexts[channel]);
+            maxes[channel] = parse(maxTexts[channel]);
+            double range = maxes[channel] - mins[channel];
+            if (range > 0)
+            {
+                double margin = parse(settings.get("saved_hysteresis_" + settingKey));
+                margin = margin >= 0 ? margin : DEFAULT_HYSTERESIS * range;
+                hysteresis[channel] = Math.min(margin, range / 4);
+            }
+
+            if (!Double.isNaN(mins[channel]))
+            {
+                channels[count] = channel;
+                kinds[count] = BELOW;
+                limits[count] = mins[channel];
+                sustainTimes[count] = sustainTime;
+                count++;
+            }
+            if (!Double.isNaN(maxes[channel]))
+            {
+                channels[count] = channel;
+                kinds[count] = ABOVE;
+                limits[count] = maxes[channel];
+                sustainTimes[count] = sustainTime;
+                count++;
+            }
+            double maxRate = parse(settings.get("saved_max_rate_" + settingKey));
+            if (maxRate > 0)
+            {
+                channels[count] = channel;
+                kinds[count] = RATE;
+                limits[count] = maxRate;
+                count++;
+            }
+        }
+
+        return new ThresholdRules(true, Arrays.copyOf(channels, count), Arrays.copyOf(kinds, count),
+                Arrays.copyOf(limits, count), Arrays.copyOf(sustainTimes, count), minTexts, maxTexts, mins, maxes, hysteresis);
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    public int getRuleCount()
+    {
+        return channels.length;
+    }
+
+    public int getChannel(int rule)
+    {
+        return channels[rule];
+    }
+
+    public int getKind(int rule)
+    {
+        return kinds[rule];
+    }
+
+    public double getLimit(int rule)
+    {
+        return limits[rule];
+    }
+
+    public long getSustainTime(int rule)
+    {
+        return sustainTimes[rule];
+    }
+
+    /*
+    Returns the saved minimum of a channel as it was entered, for display.
+     */
+    public String getMinText(int channel)
+    {
+        return minTexts[channel];
+    }
+
+    public String getMaxText(int channel)
+    {
+        return maxTexts[channel];
+    }
+
+    /*
+    Returns true if the channel has a valid minimum and maximum.
+     */
+    public boolean hasRange(int channel)
+    {
+        return !Double.isNaN(mins[channel]) && !Double.isNaN(maxes[channel]);
+    }
+
+    /*
+    Checks a single value against the saved minimum and maximum of its channel,
+    ignoring sustain times. Returns false if the channel has no valid range.
+     */
+    public boolean isOutOfRange(int channel, double value)
+    {
+        return value < mins[channel] || value > maxes[channel];
+    }
+
+    public double getHysteresis(int channel)
+    {
+        return hysteresis[channel];
+    }
+
+    /*
+    Checks whether a value that was out of range has come back inside it by at least the
+    channel's hysteresis, so a value wavering at a limit does not keep changing state.
+     */
+    public boolean isBackInRange(int channel, double value)
+    {
+        return !(value < mins[channel] + hysteresis[channel]) && !(value > maxes[channel] - hysteresis[channel]);
+    }
+
+    private static String text(Object setting, String defaultText)
+    {
+        return setting instanceof String ? (String) setting : defaultText;
+    }
+
+    private static double parse(Object setting)
+    {
+        if (!(setting instanceof String))
+        {
+            return Double.NaN;
+        }
+        try
+        {
+            return Double.parseDouble((String) setting);
+        }
+        catch (NumberFormatException e)
+        {
+            return Double.NaN;
+        }
+    }
+}
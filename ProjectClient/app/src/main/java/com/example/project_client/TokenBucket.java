@@ -0,0 +1,87 @@
+package com.example.project_client;
+
+/*
+TokenBucket limits how often something may happen while still letting a short burst through.
+It holds up to capacity tokens and starts full; every event takes one, and one is added back
+every refillIntervalMs. So at most capacity events happen at once, and after that one per
+interval for as long as events keep coming.
+Times are passed in, in milliseconds of any steady clock, so it can be tested without waiting.
+It is not safe to share between threads.
+ */
+public class TokenBucket
+{
+    private static final long NOT_STARTED = Long.MIN_VALUE;
+
+    private final int capacity;
+    private final long refillIntervalMs;
+
+    private int tokens;
+
+    // When the last token was added, or NOT_STARTED before the first call
+    private long lastRefillMs = NOT_STARTED;
+
+    public TokenBucket(int capacity, long refillIntervalMs)
+    {
+        if (capacity < 1 || refillIntervalMs < 1)
+        {
+            throw new IllegalArgumentException("Invalid bucket: " + capacity + " tokens, " + refillIntervalMs + " ms");
+        }
+        this.capacity = capacity;
+        this.refillIntervalMs = refillIntervalMs;
+        tokens = capacity;
+    }
+
+    /*
+    Takes a token if there is one. Returns false, taking nothing, if the bucket is empty.
+     */
+    public boolean tryTake(long nowMs)
+    {
+        refill(nowMs);
+        if (tokens == 0)
+        {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    public int getTokens(long nowMs)
+    {
+        refill(nowMs);
+        return tokens;
+    }
+
+    /*
+    Returns when the next token can be taken: nowMs if there is one already.
+     */
+    public long getNextTokenTime(long nowMs)
+    {
+        refill(nowMs);
+        return tokens > 0 ? nowMs : lastRefillMs + refillIntervalMs;
+    }
+
+    private void refill(long nowMs)
+    {
+        if (lastRefillMs == NOT_STARTED || tokens == capacity)
+        {
+            // A full bucket does not save up time towards the next token
+            lastRefillMs = nowMs;
+            return;
+        }
+        long gained = (nowMs - lastRefillMs) / refillIntervalMs;
+        if (gained <= 0)
+        {
+            return;
+        }
+        if (gained >= capacity - tokens)
+        {
+            tokens = capacity;
+            lastRefillMs = nowMs;
+        }
+        else
+        {
+            tokens += (int) gained;
+            lastRefillMs += gained * refillIntervalMs;
+        }
+    }
+}
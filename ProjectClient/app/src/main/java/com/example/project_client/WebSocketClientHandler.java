@@ -1,25 +1,127 @@
 package com.example.project_client;
 
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
 import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.Protocol;
 import android.util.Log;
 
-import org.json.JSONObject;  // Import for JSON parsing
-
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /*
 WebSocketClientHandler manages the WebSocket connection to the server,
 handles incoming sensor data messages, and provides connection status.
-It parses JSON data from the server and notifies listeners about
-new sensor data or connection errors.
+It decodes the frames from the server and notifies listeners about new sensor data or
+connection errors. The handshake offers the compact binary format of BinaryFrameDecoder; a server
+that accepts it sends binary frames, any other server keeps sending JSON for SensorFrameDecoder.
+A server sampling faster than once per frame sends batch frames, which are unpacked into a reused
+ReadingBatch and passed on with one onReadingBatch() call instead of one call per sample.
+
+The session is a small state machine (see State) whose transitions are atomic, since the
+WebSocket thread, the reconnect timer and the UI all change it. When the connection drops the
+handler reconnects by itself after a ReconnectBackoff delay, until disconnectWebSocket() is
+called. After a reconnect it asks the server to resume from the last reading it received, and the
+ResumeBuffer passes the missed readings from the server's backfill frame on before the live ones.
+Commands for the Pi go through a CommandQueue: they are kept while the connection is down, only
+the newest one per channel is sent, and the ones that pile up are sent together as one frame.
+Every frame's arrival and decoding is timed for the LatencyTracker, and the messages, parse
+failures and reconnects are counted in the MetricsRegistry.
  */
 public class WebSocketClientHandler
 {
-    private WebSocketClient webSocketClient;
-    private MessageListener messageListener;
-    private boolean isConnected = false;
+    /*
+    DISCONNECTED -> CONNECTING           connectWebSocket()
+    CONNECTING -> CONNECTED              the handshake completed
+    CONNECTING/CONNECTED -> WAITING      the connection failed or dropped
+    WAITING -> CONNECTING                the backoff delay is over
+    any -> DISCONNECTED                  disconnectWebSocket()
+     */
+    public enum State
+    {
+        DISCONNECTED,
+        CONNECTING,
+        CONNECTED,
+        WAITING_TO_RECONNECT
+    }
+
+    // Sent after a reconnect, followed by the server timestamp of the last reading received
+    public static final String RESUME_COMMAND = "RESUME_FROM:";
+
+    // How long live frames are held back waiting for the backfill after a reconnect
+    public static final long RESUME_TIMEOUT_MS = 2000;
+
+    // Separates the commands of a batched command frame
+    public static final String COMMAND_SEPARATOR = "\n";
+
+    // How long a command waits for others to go in the same frame
+    public static final long COMMAND_LINGER_MS = 50;
+
+    // One thread runs the reconnect timers of every handler in the app
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "websocket-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.DISCONNECTED);
+    private final ReconnectBackoff backoff;
+
+    // The client of the current session; callbacks from replaced clients are ignored
+    private volatile WebSocketClient webSocketClient;
+    private volatile MessageListener messageListener;
+    private URI serverUri;
+
+    // The pending reconnect, resume timeout or command send, guarded by this
+    private ScheduledFuture<?> reconnectTask;
+    private ScheduledFuture<?> resumeTimeout;
+    private ScheduledFuture<?> commandTask;
+
+    private final CommandQueue commandQueue;
+
+    // Reused for every frame, only touched from the WebSocket thread
+    private final SensorFrameDecoder frameDecoder = new SensorFrameDecoder();
+    private final BinaryFrameDecoder binaryDecoder = new BinaryFrameDecoder();
+    private final ReadingBatch batch = new ReadingBatch(ChannelRegistry.getDefault().size(), 16);
+    private final LatencyTracker latencyTracker = LatencyTracker.getInstance();
+
+    // Shared by every handler of the app
+    private final MetricsRegistry.Meter messagesReceived = MetricsRegistry.getDefault().meter("websocket.messages");
+    private final MetricsRegistry.Meter parseFailures = MetricsRegistry.getDefault().meter("websocket.parse_failures");
+    private final MetricsRegistry.Counter bytesReceived = MetricsRegistry.getDefault().counter("websocket.bytes");
+    private final MetricsRegistry.Counter backfills = MetricsRegistry.getDefault().counter("websocket.backfills");
+    private final MetricsRegistry.Counter reconnects = MetricsRegistry.getDefault().counter("websocket.reconnects");
+    private final MetricsRegistry.Counter commandsSent = MetricsRegistry.getDefault().counter("websocket.commands_sent");
+    private final MetricsRegistry.Counter commandsReplaced = MetricsRegistry.getDefault().counter("websocket.commands_replaced");
+    private final MetricsRegistry.Counter commandsDropped = MetricsRegistry.getDefault().counter("websocket.commands_dropped");
+
+    private final ResumeBuffer resumeBuffer = new ResumeBuffer((timestamp, values) ->
+    {
+        MessageListener listener = messageListener;
+        if (listener != null)
+        {
+            listener.onReading(timestamp, values);
+        }
+    }, batch ->
+    {
+        MessageListener listener = messageListener;
+        if (listener != null)
+        {
+            listener.onReadingBatch(batch);
+        }
+    });
+    private final SensorFrameDecoder.FrameVisitor backfillVisitor = resumeBuffer::onBackfill;
 
     /*
     Interface for receiving WebSocket events and sensor data updates.
@@ -28,8 +130,27 @@ public class WebSocketClientHandler
     {
         /*
         Called when new sensor data is received from the server.
+        The timestamp is the time the frame arrived, in milliseconds since the epoch; for readings
+        backfilled after a reconnect it is the estimated time the reading would have arrived.
+        values holds one value per channel of the ChannelRegistry, indexed by channel id.
+        The array is reused for the next frame, so copy it if it is needed after this returns.
+         */
+        void onReading(long timestamp, double[] values);
+
+        /*
+        Called once for all the readings of a batch frame, oldest first, with client timestamps
+        like onReading(). The batch is reused for the next frame, so copy it if it is needed
+        after this returns. By default every reading is passed to onReading() in turn.
          */
-        void onSensorDataReceived(String temperature, String humidity, String pressure);
+        default void onReadingBatch(ReadingBatch batch)
+        {
+            double[] values = new double[batch.getChannelCount()];
+            for (int sample = 0; sample < batch.size(); sample++)
+            {
+                batch.getValues(sample, values);
+                onReading(batch.getTimestamp(sample), values);
+            }
+        }
 
         /*
         Called when a connection error occurs.
@@ -43,6 +164,22 @@ public class WebSocketClientHandler
         void onConnectionStatusChanged(boolean isConnected);
     }
 
+    public WebSocketClientHandler()
+    {
+        this(new ReconnectBackoff());
+    }
+
+    public WebSocketClientHandler(ReconnectBackoff backoff)
+    {
+        this(backoff, new CommandQueue());
+    }
+
+    public WebSocketClientHandler(ReconnectBackoff backoff, CommandQueue commandQueue)
+    {
+        this.backoff = backoff;
+        this.commandQueue = commandQueue;
+    }
+
     /*
     Sets the listener for WebSocket events and data updates.
      */
@@ -52,133 +189,396 @@ public class WebSocketClientHandler
     }
 
     /*
-    Establishes a WebSocket connection to the specified server URL.
+    Establishes a WebSocket connection to the specified server URL, replacing any current session.
+    From then on the handler keeps reconnecting until disconnectWebSocket() is called.
      */
     public void connectWebSocket(String serverUrl)
     {
+        URI uri;
         try
         {
-            URI uri = new URI(serverUrl);
-            webSocketClient = new WebSocketClient(uri)
+            uri = new URI(serverUrl);
+        }
+        catch (URISyntaxException e)
+        {
+            disconnectWebSocket();
+            e.printStackTrace();
+            MessageListener listener = messageListener;
+            if (listener != null)
+            {
+                listener.onConnectionError("Invalid server URL.");
+            }
+            return;
+        }
+
+        boolean newServer;
+        synchronized (this)
+        {
+            newServer = !uri.equals(serverUri);
+            if (newServer && serverUri != null)
+            {
+                // Commands for the previous server's LEDs are not sent to this one
+                commandQueue.clear();
+            }
+            serverUri = uri;
+            cancelTasks();
+            closeClient();
+            backoff.reset();
+            state.set(State.CONNECTING);
+            if (!newServer)
+            {
+                openClient();
+                return;
+            }
+        }
+
+        // Readings from another server cannot be resumed; forgotten outside the lock of this
+        // handler, before the new client can begin a resume
+        resumeBuffer.reset();
+        synchronized (this)
+        {
+            if (uri.equals(serverUri) && webSocketClient == null && state.get() == State.CONNECTING)
+            {
+                openClient();
+            }
+        }
+    }
+
+    /*
+    Creates the client for a new connection attempt and starts connecting.
+     */
+    private void openClient()
+    {
+        // The empty protocol accepts a server that does not pick one, which then sends JSON
+        Draft_6455 draft = new Draft_6455(Collections.emptyList(),
+                Arrays.asList(new Protocol(BinaryFrameDecoder.SENSOR_TIME_SUBPROTOCOL),
+                        new Protocol(BinaryFrameDecoder.SUBPROTOCOL), new Protocol("")));
+
+        webSocketClient = new WebSocketClient(serverUri, draft)
+        {
+            /*
+            Called when the WebSocket successfully connects to the server.
+            Notifies the listener (Activity) to update the UI (e.g. show the sensor buttons),
+            asks the server for the readings missed while disconnected and sends the commands
+            that were queued meanwhile.
+             */
+            @Override
+            public void onOpen(ServerHandshake handshakeData)
             {
-                /*
-                Called when the WebSocket successfully connects to the server.
-                Sets the internal `isConnected` flag to true and notifies the listener (Activity)
-                to update the UI (e.g. show the sensor buttons).
-                 */
-                @Override
-                public void onOpen(ServerHandshake handshakeData)
-                {
-                    isConnected = true;
 //                    Log.d("WebSocket", "Connected to WebSocket server");
-                    if (messageListener != null)
-                    {
-                        messageListener.onConnectionStatusChanged(true);
-                    }
-                }
+                connectionOpened(this);
+            }
 
-                /*
-                Called when a message is received from the server.
-                 */
-                @Override
-                public void onMessage(String message)
-                {
+            /*
+            Called when a message is received from the server.
+             */
+            @Override
+            public void onMessage(String message)
+            {
 //                    Log.d("WebSocket", "Received data: " + message);
+                if (this == webSocketClient)
+                {
+                    latencyTracker.frameReceived(System.nanoTime());
+                    messagesReceived.mark();
+                    bytesReceived.add(message.length());
                     processSensorData(message);
                 }
+            }
 
-                /*
-                Called when the WebSocket connection is closed (by server or client).
-                Notifies the listener that connection is lost.
-                 */
-                @Override
-                public void onClose(int code, String reason, boolean remote)
+            /*
+            Called when a binary frame is received, if the server accepted the binary format.
+             */
+            @Override
+            public void onMessage(ByteBuffer bytes)
+            {
+                if (this == webSocketClient)
                 {
-                    isConnected = false;
-//                    Log.d("WebSocket", "Closed with reason: " + reason);
-                    if (messageListener != null)
-                    {
-                        messageListener.onConnectionError("Server connection lost. Please try again.");
-                        messageListener.onConnectionStatusChanged(false);
-                    }
+                    latencyTracker.frameReceived(System.nanoTime());
+                    messagesReceived.mark();
+                    bytesReceived.add(bytes.remaining());
+                    processBinaryFrame(bytes);
                 }
+            }
 
-                /*
-                Called when there is a WebSocket error.
-                Sets `isConnected` to false and notifies the listener to update UI accordingly.
-                 */
-                @Override
-                public void onError(Exception ex)
-                {
-                    isConnected = false;
-                    if (messageListener != null)
-                    {
-                        messageListener.onConnectionStatusChanged(false);
-                    }
-                }
-            };
+            /*
+            Called when the WebSocket connection is closed (by server or client).
+             */
+            @Override
+            public void onClose(int code, String reason, boolean remote)
+            {
+//                    Log.d("WebSocket", "Closed with reason: " + reason);
+                connectionLost(this);
+            }
+
+            /*
+            Called when there is a WebSocket error.
+             */
+            @Override
+            public void onError(Exception ex)
+            {
+                connectionLost(this);
+            }
+        };
+        webSocketClient.connect();
+    }
 
-            webSocketClient.connect();
+    private void connectionOpened(WebSocketClient client)
+    {
+        synchronized (this)
+        {
+            if (client != webSocketClient || !state.compareAndSet(State.CONNECTING, State.CONNECTED))
+            {
+                return;
+            }
+            backoff.reset();
+            latencyTracker.connectionOpened();
+            if (resumeBuffer.beginResume())
+            {
+                client.send(RESUME_COMMAND + resumeBuffer.getResumeTimestamp());
+                resumeTimeout = SCHEDULER.schedule(resumeBuffer::finishResume, RESUME_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+            sendQueuedCommands();
         }
-        catch (URISyntaxException e)
+        MessageListener listener = messageListener;
+        if (listener != null)
         {
-            isConnected = false;
-            e.printStackTrace();
-            if (messageListener != null)
+            listener.onConnectionStatusChanged(true);
+        }
+    }
+
+    /*
+    Moves to WAITING_TO_RECONNECT and schedules the next attempt, unless the session was closed
+    on purpose or the loss was already handled (Java-WebSocket reports a failure through both
+    onError and onClose).
+     */
+    private void connectionLost(WebSocketClient client)
+    {
+        State previous;
+        boolean firstFailure;
+        synchronized (this)
+        {
+            previous = state.get();
+            if (client != webSocketClient
+                    || (previous != State.CONNECTING && previous != State.CONNECTED)
+                    || !state.compareAndSet(previous, State.WAITING_TO_RECONNECT))
             {
-                messageListener.onConnectionError("Invalid server URL.");
+                return;
             }
+            cancelTasks();
+            firstFailure = backoff.getAttempts() == 0;
+            reconnectTask = SCHEDULER.schedule(this::reconnect, backoff.nextDelay(), TimeUnit.MILLISECONDS);
+        }
+
+        // This is the WebSocket thread, so the frames still held are passed on here
+        resumeBuffer.finishResume();
+        resumeBuffer.flush();
+
+        // Report a lost session, or the first failed attempt, but not every retry after that
+        MessageListener listener = messageListener;
+        if (listener != null && (previous == State.CONNECTED || firstFailure))
+        {
+            listener.onConnectionError("Server connection lost. Reconnecting...");
+            listener.onConnectionStatusChanged(false);
+        }
+    }
+
+    private synchronized void reconnect()
+    {
+        if (state.compareAndSet(State.WAITING_TO_RECONNECT, State.CONNECTING))
+        {
+            reconnects.increment();
+            openClient();
         }
     }
 
     /*
-    Parses JSON sensor data and notifies the listener.
+    Decodes the sensor data frame, or a backfill frame, and notifies the listener.
      */
     private void processSensorData(String message)
     {
-        try
-        {
-            JSONObject jsonObject = new JSONObject(message);
-            String temperature = String.format("%.2f", jsonObject.getDouble("temperature"));
-            String humidity = String.format("%.2f", jsonObject.getDouble("humidity"));
-            String pressure = String.format("%.2f", jsonObject.getDouble("pressure"));
+        long timestamp = System.currentTimeMillis();
 
-            if (messageListener != null)
+        if (frameDecoder.decode(message))
+        {
+            latencyTracker.frameDecoded(frameDecoder.getSensorTime());
+            resumeBuffer.onLive(timestamp, frameDecoder.getTimestamp(), frameDecoder.getValues());
+            return;
+        }
+        if (frameDecoder.decodeBackfill(message, backfillVisitor) >= 0)
+        {
+            backfills.increment();
+            synchronized (this)
             {
-                messageListener.onSensorDataReceived(temperature, humidity, pressure);
+                if (resumeTimeout != null)
+                {
+                    resumeTimeout.cancel(false);
+                    resumeTimeout = null;
+                }
             }
+            resumeBuffer.finishResume();
+            resumeBuffer.flush();
+            return;
         }
-        catch (Exception e)
+
+        Log.e("WebSocket", "Error parsing JSON: " + message);
+        reportParseError();
+    }
+
+    /*
+    Decodes a binary sensor data frame or batch frame in place and notifies the listener.
+    Backfill frames are always JSON, so they arrive through processSensorData().
+     */
+    private void processBinaryFrame(ByteBuffer frame)
+    {
+        long timestamp = System.currentTimeMillis();
+
+        if (BinaryFrameDecoder.peekVersion(frame) == BinaryFrameDecoder.BATCH_VERSION)
         {
-            Log.e("WebSocket", "Error parsing JSON: " + e.getMessage());
-            if (messageListener != null)
+            if (binaryDecoder.decodeBatch(frame, batch))
             {
-                messageListener.onConnectionError("Error parsing sensor data.");
+                latencyTracker.frameDecoded(binaryDecoder.getSensorTime());
+                resumeBuffer.onLiveBatch(timestamp, batch);
+                return;
             }
         }
+        else if (binaryDecoder.decode(frame))
+        {
+            latencyTracker.frameDecoded(binaryDecoder.getSensorTime());
+            resumeBuffer.onLive(timestamp, binaryDecoder.getTimestamp(), binaryDecoder.getValues());
+            return;
+        }
+
+        Log.e("WebSocket", "Error parsing binary frame of " + frame.remaining() + " bytes");
+        reportParseError();
+    }
+
+    private void reportParseError()
+    {
+        parseFailures.mark();
+        MessageListener listener = messageListener;
+        if (listener != null)
+        {
+            listener.onConnectionError("Error parsing sensor data.");
+        }
     }
 
    /*
-   Closes the WebSocket connection if it exists.
+   Closes the WebSocket connection if it exists and stops reconnecting. Frames still held for a
+   resume are passed on by the WebSocket thread of the next connection.
     */
     public void disconnectWebSocket()
     {
-        if (webSocketClient != null)
+        State previous;
+        synchronized (this)
         {
-            webSocketClient.close();
-            isConnected = false;
+            previous = state.getAndSet(State.DISCONNECTED);
+            cancelTasks();
+            closeClient();
+        }
+        resumeBuffer.finishResume();
+
+        MessageListener listener = messageListener;
+        if (previous == State.CONNECTED && listener != null)
+        {
+            listener.onConnectionStatusChanged(false);
+        }
+    }
+
+    private void closeClient()
+    {
+        WebSocketClient client = webSocketClient;
+        webSocketClient = null;
+        if (client != null)
+        {
+            client.close();
+        }
+    }
+
+    private void cancelTasks()
+    {
+        if (reconnectTask != null)
+        {
+            reconnectTask.cancel(false);
+            reconnectTask = null;
+        }
+        if (resumeTimeout != null)
+        {
+            resumeTimeout.cancel(false);
+            resumeTimeout = null;
+        }
+        if (commandTask != null)
+        {
+            commandTask.cancel(false);
+            commandTask = null;
         }
     }
 
     /*
-    Sends a message through the WebSocket connection.
+    Queues a command for the server, replacing the one still waiting with the same key (a
+    channel's command prefix, e.g. "TEMP"). It is sent within COMMAND_LINGER_MS if connected,
+    together with any others queued by then, or as soon as the connection is back.
      */
-    public void sendMessage(String message)
+    public void sendCommand(String key, String command)
     {
-        if (webSocketClient != null)
+        int result = commandQueue.offer(key, command);
+        if (result == CommandQueue.REPLACED)
         {
-            webSocketClient.send(message);
+            commandsReplaced.increment();
         }
+        else if (result == CommandQueue.DROPPED_OLDEST)
+        {
+            commandsDropped.increment();
+        }
+
+        synchronized (this)
+        {
+            if (commandTask == null && state.get() == State.CONNECTED)
+            {
+                commandTask = SCHEDULER.schedule(this::sendQueuedCommands, COMMAND_LINGER_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /*
+    Returns the number of commands waiting to be sent.
+     */
+    public int getQueuedCommandCount()
+    {
+        return commandQueue.size();
+    }
+
+    /*
+    Sends every queued command in one frame, separated by COMMAND_SEPARATOR; a single command is
+    sent on its own, as older servers expect. If the connection is down they stay queued.
+     */
+    private synchronized void sendQueuedCommands()
+    {
+        commandTask = null;
+        WebSocketClient client = webSocketClient;
+        if (client == null || state.get() != State.CONNECTED)
+        {
+            return;
+        }
+        Map<String, String> commands = commandQueue.drain();
+        if (commands == null)
+        {
+            return;
+        }
+        try
+        {
+            client.send(String.join(COMMAND_SEPARATOR, commands.values()));
+            commandsSent.add(commands.size());
+        }
+        catch (WebsocketNotConnectedException e)
+        {
+            // Closed before onClose got here; they go out after the reconnect
+            commandQueue.restore(commands);
+        }
+    }
+
+    public State getState()
+    {
+        return state.get();
     }
 
     /*
@@ -186,6 +586,14 @@ public class WebSocketClientHandler
      */
     public boolean isConnected()
     {
-        return isConnected;
+        return state.get() == State.CONNECTED;
+    }
+
+    /*
+    Checks if the session is connected, connecting or waiting to reconnect.
+     */
+    public boolean isActive()
+    {
+        return state.get() != State.DISCONNECTED;
     }
 }
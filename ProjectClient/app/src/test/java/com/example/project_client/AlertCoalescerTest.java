@@ -0,0 +1,85 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link AlertCoalescer}.
+ */
+public class AlertCoalescerTest {
+
+    private static AlertCoalescer.Alert alert(String source, int channel, String message) {
+        return new AlertCoalescer.Alert(source, channel, "Title " + channel, message);
+    }
+
+    @Test
+    public void flush_waitsForTheWindowToClose() {
+        AlertCoalescer coalescer = new AlertCoalescer(2000, new TokenBucket(3, 60_000));
+        assertEquals(Long.MAX_VALUE, coalescer.getFlushTime());
+        coalescer.offer(alert(null, 0, "a"), 100);
+        assertEquals(2100, coalescer.getFlushTime());
+        assertNull(coalescer.flush(2099));
+
+        AlertCoalescer.Dispatch dispatch = coalescer.flush(2100);
+        assertNotNull(dispatch);
+        assertEquals(1, dispatch.getAlerts().size());
+        assertFalse(dispatch.isSummary());
+        assertEquals(0, coalescer.getPendingCount());
+        assertEquals(Long.MAX_VALUE, coalescer.getFlushTime());
+    }
+
+    @Test
+    public void offer_mergesABurstAcrossChannelsAndDevices() {
+        AlertCoalescer coalescer = new AlertCoalescer(2000, new TokenBucket(3, 60_000));
+        coalescer.offer(alert(null, 0, "a"), 0);
+        coalescer.offer(alert(null, 1, "b"), 500);
+        coalescer.offer(alert("kitchen", 0, "c"), 1000);
+        coalescer.offer(alert(null, 0, "d"), 1500);
+        // Later alerts do not push the window out
+        assertEquals(2000, coalescer.getFlushTime());
+
+        AlertCoalescer.Dispatch dispatch = coalescer.flush(2000);
+        assertTrue(dispatch.isSummary());
+        assertEquals(3, dispatch.getAlerts().size());
+        assertEquals(1, dispatch.getMergedCount());
+        // The newer alert of a channel replaces the older one in its place
+        assertEquals("d", dispatch.getAlerts().get(0).getMessage());
+        assertEquals("b", dispatch.getAlerts().get(1).getMessage());
+        assertEquals("kitchen", dispatch.getAlerts().get(2).getSource());
+    }
+
+    @Test
+    public void flush_holdsAlertsUntilTheNextToken() {
+        AlertCoalescer coalescer = new AlertCoalescer(0, new TokenBucket(1, 60_000));
+        coalescer.offer(alert(null, 0, "a"), 0);
+        assertNotNull(coalescer.flush(0));
+
+        coalescer.offer(alert(null, 0, "b"), 1000);
+        coalescer.offer(alert(null, 1, "c"), 2000);
+        coalescer.offer(alert(null, 0, "d"), 3000);
+        assertNull(coalescer.flush(1000));
+        assertEquals(60_000, coalescer.getFlushTime());
+        assertEquals(2, coalescer.getPendingCount());
+
+        AlertCoalescer.Dispatch dispatch = coalescer.flush(60_000);
+        assertEquals(2, dispatch.getAlerts().size());
+        assertEquals(1, dispatch.getMergedCount());
+        assertEquals("d", dispatch.getAlerts().get(0).getMessage());
+    }
+
+    @Test
+    public void clear_dropsTheWaitingAlerts() {
+        AlertCoalescer coalescer = new AlertCoalescer(2000, new TokenBucket(3, 60_000));
+        coalescer.offer(alert(null, 0, "a"), 0);
+        coalescer.offer(alert(null, 0, "b"), 0);
+        coalescer.clear();
+        assertEquals(0, coalescer.getPendingCount());
+        assertNull(coalescer.flush(10_000));
+
+        coalescer.offer(alert(null, 1, "c"), 10_000);
+        AlertCoalescer.Dispatch dispatch = coalescer.flush(12_000);
+        assertEquals(0, dispatch.getMergedCount());
+        assertEquals("c", dispatch.getAlerts().get(0).getMessage());
+    }
+}
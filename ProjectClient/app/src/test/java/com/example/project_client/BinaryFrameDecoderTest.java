@@ -0,0 +1,280 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BinaryFrameDecoder}.
+ */
+public class BinaryFrameDecoderTest {
+    private static final long TIMESTAMP = 1_718_000_000_123L;
+    private static final String JSON_FRAME =
+            "{\"timestamp\": 1718000000123, \"temperature\": 24.31, \"humidity\": 41.5, \"pressure\": 1012.87}";
+
+    @Test
+    public void decode_readsWhatEncodeWrote() {
+        ByteBuffer frame = encode(TIMESTAMP, 24.31, 41.5, 1012.87);
+        assertEquals(28, frame.remaining());
+        assertEquals(BinaryFrameDecoder.frameSize(3), frame.remaining());
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder();
+        assertTrue(decoder.decode(frame));
+        assertEquals(TIMESTAMP, decoder.getTimestamp());
+        assertEquals(24.31f, decoder.getValue(ChannelRegistry.TEMPERATURE), 0);
+        assertEquals(41.5f, decoder.getValue(ChannelRegistry.HUMIDITY), 0);
+        assertEquals(1012.87f, decoder.getValue(ChannelRegistry.PRESSURE), 0);
+    }
+
+    @Test
+    public void decode_matchesTheServerLayout() {
+        // struct.pack("<BBxxIq3f", 1, 0, 0b111, 1718000000123, 1.5, 2.5, 3.5) in project-server.py
+        ByteBuffer frame = ByteBuffer.allocate(28).order(ByteOrder.LITTLE_ENDIAN);
+        frame.put((byte) 1).put(new byte[3]).putInt(0b111).putLong(TIMESTAMP)
+                .putFloat(1.5f).putFloat(2.5f).putFloat(3.5f).flip();
+        frame.order(ByteOrder.BIG_ENDIAN);
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder();
+        assertTrue(decoder.decode(frame));
+        assertEquals(TIMESTAMP, decoder.getTimestamp());
+        assertEquals(1.5, decoder.getValue(ChannelRegistry.TEMPERATURE), 0);
+        assertEquals(3.5, decoder.getValue(ChannelRegistry.PRESSURE), 0);
+
+        // The buffer is left as it was
+        assertEquals(0, frame.position());
+        assertEquals(28, frame.limit());
+        assertEquals(ByteOrder.BIG_ENDIAN, frame.order());
+    }
+
+    @Test
+    public void decode_readsTheSensorTimeIfFlagged() {
+        // encode_reading() in project-server.py for a client of the sensor time subprotocol
+        ByteBuffer frame = ByteBuffer.allocate(36).order(ByteOrder.LITTLE_ENDIAN);
+        frame.put((byte) 1).put((byte) BinaryFrameDecoder.FLAG_SENSOR_TIME).put(new byte[2]).putInt(0b111)
+                .putLong(TIMESTAMP).putFloat(1.5f).putFloat(2.5f).putFloat(3.5f).putLong(987_654_321L).flip();
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder();
+        assertTrue(decoder.decode(frame));
+        assertEquals(987_654_321L, decoder.getSensorTime());
+        assertEquals(3.5, decoder.getValue(ChannelRegistry.PRESSURE), 0);
+
+        // The flag without the trailing clock is a frame of the wrong length, and the other way round
+        assertFalse(decoder.decode(ByteBuffer.wrap(frame.array(), 0, 28)));
+        frame.put(1, (byte) 0);
+        assertFalse(decoder.decode(frame));
+
+        assertTrue(decoder.decode(encode(TIMESTAMP, 1, 2, 3)));
+        assertEquals(SensorFrameDecoder.NO_TIMESTAMP, decoder.getSensorTime());
+
+        ReadingBatch batch = new ReadingBatch(3, 2);
+        batch.add(TIMESTAMP, new double[]{1, 2, 3});
+        batch.add(TIMESTAMP + 10, new double[]{4, 5, 6});
+        ByteBuffer batchFrame = ByteBuffer.allocate(BinaryFrameDecoder.batchFrameSize(2, 3) + BinaryFrameDecoder.SENSOR_TIME_SIZE);
+        BinaryFrameDecoder.encodeBatch(batchFrame, batch, 42L);
+        batchFrame.flip();
+        ReadingBatch decoded = new ReadingBatch(3, 2);
+        assertTrue(decoder.decodeBatch(batchFrame, decoded));
+        assertEquals(42L, decoder.getSensorTime());
+        assertEquals(6, decoded.getValue(1, ChannelRegistry.PRESSURE), 0);
+    }
+
+    @Test
+    public void decode_readsFromTheBufferPosition() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put(new byte[7]);
+        BinaryFrameDecoder.encode(buffer, TIMESTAMP, new double[]{1, 2, 3});
+        buffer.flip().position(7);
+
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder();
+        assertTrue(decoder.decode(buffer));
+        assertEquals(3, decoder.getValue(ChannelRegistry.PRESSURE), 0);
+        assertEquals(7, buffer.position());
+    }
+
+    @Test
+    public void decode_rejectsMalformedFrames() {
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder();
+        ByteBuffer frame = encode(TIMESTAMP, 1, 2, 3);
+
+        assertFalse(decoder.decode(ByteBuffer.allocate(0)));
+        assertFalse(decoder.decode(ByteBuffer.wrap(frame.array(), 0, 27)));  // Cut short
+        assertFalse(decoder.decode(ByteBuffer.allocate(40).put(frame.duplicate()).flip().limit(32)));  // Too long
+
+        ByteBuffer wrongVersion = ByteBuffer.wrap(frame.array().clone());
+        wrongVersion.put(0, (byte) 2);
+        assertFalse(decoder.decode(wrongVersion));
+
+        // Humidity is required
+        assertFalse(decoder.decode(encode(TIMESTAMP, 1, Double.NaN, 3)));
+    }
+
+    @Test
+    public void decode_handlesOptionalAndUnknownChannels() {
+        ChannelRegistry registry = new ChannelRegistry(
+                ChannelRegistry.getDefault().get(0),
+                ChannelRegistry.getDefault().get(1),
+                ChannelRegistry.getDefault().get(2),
+                new SensorChannel(3, "co2", "CO2", "ppm", "co2", "CO2", "400", "1000", false));
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder(registry);
+
+        // The optional channel is missing
+        assertTrue(decoder.decode(encode(TIMESTAMP, 1, 2, 3)));
+        assertTrue(Double.isNaN(decoder.getValue(3)));
+
+        // A newer server sends a fifth channel this client does not know
+        assertTrue(decoder.decode(encode(TIMESTAMP, 1, 2, 3, 415, 9)));
+        assertEquals(415, decoder.getValue(3), 0);
+
+        BinaryFrameDecoder threeChannels = new BinaryFrameDecoder();
+        assertFalse(threeChannels.decode(encode(TIMESTAMP, 1, Double.NaN, 3, 4)));
+        assertFalse(threeChannels.decode(encode(TIMESTAMP, 1, 2, Double.NaN, 4)));
+        assertTrue(threeChannels.decode(encode(TIMESTAMP, 1, 2, 3, 4)));
+        assertEquals(3, threeChannels.getValue(ChannelRegistry.PRESSURE), 0);
+    }
+
+    @Test
+    public void decodeBatch_matchesTheServerLayout() {
+        // encode_batch() in project-server.py for three readings 10 ms apart
+        ByteBuffer frame = ByteBuffer.wrap(hex("0200030007000000e803000000000000" + "00000a000a000000"
+                + "0000803f000000400000404000008040" + "0000a0400000c0400000e04000000041" + "00001041"));
+        ReadingBatch batch = new ReadingBatch(3, 1);
+        assertTrue(new BinaryFrameDecoder().decodeBatch(frame, batch));
+
+        assertEquals(3, batch.size());
+        assertEquals(1000, batch.getTimestamp(0));
+        assertEquals(1010, batch.getTimestamp(1));
+        assertEquals(1020, batch.getTimestamp(2));
+        for (int sample = 0; sample < 3; sample++) {
+            for (int channel = 0; channel < 3; channel++) {
+                assertEquals(sample * 3 + channel + 1, batch.getValue(sample, channel), 0);
+            }
+        }
+        assertEquals(0, frame.position());
+    }
+
+    @Test
+    public void decodeBatch_readsWhatEncodeBatchWrote() {
+        ReadingBatch batch = new ReadingBatch(3, 4);
+        for (int i = 0; i < 100; i++) {
+            batch.add(TIMESTAMP + 10L * i + (i % 3), new double[]{20 + i, 40, 1000 - i});
+        }
+        ByteBuffer frame = ByteBuffer.allocate(BinaryFrameDecoder.batchFrameSize(100, 3));
+        BinaryFrameDecoder.encodeBatch(frame, batch);
+        assertFalse(frame.hasRemaining());
+        frame.flip();
+        assertEquals(BinaryFrameDecoder.BATCH_VERSION, BinaryFrameDecoder.peekVersion(frame));
+
+        ReadingBatch decoded = new ReadingBatch(3, 1);
+        assertTrue(new BinaryFrameDecoder().decodeBatch(frame, decoded));
+        assertEquals(100, decoded.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(batch.getTimestamp(i), decoded.getTimestamp(i));
+            assertEquals(20 + i, decoded.getValue(i, ChannelRegistry.TEMPERATURE), 0);
+            assertEquals(1000 - i, decoded.getValue(i, ChannelRegistry.PRESSURE), 0);
+        }
+
+        // A single frame is not a batch and the other way round
+        assertFalse(new BinaryFrameDecoder().decode(frame));
+        assertFalse(new BinaryFrameDecoder().decodeBatch(encode(TIMESTAMP, 1, 2, 3), decoded));
+    }
+
+    @Test
+    public void decodeBatch_rejectsMalformedFrames() {
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder();
+        ReadingBatch batch = new ReadingBatch(3, 4);
+        batch.add(TIMESTAMP, new double[]{1, 2, 3});
+        batch.add(TIMESTAMP + 10, new double[]{4, 5, 6});
+        ByteBuffer frame = ByteBuffer.allocate(BinaryFrameDecoder.batchFrameSize(2, 3));
+        BinaryFrameDecoder.encodeBatch(frame, batch);
+        frame.flip();
+
+        assertFalse(decoder.decodeBatch(ByteBuffer.wrap(frame.array(), 0, frame.limit() - 4), batch));
+
+        ByteBuffer noSamples = ByteBuffer.wrap(frame.array().clone());
+        noSamples.putShort(2, (short) 0);
+        assertFalse(decoder.decodeBatch(noSamples, batch));
+
+        ReadingBatch withoutHumidity = new ReadingBatch(3, 1);
+        withoutHumidity.add(TIMESTAMP, new double[]{1, Double.NaN, 3});
+        ByteBuffer missing = ByteBuffer.allocate(BinaryFrameDecoder.batchFrameSize(1, 2));
+        BinaryFrameDecoder.encodeBatch(missing, withoutHumidity);
+        missing.flip();
+        assertFalse(decoder.decodeBatch(missing, batch));
+    }
+
+    @Test
+    public void decodeBatch_skipsUnknownChannels() {
+        ReadingBatch batch = new ReadingBatch(5, 2);
+        batch.add(TIMESTAMP, new double[]{1, 2, 3, 4, 5});
+        batch.add(TIMESTAMP + 5, new double[]{6, 7, 8, 9, 10});
+        ByteBuffer frame = ByteBuffer.allocate(BinaryFrameDecoder.batchFrameSize(2, 5));
+        BinaryFrameDecoder.encodeBatch(frame, batch);
+        frame.flip();
+
+        ReadingBatch decoded = new ReadingBatch(3, 2);
+        assertTrue(new BinaryFrameDecoder().decodeBatch(frame, decoded));
+        assertEquals(3, decoded.getValue(0, ChannelRegistry.PRESSURE), 0);
+        assertEquals(6, decoded.getValue(1, ChannelRegistry.TEMPERATURE), 0);
+        assertEquals(8, decoded.getValue(1, ChannelRegistry.PRESSURE), 0);
+    }
+
+    @Test
+    public void decode_doesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        BinaryFrameDecoder decoder = new BinaryFrameDecoder();
+        ByteBuffer frame = encode(TIMESTAMP, 24.31, 41.5, 1012.87);
+
+        double sum = 0;
+        for (int i = 0; i < 200_000; i++) {
+            decoder.decode(frame);
+            sum += decoder.getValue(ChannelRegistry.TEMPERATURE);
+        }
+
+        long overheadBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long overhead = threadBean.getThreadAllocatedBytes(threadId) - overheadBefore;
+
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 100_000; i++) {
+                decoder.decode(frame);
+                sum += decoder.getValue(ChannelRegistry.PRESSURE);
+            }
+            long after = threadBean.getThreadAllocatedBytes(threadId);
+            allocated = Math.min(allocated, after - before - overhead);
+        }
+
+        assertTrue(sum > 0);
+        assertEquals("bytes allocated by 100000 decodes", 0, allocated);
+    }
+
+    @Test
+    public void binaryFrame_isAFractionOfTheJsonSize() {
+        // Decoding speed is measured by FrameDecodingBenchmark in the benchmarks module
+        int binaryBytes = encode(TIMESTAMP, 24.31, 41.5, 1012.87).remaining();
+        int jsonBytes = JSON_FRAME.getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(binaryBytes * 3 < jsonBytes);
+    }
+
+    private static ByteBuffer encode(long timestamp, double... values) {
+        ByteBuffer frame = ByteBuffer.allocate(BinaryFrameDecoder.frameSize(values.length));
+        BinaryFrameDecoder.encode(frame, timestamp, values);
+        frame.flip();
+        return frame;
+    }
+
+    private static byte[] hex(String text) {
+        byte[] bytes = new byte[text.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(text.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
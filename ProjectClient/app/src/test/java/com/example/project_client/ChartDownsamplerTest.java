@@ -0,0 +1,154 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ChartDownsampler}.
+ */
+public class ChartDownsamplerTest {
+    private static final int BUCKETS = 100;
+    private static final long BUCKET_WIDTH = 1000;
+
+    @Test
+    public void update_reducesToAboutOnePointPerBucket() {
+        ReadingStore store = new ReadingStore(20_000);
+        for (int i = 0; i < 20_000; i++) {
+            store.append(i * 10L, new double[]{(float) Math.sin(i / 50.0), 0, 0});
+        }
+
+        ChartDownsampler lttb = downsampler(store, ChartDownsampler.Mode.LTTB);
+        ChartDownsampler minMax = downsampler(store, ChartDownsampler.Mode.MIN_MAX);
+        lttb.update();
+        minMax.update();
+
+        assertEquals(BUCKETS, lttb.getPointCount());
+        assertTrue(minMax.getPointCount() <= 2 * BUCKETS);
+        assertTrue(minMax.getPointCount() > BUCKETS);
+    }
+
+    @Test
+    public void update_keepsPeaks() {
+        for (ChartDownsampler.Mode mode : ChartDownsampler.Mode.values()) {
+            ReadingStore store = new ReadingStore(20_000);
+            for (int i = 0; i < 20_000; i++) {
+                float value = i == 12_345 ? 35f : 20f + (float) Math.sin(i / 300.0);
+                store.append(i * 10L, new double[]{value, 0, 0});
+            }
+
+            ChartDownsampler downsampler = downsampler(store, mode);
+            downsampler.update();
+
+            assertEquals(mode.name(), 35f, maxValue(downsampler), 0);
+            assertTrue(mode.name(), containsTimestamp(downsampler, 123_450));
+        }
+    }
+
+    @Test
+    public void update_keepsShortThresholdCrossing() {
+        float threshold = 25f;
+        for (ChartDownsampler.Mode mode : ChartDownsampler.Mode.values()) {
+            ReadingStore store = new ReadingStore(20_000);
+            for (int i = 0; i < 20_000; i++) {
+                // Three readings just above the threshold, the rest well below it
+                float value = i >= 15_000 && i < 15_003 ? 25.5f : 20f + (i % 7) * 0.1f;
+                store.append(i * 10L, new double[]{value, 0, 0});
+            }
+
+            ChartDownsampler downsampler = downsampler(store, mode);
+            downsampler.update();
+
+            assertTrue(mode.name(), maxValue(downsampler) > threshold);
+        }
+    }
+
+    @Test
+    public void update_reportsOnlyTheChangedPoints() {
+        for (ChartDownsampler.Mode mode : ChartDownsampler.Mode.values()) {
+            ReadingStore store = new ReadingStore(50_000);
+            ChartDownsampler downsampler = downsampler(store, mode);
+            List<Long> chartTimes = new ArrayList<>();
+            List<Float> chartValues = new ArrayList<>();
+
+            for (int i = 0; i < 30_000; i++) {
+                store.append(i * 37L, new double[]{(float) Math.sin(i / 40.0) + (i % 13 == 0 ? 3 : 0), 0, 0});
+                if (i % 25 != 0) {
+                    continue;
+                }
+
+                downsampler.update();
+                assertTrue(downsampler.getFirstChangedPoint() >= downsampler.getPointCount() - 4);
+
+                // Apply the changes the way ChartViewScreen does
+                for (int r = 0; r < downsampler.getRemovedPointCount(); r++) {
+                    chartTimes.remove(0);
+                    chartValues.remove(0);
+                }
+                while (chartTimes.size() > downsampler.getFirstChangedPoint()) {
+                    chartTimes.remove(chartTimes.size() - 1);
+                    chartValues.remove(chartValues.size() - 1);
+                }
+                for (int p = downsampler.getFirstChangedPoint(); p < downsampler.getPointCount(); p++) {
+                    chartTimes.add(downsampler.getPointTimestamp(p));
+                    chartValues.add(downsampler.getPointValue(p));
+                }
+
+                assertEquals(downsampler.getPointCount(), chartTimes.size());
+                for (int p = 0; p < chartTimes.size(); p++) {
+                    assertEquals((long) chartTimes.get(p), downsampler.getPointTimestamp(p));
+                    assertEquals(chartValues.get(p), downsampler.getPointValue(p), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void update_incrementalMatchesRecomputingFromScratch() {
+        for (ChartDownsampler.Mode mode : ChartDownsampler.Mode.values()) {
+            ReadingStore store = new ReadingStore(50_000);
+            ChartDownsampler incremental = downsampler(store, mode);
+            for (int i = 0; i < 40_000; i++) {
+                store.append(i * 23L, new double[]{(float) Math.cos(i / 25.0) * (i % 11), 0, 0});
+                if (i % 17 == 0) {
+                    incremental.update();
+                }
+            }
+            incremental.update();
+
+            ChartDownsampler fresh = downsampler(store, mode);
+            fresh.update();
+
+            assertEquals(mode.name(), fresh.getPointCount(), incremental.getPointCount());
+            // The first bucket of a fresh downsampler has no earlier bucket to compare against
+            for (int p = 2; p < fresh.getPointCount(); p++) {
+                assertEquals(mode.name(), fresh.getPointTimestamp(p), incremental.getPointTimestamp(p));
+                assertEquals(mode.name(), fresh.getPointValue(p), incremental.getPointValue(p), 0);
+            }
+        }
+    }
+
+    private static ChartDownsampler downsampler(ReadingStore store, ChartDownsampler.Mode mode) {
+        return new ChartDownsampler(store, ChannelRegistry.TEMPERATURE, mode, BUCKETS, BUCKET_WIDTH);
+    }
+
+    private static float maxValue(ChartDownsampler downsampler) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < downsampler.getPointCount(); i++) {
+            max = Math.max(max, downsampler.getPointValue(i));
+        }
+        return max;
+    }
+
+    private static boolean containsTimestamp(ChartDownsampler downsampler, long timestamp) {
+        for (int i = 0; i < downsampler.getPointCount(); i++) {
+            if (downsampler.getPointTimestamp(i) == timestamp) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
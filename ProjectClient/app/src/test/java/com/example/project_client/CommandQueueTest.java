@@ -0,0 +1,63 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CommandQueue}.
+ */
+public class CommandQueueTest {
+
+    @Test
+    public void offer_keepsOnlyTheNewestCommandPerKey() {
+        CommandQueue queue = new CommandQueue(4);
+        assertEquals(CommandQueue.ADDED, queue.offer("TEMP", "TEMP_IN_THRESHOLD:21.00"));
+        assertEquals(CommandQueue.ADDED, queue.offer("HUM", "HUM_IN_THRESHOLD:40.00"));
+        assertEquals(CommandQueue.REPLACED, queue.offer("TEMP", "TEMP_OUT_THRESHOLD:31.00"));
+        assertEquals(2, queue.size());
+
+        // The replaced command moves behind the others
+        Map<String, String> drained = queue.drain();
+        assertEquals("[HUM_IN_THRESHOLD:40.00, TEMP_OUT_THRESHOLD:31.00]", drained.values().toString());
+        assertEquals(0, queue.size());
+        assertNull(queue.drain());
+    }
+
+    @Test
+    public void offer_dropsTheOldestWhenFull() {
+        CommandQueue queue = new CommandQueue(2);
+        queue.offer("A", "a");
+        queue.offer("B", "b");
+        assertEquals(CommandQueue.DROPPED_OLDEST, queue.offer("C", "c"));
+        assertEquals("[b, c]", queue.drain().values().toString());
+    }
+
+    @Test
+    public void restore_keepsCommandsQueuedSinceTheDrain() {
+        CommandQueue queue = new CommandQueue(3);
+        queue.offer("TEMP", "TEMP_IN_THRESHOLD:21.00");
+        queue.offer("HUM", "HUM_IN_THRESHOLD:40.00");
+        Map<String, String> drained = queue.drain();
+
+        queue.offer("TEMP", "TEMP_OUT_THRESHOLD:31.00");
+        queue.offer("PRES", "PRES_IN_THRESHOLD:1000.00");
+        queue.restore(drained);
+        assertEquals("[HUM_IN_THRESHOLD:40.00, TEMP_OUT_THRESHOLD:31.00, PRES_IN_THRESHOLD:1000.00]",
+                queue.drain().values().toString());
+    }
+
+    @Test
+    public void restore_staysWithinTheCapacity() {
+        CommandQueue queue = new CommandQueue(2);
+        Map<String, String> drained = new LinkedHashMap<>();
+        drained.put("A", "a");
+        drained.put("B", "b");
+        queue.offer("C", "c");
+        queue.restore(drained);
+        assertEquals("[a, c]", queue.drain().values().toString());
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.project_client;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.framing.TextFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link DeviceFleetManager}, against stand-in Pi servers on localhost.
+ */
+public class DeviceFleetManagerTest {
+    private final List<StandInServer> servers = new ArrayList<>();
+    private DeviceFleetManager fleet;
+
+    @After
+    public void tearDown() throws Exception {
+        if (fleet != null) {
+            fleet.close();
+        }
+        for (StandInServer server : servers) {
+            server.stop(1000);
+        }
+    }
+
+    @Test
+    public void fleet_hundredDevicesShareTwoIoThreads() throws Exception {
+        final int devices = 100;
+        final int framesPerDevice = 20;
+        for (int i = 0; i < 4; i++) {
+            startServer();
+        }
+        fleet = new DeviceFleetManager(ChannelRegistry.getDefault(), 2, 64);
+        Map<String, AtomicInteger> readings = new ConcurrentHashMap<>();
+        fleet.setListener(new CountingListener(readings));
+
+        for (int i = 0; i < devices; i++) {
+            fleet.addDevice("room-" + i, servers.get(i % servers.size()).url("/room-" + i));
+        }
+        waitFor("all devices to connect", () -> fleet.getConnectedCount() == devices);
+        assertEquals(2, countFleetThreads());
+
+        // Every stand-in server streams frames to its devices, each device with its own temperature
+        for (StandInServer server : servers) {
+            for (WebSocket connection : server.getConnections()) {
+                int device = Integer.parseInt(connection.getResourceDescriptor().substring("/room-".length()));
+                for (int frame = 0; frame < framesPerDevice; frame++) {
+                    connection.send("{\"temperature\": " + device + ", \"humidity\": " + frame + ", \"pressure\": 1000}");
+                }
+            }
+        }
+
+        waitFor("all readings", () -> total(readings) == devices * framesPerDevice);
+        for (int i = 0; i < devices; i++) {
+            String deviceId = "room-" + i;
+            ReadingStore store = fleet.getReadingStore(deviceId);
+            assertEquals(deviceId, framesPerDevice, readings.get(deviceId).get());
+            assertEquals(deviceId, framesPerDevice, store.size());
+            for (int frame = 0; frame < framesPerDevice; frame++) {
+                assertEquals(deviceId, i, store.getValue(ChannelRegistry.TEMPERATURE, frame), 0);
+                assertEquals(deviceId, frame, store.getValue(ChannelRegistry.HUMIDITY, frame), 0);
+            }
+        }
+
+        // The thread count does not depend on the number of devices
+        assertEquals(2, countFleetThreads());
+    }
+
+    @Test
+    public void sendMessage_reachesOnlyThatDevice() throws Exception {
+        StandInServer server = startServer();
+        fleet = new DeviceFleetManager(ChannelRegistry.getDefault(), 1, 16);
+        fleet.addDevice("kitchen", server.url("/kitchen"));
+        fleet.addDevice("garage", server.url("/garage"));
+        waitFor("both devices to connect", () -> fleet.getConnectedCount() == 2);
+
+        assertTrue(fleet.sendMessage("garage", "TEMP_IN_THRESHOLD:21.50"));
+        assertFalse(fleet.sendMessage("attic", "TEMP_IN_THRESHOLD:21.50"));
+
+        waitFor("the message", () -> !server.messages.isEmpty());
+        assertEquals("/garage TEMP_IN_THRESHOLD:21.50", server.messages.poll());
+        Thread.sleep(100);
+        assertTrue(server.messages.isEmpty());
+    }
+
+    @Test
+    public void fragmentedAndLargeFrames_areDecoded() throws Exception {
+        StandInServer server = startServer();
+        fleet = new DeviceFleetManager(ChannelRegistry.getDefault(), 1, 16);
+        fleet.addDevice("lab", server.url("/lab"));
+        waitFor("the device to connect", () -> fleet.isConnected("lab"));
+        WebSocket connection = server.getConnections().iterator().next();
+
+        connection.sendFragmentedFrame(Opcode.TEXT, utf8("{\"temperature\": 1.5, "), false);
+        connection.sendFragmentedFrame(Opcode.TEXT, utf8("\"humidity\": 2.5, "), false);
+        connection.sendFragmentedFrame(Opcode.TEXT, utf8("\"pressure\": 3.5}"), true);
+
+        // Longer than 64 KB, so it needs the 64-bit length and arrives over several reads
+        StringBuilder note = new StringBuilder();
+        while (note.length() < 100_000) {
+            note.append("Room note é ");
+        }
+        connection.send("{\"note\": \"" + note + "\", \"temperature\": 4, \"humidity\": 5, \"pressure\": 6}");
+
+        ReadingStore store = fleet.getReadingStore("lab");
+        waitFor("both readings", () -> store.size() == 2);
+        assertEquals(1.5f, store.getValue(ChannelRegistry.TEMPERATURE, 0), 0);
+        assertEquals(3.5f, store.getValue(ChannelRegistry.PRESSURE, 0), 0);
+        assertEquals(4f, store.getValue(ChannelRegistry.TEMPERATURE, 1), 0);
+        assertEquals(6f, store.getValue(ChannelRegistry.PRESSURE, 1), 0);
+    }
+
+    @Test
+    public void newMessageInsideFragmentedOne_failsTheConnection() throws Exception {
+        StandInServer server = startServer();
+        fleet = new DeviceFleetManager(ChannelRegistry.getDefault(), 1, 16);
+        Queue<String> errors = new ConcurrentLinkedQueue<>();
+        fleet.setListener(new CountingListener(new ConcurrentHashMap<>()) {
+            @Override
+            public void onDeviceError(String deviceId, String errorMessage) {
+                errors.add(deviceId + ": " + errorMessage);
+            }
+        });
+        fleet.addDevice("lab", server.url("/lab"));
+        waitFor("the device to connect", () -> fleet.isConnected("lab"));
+        WebSocket connection = server.getConnections().iterator().next();
+
+        // A second non-final text frame instead of a continuation
+        connection.sendFragmentedFrame(Opcode.TEXT, utf8("{\"temperature\": 1.5, "), false);
+        TextFrame interleaved = new TextFrame();
+        interleaved.setPayload(utf8("{\"temperature\": 9, "));
+        interleaved.setFin(false);
+        connection.sendFrame(interleaved);
+
+        waitFor("the connection to fail", () -> !errors.isEmpty());
+        assertEquals("lab: Device connection lost.", errors.poll());
+        assertFalse(fleet.isConnected("lab"));
+        assertEquals(0, fleet.getReadingStore("lab").size());
+    }
+
+    @Test
+    public void serverClose_isReportedAndDeviceCanBeAddedAgain() throws Exception {
+        StandInServer server = startServer();
+        fleet = new DeviceFleetManager(ChannelRegistry.getDefault(), 1, 16);
+        Queue<String> events = new ConcurrentLinkedQueue<>();
+        fleet.setListener(new DeviceFleetManager.FleetListener() {
+            @Override
+            public void onReading(String deviceId, long timestamp, double[] values) {
+            }
+
+            @Override
+            public void onDeviceStatusChanged(String deviceId, boolean isConnected) {
+                events.add(deviceId + (isConnected ? " connected" : " disconnected"));
+            }
+
+            @Override
+            public void onDeviceError(String deviceId, String errorMessage) {
+                events.add(deviceId + " error");
+            }
+        });
+
+        fleet.addDevice("hall", server.url("/hall"));
+        waitFor("the device to connect", () -> fleet.isConnected("hall"));
+        server.getConnections().iterator().next().close();
+        waitFor("the disconnect", () -> !fleet.isConnected("hall") && events.size() == 3);
+        assertEquals("[hall connected, hall error, hall disconnected]", events.toString());
+
+        // Adding the device again reconnects it
+        fleet.addDevice("hall", server.url("/hall"));
+        waitFor("the reconnect", () -> fleet.isConnected("hall"));
+
+        fleet.removeDevice("hall");
+        assertNull(fleet.getReadingStore("hall"));
+        waitFor("the server to see the close", () -> server.getConnections().isEmpty());
+    }
+
+    @Test
+    public void addDevice_unreachableServerReportsError() throws Exception {
+        StandInServer server = startServer();
+        String url = server.url("/gone");
+        server.stop(1000);
+        servers.remove(server);
+
+        fleet = new DeviceFleetManager(ChannelRegistry.getDefault(), 1, 16);
+        Queue<String> errors = new ConcurrentLinkedQueue<>();
+        fleet.setListener(new CountingListener(new ConcurrentHashMap<>()) {
+            @Override
+            public void onDeviceError(String deviceId, String errorMessage) {
+                errors.add(deviceId + ": " + errorMessage);
+            }
+        });
+        fleet.addDevice("gone", url);
+        waitFor("the error", () -> !errors.isEmpty());
+        assertEquals("gone: Unable to connect to device.", errors.poll());
+        assertFalse(fleet.isConnected("gone"));
+    }
+
+    private StandInServer startServer() throws InterruptedException {
+        StandInServer server = new StandInServer();
+        server.setReuseAddr(true);
+        server.start();
+        assertTrue("server did not start", server.started.await(10, TimeUnit.SECONDS));
+        servers.add(server);
+        return server;
+    }
+
+    private static ByteBuffer utf8(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int total(Map<String, AtomicInteger> counts) {
+        int total = 0;
+        for (AtomicInteger count : counts.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    private static int countFleetThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("fleet-io-") && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void waitFor(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static class CountingListener implements DeviceFleetManager.FleetListener {
+        private final Map<String, AtomicInteger> readings;
+
+        CountingListener(Map<String, AtomicInteger> readings) {
+            this.readings = readings;
+        }
+
+        @Override
+        public void onReading(String deviceId, long timestamp, double[] values) {
+            readings.computeIfAbsent(deviceId, id -> new AtomicInteger()).incrementAndGet();
+        }
+
+        @Override
+        public void onDeviceStatusChanged(String deviceId, boolean isConnected) {
+        }
+
+        @Override
+        public void onDeviceError(String deviceId, String errorMessage) {
+        }
+    }
+
+    /**
+     * Stands in for a Pi server; records the messages it receives with the path of the sender.
+     */
+    private static class StandInServer extends WebSocketServer {
+        final CountDownLatch started = new CountDownLatch(1);
+        final Queue<String> messages = new ConcurrentLinkedQueue<>();
+
+        StandInServer() {
+            super(new InetSocketAddress("127.0.0.1", 0));
+        }
+
+        String url(String path) {
+            return "ws://127.0.0.1:" + getPort() + path;
+        }
+
+        @Override
+        public void onOpen(WebSocket connection, ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onClose(WebSocket connection, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onMessage(WebSocket connection, String message) {
+            messages.add(connection.getResourceDescriptor() + " " + message);
+        }
+
+        @Override
+        public void onError(WebSocket connection, Exception ex) {
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.project_client;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HistoryExporter}.
+ */
+public class HistoryExporterTest {
+    private static final long ROWS_IN_LARGE_EXPORT = 10_000_000L;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void exportReadings_writesCsvRowsInRange() throws Exception {
+        ReadingStore store = new ReadingStore(100);
+        store.append(1000, new double[]{21.5f, 40.125f, 1013.2f});
+        store.append(2000, new double[]{-3.004f, 41, 1013.25f});
+        store.append(3000, new double[]{22, 42, 1014});
+
+        File file = temporaryFolder.newFile();
+        long rows = new HistoryExporter(HistoryExporter.Format.CSV, null).exportReadings(store::forEach, 1000, 3000, file);
+
+        assertEquals(2, rows);
+        assertEquals(Arrays.asList(
+                "timestamp,temperature,humidity,pressure",
+                "1000,21.50,40.13,1013.20",
+                "2000,-3.00,41.00,1013.25"), Files.readAllLines(file.toPath()));
+    }
+
+    @Test
+    public void exportReadings_writesColumnarBinaryBlocks() throws Exception {
+        ReadingStore store = new ReadingStore(10_000);
+        int count = HistoryExporter.BLOCK_ROWS + 10;
+        for (int i = 0; i < count; i++) {
+            store.append(1_000_000L + i * 250L, new double[]{i, i * 2, i * 3});
+        }
+
+        File file = temporaryFolder.newFile();
+        new HistoryExporter(HistoryExporter.Format.BINARY, 1024, null).exportReadings(store::forEach, 0, Long.MAX_VALUE, file);
+
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(HistoryExporter.BINARY_MAGIC, buffer.getInt());
+        assertEquals(HistoryExporter.BINARY_VERSION, buffer.getShort());
+        int columns = buffer.getShort();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < columns; i++) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            names.add(new String(name, StandardCharsets.UTF_8));
+        }
+        assertEquals(Arrays.asList("temperature", "humidity", "pressure"), names);
+
+        int row = 0;
+        int blocks = 0;
+        for (int rows = buffer.getInt(); rows > 0; rows = buffer.getInt()) {
+            long timestamp = buffer.getLong();
+            long[] timestamps = new long[rows];
+            for (int i = 0; i < rows; i++) {
+                timestamp += buffer.getInt();
+                timestamps[i] = timestamp;
+            }
+            for (int column = 0; column < columns; column++) {
+                for (int i = 0; i < rows; i++) {
+                    assertEquals((row + i) * (column + 1), buffer.getFloat(), 0);
+                }
+            }
+            for (int i = 0; i < rows; i++) {
+                assertEquals(1_000_000L + (row + i) * 250L, timestamps[i]);
+            }
+            row += rows;
+            blocks++;
+        }
+        buffer.getLong();  // First timestamp of the empty end block
+
+        assertEquals(count, row);
+        assertEquals(2, blocks);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void exportRollups_writesOneRowPerBucket() throws Exception {
+        RollupStore store = new RollupStore();
+        for (int i = 0; i < 120; i++) {
+            store.add(i * 1000L, new double[]{i % 60, 50, 1000});
+        }
+
+        File file = temporaryFolder.newFile();
+        long rows = new HistoryExporter(HistoryExporter.Format.CSV, null)
+                .exportRollups(store, RollupStore.Tier.MINUTE, 0, Long.MAX_VALUE, file);
+
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(2, rows);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).startsWith("bucket_start,count,temperature_min,temperature_max,temperature_mean"));
+        assertEquals("60000,60.00,0.00,59.00,29.50,59.00,50.00,50.00,50.00,50.00,1000.00,1000.00,1000.00,1000.00", lines.get(2));
+    }
+
+    @Test
+    public void export_reportsProgress() throws Exception {
+        List<Float> fractions = new ArrayList<>();
+        HistoryExporter exporter = new HistoryExporter(HistoryExporter.Format.CSV,
+                (rowsWritten, fraction) -> fractions.add(fraction));
+        exporter.exportReadings(new SyntheticSource(200_000), 0, 200_000, temporaryFolder.newFile());
+
+        assertTrue(fractions.size() > 2);
+        for (int i = 1; i < fractions.size(); i++) {
+            assertTrue(fractions.get(i) >= fractions.get(i - 1));
+        }
+        assertEquals(1f, fractions.get(fractions.size() - 1), 0);
+    }
+
+    @Test
+    public void export_tenMillionRowsRunsInSmallHeap() throws Exception {
+        File file = temporaryFolder.newFile();
+        // A separate JVM, so the heap limit does not depend on how the tests are run
+        Process process = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-Xmx16m",
+                "-cp", System.getProperty("java.class.path"),
+                LargeExport.class.getName(),
+                file.getPath())
+                .redirectErrorStream(true)
+                .start();
+        byte[] output = readAll(process.getInputStream());
+        assertTrue("Export did not finish", process.waitFor(5, TimeUnit.MINUTES));
+        assertEquals(new String(output, StandardCharsets.UTF_8), 0, process.exitValue());
+
+        long lines = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            for (int b = in.read(); b >= 0; b = in.read()) {
+                if (b == '\n') {
+                    lines++;
+                }
+            }
+        }
+        assertEquals(ROWS_IN_LARGE_EXPORT + 1, lines);
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[4096];
+        for (int n = in.read(chunk); n >= 0; n = in.read(chunk)) {
+            out.write(chunk, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Produces one reading per millisecond from time 0, without storing any of them.
+     */
+    private static class SyntheticSource implements HistoryExporter.ReadingSource {
+        private final long rows;
+
+        SyntheticSource(long rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public void forEach(long fromTimestamp, long toTimestamp, ReadingStore.ReadingVisitor visitor) {
+            float[] values = {0, 45.5f, 1013.25f};
+            for (long i = Math.max(0, fromTimestamp); i < Math.min(rows, toTimestamp); i++) {
+                values[ChannelRegistry.TEMPERATURE] = 20 + (i % 1000) / 100f;
+                visitor.visit(i, values);
+            }
+        }
+    }
+
+    /**
+     * Run in a child JVM by {@link #export_tenMillionRowsRunsInSmallHeap()}.
+     */
+    public static class LargeExport {
+        public static void main(String[] args) throws Exception {
+            SyntheticSource source = new SyntheticSource(ROWS_IN_LARGE_EXPORT);
+            long rows = new HistoryExporter(HistoryExporter.Format.CSV, null)
+                    .exportReadings(source, 0, ROWS_IN_LARGE_EXPORT, new File(args[0]));
+            if (rows != ROWS_IN_LARGE_EXPORT) {
+                throw new AssertionError("Wrote " + rows + " rows");
+            }
+        }
+    }
+}
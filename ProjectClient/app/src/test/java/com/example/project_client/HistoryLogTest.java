@@ -0,0 +1,161 @@
+package com.example.project_client;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link HistoryLog}.
+ */
+public class HistoryLogTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void forEach_readsAppendedRecordsInRange() throws Exception {
+        try (HistoryLog log = new HistoryLog(temporaryFolder.newFolder(), 16, 10)) {
+            for (int i = 1; i <= 50; i++) {
+                log.append(i * 1000L, new double[]{i, i + 0.5f, 1000 + i});
+            }
+
+            List<Long> timestamps = new ArrayList<>();
+            log.forEach(10_000, 13_000, (timestamp, values) -> {
+                assertEquals(timestamp / 1000f + 0.5f, values[ChannelRegistry.HUMIDITY], 0);
+                timestamps.add(timestamp);
+            });
+
+            assertEquals(50, log.size());
+            assertEquals(3, timestamps.size());
+            assertEquals(10_000L, (long) timestamps.get(0));
+            assertEquals(12_000L, (long) timestamps.get(2));
+        }
+    }
+
+    @Test
+    public void reopen_continuesAfterLastRecord() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        try (HistoryLog log = new HistoryLog(directory, 16, 10)) {
+            for (int i = 1; i <= 20; i++) {
+                log.append(i, new double[]{i, i, i});
+            }
+        }
+
+        try (HistoryLog log = new HistoryLog(directory, 16, 10)) {
+            assertEquals(20, log.size());
+            log.append(21, new double[]{21, 21, 21});
+
+            List<Long> timestamps = new ArrayList<>();
+            log.forEach(0, Long.MAX_VALUE, (timestamp, values) -> timestamps.add(timestamp));
+            assertEquals(21, timestamps.size());
+            for (int i = 0; i < 21; i++) {
+                assertEquals(i + 1, (long) timestamps.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void append_rejectsTimestampsThatWouldCutTheSegmentShort() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        try (HistoryLog log = new HistoryLog(directory, 16, 10)) {
+            log.append(5, new double[]{5, 5, 5});
+            assertAppendRejected(log, 0);
+            assertAppendRejected(log, -1);
+            assertAppendRejected(log, 4);
+            log.append(5, new double[]{5, 5, 5});
+            log.append(6, new double[]{6, 6, 6});
+        }
+
+        // The newest timestamp is picked up again when the log is reopened
+        try (HistoryLog log = new HistoryLog(directory, 16, 10)) {
+            assertEquals(3, log.size());
+            assertAppendRejected(log, 5);
+            log.append(7, new double[]{7, 7, 7});
+            assertEquals(4, log.size());
+        }
+    }
+
+    private static void assertAppendRejected(HistoryLog log, long timestamp) throws Exception {
+        try {
+            log.append(timestamp, new double[]{0, 0, 0});
+            fail("Appended timestamp " + timestamp);
+        } catch (IllegalArgumentException expected) {
+            // Nothing was written
+        }
+    }
+
+    @Test
+    public void append_deletesOldestSegmentsBeyondLimit() throws Exception {
+        File directory = temporaryFolder.newFolder();
+        try (HistoryLog log = new HistoryLog(directory, 10, 3)) {
+            for (int i = 1; i <= 100; i++) {
+                log.append(i, new double[]{i, i, i});
+            }
+
+            assertEquals(3, directory.listFiles().length);
+            assertEquals(30, log.size());
+            assertEquals(71, log.getOldestTimestamp());
+        }
+    }
+
+    @Test
+    public void forEach_readsWhileAnotherThreadAppends() throws Exception {
+        try (HistoryLog log = new HistoryLog(temporaryFolder.newFolder(), 1024, 1000)) {
+            AtomicBoolean done = new AtomicBoolean(false);
+            AtomicReference<String> failure = new AtomicReference<>();
+
+            Thread reader = new Thread(() -> {
+                while (!done.get()) {
+                    long[] previous = {0};
+                    log.forEach(0, Long.MAX_VALUE, (timestamp, values) -> {
+                        if (timestamp != previous[0] + 1 || values[ChannelRegistry.TEMPERATURE] != timestamp) {
+                            failure.compareAndSet(null, "Unexpected record " + timestamp + " after " + previous[0]);
+                        }
+                        previous[0] = timestamp;
+                    });
+                }
+            });
+            reader.start();
+
+            for (int i = 1; i <= 200_000; i++) {
+                log.append(i, new double[]{i, i, i});
+            }
+            done.set(true);
+            reader.join();
+
+            assertNull(failure.get());
+        }
+    }
+
+    @Test
+    public void commit_keepsEveryRecordAcrossSegments() throws Exception {
+        // Append throughput is measured by HistoryStorageBenchmark in the benchmarks module
+        File directory = temporaryFolder.newFolder();
+        int records = 3 * 1024 + 7;
+        try (HistoryLog log = new HistoryLog(directory, 1024, 64)) {
+            for (int i = 1; i <= records; i++) {
+                log.append(i, new double[]{21.5f, 40.25f, i});
+            }
+            log.commit();
+        }
+
+        try (HistoryLog log = new HistoryLog(directory, 1024, 64)) {
+            assertEquals(records, log.size());
+            long[] previous = {0};
+            log.forEach(0, Long.MAX_VALUE, (timestamp, values) -> {
+                assertEquals(previous[0] + 1, timestamp);
+                assertEquals(40.25f, values[ChannelRegistry.HUMIDITY], 0);
+                assertEquals(timestamp, values[ChannelRegistry.PRESSURE], 0);
+                previous[0] = timestamp;
+            });
+            assertEquals(records, previous[0]);
+        }
+    }
+}
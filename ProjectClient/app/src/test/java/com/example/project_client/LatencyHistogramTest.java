@@ -0,0 +1,102 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueWithoutGaps() {
+        assertEquals(0, LatencyHistogram.lowerBoundOf(0));
+        for (int bucket = 1; bucket < LatencyHistogram.BUCKET_COUNT; bucket++) {
+            assertEquals(LatencyHistogram.upperBoundOf(bucket - 1) + 1, LatencyHistogram.lowerBoundOf(bucket));
+        }
+        for (long micros : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123_456, 1L << 35, (1L << 36) - 1}) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue(micros + " in " + bucket, LatencyHistogram.lowerBoundOf(bucket) <= micros);
+            assertTrue(micros + " in " + bucket, micros <= LatencyHistogram.upperBoundOf(bucket));
+            // Within 1/16 of the value, up to the last bucket
+            assertTrue(bucket == LatencyHistogram.BUCKET_COUNT - 1 || LatencyHistogram.upperBoundOf(bucket) - LatencyHistogram.lowerBoundOf(bucket) <= Math.max(0, micros / 16));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles_areWithinABucketOfTheTruth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.recordNanos(millis * 1_000_000L);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500, histogram.getMeanMicros());
+        assertEquals(1_000_000, histogram.getMaxMicros());
+        assertEquals(500_000, histogram.getPercentileMicros(50), 500_000 / 16.0);
+        assertEquals(990_000, histogram.getPercentileMicros(99), 990_000 / 16.0);
+        assertEquals(1_000_000, histogram.getPercentileMicros(100));
+        assertTrue(histogram.getPercentileMicros(99) >= 990_000);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(50));
+        histogram.recordNanos(-5);
+        assertEquals(0, histogram.getMaxMicros());
+        assertEquals(1, histogram.getBucketCount(0));
+    }
+
+    @Test
+    public void record_doesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 10_000; i++) {
+            histogram.recordNanos(i * 7919L);
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            histogram.recordNanos(i * 7919L);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void tracker_measuresTheNetworkAboveTheFastestFrame() throws Exception {
+        LatencyTracker tracker = new LatencyTracker();
+        tracker.connectionOpened();
+        long received = System.nanoTime();
+        long sensorClock = 5_000_000;
+
+        // The first frame sets the floor, the second is 3 ms later than that
+        tracker.frameReceived(received);
+        tracker.frameDecoded(sensorClock);
+        tracker.frameReceived(received + 1_003_000_000L);
+        tracker.frameDecoded(sensorClock + 1_000_000);
+        tracker.frameDecoded(SensorFrameDecoder.NO_TIMESTAMP);
+        tracker.recordSinceReceived(LatencyTracker.Stage.EVALUATE);
+
+        LatencyHistogram network = tracker.getHistogram(LatencyTracker.Stage.NETWORK);
+        assertEquals(2, network.getCount());
+        assertEquals(3000, network.getMaxMicros());
+        assertEquals(3, tracker.getHistogram(LatencyTracker.Stage.DECODE).getCount());
+        assertEquals(1, tracker.getHistogram(LatencyTracker.Stage.EVALUATE).getCount());
+        assertEquals(0, tracker.getHistogram(LatencyTracker.Stage.RENDER).getCount());
+
+        StringWriter csv = new StringWriter();
+        tracker.writeCsv(csv);
+        assertTrue(csv.toString(), csv.toString().contains("\nnetwork,2,1500,0,3000,3000,3000,3000\n"));
+        assertTrue(csv.toString(), csv.toString().contains("\nnetwork,0,0,1\n"));
+        assertTrue(tracker.format().contains("receive to evaluated"));
+
+        tracker.reset();
+        assertEquals(0, network.getCount());
+    }
+}
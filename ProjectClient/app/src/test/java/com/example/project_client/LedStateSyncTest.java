@@ -0,0 +1,120 @@
+package com.example.project_client;
+
+import com.example.sensor_simulator.SensorSimulator;
+import com.example.sensor_simulator.SimulatedDevice;
+import com.example.sensor_simulator.SimulatorConfig;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LedStateSync} and the hysteresis of {@link ThresholdRules}.
+ */
+public class LedStateSyncTest {
+    private static final int TEMP = ChannelRegistry.TEMPERATURE;
+
+    private static Map<String, Object> settings() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("threshold_enabled", true);
+        settings.put("saved_min_temp", "10");
+        settings.put("saved_max_temp", "30");
+        settings.put("saved_hysteresis_temp", "0.5");
+        return settings;
+    }
+
+    @Test
+    public void compile_defaultsTheHysteresisToAFractionOfTheRange() {
+        Map<String, Object> settings = settings();
+        settings.remove("saved_hysteresis_temp");
+        ThresholdRules rules = ThresholdRules.compile(settings);
+        assertEquals(20 * ThresholdRules.DEFAULT_HYSTERESIS, rules.getHysteresis(TEMP), 1e-9);
+
+        settings.put("saved_hysteresis_temp", "50");
+        assertEquals(5, ThresholdRules.compile(settings).getHysteresis(TEMP), 1e-9);
+    }
+
+    @Test
+    public void update_reportsOnlyStateChanges() {
+        ThresholdRules rules = ThresholdRules.compile(settings());
+        LedStateSync sync = new LedStateSync(ChannelRegistry.getDefault());
+        assertEquals(LedStateSync.UNKNOWN, sync.getState(TEMP));
+
+        assertTrue(sync.update(TEMP, 20, rules));
+        assertEquals("TEMP_IN_THRESHOLD:20.00", sync.getCommand(TEMP, 20));
+        assertFalse(sync.update(TEMP, 25, rules));
+        assertTrue(sync.update(TEMP, 31.2, rules));
+        assertEquals("TEMP_OUT_THRESHOLD:31.20", sync.getCommand(TEMP, 31.2));
+        assertFalse(sync.update(TEMP, 35, rules));
+        assertFalse(sync.update(TEMP, Double.NaN, rules));
+
+        sync.reset();
+        assertTrue(sync.update(TEMP, 35, rules));
+    }
+
+    @Test
+    public void update_doesNotFlapAtALimit() {
+        ThresholdRules rules = ThresholdRules.compile(settings());
+        LedStateSync sync = new LedStateSync(ChannelRegistry.getDefault());
+        sync.update(TEMP, 29.9, rules);
+        assertTrue(sync.update(TEMP, 30.1, rules));
+
+        // Back under the maximum, but not by the hysteresis yet
+        assertFalse(sync.update(TEMP, 29.9, rules));
+        assertFalse(sync.update(TEMP, 29.6, rules));
+        assertEquals(LedStateSync.OUT_OF_RANGE, sync.getState(TEMP));
+        assertTrue(sync.update(TEMP, 29.5, rules));
+        assertEquals(LedStateSync.IN_RANGE, sync.getState(TEMP));
+    }
+
+    @Test
+    public void update_followsTheThresholdsBeingTurnedOff() {
+        LedStateSync sync = new LedStateSync(ChannelRegistry.getDefault());
+        sync.update(TEMP, 20, ThresholdRules.compile(settings()));
+
+        ThresholdRules disabled = ThresholdRules.disabled(ChannelRegistry.getDefault().size());
+        assertTrue(sync.update(TEMP, 20, disabled));
+        assertEquals("TEMP_THRESHOLDS_DISABLED:20.00", sync.getCommand(TEMP, 20));
+        assertFalse(sync.update(TEMP, 50, disabled));
+    }
+
+    @Test
+    public void noisyReadings_sendCommandsOnlyForStateChanges() throws Exception {
+        SensorSimulator simulator = new SensorSimulator(new SimulatorConfig());
+        simulator.start();
+        WebSocketClientHandler handler = new WebSocketClientHandler(new ReconnectBackoff(20, 200, new Random(1)));
+        try {
+            SimulatedDevice device = simulator.getDevice(0);
+            handler.connectWebSocket(device.getUrl());
+
+            // A thousand readings wavering around the maximum, then settling well inside the range
+            ThresholdRules rules = ThresholdRules.compile(settings());
+            LedStateSync sync = new LedStateSync(ChannelRegistry.getDefault());
+            Random random = new Random(1);
+            int changes = 0;
+            for (int i = 0; i <= 1000; i++) {
+                double value = i < 1000 ? 30 + random.nextGaussian() * 0.1 : 25;
+                if (sync.update(TEMP, value, rules)) {
+                    changes++;
+                    handler.sendCommand("TEMP", sync.getCommand(TEMP, value));
+                }
+            }
+            assertTrue("flapped " + changes + " times", changes <= 4);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+            while (!"TEMP_IN_THRESHOLD:25.00".equals(device.getLedState("TEMP"))) {
+                assertTrue("the display was not updated", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+            assertTrue(device.getCommandFrames() <= changes + 1);
+        } finally {
+            handler.disconnectWebSocket();
+            simulator.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MetricsRegistry}.
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void sameName_returnsTheSameMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter counter = registry.counter("websocket.reconnects");
+        counter.increment();
+        registry.counter("websocket.reconnects").add(2);
+        assertSame(counter, registry.counter("websocket.reconnects"));
+        assertEquals(3, registry.getValue("websocket.reconnects"));
+
+        registry.meter("websocket.messages").mark(5);
+        assertEquals(5, registry.getValue("websocket.messages"));
+        assertEquals(0, registry.getValue("missing"));
+
+        String text = registry.format();
+        assertTrue(text, text.contains("websocket.reconnects"));
+        assertTrue(text, text.contains("websocket.messages"));
+    }
+
+    @Test
+    public void meter_averagesTheRateOverAboutAMinute() {
+        AtomicLong now = new AtomicLong(1_000_000_000L);
+        MetricsRegistry registry = new MetricsRegistry(now::get);
+        MetricsRegistry.Meter meter = registry.meter("websocket.messages");
+
+        // 10 per second for a minute
+        for (int second = 0; second < 60; second++) {
+            meter.mark(10);
+            now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            if (second % 5 == 4) {
+                meter.getOneMinuteRate();
+            }
+        }
+        assertEquals(10, meter.getMeanRate(), 1e-9);
+        assertEquals(10, meter.getOneMinuteRate(), 1e-9);
+
+        // Then nothing: the moving average falls off, the mean only slowly
+        now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertEquals(10 * Math.exp(-1), meter.getOneMinuteRate(), 1e-9);
+        assertEquals(5, meter.getMeanRate(), 1e-9);
+
+        registry.reset();
+        assertEquals(0, meter.getCount());
+        assertEquals(0, meter.getMeanRate(), 0);
+    }
+
+    @Test
+    public void gauges_areReadWhenShownAndRemovedByTheirOwner() {
+        MetricsRegistry registry = new MetricsRegistry();
+        AtomicLong backlog = new AtomicLong(7);
+        MetricsRegistry.Gauge gauge = backlog::get;
+        registry.gauge("ui.readings_conflated", gauge);
+        assertEquals(7, registry.getValue("ui.readings_conflated"));
+        backlog.set(9);
+        assertTrue(registry.format().contains("9"));
+
+        // A newer screen's gauge is not removed by the old one
+        MetricsRegistry.Gauge newer = () -> 1;
+        registry.gauge("ui.readings_conflated", newer);
+        registry.removeGauge("ui.readings_conflated", gauge);
+        assertEquals(1, registry.getValue("ui.readings_conflated"));
+        registry.removeGauge("ui.readings_conflated", newer);
+        assertEquals(0, registry.getValue("ui.readings_conflated"));
+    }
+
+    @Test
+    public void recording_doesNotAllocateAndAddsUpAcrossThreads() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter counter = registry.counter("thresholds.breaches");
+        MetricsRegistry.Meter meter = registry.meter("thresholds.evaluations");
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < 10_000; i++) {
+            counter.increment();
+            meter.mark();
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            counter.increment();
+            meter.mark();
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    counter.increment();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(510_000, counter.getCount());
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link QuantileSketch}.
+ */
+public class QuantileSketchTest {
+
+    private static double rankOf(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        return (index >= 0 ? index : -index - 1) / (double) sorted.length;
+    }
+
+    @Test
+    public void quantiles_areWithinTheRankError() {
+        Random random = new Random(1);
+        QuantileSketch sketch = new QuantileSketch();
+        double[] values = new double[200_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextGaussian() * 5 + 20;
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, sketch.getCount());
+        for (double q : new double[] {0.05, 0.25, 0.5, 0.75, 0.95}) {
+            double rank = rankOf(values, sketch.getQuantile(q));
+            assertEquals("p" + (int) (q * 100), q, rank, 0.02);
+        }
+        // The extremes are estimates too; StreamingStats keeps the exact minimum and maximum
+        assertTrue(rankOf(values, sketch.getQuantile(0)) < 0.02);
+    }
+
+    @Test
+    public void memory_staysBoundedForLongStreams() {
+        QuantileSketch sketch = new QuantileSketch(100);
+        for (int i = 0; i < 1_000_000; i++) {
+            sketch.add(i);
+        }
+        // Merging a copy of itself keeps the bound too
+        sketch.merge(sketch.copy());
+        assertEquals(2_000_000, sketch.getCount());
+        assertEquals(0.5, sketch.getQuantile(0.5) / 1_000_000, 0.02);
+    }
+
+    @Test
+    public void merge_matchesTheCombinedStream() {
+        Random random = new Random(2);
+        QuantileSketch low = new QuantileSketch();
+        QuantileSketch high = new QuantileSketch();
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 2 == 0 ? random.nextDouble() * 10 : 10 + random.nextDouble() * 90;
+            (i % 2 == 0 ? low : high).add(values[i]);
+        }
+        Arrays.sort(values);
+
+        low.merge(high);
+        assertEquals(values.length, low.getCount());
+        double[] quantiles = low.getQuantiles(0.05, 0.5, 0.95);
+        assertEquals(0.05, rankOf(values, quantiles[0]), 0.02);
+        assertEquals(0.5, rankOf(values, quantiles[1]), 0.02);
+        assertEquals(0.95, rankOf(values, quantiles[2]), 0.02);
+    }
+
+    @Test
+    public void emptySketch_hasNoQuantiles() {
+        QuantileSketch sketch = new QuantileSketch();
+        assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+        sketch.add(3);
+        assertEquals(3, sketch.getQuantile(0.5), 0);
+        assertEquals(3, sketch.getQuantile(1), 0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ReadingMailbox}.
+ */
+public class ReadingMailboxTest {
+    private final AtomicInteger scheduled = new AtomicInteger();
+    private final ReadingMailbox mailbox = new ReadingMailbox(3, scheduled::incrementAndGet);
+    private final List<String> received = new ArrayList<>();
+    private final ReadingMailbox.Receiver receiver =
+            (timestamp, values) -> received.add(timestamp + "=" + (int) values[0]);
+
+    @Test
+    public void drain_showsOnlyTheNewestReading() {
+        mailbox.post(1000, new double[]{1, 0, 0});
+        mailbox.post(2000, new double[]{2, 0, 0});
+        mailbox.post(3000, new double[]{3, 0, 0});
+
+        assertTrue(mailbox.drain(receiver));
+        assertFalse(mailbox.drain(receiver));
+        assertEquals("[3000=3]", received.toString());
+        assertEquals(3, mailbox.getPostedCount());
+        assertEquals(2, mailbox.getConflatedCount());
+    }
+
+    @Test
+    public void post_schedulesOneDrainAtATime() {
+        mailbox.post(1000, new double[]{1, 0, 0});
+        mailbox.post(2000, new double[]{2, 0, 0});
+        assertEquals(1, scheduled.get());
+
+        mailbox.drain(receiver);
+        mailbox.post(3000, new double[]{3, 0, 0});
+        assertEquals(2, scheduled.get());
+    }
+
+    @Test
+    public void post_copiesTheValues() {
+        double[] values = {1, 2, 3};
+        mailbox.post(1000, values);
+        values[0] = 99;
+        mailbox.drain(receiver);
+        assertEquals("[1000=1]", received.toString());
+    }
+
+    @Test
+    public void concurrentPostAndDrain_neverTearsOrGoesBack() throws Exception {
+        final int readings = 2_000_000;
+        Thread writer = new Thread(() -> {
+            double[] values = new double[3];
+            for (int i = 1; i <= readings; i++) {
+                values[0] = i;
+                values[1] = i;
+                values[2] = i;
+                mailbox.post(i, values);
+            }
+        });
+        long[] last = {0};
+        long[] drains = {0};
+        ReadingMailbox.Receiver checker = (timestamp, values) -> {
+            assertTrue(timestamp > last[0]);
+            assertEquals(timestamp, (long) values[0]);
+            assertEquals(timestamp, (long) values[1]);
+            assertEquals(timestamp, (long) values[2]);
+            last[0] = timestamp;
+            drains[0]++;
+        };
+
+        writer.start();
+        while (writer.isAlive()) {
+            mailbox.drain(checker);
+        }
+        writer.join();
+        mailbox.drain(checker);
+
+        assertEquals(readings, last[0]);
+        assertEquals(readings, mailbox.getPostedCount());
+        assertEquals(readings, drains[0] + mailbox.getConflatedCount());
+    }
+}
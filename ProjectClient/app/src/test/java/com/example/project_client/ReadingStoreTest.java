@@ -0,0 +1,231 @@
+package com.example.project_client;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ReadingStore}.
+ */
+public class ReadingStoreTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void append_keepsReadingsInOrder() {
+        ReadingStore store = new ReadingStore(4);
+        store.append(1000, new double[]{20f, 40f, 1000f});
+        store.append(2000, new double[]{21f, 41f, 1001f});
+
+        assertEquals(2, store.size());
+        assertEquals(1000, store.getTimestamp(0));
+        assertEquals(21f, store.getValue(ChannelRegistry.TEMPERATURE, 1), 0);
+        assertEquals(41f, store.getLatestValue(ChannelRegistry.HUMIDITY), 0);
+        assertEquals(2000, store.getLatestTimestamp());
+    }
+
+    @Test
+    public void append_overwritesOldestWhenFull() {
+        ReadingStore store = new ReadingStore(3);
+        for (int i = 0; i < 10; i++) {
+            store.append(i, new double[]{i, i, i});
+        }
+
+        assertEquals(3, store.size());
+        assertEquals(10, store.getAppendCount());
+        assertEquals(7, store.getTimestamp(0));
+        assertEquals(9f, store.getValue(ChannelRegistry.PRESSURE, 2), 0);
+    }
+
+    @Test
+    public void appendBatch_addsEveryReadingAcrossWrap() {
+        ReadingStore store = new ReadingStore(4);
+        store.append(1, new double[]{1, 0, 0});
+        ReadingBatch batch = new ReadingBatch(3, 2);
+        for (int i = 2; i <= 5; i++) {
+            batch.add(i, new double[]{i, i * 10, i * 100});
+        }
+        store.appendBatch(batch);
+
+        assertEquals(4, store.size());
+        assertEquals(5, store.getAppendCount());
+        for (int index = 0; index < 4; index++) {
+            assertEquals(index + 2, store.getTimestamp(index));
+            assertEquals((index + 2) * 100, store.getValue(ChannelRegistry.PRESSURE, index), 0);
+        }
+    }
+
+    @Test
+    public void appendBatch_narrowBatchLeavesMissingChannelsEmpty() {
+        ReadingStore store = new ReadingStore(2);
+        store.append(1, new double[]{1, 10, 100});
+        store.append(2, new double[]{2, 20, 200});
+
+        // Only the first two channels, written over the slots of the readings above
+        ReadingBatch batch = new ReadingBatch(2, 2);
+        batch.add(3, new double[]{3, 30});
+        batch.add(4, new double[]{4, 40});
+        store.appendBatch(batch);
+
+        for (int index = 0; index < 2; index++) {
+            assertEquals(index + 3, store.getTimestamp(index));
+            assertEquals((index + 3) * 10, store.getValue(ChannelRegistry.HUMIDITY, index), 0);
+            assertTrue(Float.isNaN(store.getValue(ChannelRegistry.PRESSURE, index)));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getTimestamp_rejectsOverwrittenIndex() {
+        ReadingStore store = new ReadingStore(2);
+        store.append(1, new double[]{1, 1, 1});
+        store.append(2, new double[]{2, 2, 2});
+        store.append(3, new double[]{3, 3, 3});
+        store.getTimestamp(2);
+    }
+
+    @Test
+    public void indexAtOrAfter_findsReadingByTime() {
+        ReadingStore store = new ReadingStore(5);
+        for (int i = 0; i < 8; i++) {
+            store.append(i * 1000L, new double[]{i, i, i});  // keeps 3000..7000
+        }
+
+        assertEquals(0, store.indexAtOrAfter(0));
+        assertEquals(0, store.indexAtOrAfter(3000));
+        assertEquals(2, store.indexAtOrAfter(4500));
+        assertEquals(4, store.indexAtOrAfter(7000));
+        assertEquals(5, store.indexAtOrAfter(7001));
+    }
+
+    @Test
+    public void forEach_visitsTimeRangeAcrossWrap() {
+        ReadingStore store = new ReadingStore(4);
+        for (int i = 0; i < 6; i++) {
+            store.append(i * 10L, new double[]{i, i + 100, i + 1000});
+        }
+
+        List<Long> visited = new ArrayList<>();
+        store.forEach(25, 50, (timestamp, values) -> {
+            assertEquals(timestamp / 10f + 100, values[ChannelRegistry.HUMIDITY], 0);
+            visited.add(timestamp);
+        });
+
+        assertEquals(Arrays.asList(30L, 40L), visited);
+    }
+
+    @Test
+    public void append_doesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        ReadingStore store = new ReadingStore(1024);
+        double[] values = new double[store.getChannelCount()];
+
+        for (int i = 0; i < 100_000; i++) {
+            values[0] = i;
+            store.append(i, values);
+        }
+
+        long overheadBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long overhead = threadBean.getThreadAllocatedBytes(threadId) - overheadBefore;
+
+        // Take the best of a few rounds so a one-off JIT event on this thread does not count
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 1_000_000; i++) {
+                values[0] = i;
+                store.append(i, values);
+            }
+            long after = threadBean.getThreadAllocatedBytes(threadId);
+            allocated = Math.min(allocated, after - before - overhead);
+        }
+
+        assertEquals(1024, store.size());
+        assertEquals("bytes allocated by 1000000 appends", 0, allocated);
+    }
+
+    @Test
+    public void loadOlder_putsHistoryInFrontOfLiveReadings() throws Exception {
+        ReadingStore store = new ReadingStore(10);
+        try (HistoryLog log = new HistoryLog(temporaryFolder.newFolder(), 16, 10)) {
+            for (int i = 1; i <= 6; i++) {
+                log.append(i * 1000, new double[]{i, i, i});
+            }
+            // Two live readings, also written to the history, arrived before the history was loaded
+            store.append(5000, new double[]{5, 5, 5});
+            store.append(6000, new double[]{6, 6, 6});
+
+            assertEquals(3, store.loadOlder(log, 2000));
+        }
+
+        assertEquals(5, store.size());
+        for (int index = 0; index < 5; index++) {
+            assertEquals((index + 2) * 1000, store.getTimestamp(index));
+            assertEquals(index + 2, store.getValue(ChannelRegistry.TEMPERATURE, index), 0);
+        }
+        store.append(7000, new double[]{7, 7, 7});
+        assertEquals(7000, store.getLatestTimestamp());
+        assertEquals(5, store.indexAtOrAfter(7000));
+    }
+
+    @Test
+    public void loadOlder_keepsOnlyWhatFits() throws Exception {
+        ReadingStore store = new ReadingStore(4);
+        try (HistoryLog log = new HistoryLog(temporaryFolder.newFolder(), 16, 10)) {
+            for (int i = 1; i <= 20; i++) {
+                log.append(i, new double[]{i, i, i});
+            }
+            store.append(21, new double[]{21, 21, 21});
+
+            assertEquals(3, store.loadOlder(log, 0));
+            assertEquals(Arrays.asList(18L, 19L, 20L, 21L), timestamps(store));
+
+            // A full store has no room for older readings
+            assertEquals(0, store.loadOlder(log, 0));
+            assertEquals(Arrays.asList(18L, 19L, 20L, 21L), timestamps(store));
+        }
+    }
+
+    @Test
+    public void loadOlder_onlyLoadsOnceAndKeepsTheAppendCountGoingUp() throws Exception {
+        ReadingStore store = new ReadingStore(10);
+        long seen;
+        try (HistoryLog log = new HistoryLog(temporaryFolder.newFolder(), 16, 10)) {
+            for (int i = 1; i <= 3; i++) {
+                log.append(i * 1000, new double[]{i, i, i});
+            }
+            store.append(4000, new double[]{4, 4, 4});
+            seen = store.getAppendCount();
+
+            assertEquals(3, store.loadOlder(log, 0));
+            assertEquals(seen + 3, store.getAppendCount());
+
+            // A relaunch of the screens while the session kept running loads nothing again,
+            // so a reader tracking the append count keeps picking up the live readings
+            seen = store.getAppendCount();
+            assertEquals(0, store.loadOlder(log, 0));
+            assertEquals(Arrays.asList(1000L, 2000L, 3000L, 4000L), timestamps(store));
+        }
+
+        store.append(5000, new double[]{5, 5, 5});
+        List<Long> picked = new ArrayList<>();
+        store.forEachAppendedSince(seen, 0, (timestamp, values) -> picked.add(timestamp));
+        assertEquals(Arrays.asList(5000L), picked);
+    }
+
+    private static List<Long> timestamps(ReadingStore store) {
+        List<Long> timestamps = new ArrayList<>();
+        for (int index = 0; index < store.size(); index++) {
+            timestamps.add(store.getTimestamp(index));
+        }
+        return timestamps;
+    }
+}
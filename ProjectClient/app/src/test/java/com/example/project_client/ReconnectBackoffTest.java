@@ -0,0 +1,68 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ReconnectBackoff}.
+ */
+public class ReconnectBackoffTest {
+
+    @Test
+    public void nextDelay_staysBetweenHalfCeilingAndCeiling() {
+        ReconnectBackoff backoff = new ReconnectBackoff(500, 30_000, new Random(1));
+        for (int attempt = 0; attempt < 40; attempt++) {
+            long ceiling = backoff.getCeiling(attempt);
+            long delay = backoff.nextDelay();
+            assertTrue("attempt " + attempt + ": " + delay, delay >= ceiling / 2 && delay <= ceiling);
+        }
+        assertEquals(40, backoff.getAttempts());
+    }
+
+    @Test
+    public void ceiling_doublesUpToTheMaximum() {
+        ReconnectBackoff backoff = new ReconnectBackoff(500, 30_000, new Random(1));
+        assertEquals(500, backoff.getCeiling(0));
+        assertEquals(1000, backoff.getCeiling(1));
+        assertEquals(16_000, backoff.getCeiling(5));
+        assertEquals(30_000, backoff.getCeiling(6));
+        assertEquals(30_000, backoff.getCeiling(1000));
+    }
+
+    @Test
+    public void reset_startsOverFromTheBaseDelay() {
+        ReconnectBackoff backoff = new ReconnectBackoff(500, 30_000, new Random(1));
+        for (int i = 0; i < 10; i++) {
+            backoff.nextDelay();
+        }
+        backoff.reset();
+        assertEquals(0, backoff.getAttempts());
+        assertTrue(backoff.nextDelay() <= 500);
+    }
+
+    @Test
+    public void nextDelay_spreadsClientsThatFailTogether() {
+        // A thousand phones losing the server at the same moment should not retry in lockstep
+        int[] buckets = new int[10];
+        for (int client = 0; client < 1000; client++) {
+            ReconnectBackoff backoff = new ReconnectBackoff(500, 30_000, new Random(client));
+            for (int attempt = 0; attempt < 6; attempt++) {
+                backoff.nextDelay();
+            }
+            long delay = backoff.nextDelay();  // Ceiling 30 s, so between 15 s and 30 s
+            buckets[(int) Math.min(9, (delay - 15_000) * 10 / 15_001)]++;
+        }
+        for (int bucket : buckets) {
+            assertTrue("uneven spread: " + Arrays.toString(buckets), bucket > 50 && bucket < 150);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsMaximumBelowBase() {
+        new ReconnectBackoff(1000, 500, new Random());
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ResumeBuffer}.
+ */
+public class ResumeBufferTest {
+    private final List<String> passedOn = new ArrayList<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private final ResumeBuffer buffer = new ResumeBuffer(
+            (timestamp, values) -> passedOn.add(timestamp + "=" + (int) values[0]),
+            batch -> {
+                batchSizes.add(batch.size());
+                for (int sample = 0; sample < batch.size(); sample++) {
+                    passedOn.add(batch.getTimestamp(sample) + "=" + (int) batch.getValue(sample, 0));
+                }
+            });
+
+    @Test
+    public void beginResume_needsAServerTimestamp() {
+        assertFalse(buffer.beginResume());
+        buffer.onLive(5000, SensorFrameDecoder.NO_TIMESTAMP, values(1));
+        assertFalse(buffer.beginResume());
+        assertEquals("[5000=1]", passedOn.toString());
+
+        buffer.onLive(6000, 1000, values(2));
+        assertTrue(buffer.beginResume());
+        assertEquals(1000, buffer.getResumeTimestamp());
+    }
+
+    @Test
+    public void backfill_isPassedOnBeforeHeldLiveFrames() {
+        // The client clock runs 10 s ahead of the server
+        buffer.onLive(11_000, 1000, values(1));
+        assertTrue(buffer.beginResume());
+
+        // Live frames arriving before the backfill are held back
+        buffer.onLive(15_000, 5000, values(5));
+        buffer.onLive(16_000, 6000, values(6));
+        assertEquals("[11000=1]", passedOn.toString());
+
+        // The backfill overlaps with what the client has on both ends
+        buffer.onBackfill(1000, values(1));
+        buffer.onBackfill(2000, values(2));
+        buffer.onBackfill(3000, values(3));
+        buffer.onBackfill(4000, values(4));
+        buffer.onBackfill(5000, values(5));
+        buffer.finishResume();
+        buffer.onLive(17_000, 7000, values(7));
+
+        assertEquals("[11000=1, 12000=2, 13000=3, 14000=4, 15000=5, 16000=6, 17000=7]", passedOn.toString());
+        assertFalse(buffer.isResuming());
+    }
+
+    @Test
+    public void backfill_keepsClientTimestampsIncreasing() {
+        buffer.onLive(11_000, 1000, values(1));
+        buffer.onLive(20_000, SensorFrameDecoder.NO_TIMESTAMP, values(2));
+
+        // By the clock offset this reading is from 12 s, but the client already has one from 20 s
+        buffer.onBackfill(2000, values(3));
+        assertEquals("[11000=1, 20000=2, 20001=3]", passedOn.toString());
+    }
+
+    @Test
+    public void liveFrame_isKeptAfterABackfillThatRunsPastItsArrival() {
+        buffer.onLive(11_000, 1000, values(1));
+        assertTrue(buffer.beginResume());
+        buffer.onBackfill(2000, values(2));
+        buffer.onBackfill(3000, values(3));
+        buffer.onBackfill(4000, values(4));
+        buffer.finishResume();
+
+        // The clocks drifted: by the old offset the backfill ends at 14 s, after this frame arrived
+        buffer.onLive(13_500, 5000, values(5));
+        buffer.onLive(14_500, 6000, values(6));
+        assertEquals("[11000=1, 12000=2, 13000=3, 14000=4, 14001=5, 14500=6]", passedOn.toString());
+    }
+
+    @Test
+    public void liveBatch_isPassedOnWholeInClientTime() {
+        // The client clock runs 10 s ahead of the server; the batch arrives with its newest sample
+        buffer.onLiveBatch(20_030, batch(10_000, 10_010, 10_020, 10_030));
+        buffer.onLiveBatch(20_070, batch(10_040, 10_050, 10_060, 10_070));
+
+        assertEquals("[4, 4]", batchSizes.toString());
+        assertEquals("[20000=0, 20010=1, 20020=2, 20030=3, 20040=0, 20050=1, 20060=2, 20070=3]",
+                passedOn.toString());
+        assertEquals(10_070, buffer.getResumeTimestamp());
+    }
+
+    @Test
+    public void liveBatch_dropsSamplesAlreadyBackfilled() {
+        buffer.onLive(11_000, 1000, values(1));
+        assertTrue(buffer.beginResume());
+        buffer.onBackfill(1010, values(2));
+        buffer.onBackfill(1020, values(3));
+        buffer.finishResume();
+
+        buffer.onLiveBatch(11_030, batch(1010, 1020, 1030));
+        assertEquals("[11000=1, 11010=2, 11020=3, 11030=2]", passedOn.toString());
+        assertEquals("[1]", batchSizes.toString());
+
+        // A batch that is entirely old is not passed on at all
+        buffer.onLiveBatch(11_040, batch(1000, 1010));
+        assertEquals("[1]", batchSizes.toString());
+    }
+
+    @Test
+    public void liveBatch_isHeldWhileResuming() {
+        buffer.onLive(11_000, 1000, values(1));
+        assertTrue(buffer.beginResume());
+        buffer.onLiveBatch(11_040, batch(1030, 1040));
+        assertEquals("[11000=1]", passedOn.toString());
+
+        buffer.onBackfill(1020, values(9));
+        buffer.finishResume();
+        assertEquals("[11000=1, 11020=9]", passedOn.toString());
+        buffer.flush();
+        assertEquals("[11000=1, 11020=9, 11030=0, 11040=1]", passedOn.toString());
+    }
+
+    @Test
+    public void heldFrames_areReleasedWhenTheBufferIsFull() {
+        buffer.onLive(1000, 1000, values(0));
+        assertTrue(buffer.beginResume());
+        for (int i = 1; i <= ResumeBuffer.MAX_HELD_FRAMES; i++) {
+            buffer.onLive(1000 + i, 1000 + i, values(i));
+        }
+        assertFalse(buffer.isResuming());
+        assertEquals(ResumeBuffer.MAX_HELD_FRAMES + 1, passedOn.size());
+    }
+
+    @Test
+    public void heldFrames_areCopied() {
+        buffer.onLive(1000, 1000, values(0));
+        assertTrue(buffer.beginResume());
+        double[] reused = values(1);
+        buffer.onLive(2000, 2000, reused);
+        reused[0] = 99;
+        buffer.finishResume();
+        buffer.flush();
+        assertEquals("[1000=0, 2000=1]", passedOn.toString());
+    }
+
+    @Test
+    public void releasedFrames_arePassedOnBeforeTheNextFrame() {
+        buffer.onLive(1000, 1000, values(0));
+        assertTrue(buffer.beginResume());
+        buffer.onLive(2000, 2000, values(1));
+
+        // Released from another thread, e.g. by the resume timeout: nothing is passed on there
+        buffer.finishResume();
+        assertEquals("[1000=0]", passedOn.toString());
+
+        buffer.onLive(3000, 3000, values(2));
+        assertEquals("[1000=0, 2000=1, 3000=2]", passedOn.toString());
+    }
+
+    @Test
+    public void sinks_areCalledWithoutTheLockHeld() throws Exception {
+        // A sink blocked on another thread that calls into the buffer must not deadlock
+        ResumeBuffer[] self = new ResumeBuffer[1];
+        List<Boolean> finished = new ArrayList<>();
+        self[0] = new ResumeBuffer((timestamp, values) -> {
+            Thread other = new Thread(() -> self[0].finishResume());
+            other.start();
+            try {
+                other.join(5000);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            finished.add(!other.isAlive());
+        });
+        self[0].onLive(1000, 1000, values(0));
+        assertEquals("[true]", finished.toString());
+    }
+
+    private static double[] values(int value) {
+        return new double[]{value, 0, 0};
+    }
+
+    private static ReadingBatch batch(long... serverTimestamps) {
+        ReadingBatch batch = new ReadingBatch(3, serverTimestamps.length);
+        for (int i = 0; i < serverTimestamps.length; i++) {
+            batch.add(serverTimestamps[i], values(i));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.project_client;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RollupStore}.
+ */
+public class RollupStoreTest {
+    private static final long MINUTE = RollupStore.Tier.MINUTE.width;
+    private static final long HOUR = RollupStore.Tier.HOUR.width;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void add_keepsMinMaxMeanCountAndLastPerBucket() {
+        RollupStore store = new RollupStore();
+        // One reading per second for two minutes, temperature counting up within each minute
+        for (int i = 0; i < 120; i++) {
+            store.add(i * 1000L, new double[]{i % 60, 50, 1000 + i});
+        }
+
+        List<float[]> buckets = new ArrayList<>();
+        List<Long> starts = new ArrayList<>();
+        store.forEach(RollupStore.Tier.MINUTE, 0, Long.MAX_VALUE, (bucketStart, count, min, max, mean, last) -> {
+            assertEquals(60, count);
+            starts.add(bucketStart);
+            buckets.add(new float[]{min[0], max[0], mean[0], last[0], min[2], max[2]});
+        });
+
+        assertEquals(2, buckets.size());
+        assertEquals(0L, (long) starts.get(0));
+        assertEquals(MINUTE, (long) starts.get(1));
+        assertArrayEquals(new float[]{0, 59, 29.5f, 59, 1000, 1059}, buckets.get(0), 0);
+        assertArrayEquals(new float[]{0, 59, 29.5f, 59, 1060, 1119}, buckets.get(1), 0);
+    }
+
+    @Test
+    public void add_updatesEveryTier() {
+        RollupStore store = new RollupStore();
+        for (int i = 0; i < 3 * 60; i++) {
+            store.add(i * MINUTE, new double[]{i, i, i});
+        }
+
+        int[] hourCounts = new int[3];
+        store.forEach(RollupStore.Tier.HOUR, 0, Long.MAX_VALUE, (bucketStart, count, min, max, mean, last) ->
+                hourCounts[(int) (bucketStart / HOUR)] = count);
+        assertArrayEquals(new int[]{60, 60, 60}, hourCounts);
+
+        int[] days = new int[1];
+        store.forEach(RollupStore.Tier.DAY, 0, Long.MAX_VALUE, (bucketStart, count, min, max, mean, last) -> {
+            assertEquals(180, count);
+            assertEquals(0, min[1], 0);
+            assertEquals(179, max[1], 0);
+            days[0]++;
+        });
+        assertEquals(1, days[0]);
+    }
+
+    @Test
+    public void forEach_onlyReturnsBucketsStillKept() {
+        RollupStore store = new RollupStore();
+        int capacity = RollupStore.Tier.MINUTE.capacity;
+        for (int i = 0; i < capacity + 10; i++) {
+            store.add(i * MINUTE, new double[]{i, i, i});
+        }
+
+        List<Long> starts = new ArrayList<>();
+        store.forEach(RollupStore.Tier.MINUTE, 0, Long.MAX_VALUE, (bucketStart, count, min, max, mean, last) -> {
+            assertEquals(1, count);
+            starts.add(bucketStart);
+        });
+        assertEquals(capacity, starts.size());
+        assertEquals(10 * MINUTE, (long) starts.get(0));
+    }
+
+    @Test
+    public void reopen_keepsBuckets() throws Exception {
+        File file = new File(temporaryFolder.newFolder(), "rollups.bin");
+        try (RollupStore store = new RollupStore(file)) {
+            store.add(HOUR + 1000, new double[]{20, 40, 1000});
+        }
+
+        try (RollupStore store = new RollupStore(file)) {
+            store.add(HOUR + 2000, new double[]{22, 40, 1000});
+            assertEquals(HOUR + 2000, store.getLatestTimestamp());
+
+            int[] counts = new int[1];
+            store.forEach(RollupStore.Tier.MINUTE, 0, Long.MAX_VALUE, (bucketStart, count, min, max, mean, last) -> {
+                assertEquals(21, mean[0], 0);
+                counts[0] = count;
+            });
+            assertEquals(2, counts[0]);
+        }
+    }
+
+    @Test
+    public void selectTier_picksCoarsestTierThatFillsTheChart() {
+        // 600 intervals of 1 s: too short even for minutes
+        assertNull(RollupStore.selectTier(600_000, 200));
+        // 600 intervals of 1 min
+        assertEquals(RollupStore.Tier.MINUTE, RollupStore.selectTier(600 * MINUTE, 200));
+        // 600 intervals of 1 h
+        assertEquals(RollupStore.Tier.HOUR, RollupStore.selectTier(600 * HOUR, 200));
+        assertEquals(RollupStore.Tier.DAY, RollupStore.selectTier(600 * 24 * HOUR, 200));
+    }
+
+    @Test
+    public void rollupChartSeries_reportsOnlyNewBuckets() {
+        RollupStore store = new RollupStore();
+        for (int i = 0; i < 100; i++) {
+            store.add(i * MINUTE, new double[]{i, i, i});
+        }
+        RollupChartSeries series = new RollupChartSeries(store, RollupStore.Tier.MINUTE,
+                ChannelRegistry.TEMPERATURE, ChartSeries.Mode.LTTB, 60 * MINUTE);
+
+        assertTrue(series.update());
+        assertEquals(60, series.getPointCount());
+        assertEquals(40, series.getPointValue(0), 0);
+
+        assertFalse(series.update());
+
+        store.add(100 * MINUTE, new double[]{100, 100, 100});
+        assertTrue(series.update());
+        assertEquals(1, series.getRemovedPointCount());
+        assertEquals(59, series.getFirstChangedPoint());
+        assertEquals(60, series.getPointCount());
+        assertEquals(100, series.getPointValue(59), 0);
+    }
+}
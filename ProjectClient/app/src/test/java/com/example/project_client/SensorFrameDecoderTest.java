@@ -0,0 +1,151 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SensorFrameDecoder}.
+ */
+public class SensorFrameDecoderTest {
+    private static final String FRAME = "{\"temperature\": 24.31, \"humidity\": 41.5, \"pressure\": 1012.87}";
+
+    @Test
+    public void decode_readsAllThreeValues() {
+        SensorFrameDecoder decoder = new SensorFrameDecoder();
+        assertTrue(decoder.decode(FRAME));
+        assertEquals(24.31, decoder.getValue(ChannelRegistry.TEMPERATURE), 0);
+        assertEquals(41.5, decoder.getValue(ChannelRegistry.HUMIDITY), 0);
+        assertEquals(1012.87, decoder.getValue(ChannelRegistry.PRESSURE), 0);
+    }
+
+    @Test
+    public void decode_matchesDoubleParseDouble() {
+        SensorFrameDecoder decoder = new SensorFrameDecoder();
+        String[] numbers = {"0", "-0.5", "0.05", "-12.75", "1e3", "2.5E-2", "123456789.123456", "1.7976931348623157e308"};
+        for (String number : numbers) {
+            String frame = "{\"pressure\":" + number + ",\"humidity\":1,\"temperature\":" + number + "}";
+            assertTrue(frame, decoder.decode(frame));
+            assertEquals(number, Double.parseDouble(number), decoder.getValue(ChannelRegistry.TEMPERATURE), 0);
+            assertEquals(number, Double.parseDouble(number), decoder.getValue(ChannelRegistry.PRESSURE), 0);
+        }
+    }
+
+    @Test
+    public void decode_readsServerTimestamp() {
+        SensorFrameDecoder decoder = new SensorFrameDecoder();
+        assertTrue(decoder.decode("{\"timestamp\": 1700000000123, \"temperature\": 1, \"humidity\": 2, \"pressure\": 3}"));
+        assertEquals(1700000000123L, decoder.getTimestamp());
+        assertTrue(decoder.decode(FRAME));
+        assertEquals(SensorFrameDecoder.NO_TIMESTAMP, decoder.getTimestamp());
+    }
+
+    @Test
+    public void decode_readsSensorTime() {
+        SensorFrameDecoder decoder = new SensorFrameDecoder();
+        assertTrue(decoder.decode("{\"timestamp\": 1700000000123, \"sensor_time\": 81234567890, "
+                + "\"temperature\": 1, \"humidity\": 2, \"pressure\": 3}"));
+        assertEquals(81234567890L, decoder.getSensorTime());
+        assertTrue(decoder.decode(FRAME));
+        assertEquals(SensorFrameDecoder.NO_TIMESTAMP, decoder.getSensorTime());
+    }
+
+    @Test
+    public void decodeBackfill_visitsEveryFrameInOrder() {
+        SensorFrameDecoder decoder = new SensorFrameDecoder();
+        StringBuilder seen = new StringBuilder();
+        int count = decoder.decodeBackfill("{\"backfill\": [{\"timestamp\": 1000, \"temperature\": 1, \"humidity\": 2, \"pressure\": 3},"
+                + " {\"timestamp\": 2000, \"temperature\": 4, \"humidity\": 5, \"pressure\": 6}]}",
+                (timestamp, values) -> seen.append(timestamp).append('=').append(values[ChannelRegistry.TEMPERATURE]).append(' '));
+        assertEquals(2, count);
+        assertEquals("1000=1.0 2000=4.0 ", seen.toString());
+
+        assertEquals(0, decoder.decodeBackfill("{\"backfill\": []}", (timestamp, values) -> fail()));
+    }
+
+    @Test
+    public void decodeBackfill_rejectsOtherFrames() {
+        SensorFrameDecoder decoder = new SensorFrameDecoder();
+        SensorFrameDecoder.FrameVisitor visitor = (timestamp, values) -> { };
+        assertEquals(-1, decoder.decodeBackfill(FRAME, visitor));
+        assertEquals(-1, decoder.decodeBackfill("{\"backfill\": [" + FRAME + "]}", visitor));  // No timestamp
+        assertEquals(-1, decoder.decodeBackfill("{\"backfill\": [{\"timestamp\": 1000}]}", visitor));
+        assertEquals(-1, decoder.decodeBackfill("{\"backfill\": [", visitor));
+        assertFalse(decoder.decode("{\"backfill\": []}"));
+    }
+
+    @Test
+    public void decode_skipsUnknownFields() {
+        SensorFrameDecoder decoder = new SensorFrameDecoder();
+        String frame = "{\"device\": \"pi-\\\"1\\\"\", \"temperature\": 1.5, \"extra\": {\"a\": [1, 2, \"}\"]},"
+                + " \"ok\": true, \"humidity\": 2.5, \"pressure\": 3.5}";
+        assertTrue(decoder.decode(frame));
+        assertEquals(1.5, decoder.getValue(ChannelRegistry.TEMPERATURE), 0);
+        assertEquals(2.5, decoder.getValue(ChannelRegistry.HUMIDITY), 0);
+        assertEquals(3.5, decoder.getValue(ChannelRegistry.PRESSURE), 0);
+    }
+
+    @Test
+    public void decode_customRegistryWithOptionalChannel() {
+        ChannelRegistry registry = new ChannelRegistry(
+                new SensorChannel(0, "temperature", "Temperature", "°C", "temp", "TEMP", "0", "100", true),
+                new SensorChannel(1, "pitch", "Pitch", "°", "pitch", "PITCH", "0", "360", false));
+        SensorFrameDecoder decoder = new SensorFrameDecoder(registry);
+
+        assertTrue(decoder.decode("{\"temperature\": 20.5, \"pitch\": 12.25, \"humidity\": 3}"));
+        assertArrayEquals(new double[]{20.5, 12.25}, decoder.getValues(), 0);
+
+        // A missing optional channel is NaN, a missing required one rejects the frame
+        assertTrue(decoder.decode("{\"temperature\": 21}"));
+        assertEquals(21, decoder.getValue(0), 0);
+        assertTrue(Double.isNaN(decoder.getValue(1)));
+        assertFalse(decoder.decode("{\"pitch\": 1}"));
+    }
+
+    @Test
+    public void decode_rejectsMalformedFrames() {
+        SensorFrameDecoder decoder = new SensorFrameDecoder();
+        assertFalse(decoder.decode(""));
+        assertFalse(decoder.decode("{}"));
+        assertFalse(decoder.decode("not json"));
+        assertFalse(decoder.decode("{\"temperature\": 1.5, \"humidity\": 2.5}"));
+        assertFalse(decoder.decode("{\"temperature\": abc, \"humidity\": 2.5, \"pressure\": 3.5}"));
+        assertFalse(decoder.decode("{\"temperature\": 1., \"humidity\": 2.5, \"pressure\": 3.5}"));
+        assertFalse(decoder.decode("{\"temperature\": 1.5, \"humidity\": 2.5, \"pressure\": 3.5"));
+    }
+
+    @Test
+    public void decode_doesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        SensorFrameDecoder decoder = new SensorFrameDecoder();
+
+        // Warm up so the measured loop runs compiled code
+        double sum = 0;
+        for (int i = 0; i < 200_000; i++) {
+            decoder.decode(FRAME);
+            sum += decoder.getValue(ChannelRegistry.TEMPERATURE);
+        }
+
+        long overheadBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long overhead = threadBean.getThreadAllocatedBytes(threadId) - overheadBefore;
+
+        // Take the best of a few rounds so a one-off JIT event on this thread does not count
+        long allocated = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 100_000; i++) {
+                decoder.decode(FRAME);
+                sum += decoder.getValue(ChannelRegistry.PRESSURE);
+            }
+            long after = threadBean.getThreadAllocatedBytes(threadId);
+            allocated = Math.min(allocated, after - before - overhead);
+        }
+
+        assertTrue(sum > 0);
+        assertEquals("bytes allocated by 100000 decodes", 0, allocated);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.project_client;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link StartupPipeline}.
+ */
+public class StartupPipelineTest {
+    private ScheduledExecutorService executor;
+    private final BlockingQueue<Boolean> readyCalls = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        executor = Executors.newScheduledThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void phases_runInParallel() throws Exception {
+        StartupPipeline pipeline = new StartupPipeline(executor);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+
+        // Each phase waits for the other, so they only finish if they run at the same time
+        StartupPipeline.Task phase = () -> {
+            bothStarted.countDown();
+            if (!bothStarted.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("ran alone");
+            }
+        };
+        pipeline.runPhase("settings", phase);
+        pipeline.runPhase("history", phase);
+        pipeline.start(10_000, readyCalls::add);
+        pipeline.markFirstReading();
+
+        assertEquals(Boolean.TRUE, readyCalls.poll(5, TimeUnit.SECONDS));
+        List<String> names = names(pipeline);
+        assertTrue(names.contains("settings"));
+        assertTrue(names.contains("history"));
+        for (StartupPipeline.Phase recorded : pipeline.getPhases()) {
+            assertNull(recorded.getError());
+        }
+    }
+
+    @Test
+    public void firstReading_endsTheWaitBeforeTheDeadline() throws Exception {
+        StartupPipeline pipeline = new StartupPipeline(executor);
+        pipeline.runPhase("settings", () -> Thread.sleep(20));
+        pipeline.start(10_000, readyCalls::add);
+        Thread.sleep(50);
+        assertFalse("ready without a reading", pipeline.isReady());
+
+        pipeline.markFirstReading();
+        pipeline.markFirstReading();
+
+        assertEquals(Boolean.TRUE, readyCalls.poll(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.getTimeToFirstReadingMs() >= 0);
+        assertEquals(1, count(pipeline, StartupPipeline.FIRST_READING));
+        assertEquals(StartupPipeline.READY, last(names(pipeline)));
+    }
+
+    @Test
+    public void deadline_endsTheWaitWithoutAReading() throws Exception {
+        StartupPipeline pipeline = new StartupPipeline(executor);
+        pipeline.runPhase("settings", () -> { });
+        long start = System.nanoTime();
+        pipeline.start(100, readyCalls::add);
+
+        assertEquals(Boolean.FALSE, readyCalls.poll(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(-1, pipeline.getTimeToFirstReadingMs());
+
+        // A reading after the deadline is recorded but the splash is not dismissed twice
+        pipeline.markFirstReading();
+        assertNull(readyCalls.poll(200, TimeUnit.MILLISECONDS));
+        assertTrue(pipeline.getTimeToFirstReadingMs() >= 100);
+    }
+
+    @Test
+    public void slowPhase_isWaitedForAfterTheFirstReading() throws Exception {
+        StartupPipeline pipeline = new StartupPipeline(executor);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline.runPhase("history", release::await);
+        pipeline.start(10_000, readyCalls::add);
+        pipeline.markFirstReading();
+        assertNull(readyCalls.poll(100, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertEquals(Boolean.TRUE, readyCalls.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failedPhase_isRecordedAndDoesNotBlock() throws Exception {
+        StartupPipeline pipeline = new StartupPipeline(executor);
+        pipeline.runPhase("history", () -> {
+            throw new java.io.IOException("disk full");
+        });
+        pipeline.start(10_000, readyCalls::add);
+        pipeline.stopWaitingForReading();
+
+        assertEquals(Boolean.FALSE, readyCalls.poll(5, TimeUnit.SECONDS));
+        StartupPipeline.Phase history = pipeline.getPhases().get(0);
+        assertEquals("history", history.getName());
+        assertEquals("disk full", history.getError());
+        assertTrue(pipeline.format().contains("history") && pipeline.format().contains("failed: disk full"));
+        assertSame(pipeline, StartupPipeline.getLast());
+    }
+
+    private static List<String> names(StartupPipeline pipeline) {
+        List<String> names = new ArrayList<>();
+        for (StartupPipeline.Phase phase : pipeline.getPhases()) {
+            names.add(phase.getName());
+        }
+        return names;
+    }
+
+    private static int count(StartupPipeline pipeline, String name) {
+        int count = 0;
+        for (String recorded : names(pipeline)) {
+            if (recorded.equals(name)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static String last(List<String> names) {
+        return names.get(names.size() - 1);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link StreamingStats} and {@link ReadingStatistics}.
+ */
+public class StreamingStatsTest {
+
+    @Test
+    public void add_keepsMinMaxMeanAndVariance() {
+        StreamingStats stats = new StreamingStats();
+        double[] values = {2, 4, 4, 4, 5, 5, 7, 9};
+        for (int i = 0; i < values.length; i++) {
+            stats.add(i * 1000L, values[i]);
+        }
+        stats.add(9000, Double.NaN);
+
+        assertEquals(8, stats.getCount());
+        assertEquals(2, stats.getMin(), 0);
+        assertEquals(9, stats.getMax(), 0);
+        assertEquals(5, stats.getMean(), 1e-12);
+        assertEquals(32.0 / 7, stats.getVariance(), 1e-12);
+    }
+
+    @Test
+    public void variance_staysAccurateFarFromZero() {
+        // A naive sum of squares loses every digit here
+        StreamingStats stats = new StreamingStats();
+        for (int i = 0; i < 100_000; i++) {
+            stats.add(i, 1e9 + (i % 2 == 0 ? 1 : -1));
+        }
+        assertEquals(1, stats.getVariance(), 1e-3);
+    }
+
+    @Test
+    public void movingAverage_followsAStepByItsHalfLife() {
+        StreamingStats stats = new StreamingStats(new long[] {10_000}, QuantileSketch.DEFAULT_K);
+        long time = 0;
+        for (; time < 1_000_000; time += 100) {
+            stats.add(time, 0);
+        }
+        // After one half-life of readings at 10, the average is halfway there
+        for (long end = time + 10_000; time < end; time += 100) {
+            stats.add(time, 10);
+        }
+        assertEquals(5, stats.getMovingAverage(0), 0.1);
+        assertEquals(10 * 100.0 / 10_100, stats.getMean(), 1e-9);
+    }
+
+    @Test
+    public void merge_equalsOneStreamOfAllValues() {
+        Random random = new Random(1);
+        StreamingStats all = new StreamingStats();
+        StreamingStats first = new StreamingStats();
+        StreamingStats second = new StreamingStats();
+        for (int i = 0; i < 20_000; i++) {
+            double value = random.nextGaussian() * 3 + (i < 10_000 ? 10 : 20);
+            all.add(i * 100L, value);
+            (i < 10_000 ? first : second).add(i * 100L, value);
+        }
+
+        // Merged in either order, the earlier window's average is decayed to the later one's time
+        StreamingStats forward = first.copy();
+        forward.merge(second);
+        StreamingStats backward = second.copy();
+        backward.merge(first);
+        for (StreamingStats merged : new StreamingStats[] {forward, backward}) {
+            assertEquals(all.getCount(), merged.getCount());
+            assertEquals(all.getMin(), merged.getMin(), 0);
+            assertEquals(all.getMax(), merged.getMax(), 0);
+            assertEquals(all.getMean(), merged.getMean(), 1e-9);
+            assertEquals(all.getVariance(), merged.getVariance(), 1e-9);
+            for (int i = 0; i < StreamingStats.DEFAULT_HALF_LIVES_MS.length; i++) {
+                assertEquals(all.getMovingAverage(i), merged.getMovingAverage(i), 1e-9);
+            }
+            assertEquals(all.getQuantile(0.5), merged.getQuantile(0.5), 0.5);
+        }
+    }
+
+    @Test
+    public void readingStatistics_mergesTheWindowsOfTheRequestedPeriod() {
+        ReadingStatistics statistics = new ReadingStatistics(2);
+        long start = 100 * ReadingStatistics.WINDOW_MS;
+        // One reading a second for an hour: 10 in the first half hour, 20 in the second
+        for (long time = 0; time < 3_600_000; time += 1000) {
+            statistics.add(start + time, new double[] {time < 1_800_000 ? 10 : 20, Double.NaN});
+        }
+
+        assertEquals(3600, statistics.getStatistics(0).getCount());
+        assertEquals(15, statistics.getStatistics(0).getMean(), 1e-9);
+        StreamingStats lastHalf = statistics.getStatistics(0, start + 1_800_000);
+        assertEquals(1800, lastHalf.getCount());
+        assertEquals(20, lastHalf.getMean(), 0);
+        assertEquals(0, statistics.getStatistics(1).getCount());
+
+        // The windows are whole, so a period starting mid-window covers that window from its start
+        assertEquals(start + 1_800_000, statistics.getCoveredSince(start + 1_800_000));
+        assertEquals(start + 1_800_000, statistics.getCoveredSince(start + 1_800_000 + ReadingStatistics.WINDOW_MS / 2));
+        // Further back than anything kept, it covers only what is kept
+        assertEquals(start, statistics.getCoveredSince(start - ReadingStatistics.RETAINED_MS));
+
+        // Readings older than the windows kept are ignored, newer ones push the oldest window out
+        statistics.add(start - ReadingStatistics.WINDOW_COUNT * ReadingStatistics.WINDOW_MS, new double[] {0, 0});
+        statistics.add(start + ReadingStatistics.WINDOW_COUNT * ReadingStatistics.WINDOW_MS, new double[] {30, 0});
+        assertEquals(3600 - 600 + 1, statistics.getStatistics(0).getCount());
+    }
+}
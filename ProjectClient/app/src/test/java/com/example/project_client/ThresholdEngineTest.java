@@ -0,0 +1,179 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ThresholdEngine} and {@link ThresholdRules}.
+ */
+public class ThresholdEngineTest {
+    private static Map<String, Object> settings() {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("threshold_enabled", true);
+        settings.put("saved_min_temp", "10");
+        settings.put("saved_max_temp", "30");
+        settings.put("saved_min_hum", "20");
+        settings.put("saved_max_hum", "80");
+        settings.put("saved_min_pres", "900");
+        settings.put("saved_max_pres", "1100");
+        return settings;
+    }
+
+    private static boolean isBroken(ThresholdEngine engine, long mask, int channel, int kind) {
+        ThresholdRules rules = engine.getEvaluatedRules();
+        for (int rule = 0; rule < rules.getRuleCount(); rule++) {
+            if ((mask & (1L << rule)) != 0 && rules.getChannel(rule) == channel && rules.getKind(rule) == kind) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void compile_disabledProducesNoRules() {
+        Map<String, Object> settings = settings();
+        settings.put("threshold_enabled", false);
+        ThresholdRules rules = ThresholdRules.compile(settings);
+
+        assertFalse(rules.isEnabled());
+        assertEquals(0, rules.getRuleCount());
+    }
+
+    @Test
+    public void compile_skipsSettingsThatAreNotNumbers() {
+        Map<String, Object> settings = settings();
+        settings.put("saved_max_hum", "abc");
+        ThresholdRules rules = ThresholdRules.compile(settings);
+
+        assertEquals(5, rules.getRuleCount());
+        assertFalse(rules.hasRange(ChannelRegistry.HUMIDITY));
+        assertTrue(rules.hasRange(ChannelRegistry.TEMPERATURE));
+        assertEquals("abc", rules.getMaxText(ChannelRegistry.HUMIDITY));
+    }
+
+    @Test
+    public void evaluate_flagsValuesOutsideMinAndMax() {
+        ThresholdEngine engine = new ThresholdEngine();
+        engine.setRules(ThresholdRules.compile(settings()));
+
+        assertEquals(0, engine.evaluate(1000, new double[]{20, 50, 1000}));
+
+        long mask = engine.evaluate(2000, new double[]{35, 10, 1000});
+        assertTrue(isBroken(engine, mask, ChannelRegistry.TEMPERATURE, ThresholdRules.ABOVE));
+        assertTrue(isBroken(engine, mask, ChannelRegistry.HUMIDITY, ThresholdRules.BELOW));
+        assertEquals(-1, engine.firstBrokenRule(mask, ChannelRegistry.PRESSURE));
+        assertEquals(ThresholdRules.ABOVE, engine.getEvaluatedRules().getKind(engine.firstBrokenRule(mask, ChannelRegistry.TEMPERATURE)));
+    }
+
+    @Test
+    public void evaluate_sustainedRuleWaitsForDuration() {
+        Map<String, Object> settings = settings();
+        settings.put("saved_sustain_seconds", "5");
+        ThresholdEngine engine = new ThresholdEngine();
+        engine.setRules(ThresholdRules.compile(settings));
+
+        assertEquals(0, engine.evaluate(0, new double[]{35, 50, 1000}));
+        assertEquals(0, engine.evaluate(4000, new double[]{35, 50, 1000}));
+        assertTrue(isBroken(engine, engine.evaluate(5000, new double[]{35, 50, 1000}), ChannelRegistry.TEMPERATURE, ThresholdRules.ABOVE));
+
+        // Back in range resets the timer
+        assertEquals(0, engine.evaluate(6000, new double[]{20, 50, 1000}));
+        assertEquals(0, engine.evaluate(7000, new double[]{35, 50, 1000}));
+    }
+
+    @Test
+    public void evaluate_rateRuleFlagsFastChanges() {
+        Map<String, Object> settings = settings();
+        settings.put("saved_max_rate_pres", "30");  // hPa per minute
+        ThresholdEngine engine = new ThresholdEngine();
+        engine.setRules(ThresholdRules.compile(settings));
+
+        assertEquals(0, engine.evaluate(0, new double[]{20, 50, 1000}));
+        // 0.4 hPa in a second is 24 hPa per minute
+        assertEquals(0, engine.evaluate(1000, new double[]{20, 50, 1000.4}));
+        // 1 hPa in a second is 60 hPa per minute
+        assertTrue(isBroken(engine, engine.evaluate(2000, new double[]{20, 50, 999.4}), ChannelRegistry.PRESSURE, ThresholdRules.RATE));
+    }
+
+    @Test
+    public void setRules_appliesNewSettings() {
+        ThresholdEngine engine = new ThresholdEngine();
+        engine.setRules(ThresholdRules.compile(settings()));
+        assertNotEquals(0, engine.evaluate(0, new double[]{35, 50, 1000}));
+
+        Map<String, Object> settings = settings();
+        settings.put("saved_max_temp", "40");
+        engine.setRules(ThresholdRules.compile(settings));
+        assertEquals(0, engine.evaluate(1000, new double[]{35, 50, 1000}));
+    }
+
+    @Test
+    public void setRules_fromAnotherThreadTakesEffectOnNextReading() throws Exception {
+        ThresholdEngine engine = new ThresholdEngine();
+        engine.setRules(ThresholdRules.compile(settings()));
+        assertNotEquals(0, engine.evaluate(0, new double[]{35, 50, 1000}));
+
+        Map<String, Object> settings = settings();
+        settings.put("threshold_enabled", false);
+        ThresholdRules disabled = ThresholdRules.compile(settings);
+        Thread uiThread = new Thread(() -> engine.setRules(disabled));
+        uiThread.start();
+        uiThread.join();
+
+        assertSame(disabled, engine.getRules());
+        assertEquals(0, engine.evaluate(1000, new double[]{35, 50, 1000}));
+    }
+
+    @Test
+    public void mask_isReadWithTheRulesThatProducedIt() {
+        ThresholdEngine engine = new ThresholdEngine();
+        ThresholdRules evaluated = ThresholdRules.compile(settings());
+        engine.setRules(evaluated);
+        long mask = engine.evaluate(0, new double[]{35, 50, 1000});
+
+        // New settings arrive before the mask is read; they shift the rule indices
+        Map<String, Object> settings = settings();
+        settings.remove("saved_min_temp");
+        engine.setRules(ThresholdRules.compile(settings));
+
+        assertSame(evaluated, engine.getEvaluatedRules());
+        assertNotSame(evaluated, engine.getRules());
+        int rule = engine.firstBrokenRule(mask, ChannelRegistry.TEMPERATURE);
+        assertEquals(ThresholdRules.ABOVE, engine.getEvaluatedRules().getKind(rule));
+        assertEquals(30, engine.getEvaluatedRules().getLimit(rule), 0);
+    }
+
+    @Test
+    public void largestRegistry_fitsEveryRuleInTheMask() {
+        SensorChannel[] channels = new SensorChannel[ChannelRegistry.MAX_CHANNELS];
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("threshold_enabled", true);
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new SensorChannel(i, "c" + i, "C" + i, "", "c" + i, "C" + i, "0", "100", true);
+            settings.put("saved_max_rate_c" + i, "5");
+        }
+        ThresholdRules rules = ThresholdRules.compile(settings, new ChannelRegistry(channels));
+        assertEquals(3 * ChannelRegistry.MAX_CHANNELS, rules.getRuleCount());
+
+        ThresholdEngine engine = new ThresholdEngine(channels.length);
+        engine.setRules(rules);
+        double[] values = new double[channels.length];
+        values[channels.length - 1] = 150;
+        long mask = engine.evaluate(0, values);
+        int rule = engine.firstBrokenRule(mask, channels.length - 1);
+        assertEquals(ThresholdRules.ABOVE, engine.getEvaluatedRules().getKind(rule));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void registry_rejectsMoreChannelsThanTheMaskHolds() {
+        SensorChannel[] channels = new SensorChannel[ChannelRegistry.MAX_CHANNELS + 1];
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = new SensorChannel(i, "c" + i, "C" + i, "", "c" + i, "C" + i, "0", "100", true);
+        }
+        new ChannelRegistry(channels);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.project_client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TokenBucket}.
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void tryTake_letsABurstThroughThenWaitsForTheRefill() {
+        TokenBucket bucket = new TokenBucket(3, 1000);
+        assertTrue(bucket.tryTake(0));
+        assertTrue(bucket.tryTake(0));
+        assertTrue(bucket.tryTake(0));
+        assertFalse(bucket.tryTake(0));
+        assertFalse(bucket.tryTake(999));
+        assertEquals(1000, bucket.getNextTokenTime(999));
+        assertTrue(bucket.tryTake(1000));
+        assertFalse(bucket.tryTake(1500));
+    }
+
+    @Test
+    public void refill_stopsAtTheCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 1000);
+        bucket.tryTake(0);
+        bucket.tryTake(0);
+        assertEquals(1, bucket.getTokens(1500));
+        assertEquals(2, bucket.getTokens(60_000));
+        assertTrue(bucket.tryTake(60_000));
+        assertTrue(bucket.tryTake(60_000));
+        assertFalse(bucket.tryTake(60_000));
+    }
+
+    @Test
+    public void refill_keepsTheTimeTowardsTheNextToken() {
+        TokenBucket bucket = new TokenBucket(3, 1000);
+        bucket.tryTake(0);
+        bucket.tryTake(0);
+        bucket.tryTake(0);
+        // 1.5 intervals give one token; the half interval left counts towards the next one
+        assertEquals(1, bucket.getTokens(1500));
+        assertEquals(2, bucket.getTokens(2000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsAnEmptyBucket() {
+        new TokenBucket(0, 1000);
+    }
+}
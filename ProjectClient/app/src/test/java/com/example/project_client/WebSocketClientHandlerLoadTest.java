@@ -0,0 +1,171 @@
+package com.example.project_client;
+
+import com.example.sensor_simulator.SensorSimulator;
+import com.example.sensor_simulator.SimulatedChannel;
+import com.example.sensor_simulator.SimulatorConfig;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Throughput, reconnect and soak tests for {@link WebSocketClientHandler} against the
+ * in-process sensor simulator. The soak test runs for -Dsoak.seconds (3 by default).
+ */
+public class WebSocketClientHandlerLoadTest {
+    private SensorSimulator simulator;
+    private WebSocketClientHandler handler;
+    private final Readings readings = new Readings();
+    private final AtomicInteger connects = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        handler = new WebSocketClientHandler(new ReconnectBackoff(20, 200, new Random(1)));
+        handler.setMessageListener(readings);
+    }
+
+    @After
+    public void tearDown() {
+        handler.disconnectWebSocket();
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    /**
+     * A temperature that is the sample number, so missing, repeated or reordered readings show.
+     */
+    private static SimulatorConfig countingConfig(double rateHz) {
+        return new SimulatorConfig()
+                .setSampleRateHz(rateHz)
+                .setChannels(Arrays.asList(
+                        new SimulatedChannel("temperature", 0, 0, 0, 60 * rateHz, 0),
+                        SimulatedChannel.humidity(),
+                        SimulatedChannel.pressure()));
+    }
+
+    private void connect(SimulatorConfig config) throws InterruptedException {
+        simulator = new SensorSimulator(config);
+        simulator.start();
+        handler.connectWebSocket(simulator.getDevice(0).getUrl());
+    }
+
+    @Test
+    public void highRateBatches_areAllDelivered() throws Exception {
+        connect(countingConfig(1000).setSamplesPerBatch(20));
+
+        waitFor("readings", () -> readings.count() >= 2000);
+        assertTrue("not batched", readings.batches.get() * 10 < readings.count());
+        readings.assertContiguous();
+    }
+
+    @Test
+    public void droppedConnections_areBackfilledWithoutGaps() throws Exception {
+        connect(countingConfig(50).setDisconnectEveryMs(400));
+
+        waitFor("several reconnects", () -> connects.get() >= 4);
+        int before = readings.count();
+        waitFor("readings after the last reconnect", () -> readings.count() > before + 10);
+        readings.assertContiguous();
+    }
+
+    @Test
+    public void outages_areBackfilledWithoutGaps() throws Exception {
+        connect(countingConfig(50).setDisconnectEveryMs(700).setOutageMs(300));
+
+        waitFor("several outages", () -> connects.get() >= 3);
+        int before = readings.count();
+        waitFor("readings after the last outage", () -> readings.count() > before + 10);
+        readings.assertContiguous();
+        assertTrue(simulator.getDevice(0).getDisconnectsInjected() >= 2);
+    }
+
+    @Test
+    public void soak_keepsEveryReadingInOrder() throws Exception {
+        long seconds = Long.getLong("soak.seconds", 3);
+        connect(countingConfig(200).setSamplesPerBatch(5).setDisconnectEveryMs(1000));
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        int before = readings.count();
+        waitFor("readings after the soak", () -> readings.count() > before + 50);
+        readings.assertContiguous();
+        assertTrue(readings.count() > seconds * 100);
+    }
+
+    private static void waitFor(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Collects the sample numbers in the temperature channel.
+     */
+    private class Readings implements WebSocketClientHandler.MessageListener {
+        private final double[] samples = new double[1 << 20];
+        private int count;
+        final AtomicInteger batches = new AtomicInteger();
+        private final StringBuilder problems = new StringBuilder();
+
+        @Override
+        public void onReading(long timestamp, double[] values) {
+            add(values[ChannelRegistry.TEMPERATURE]);
+        }
+
+        @Override
+        public void onReadingBatch(ReadingBatch batch) {
+            batches.incrementAndGet();
+            for (int sample = 0; sample < batch.size(); sample++) {
+                add(batch.getValue(sample, ChannelRegistry.TEMPERATURE));
+            }
+        }
+
+        private synchronized void add(double sample) {
+            if (count < samples.length) {
+                samples[count++] = sample;
+            }
+        }
+
+        synchronized int count() {
+            return count;
+        }
+
+        /**
+         * The readings are consecutive from the first one received, apart from where a JSON
+         * backfill (which has only the newest sample of each batch) closed a gap.
+         */
+        synchronized void assertContiguous() {
+            int step = simulator.getConfig().getSamplesPerBatch();
+            for (int i = 1; i < count; i++) {
+                double gap = samples[i] - samples[i - 1];
+                if (gap != 1 && !(step > 1 && gap > 0 && gap <= step)) {
+                    problems.append(samples[i - 1]).append(" -> ").append(samples[i]).append('\n');
+                }
+            }
+            assertEquals("readings missing, repeated or out of order", "", problems.toString());
+        }
+
+        @Override
+        public void onConnectionError(String errorMessage) {
+        }
+
+        @Override
+        public void onConnectionStatusChanged(boolean isConnected) {
+            if (isConnected) {
+                connects.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.project_client;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.Protocol;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link WebSocketClientHandler}, against a stand-in Pi server on localhost.
+ */
+public class WebSocketClientHandlerTest {
+    private StandInServer server;
+    private WebSocketClientHandler handler;
+    private final List<Integer> temperatures = new CopyOnWriteArrayList<>();
+    private final Queue<String> events = new ConcurrentLinkedQueue<>();
+    private final List<Long> timestamps = new CopyOnWriteArrayList<>();
+    private final AtomicInteger batches = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = startServer(new StandInServer(new Draft_6455()));
+
+        handler = new WebSocketClientHandler(new ReconnectBackoff(20, 200, new Random(1)));
+        handler.setMessageListener(new WebSocketClientHandler.MessageListener() {
+            @Override
+            public void onReading(long timestamp, double[] values) {
+                temperatures.add((int) values[ChannelRegistry.TEMPERATURE]);
+                timestamps.add(timestamp);
+            }
+
+            @Override
+            public void onReadingBatch(ReadingBatch batch) {
+                batches.incrementAndGet();
+                for (int sample = 0; sample < batch.size(); sample++) {
+                    temperatures.add((int) batch.getValue(sample, ChannelRegistry.TEMPERATURE));
+                    timestamps.add(batch.getTimestamp(sample));
+                }
+            }
+
+            @Override
+            public void onConnectionError(String errorMessage) {
+                events.add("error");
+            }
+
+            @Override
+            public void onConnectionStatusChanged(boolean isConnected) {
+                events.add(isConnected ? "connected" : "disconnected");
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        handler.disconnectWebSocket();
+        server.stop(1000);
+    }
+
+    @Test
+    public void binaryServer_sendsCompactFrames() throws Exception {
+        server.stop(1000);
+        server = startServer(new StandInServer(new Draft_6455(Collections.emptyList(),
+                Collections.singletonList(new Protocol(BinaryFrameDecoder.SUBPROTOCOL)))));
+
+        handler.connectWebSocket(server.url());
+        WebSocket connection = server.connections.poll(10, TimeUnit.SECONDS);
+        assertNotNull(connection);
+        assertEquals(BinaryFrameDecoder.SUBPROTOCOL, connection.getProtocol().getProvidedProtocol());
+        waitFor("the connection", handler::isConnected);
+
+        ByteBuffer frame = ByteBuffer.allocate(BinaryFrameDecoder.frameSize(3));
+        BinaryFrameDecoder.encode(frame, 1000, new double[]{21, 40, 1000});
+        frame.flip();
+        connection.send(frame);
+        connection.send(frame(2000, 22));  // Backfill and older frames can still come as JSON
+
+        waitFor("the readings", () -> temperatures.size() == 2);
+        assertEquals("[21, 22]", temperatures.toString());
+    }
+
+    @Test
+    public void batchFrames_areDeliveredOncePerBatch() throws Exception {
+        server.stop(1000);
+        server = startServer(new StandInServer(new Draft_6455(Collections.emptyList(),
+                Collections.singletonList(new Protocol(BinaryFrameDecoder.SUBPROTOCOL)))));
+
+        handler.connectWebSocket(server.url());
+        WebSocket connection = server.connections.poll(10, TimeUnit.SECONDS);
+        assertNotNull(connection);
+        waitFor("the connection", handler::isConnected);
+
+        // Ten seconds of sampling at 100 Hz, in batches of ten samples, sent as fast as possible
+        final int batchCount = 100;
+        final int samplesPerBatch = 10;
+        ReadingBatch batch = new ReadingBatch(3, samplesPerBatch);
+        ByteBuffer frame = ByteBuffer.allocate(BinaryFrameDecoder.batchFrameSize(samplesPerBatch, 3));
+        for (int b = 0; b < batchCount; b++) {
+            batch.reset(samplesPerBatch);
+            for (int sample = 0; sample < samplesPerBatch; sample++) {
+                int n = b * samplesPerBatch + sample;
+                batch.add(1_000_000 + 10L * n, new double[]{n, 40, 1000});
+            }
+            frame.clear();
+            BinaryFrameDecoder.encodeBatch(frame, batch);
+            frame.flip();
+            connection.send(frame);
+        }
+
+        waitFor("every sample", () -> temperatures.size() == batchCount * samplesPerBatch);
+        assertEquals(batchCount, batches.get());
+        for (int n = 0; n < batchCount * samplesPerBatch; n++) {
+            assertEquals(n, (int) temperatures.get(n));
+            if (n > 0) {
+                assertTrue(timestamps.get(n) > timestamps.get(n - 1));
+            }
+        }
+    }
+
+    @Test
+    public void jsonServer_isUsedWithoutSubprotocol() throws Exception {
+        handler.connectWebSocket(server.url());
+        WebSocket connection = server.connections.poll(10, TimeUnit.SECONDS);
+        assertNotNull(connection);
+        assertEquals("", connection.getProtocol().getProvidedProtocol());
+        waitFor("the connection", handler::isConnected);
+
+        connection.send(frame(1000, 23));
+        waitFor("the reading", () -> temperatures.size() == 1);
+        assertEquals("[23]", temperatures.toString());
+    }
+
+    @Test
+    public void droppedConnection_reconnectsAndBackfillsTheGap() throws Exception {
+        handler.connectWebSocket(server.url());
+        WebSocket first = server.connections.poll(10, TimeUnit.SECONDS);
+        assertNotNull(first);
+        waitFor("the connection", handler::isConnected);
+        first.send(frame(1000, 1));
+        first.send(frame(2000, 2));
+        waitFor("the live readings", () -> temperatures.size() == 2);
+
+        // The connection drops, the handler comes back and asks for what it missed
+        first.close();
+        WebSocket second = server.connections.poll(10, TimeUnit.SECONDS);
+        assertNotNull("no reconnect", second);
+        assertEquals(WebSocketClientHandler.RESUME_COMMAND + "2000", server.messages.poll(10, TimeUnit.SECONDS));
+
+        // A live frame overtakes the backfill, which also overlaps with it
+        second.send(frame(5000, 5));
+        second.send("{\"backfill\": [" + frame(2000, 2) + ", " + frame(3000, 3) + ", "
+                + frame(4000, 4) + ", " + frame(5000, 5) + "]}");
+        second.send(frame(6000, 6));
+
+        waitFor("the backfilled readings", () -> temperatures.size() == 6);
+        assertEquals("[1, 2, 3, 4, 5, 6]", temperatures.toString());
+        assertEquals("[connected, error, disconnected, connected]", events.toString());
+        assertEquals(WebSocketClientHandler.State.CONNECTED, handler.getState());
+    }
+
+    @Test
+    public void missingBackfill_releasesLiveFramesAfterTimeout() throws Exception {
+        handler.connectWebSocket(server.url());
+        WebSocket first = server.connections.poll(10, TimeUnit.SECONDS);
+        waitFor("the connection", handler::isConnected);
+        first.send(frame(1000, 1));
+        waitFor("the live reading", () -> temperatures.size() == 1);
+
+        first.close();
+        WebSocket second = server.connections.poll(10, TimeUnit.SECONDS);
+        assertNotNull("no reconnect", second);
+        second.send(frame(2000, 2));  // An older server that ignores the resume command
+
+        // After the timeout the held reading goes out with the next frame, on the WebSocket thread
+        Thread.sleep(WebSocketClientHandler.RESUME_TIMEOUT_MS + 500);
+        assertEquals("[1]", temperatures.toString());
+        second.send(frame(3000, 3));
+        waitFor("the held reading", () -> temperatures.size() == 3);
+        assertEquals("[1, 2, 3]", temperatures.toString());
+    }
+
+    @Test
+    public void unreachableServer_keepsRetryingUntilDisconnected() throws Exception {
+        String url = server.url();
+        server.stop(1000);
+
+        handler.connectWebSocket(url);
+        assertTrue(handler.isActive());
+        waitFor("a few attempts", () -> handler.getState() == WebSocketClientHandler.State.WAITING_TO_RECONNECT);
+        Thread.sleep(500);
+
+        // Only the first failed attempt is reported
+        assertEquals("[error, disconnected]", events.toString());
+        assertFalse(handler.isConnected());
+
+        handler.disconnectWebSocket();
+        assertEquals(WebSocketClientHandler.State.DISCONNECTED, handler.getState());
+        Thread.sleep(300);
+        assertEquals(WebSocketClientHandler.State.DISCONNECTED, handler.getState());
+    }
+
+    @Test
+    public void disconnect_stopsReconnecting() throws Exception {
+        handler.connectWebSocket(server.url());
+        assertNotNull(server.connections.poll(10, TimeUnit.SECONDS));
+        waitFor("the connection", handler::isConnected);
+
+        handler.disconnectWebSocket();
+        assertFalse(handler.isActive());
+        assertNull(server.connections.poll(500, TimeUnit.MILLISECONDS));
+        assertEquals("[connected, disconnected]", events.toString());
+    }
+
+    @Test
+    public void commands_areQueuedWhileDisconnectedAndSentInOneFrame() throws Exception {
+        handler.sendCommand("TEMP", "TEMP_IN_THRESHOLD:21.00");
+        handler.sendCommand("HUM", "HUM_OUT_THRESHOLD:91.00");
+        handler.sendCommand("TEMP", "TEMP_OUT_THRESHOLD:31.00");
+        assertEquals(2, handler.getQueuedCommandCount());
+
+        handler.connectWebSocket(server.url());
+        assertEquals("HUM_OUT_THRESHOLD:91.00" + WebSocketClientHandler.COMMAND_SEPARATOR + "TEMP_OUT_THRESHOLD:31.00",
+                server.messages.poll(10, TimeUnit.SECONDS));
+        assertEquals(0, handler.getQueuedCommandCount());
+
+        // Commands sent close together while connected share a frame too
+        handler.sendCommand("PRES", "PRES_IN_THRESHOLD:1000.00");
+        handler.sendCommand("PRES", "PRES_OUT_THRESHOLD:1050.00");
+        assertEquals("PRES_OUT_THRESHOLD:1050.00", server.messages.poll(10, TimeUnit.SECONDS));
+        assertNull(server.messages.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private static StandInServer startServer(StandInServer server) throws InterruptedException {
+        server.setReuseAddr(true);
+        server.start();
+        assertTrue("server did not start", server.started.await(10, TimeUnit.SECONDS));
+        return server;
+    }
+
+    private static String frame(long timestamp, int temperature) {
+        return "{\"timestamp\": " + timestamp + ", \"temperature\": " + temperature
+                + ", \"humidity\": 40, \"pressure\": 1000}";
+    }
+
+    private static void waitFor(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Stands in for the Pi server; hands over every connection and the messages it receives.
+     * The draft decides which subprotocols it accepts.
+     */
+    private static class StandInServer extends WebSocketServer {
+        final CountDownLatch started = new CountDownLatch(1);
+        final BlockingQueue<WebSocket> connections = new LinkedBlockingQueue<>();
+        final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+
+        StandInServer(Draft_6455 draft) {
+            super(new InetSocketAddress("127.0.0.1", 0), Collections.singletonList(draft));
+        }
+
+        String url() {
+            return "ws://127.0.0.1:" + getPort();
+        }
+
+        @Override
+        public void onOpen(WebSocket connection, ClientHandshake handshake) {
+            connections.add(connection);
+        }
+
+        @Override
+        public void onClose(WebSocket connection, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onMessage(WebSocket connection, String message) {
+            messages.add(message);
+        }
+
+        @Override
+        public void onError(WebSocket connection, Exception ex) {
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+    }
+}
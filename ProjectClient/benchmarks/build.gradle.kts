@@ -0,0 +1,49 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// :app is an Android module and cannot be a dependency of a plain JVM module, so the
+// classes under test are compiled from its sources. They must not use the Android APIs.
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "com/example/project_client/BinaryFrameDecoder.java",
+                "com/example/project_client/ChannelRegistry.java",
+                "com/example/project_client/ChartDownsampler.java",
+                "com/example/project_client/ChartSeries.java",
+                "com/example/project_client/HistoryLog.java",
+                "com/example/project_client/LatencyHistogram.java",
+                "com/example/project_client/MetricsRegistry.java",
+                "com/example/project_client/QuantileSketch.java",
+                "com/example/project_client/ReadingBatch.java",
+                "com/example/project_client/ReadingStatistics.java",
+                "com/example/project_client/ReadingStore.java",
+                "com/example/project_client/RollupStore.java",
+                "com/example/project_client/SensorChannel.java",
+                "com/example/project_client/SensorFrameDecoder.java",
+                "com/example/project_client/StreamingStats.java",
+                "com/example/project_client/ThresholdEngine.java",
+                "com/example/project_client/ThresholdRules.java"
+            )
+        }
+    }
+}
+
+// ./gradlew :benchmarks:jmh writes the results to build/results/jmh/results.json;
+// compare the files of two commits to spot regressions
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
@@ -0,0 +1,80 @@
+package com.example.project_client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Preparing the chart points from a full ReadingStore (a day at one reading a second), as the
+chart screen does on its timer: an update after one new reading, and building a chart's points
+from scratch when the screen opens. The chart covers 600 seconds in 270 buckets, as on a
+1080 pixel wide screen.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ChartDownsamplingBenchmark
+{
+    private static final int BUCKET_COUNT = 270;
+    private static final long RANGE_MS = 600_000;
+
+    @Param({"LTTB", "MIN_MAX"})
+    public String mode;
+
+    private ReadingStore store;
+    private ChartDownsampler downsampler;
+    private final double[] values = new double[3];
+    private long timestamp;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        store = new ReadingStore();
+        for (int i = 0; i < store.capacity(); i++)
+        {
+            append();
+        }
+        downsampler = createDownsampler();
+        downsampler.update();
+    }
+
+    private void append()
+    {
+        timestamp += 1000;
+        double wave = Math.sin(timestamp * 0.0001);
+        values[0] = 20 + 5 * wave;
+        values[1] = 50 + 10 * wave;
+        values[2] = 1000 + 20 * wave;
+        store.append(timestamp, values);
+    }
+
+    private ChartDownsampler createDownsampler()
+    {
+        return new ChartDownsampler(store, ChannelRegistry.TEMPERATURE, ChartSeries.Mode.valueOf(mode),
+                BUCKET_COUNT, RANGE_MS / BUCKET_COUNT);
+    }
+
+    @Benchmark
+    public int updateAfterNewReading()
+    {
+        append();
+        downsampler.update();
+        return downsampler.getPointCount();
+    }
+
+    @Benchmark
+    public int buildFromScratch()
+    {
+        ChartDownsampler fresh = createDownsampler();
+        fresh.update();
+        return fresh.getPointCount();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.project_client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/*
+Decoding of the frames the WebSocket thread receives: the JSON frame of older servers, the
+compact binary frame and a binary batch of ten samples. Each call decodes one frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FrameDecodingBenchmark
+{
+    private static final int SAMPLES_PER_BATCH = 10;
+
+    private final SensorFrameDecoder jsonDecoder = new SensorFrameDecoder();
+    private final BinaryFrameDecoder binaryDecoder = new BinaryFrameDecoder();
+    private final ReadingBatch batch = new ReadingBatch(3, SAMPLES_PER_BATCH);
+
+    private String jsonFrame;
+    private ByteBuffer binaryFrame;
+    private ByteBuffer batchFrame;
+
+    @Setup
+    public void setUp()
+    {
+        jsonFrame = "{\"timestamp\": 1700000000000, \"temperature\": 23.456, \"humidity\": 41.25, \"pressure\": 1013.2}";
+
+        double[] values = {23.456, 41.25, 1013.2};
+        binaryFrame = ByteBuffer.allocate(BinaryFrameDecoder.frameSize(3));
+        BinaryFrameDecoder.encode(binaryFrame, 1_700_000_000_000L, values);
+        binaryFrame.flip();
+
+        ReadingBatch source = new ReadingBatch(3, SAMPLES_PER_BATCH);
+        for (int sample = 0; sample < SAMPLES_PER_BATCH; sample++)
+        {
+            source.add(1_700_000_000_000L + 10 * sample, values);
+        }
+        batchFrame = ByteBuffer.allocate(BinaryFrameDecoder.batchFrameSize(SAMPLES_PER_BATCH, 3));
+        BinaryFrameDecoder.encodeBatch(batchFrame, source);
+        batchFrame.flip();
+    }
+
+    @Benchmark
+    public double json()
+    {
+        jsonDecoder.decode(jsonFrame);
+        return jsonDecoder.getValue(ChannelRegistry.TEMPERATURE);
+    }
+
+    @Benchmark
+    public double binary()
+    {
+        binaryDecoder.decode(binaryFrame);
+        return binaryDecoder.getValue(ChannelRegistry.TEMPERATURE);
+    }
+
+    @Benchmark
+    public double binaryBatch()
+    {
+        binaryDecoder.decodeBatch(batchFrame, batch);
+        return batch.getValue(SAMPLES_PER_BATCH - 1, ChannelRegistry.TEMPERATURE);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.project_client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/*
+Storing one reading in each of the places every reading goes: the in-memory ReadingStore,
+the memory-mapped HistoryLog on disk and the minute, hour and day rollups, and reading the
+last ten minutes back from the history.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class HistoryStorageBenchmark
+{
+    private static final long READ_RANGE_MS = 600_000;
+
+    private File directory;
+    private HistoryLog historyLog;
+    private final ReadingStore store = new ReadingStore();
+    private final RollupStore rollups = new RollupStore();
+    private final double[] values = {21.5, 45.0, 1012.0};
+    private long timestamp;
+    private double sum;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        directory = Files.createTempDirectory("history-benchmark").toFile();
+        historyLog = new HistoryLog(directory);
+        for (int i = 0; i < 3600; i++)
+        {
+            appendToHistory();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        historyLog.close();
+        File[] files = directory.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private long nextTimestamp()
+    {
+        timestamp += 1000;
+        return timestamp;
+    }
+
+    @Benchmark
+    public void appendToStore()
+    {
+        store.append(nextTimestamp(), values);
+    }
+
+    @Benchmark
+    public void appendToHistory() throws IOException
+    {
+        historyLog.append(nextTimestamp(), values);
+    }
+
+    @Benchmark
+    public void addToRollups()
+    {
+        rollups.add(nextTimestamp(), values);
+    }
+
+    @Benchmark
+    public double readLastTenMinutes()
+    {
+        sum = 0;
+        historyLog.forEach(timestamp - READ_RANGE_MS, Long.MAX_VALUE, (readingTimestamp, readingValues) -> sum += readingValues[0]);
+        return sum;
+    }
+}
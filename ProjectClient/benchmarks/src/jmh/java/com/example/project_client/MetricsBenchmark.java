@@ -0,0 +1,55 @@
+package com.example.project_client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+The cost of recording a metric, which is paid for every message: a counter and a meter on their
+own, the latency histogram, and a counter shared by the WebSocket thread and the UI thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class MetricsBenchmark
+{
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final MetricsRegistry.Counter counter = registry.counter("benchmark.counter");
+    private final MetricsRegistry.Meter meter = registry.meter("benchmark.meter");
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long latency;
+
+    @Benchmark
+    public void counterIncrement()
+    {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void meterMark()
+    {
+        meter.mark();
+    }
+
+    @Benchmark
+    public void histogramRecord()
+    {
+        latency = (latency + 7919) & 0xFFFFFF;
+        histogram.recordNanos(latency);
+    }
+
+    @Benchmark
+    @Group("shared")
+    @GroupThreads(2)
+    public void sharedCounterIncrement()
+    {
+        counter.increment();
+    }
+}
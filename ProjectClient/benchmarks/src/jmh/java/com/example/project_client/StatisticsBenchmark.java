@@ -0,0 +1,74 @@
+package com.example.project_client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+The cost of the running statistics: adding a value to one channel's statistics and to the
+windowed statistics of every channel, which is paid for every reading, and reading the hour's
+percentiles back, which the main screen does once a second.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class StatisticsBenchmark
+{
+    private final StreamingStats stats = new StreamingStats();
+    private final ReadingStatistics readingStatistics = new ReadingStatistics(3);
+    private final double[] values = new double[3];
+    private final double[] noise = new double[4096];
+    private long timestamp;
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(1);
+        for (int i = 0; i < noise.length; i++)
+        {
+            noise[i] = 21 + random.nextGaussian();
+        }
+        // An hour of readings at 10 Hz to read the statistics of
+        for (int i = 0; i < 36_000; i++)
+        {
+            add();
+        }
+    }
+
+    @Benchmark
+    public void streamingStatsAdd()
+    {
+        timestamp += 100;
+        stats.add(timestamp, noise[next++ & 4095]);
+    }
+
+    @Benchmark
+    public void readingStatisticsAdd()
+    {
+        add();
+    }
+
+    @Benchmark
+    public double lastHourPercentiles()
+    {
+        StreamingStats hour = readingStatistics.getStatistics(0, timestamp - 60 * 60 * 1000);
+        return hour.getQuantiles(0.05, 0.95)[1];
+    }
+
+    private void add()
+    {
+        timestamp += 100;
+        values[0] = noise[next++ & 4095];
+        values[1] = 40;
+        values[2] = 1000;
+        readingStatistics.add(timestamp, values);
+    }
+}
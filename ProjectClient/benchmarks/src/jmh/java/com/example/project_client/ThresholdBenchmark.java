@@ -0,0 +1,83 @@
+package com.example.project_client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+Threshold checks of one reading: the evaluation done for every reading (range, rate of change
+and sustain rules) and the per channel range check the main screen uses to color the values.
+The readings move in and out of the ranges so both outcomes are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ThresholdBenchmark
+{
+    private static final int READING_COUNT = 1024;
+
+    private final ThresholdEngine engine = new ThresholdEngine();
+    private ThresholdRules rules;
+    private final double[][] readings = new double[READING_COUNT][];
+    private int next;
+    private long timestamp;
+
+    @Setup
+    public void setUp()
+    {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("threshold_enabled", true);
+        settings.put("saved_min_temp", "10");
+        settings.put("saved_max_temp", "30");
+        settings.put("saved_min_hum", "20");
+        settings.put("saved_max_hum", "80");
+        settings.put("saved_min_pres", "900");
+        settings.put("saved_max_pres", "1100");
+        settings.put("saved_max_rate_temp", "5");
+        settings.put("saved_sustain_seconds", "10");
+        rules = ThresholdRules.compile(settings);
+        engine.setRules(rules);
+
+        for (int i = 0; i < READING_COUNT; i++)
+        {
+            double wave = Math.sin(i * 0.05);
+            readings[i] = new double[]{20 + 15 * wave, 50 + 40 * wave, 1000 + 150 * wave};
+        }
+    }
+
+    private double[] nextReading()
+    {
+        next = (next + 1) & (READING_COUNT - 1);
+        return readings[next];
+    }
+
+    @Benchmark
+    public long evaluate()
+    {
+        timestamp += 1000;
+        return engine.evaluate(timestamp, nextReading());
+    }
+
+    @Benchmark
+    public int readingColors()
+    {
+        double[] reading = nextReading();
+        int outOfRange = 0;
+        for (int channel = 0; channel < reading.length; channel++)
+        {
+            if (rules.hasRange(channel) && rules.isOutOfRange(channel, reading[channel]))
+            {
+                outOfRange++;
+            }
+        }
+        return outOfRange;
+    }
+}
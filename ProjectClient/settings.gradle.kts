@@ -22,4 +22,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "Project-Client"
 include(":app")
+include(":benchmarks")
+include(":simulator")
  
\ No newline at end of file
@@ -0,0 +1,18 @@
+plugins {
+    `java-library`
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+application {
+    mainClass.set("com.example.sensor_simulator.SensorSimulator")
+}
+
+dependencies {
+    api(libs.java.websocket.java.websocket)
+    testImplementation(libs.junit)
+}
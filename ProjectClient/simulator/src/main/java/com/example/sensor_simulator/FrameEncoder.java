@@ -0,0 +1,134 @@
+package com.example.sensor_simulator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/*
+FrameEncoder writes the frames of the Python server, independently of the client's decoders so
+that tests against the simulator check both sides of the protocol:
+
+- JSON: {"timestamp": 1700000000000, "sensor_time": 81234567, "temperature": 22.5, ...}
+- binary (version 1): u8 version, u8 flags, 2 reserved bytes, u32 channel mask, i64 timestamp,
+  one f32 per channel
+- batch (version 2): u8 version, u8 flags, u16 count, u32 mask, i64 base timestamp,
+  one u16 millisecond offset per sample padded to 4 bytes, then the f32 values sample by sample
+
+The sensor time is the device's monotonic clock at the reading in microseconds. Binary frames
+only carry it, as a trailing i64 with flag FLAG_SENSOR_TIME, for clients that asked for it.
+All binary fields are little-endian.
+ */
+final class FrameEncoder
+{
+    static final int VERSION = 1;
+    static final int BATCH_VERSION = 2;
+    static final int HEADER_SIZE = 16;
+    static final int FLAG_SENSOR_TIME = 0x01;
+
+    // Sensor time of a frame that should not carry one
+    static final long NO_SENSOR_TIME = Long.MIN_VALUE;
+
+    private FrameEncoder()
+    {
+    }
+
+    static String json(long timestamp, long sensorTime, double[] values, List<SimulatedChannel> channels, boolean withTimestamp)
+    {
+        StringBuilder frame = new StringBuilder(56 + 24 * values.length).append('{');
+        boolean first = true;
+        if (withTimestamp)
+        {
+            frame.append("\"timestamp\": ").append(timestamp);
+            first = false;
+        }
+        if (sensorTime != NO_SENSOR_TIME)
+        {
+            frame.append(first ? "" : ", ").append("\"sensor_time\": ").append(sensorTime);
+            first = false;
+        }
+        for (int channel = 0; channel < values.length; channel++)
+        {
+            if (!first)
+            {
+                frame.append(", ");
+            }
+            first = false;
+            frame.append('"').append(channels.get(channel).getKey()).append("\": ").append(values[channel]);
+        }
+        return frame.append('}').toString();
+    }
+
+    static ByteBuffer binary(long timestamp, double[] values, long sensorTime)
+    {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + 4 * values.length + sensorTimeSize(sensorTime))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        frame.put((byte) VERSION).put(flags(sensorTime)).put((byte) 0).put((byte) 0);
+        frame.putInt(mask(values.length));
+        frame.putLong(timestamp);
+        for (double value : values)
+        {
+            frame.putFloat((float) value);
+        }
+        putSensorTime(frame, sensorTime);
+        frame.flip();
+        return frame;
+    }
+
+    /*
+    Packs the first count samples of timestamps and values into one batch frame, with the sensor
+    time of the newest sample. The samples must be in timestamp order and at most 65535 ms apart.
+     */
+    static ByteBuffer batch(long[] timestamps, double[][] values, int count, long sensorTime)
+    {
+        int channelCount = values[0].length;
+        int deltaBytes = (2 * count + 3) & ~3;
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + deltaBytes + 4 * count * channelCount + sensorTimeSize(sensorTime))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        frame.put((byte) BATCH_VERSION).put(flags(sensorTime)).putShort((short) count);
+        frame.putInt(mask(channelCount));
+        frame.putLong(timestamps[0]);
+        long previous = timestamps[0];
+        for (int sample = 0; sample < count; sample++)
+        {
+            frame.putShort((short) (timestamps[sample] - previous));
+            previous = timestamps[sample];
+        }
+        for (int pad = 2 * count; pad < deltaBytes; pad++)
+        {
+            frame.put((byte) 0);
+        }
+        for (int sample = 0; sample < count; sample++)
+        {
+            for (int channel = 0; channel < channelCount; channel++)
+            {
+                frame.putFloat((float) values[sample][channel]);
+            }
+        }
+        putSensorTime(frame, sensorTime);
+        frame.flip();
+        return frame;
+    }
+
+    private static byte flags(long sensorTime)
+    {
+        return (byte) (sensorTime != NO_SENSOR_TIME ? FLAG_SENSOR_TIME : 0);
+    }
+
+    private static int sensorTimeSize(long sensorTime)
+    {
+        return sensorTime != NO_SENSOR_TIME ? 8 : 0;
+    }
+
+    private static void putSensorTime(ByteBuffer frame, long sensorTime)
+    {
+        if (sensorTime != NO_SENSOR_TIME)
+        {
+            frame.putLong(sensorTime);
+        }
+    }
+
+    private static int mask(int channelCount)
+    {
+        return channelCount >= 32 ? -1 : (1 << channelCount) - 1;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.sensor_simulator;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+SensorSimulator runs any number of stand-ins for the Pi server without a Sense HAT, for load and
+soak testing the client on a plain Linux box. Every simulated device is a SimulatedDevice on its
+own port, speaking the protocol of project-server.py.
+
+It can be run from the command line (see main()) or started inside a JVM test as a fixture:
+
+    try (SensorSimulator simulator = new SensorSimulator(new SimulatorConfig().setSampleRateHz(100)))
+    {
+        simulator.start();
+        handler.connectWebSocket(simulator.getDevice(0).getUrl());
+        ...
+    }
+
+All devices are sampled by one thread at the configured rate, with readings timestamped on a
+steady clock so a slow tick never bunches them up.
+ */
+public class SensorSimulator implements Closeable
+{
+    private final SimulatorConfig config;
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    private long startMillis;
+    private long sampleCount;
+
+    public SensorSimulator(SimulatorConfig config)
+    {
+        config.validate();
+        this.config = config;
+        scheduler = Executors.newScheduledThreadPool(2, runnable ->
+        {
+            Thread thread = new Thread(runnable, "sensor-simulator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int index = 0; index < config.getDeviceCount(); index++)
+        {
+            devices.add(new SimulatedDevice(index, config, scheduler));
+        }
+    }
+
+    /*
+    Starts every device and the sampling. Returns once all of them are listening.
+     */
+    public void start() throws InterruptedException
+    {
+        for (SimulatedDevice device : devices)
+        {
+            device.start();
+        }
+
+        startMillis = System.currentTimeMillis();
+        long periodNanos = Math.max(1, (long) (1_000_000_000L / config.getSampleRateHz()));
+        scheduler.scheduleAtFixedRate(this::sample, 0, periodNanos, TimeUnit.NANOSECONDS);
+
+        long disconnectEvery = config.getDisconnectEveryMs();
+        if (disconnectEvery > 0)
+        {
+            scheduler.scheduleAtFixedRate(() ->
+            {
+                for (SimulatedDevice device : devices)
+                {
+                    device.injectDisconnect();
+                }
+            }, disconnectEvery, disconnectEvery, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void sample()
+    {
+        // The timestamp follows the sample count, not the time the tick happened to run
+        long elapsedMs = (long) (sampleCount * 1000 / config.getSampleRateHz());
+        long timestamp = startMillis + elapsedMs;
+        sampleCount++;
+        for (SimulatedDevice device : devices)
+        {
+            try
+            {
+                device.sample(timestamp, elapsedMs);
+            }
+            catch (RuntimeException e)
+            {
+                // A failing send must not end the sampling of every device
+                System.err.println("Device " + device.getIndex() + ": " + e);
+            }
+        }
+    }
+
+    /*
+    Stops the sampling and every device.
+     */
+    @Override
+    public void close()
+    {
+        scheduler.shutdownNow();
+        for (SimulatedDevice device : devices)
+        {
+            try
+            {
+                device.stop();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public SimulatedDevice getDevice(int index)
+    {
+        return devices.get(index);
+    }
+
+    public List<SimulatedDevice> getDevices()
+    {
+        return Collections.unmodifiableList(devices);
+    }
+
+    public SimulatorConfig getConfig()
+    {
+        return config;
+    }
+
+    /*
+    Runs the simulator until it is killed. Options (defaults like the Pi server):
+      --host 0.0.0.0  --port 8765  --devices 1  --rate 1  --batch 1  --max-connections 0
+      --format negotiate|json  --no-timestamp  --drift 0  --noise <per channel default>
+      --disconnect-every 0  --outage 0  --seed 1
+    Drift and noise apply to every channel; the times are in milliseconds.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        SimulatorConfig config = new SimulatorConfig().setHost("0.0.0.0").setBasePort(8765);
+        double drift = 0;
+        double noise = -1;
+        for (int i = 0; i < args.length; i++)
+        {
+            String option = args[i];
+            if (option.equals("--no-timestamp"))
+            {
+                config.setSendTimestamps(false);
+                continue;
+            }
+            if (i + 1 >= args.length)
+            {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option)
+            {
+                case "--host":
+                    config.setHost(value);
+                    break;
+                case "--port":
+                    config.setBasePort(Integer.parseInt(value));
+                    break;
+                case "--devices":
+                    config.setDeviceCount(Integer.parseInt(value));
+                    break;
+                case "--rate":
+                    config.setSampleRateHz(Double.parseDouble(value));
+                    break;
+                case "--batch":
+                    config.setSamplesPerBatch(Integer.parseInt(value));
+                    break;
+                case "--max-connections":
+                    config.setMaxConnections(Integer.parseInt(value));
+                    break;
+                case "--format":
+                    config.setFrameFormat(SimulatorConfig.FrameFormat.valueOf(value.toUpperCase()));
+                    break;
+                case "--drift":
+                    drift = Double.parseDouble(value);
+                    break;
+                case "--noise":
+                    noise = Double.parseDouble(value);
+                    break;
+                case "--disconnect-every":
+                    config.setDisconnectEveryMs(Long.parseLong(value));
+                    break;
+                case "--outage":
+                    config.setOutageMs(Long.parseLong(value));
+                    break;
+                case "--seed":
+                    config.setSeed(Long.parseLong(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+
+        List<SimulatedChannel> channels = new ArrayList<>();
+        for (SimulatedChannel channel : config.getChannels())
+        {
+            SimulatedChannel changed = channel.withDrift(drift);
+            channels.add(noise >= 0 ? changed.withNoise(noise) : changed);
+        }
+        config.setChannels(channels);
+
+        SensorSimulator simulator = new SensorSimulator(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::close));
+        simulator.start();
+        for (SimulatedDevice device : simulator.getDevices())
+        {
+            System.out.println("Device " + device.getIndex() + " listening on " + device.getUrl());
+        }
+
+        // Print the traffic every ten seconds
+        while (true)
+        {
+            Thread.sleep(10_000);
+            for (SimulatedDevice device : simulator.getDevices())
+            {
+                System.out.println("Device " + device.getIndex() + ": " + device.getConnectionCount() + " clients, "
+                        + device.getReadingCount() + " readings, " + device.getFramesSent() + " frames sent, "
+                        + device.getDisconnectsInjected() + " disconnects injected");
+            }
+        }
+    }
+}
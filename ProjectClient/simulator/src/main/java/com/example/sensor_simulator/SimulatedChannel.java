@@ -0,0 +1,86 @@
+package com.example.sensor_simulator;
+
+import java.util.Random;
+
+/*
+SimulatedChannel produces the readings of one sensor: a base value with a slow sine wave on top,
+a linear drift and Gaussian noise, e.g. a room warming up through the day with a noisy sensor.
+Values are rounded to two decimals like the Sense HAT readings of the Python server.
+ */
+public class SimulatedChannel
+{
+    private final String key;
+    private final double base;
+    private final double amplitude;
+    private final long periodMs;
+    private final double driftPerMinute;
+    private final double noise;
+
+    /*
+    key is the name of the value in the JSON frames, e.g. "temperature". The sine wave has the given
+    amplitude and period (no wave if either is 0), the drift is in units per minute and the noise
+    is the standard deviation of the Gaussian noise added to every reading.
+     */
+    public SimulatedChannel(String key, double base, double amplitude, long periodMs, double driftPerMinute, double noise)
+    {
+        this.key = key;
+        this.base = base;
+        this.amplitude = amplitude;
+        this.periodMs = periodMs;
+        this.driftPerMinute = driftPerMinute;
+        this.noise = noise;
+    }
+
+    public static SimulatedChannel temperature()
+    {
+        return new SimulatedChannel("temperature", 22, 2, 10 * 60 * 1000, 0, 0.05);
+    }
+
+    public static SimulatedChannel humidity()
+    {
+        return new SimulatedChannel("humidity", 45, 5, 15 * 60 * 1000, 0, 0.2);
+    }
+
+    public static SimulatedChannel pressure()
+    {
+        return new SimulatedChannel("pressure", 1013, 3, 60 * 60 * 1000, 0, 0.1);
+    }
+
+    /*
+    Returns a copy with a different drift, e.g. to push a channel through its thresholds.
+     */
+    public SimulatedChannel withDrift(double newDriftPerMinute)
+    {
+        return new SimulatedChannel(key, base, amplitude, periodMs, newDriftPerMinute, noise);
+    }
+
+    /*
+    Returns a copy with a different noise level.
+     */
+    public SimulatedChannel withNoise(double newNoise)
+    {
+        return new SimulatedChannel(key, base, amplitude, periodMs, driftPerMinute, newNoise);
+    }
+
+    /*
+    Returns the reading elapsedMs after the simulation started.
+     */
+    public double valueAt(long elapsedMs, Random random)
+    {
+        double value = base + driftPerMinute * elapsedMs / 60_000.0;
+        if (amplitude != 0 && periodMs > 0)
+        {
+            value += amplitude * Math.sin(2 * Math.PI * elapsedMs / periodMs);
+        }
+        if (noise > 0)
+        {
+            value += noise * random.nextGaussian();
+        }
+        return Math.round(value * 100) / 100.0;
+    }
+
+    public String getKey()
+    {
+        return key;
+    }
+}
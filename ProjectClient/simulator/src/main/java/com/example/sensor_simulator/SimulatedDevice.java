@@ -0,0 +1,484 @@
+package com.example.sensor_simulator;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
+import org.java_websocket.server.WebSocketServer;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+SimulatedDevice stands in for one Pi: a WebSocket server that sends the readings of its
+simulated channels to every connected client, answers RESUME_FROM:<timestamp> with a backfill of
+what the client missed and records the LED commands (e.g. "TEMP_IN_THRESHOLD:21.50") it gets back,
+one by one also when a client sends several in one frame, separated by newlines.
+
+Readings are taken by the SensorSimulator's sampling thread through sample(). Connections can be
+dropped or the whole device taken down for a while to test reconnecting clients.
+ */
+public class SimulatedDevice
+{
+    public static final String SUBPROTOCOL = "sensor-frame.v1";
+    public static final String SENSOR_TIME_SUBPROTOCOL = "sensor-frame.v1+time";
+    public static final String RESUME_COMMAND = "RESUME_FROM:";
+    public static final String COMMAND_SEPARATOR = "\n";
+
+    // The states the Pi shows on its LEDs for each channel's command prefix
+    private static final List<String> LED_STATES = Arrays.asList("_IN_THRESHOLD:", "_OUT_THRESHOLD:", "_THRESHOLDS_DISABLED:");
+
+    private static final class HistoryEntry
+    {
+        final long timestamp;
+        final String frame;
+
+        HistoryEntry(long timestamp, String frame)
+        {
+            this.timestamp = timestamp;
+            this.frame = frame;
+        }
+    }
+
+    private final int index;
+    private final SimulatorConfig config;
+    private final ScheduledExecutorService scheduler;
+    private final Random random;
+    private final List<SimulatedChannel> channels;
+
+    private volatile DeviceServer server;
+    private volatile int port;
+
+    private final Set<WebSocket> jsonClients = ConcurrentHashMap.newKeySet();
+    private final Set<WebSocket> binaryClients = ConcurrentHashMap.newKeySet();
+    private final Set<WebSocket> sensorTimeClients = ConcurrentHashMap.newKeySet();
+
+    // The newest reading of each batch, as JSON, for the backfill; guarded by itself
+    private final ArrayDeque<HistoryEntry> history = new ArrayDeque<>();
+
+    // The batch being filled, only touched by the sampling thread
+    private final long[] batchTimestamps;
+    private final double[][] batchValues;
+    private int batchSize;
+
+    private final BlockingQueue<String> commands = new LinkedBlockingQueue<>();
+    private final Map<String, String> ledStates = new ConcurrentHashMap<>();
+
+    private final AtomicLong readingCount = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong connectionsAccepted = new AtomicLong();
+    private final AtomicLong connectionsRejected = new AtomicLong();
+    private final AtomicLong disconnectsInjected = new AtomicLong();
+    private final AtomicLong commandFrames = new AtomicLong();
+
+    SimulatedDevice(int index, SimulatorConfig config, ScheduledExecutorService scheduler)
+    {
+        this.index = index;
+        this.config = config;
+        this.scheduler = scheduler;
+        this.random = new Random(config.getSeed() + index);
+        this.channels = config.getChannels();
+        batchTimestamps = new long[config.getSamplesPerBatch()];
+        batchValues = new double[config.getSamplesPerBatch()][channels.size()];
+        port = config.getBasePort() == 0 ? 0 : config.getBasePort() + index;
+    }
+
+    /*
+    Starts listening and waits until the port is bound.
+     */
+    synchronized void start() throws InterruptedException
+    {
+        DeviceServer newServer = new DeviceServer(port);
+        newServer.setReuseAddr(true);
+        newServer.start();
+        if (!newServer.started.await(10, TimeUnit.SECONDS) || newServer.startError != null)
+        {
+            throw new IllegalStateException("Device " + index + " could not listen on port " + port, newServer.startError);
+        }
+        port = newServer.getPort();  // Keep the same port after an outage
+        server = newServer;
+    }
+
+    /*
+    Closes every connection and stops listening.
+     */
+    synchronized void stop() throws InterruptedException
+    {
+        DeviceServer current = server;
+        server = null;
+        if (current != null)
+        {
+            current.stop(1000);
+        }
+        jsonClients.clear();
+        binaryClients.clear();
+        sensorTimeClients.clear();
+    }
+
+    /*
+    Takes one reading elapsedMs into the simulation and sends the batch once it is full.
+     */
+    void sample(long timestamp, long elapsedMs)
+    {
+        // The device's monotonic clock, which clients use to measure the latency of the readings
+        long sensorTime = System.nanoTime() / 1000;
+        double[] values = batchValues[batchSize];
+        for (int channel = 0; channel < values.length; channel++)
+        {
+            values[channel] = channels.get(channel).valueAt(elapsedMs, random);
+        }
+        batchTimestamps[batchSize] = timestamp;
+        batchSize++;
+        readingCount.incrementAndGet();
+        if (batchSize < batchTimestamps.length)
+        {
+            return;
+        }
+
+        int count = batchSize;
+        batchSize = 0;
+        double[] newest = values;
+        String json = FrameEncoder.json(timestamp, sensorTime, newest, channels, config.isSendTimestamps());
+        synchronized (history)
+        {
+            history.addLast(new HistoryEntry(timestamp, json));
+            while (history.peekFirst().timestamp < timestamp - config.getHistoryMs())
+            {
+                history.removeFirst();
+            }
+        }
+
+        DeviceServer current = server;
+        if (current == null)
+        {
+            return;  // Down for an outage, the readings are only kept for the backfill
+        }
+        if (!jsonClients.isEmpty())
+        {
+            current.broadcast(json, jsonClients);
+            framesSent.addAndGet(jsonClients.size());
+        }
+        sendBinary(current, binaryClients, count, FrameEncoder.NO_SENSOR_TIME);
+        sendBinary(current, sensorTimeClients, count, sensorTime);
+    }
+
+    private void sendBinary(DeviceServer current, Set<WebSocket> clients, int count, long sensorTime)
+    {
+        if (clients.isEmpty())
+        {
+            return;
+        }
+        ByteBuffer binary = count == 1
+                ? FrameEncoder.binary(batchTimestamps[0], batchValues[0], sensorTime)
+                : FrameEncoder.batch(batchTimestamps, batchValues, count, sensorTime);
+        current.broadcast(binary, clients);
+        framesSent.addAndGet(clients.size());
+    }
+
+    /*
+    Drops every client connection without a closing handshake, like a lost network.
+     */
+    public void dropConnections()
+    {
+        disconnectsInjected.incrementAndGet();
+        for (WebSocket connection : connections())
+        {
+            connection.closeConnection(CloseFrame.ABNORMAL_CLOSE, "Injected disconnect");
+        }
+    }
+
+    /*
+    Stops the device for the given time, like a Pi rebooting. It keeps taking readings
+    meanwhile, so clients can backfill the outage once they are back.
+     */
+    public void startOutage(long outageMs)
+    {
+        disconnectsInjected.incrementAndGet();
+        scheduler.execute(() ->
+        {
+            try
+            {
+                stop();
+                scheduler.schedule(() ->
+                {
+                    try
+                    {
+                        start();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }, outageMs, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /*
+    Injects the disconnect the config asks for: an outage if it has one, otherwise dropped connections.
+     */
+    void injectDisconnect()
+    {
+        if (config.getOutageMs() > 0)
+        {
+            startOutage(config.getOutageMs());
+        }
+        else
+        {
+            dropConnections();
+        }
+    }
+
+    public String getUrl()
+    {
+        return "ws://" + config.getHost() + ":" + port;
+    }
+
+    public int getPort()
+    {
+        return port;
+    }
+
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public boolean isUp()
+    {
+        return server != null;
+    }
+
+    public int getConnectionCount()
+    {
+        return jsonClients.size() + binaryClients.size() + sensorTimeClients.size();
+    }
+
+    /*
+    Waits for the next command a client sent (other than RESUME_FROM), or returns null.
+     */
+    public String pollCommand(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return commands.poll(timeout, unit);
+    }
+
+    /*
+    Returns the last LED command for a channel's command prefix, e.g. "TEMP_OUT_THRESHOLD:31.20"
+    for "TEMP", or null if there was none.
+     */
+    public String getLedState(String commandPrefix)
+    {
+        return ledStates.get(commandPrefix);
+    }
+
+    public long getReadingCount()
+    {
+        return readingCount.get();
+    }
+
+    /*
+    Frames sent to clients, counting a frame sent to two clients twice.
+     */
+    public long getFramesSent()
+    {
+        return framesSent.get();
+    }
+
+    /*
+    Frames of commands received from clients, counting a batched frame once.
+     */
+    public long getCommandFrames()
+    {
+        return commandFrames.get();
+    }
+
+    public long getConnectionsAccepted()
+    {
+        return connectionsAccepted.get();
+    }
+
+    public long getConnectionsRejected()
+    {
+        return connectionsRejected.get();
+    }
+
+    public long getDisconnectsInjected()
+    {
+        return disconnectsInjected.get();
+    }
+
+    private List<WebSocket> connections()
+    {
+        List<WebSocket> connections = new ArrayList<>(jsonClients);
+        connections.addAll(binaryClients);
+        connections.addAll(sensorTimeClients);
+        return connections;
+    }
+
+    private void handleMessage(WebSocket connection, String frame)
+    {
+        commandFrames.incrementAndGet();
+        for (String message : frame.split(COMMAND_SEPARATOR))
+        {
+            handleCommand(connection, message);
+        }
+    }
+
+    private void handleCommand(WebSocket connection, String message)
+    {
+        if (message.startsWith(RESUME_COMMAND))
+        {
+            try
+            {
+                sendBackfill(connection, Long.parseLong(message.substring(RESUME_COMMAND.length()).trim()));
+            }
+            catch (NumberFormatException e)
+            {
+                commands.add(message);  // Recorded like any other unknown command
+            }
+            return;
+        }
+
+        // The LED state is updated first, so it is current once the command can be polled
+        for (String state : LED_STATES)
+        {
+            int at = message.indexOf(state);
+            if (at > 0)
+            {
+                ledStates.put(message.substring(0, at), message);
+                break;
+            }
+        }
+        commands.add(message);
+    }
+
+    private void sendBackfill(WebSocket connection, long since)
+    {
+        StringBuilder backfill = new StringBuilder("{\"backfill\": [");
+        boolean first = true;
+        synchronized (history)
+        {
+            Iterator<HistoryEntry> entries = history.iterator();
+            while (entries.hasNext())
+            {
+                HistoryEntry entry = entries.next();
+                if (entry.timestamp > since)
+                {
+                    if (!first)
+                    {
+                        backfill.append(", ");
+                    }
+                    backfill.append(entry.frame);
+                    first = false;
+                }
+            }
+        }
+        connection.send(backfill.append("]}").toString());
+    }
+
+    /*
+    The WebSocket server of one run of the device; a new one is created after each outage.
+     */
+    private class DeviceServer extends WebSocketServer
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile Exception startError;
+
+        DeviceServer(int port)
+        {
+            super(new InetSocketAddress(config.getHost(), port), drafts());
+        }
+
+        @Override
+        public void onOpen(WebSocket connection, ClientHandshake handshake)
+        {
+            int max = config.getMaxConnections();
+            if (max > 0 && getConnectionCount() >= max)
+            {
+                connectionsRejected.incrementAndGet();
+                connection.close(CloseFrame.TRY_AGAIN_LATER, "Too many connections");
+                return;
+            }
+            connectionsAccepted.incrementAndGet();
+            IProtocol protocol = connection.getProtocol();
+            String provided = protocol != null ? protocol.getProvidedProtocol() : "";
+            if (SENSOR_TIME_SUBPROTOCOL.equals(provided))
+            {
+                sensorTimeClients.add(connection);
+            }
+            else if (SUBPROTOCOL.equals(provided))
+            {
+                binaryClients.add(connection);
+            }
+            else
+            {
+                jsonClients.add(connection);
+            }
+        }
+
+        @Override
+        public void onClose(WebSocket connection, int code, String reason, boolean remote)
+        {
+            jsonClients.remove(connection);
+            binaryClients.remove(connection);
+            sensorTimeClients.remove(connection);
+        }
+
+        @Override
+        public void onMessage(WebSocket connection, String message)
+        {
+            handleMessage(connection, message);
+        }
+
+        @Override
+        public void onError(WebSocket connection, Exception ex)
+        {
+            if (connection == null)
+            {
+                // The server itself failed, e.g. the port is taken
+                startError = ex;
+                started.countDown();
+            }
+        }
+
+        @Override
+        public void onStart()
+        {
+            started.countDown();
+        }
+    }
+
+    private List<Draft> drafts()
+    {
+        if (config.getFrameFormat() == SimulatorConfig.FrameFormat.JSON)
+        {
+            return Collections.singletonList(new Draft_6455());
+        }
+        // Accept the binary subprotocols if offered, the one with the sensor time first, otherwise none (JSON)
+        return Collections.singletonList(new Draft_6455(Collections.emptyList(),
+                Arrays.asList(new Protocol(SENSOR_TIME_SUBPROTOCOL), new Protocol(SUBPROTOCOL), new Protocol(""))));
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.sensor_simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+SimulatorConfig holds the settings of a SensorSimulator. The defaults behave like the Python
+server on a Pi: one device, one reading a second with temperature, humidity and pressure,
+binary frames for clients that offer the subprotocol and an hour of backfill.
+The setters return the config so a test can set what it needs in one expression.
+ */
+public class SimulatorConfig
+{
+    /*
+    What the devices send.
+    NEGOTIATE: binary frames to clients offering the subprotocol, JSON to the others (the current server).
+    JSON: JSON only, ignoring the subprotocol (a server from before the binary format).
+     */
+    public enum FrameFormat
+    {
+        NEGOTIATE,
+        JSON
+    }
+
+    private int deviceCount = 1;
+    private String host = "127.0.0.1";
+    private int basePort = 0;
+    private double sampleRateHz = 1;
+    private int samplesPerBatch = 1;
+    private int maxConnections = 0;
+    private FrameFormat frameFormat = FrameFormat.NEGOTIATE;
+    private boolean sendTimestamps = true;
+    private List<SimulatedChannel> channels = new ArrayList<>(Arrays.asList(
+            SimulatedChannel.temperature(), SimulatedChannel.humidity(), SimulatedChannel.pressure()));
+    private long historyMs = 60 * 60 * 1000;
+    private long disconnectEveryMs = 0;
+    private long outageMs = 0;
+    private long seed = 1;
+
+    /*
+    Number of simulated Pis; each listens on its own port.
+     */
+    public SimulatorConfig setDeviceCount(int deviceCount)
+    {
+        this.deviceCount = deviceCount;
+        return this;
+    }
+
+    public SimulatorConfig setHost(String host)
+    {
+        this.host = host;
+        return this;
+    }
+
+    /*
+    Port of the first device, the others use the following ports. 0 picks free ports.
+     */
+    public SimulatorConfig setBasePort(int basePort)
+    {
+        this.basePort = basePort;
+        return this;
+    }
+
+    /*
+    Readings taken per second by every device.
+    Up to 1000 Hz every reading gets its own millisecond timestamp.
+     */
+    public SimulatorConfig setSampleRateHz(double sampleRateHz)
+    {
+        this.sampleRateHz = sampleRateHz;
+        return this;
+    }
+
+    /*
+    Readings sent together in one batch frame to binary clients; JSON clients get the newest.
+     */
+    public SimulatorConfig setSamplesPerBatch(int samplesPerBatch)
+    {
+        this.samplesPerBatch = samplesPerBatch;
+        return this;
+    }
+
+    /*
+    Client connections each device accepts at once, further ones are closed. 0 for no limit.
+     */
+    public SimulatorConfig setMaxConnections(int maxConnections)
+    {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public SimulatorConfig setFrameFormat(FrameFormat frameFormat)
+    {
+        this.frameFormat = frameFormat;
+        return this;
+    }
+
+    /*
+    Whether the JSON frames carry a "timestamp", which the oldest servers did not send.
+     */
+    public SimulatorConfig setSendTimestamps(boolean sendTimestamps)
+    {
+        this.sendTimestamps = sendTimestamps;
+        return this;
+    }
+
+    /*
+    The channels of every frame, in channel id order. At most 32.
+     */
+    public SimulatorConfig setChannels(List<SimulatedChannel> channels)
+    {
+        this.channels = new ArrayList<>(channels);
+        return this;
+    }
+
+    /*
+    How far back a reconnecting client can backfill.
+     */
+    public SimulatorConfig setHistoryMs(long historyMs)
+    {
+        this.historyMs = historyMs;
+        return this;
+    }
+
+    /*
+    Drops every client connection this often, 0 for never. If an outage is set the device also
+    stops accepting connections for that long each time, like a Pi rebooting.
+     */
+    public SimulatorConfig setDisconnectEveryMs(long disconnectEveryMs)
+    {
+        this.disconnectEveryMs = disconnectEveryMs;
+        return this;
+    }
+
+    public SimulatorConfig setOutageMs(long outageMs)
+    {
+        this.outageMs = outageMs;
+        return this;
+    }
+
+    /*
+    Seed of the noise, so runs can be repeated.
+     */
+    public SimulatorConfig setSeed(long seed)
+    {
+        this.seed = seed;
+        return this;
+    }
+
+    public int getDeviceCount()
+    {
+        return deviceCount;
+    }
+
+    public String getHost()
+    {
+        return host;
+    }
+
+    public int getBasePort()
+    {
+        return basePort;
+    }
+
+    public double getSampleRateHz()
+    {
+        return sampleRateHz;
+    }
+
+    public int getSamplesPerBatch()
+    {
+        return samplesPerBatch;
+    }
+
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    public FrameFormat getFrameFormat()
+    {
+        return frameFormat;
+    }
+
+    public boolean isSendTimestamps()
+    {
+        return sendTimestamps;
+    }
+
+    public List<SimulatedChannel> getChannels()
+    {
+        return channels;
+    }
+
+    public long getHistoryMs()
+    {
+        return historyMs;
+    }
+
+    public long getDisconnectEveryMs()
+    {
+        return disconnectEveryMs;
+    }
+
+    public long getOutageMs()
+    {
+        return outageMs;
+    }
+
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /*
+    Throws IllegalArgumentException if a setting is out of range.
+     */
+    void validate()
+    {
+        if (deviceCount < 1 || sampleRateHz <= 0 || samplesPerBatch < 1 || samplesPerBatch > 0xFFFF
+                || channels.isEmpty() || channels.size() > 32 || historyMs < 0 || maxConnections < 0)
+        {
+            throw new IllegalArgumentException("Invalid simulator settings");
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.sensor_simulator;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.Protocol;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SensorSimulator}, with a bare WebSocket client.
+ */
+public class SensorSimulatorTest {
+    private SensorSimulator simulator;
+
+    @After
+    public void tearDown() {
+        if (simulator != null) {
+            simulator.close();
+        }
+    }
+
+    private SensorSimulator start(SimulatorConfig config) throws InterruptedException {
+        simulator = new SensorSimulator(config);
+        simulator.start();
+        return simulator;
+    }
+
+    @Test
+    public void jsonClient_getsFramesLikeThePythonServer() throws Exception {
+        start(new SimulatorConfig().setSampleRateHz(50));
+        TestClient client = TestClient.connect(simulator.getDevice(0).getUrl(), false);
+
+        String frame = client.texts.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        assertTrue(frame, frame.matches("\\{\"timestamp\": \\d+, \"sensor_time\": \\d+, \"temperature\": [-\\d.]+, "
+                + "\"humidity\": [-\\d.]+, \"pressure\": [-\\d.]+}"));
+        client.close();
+    }
+
+    @Test
+    public void binaryClient_getsSingleAndBatchFrames() throws Exception {
+        start(new SimulatorConfig().setSampleRateHz(100).setSamplesPerBatch(10).setDeviceCount(2));
+        TestClient client = TestClient.connect(simulator.getDevice(1).getUrl(), true);
+
+        ByteBuffer frame = client.frames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        frame.order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(2, frame.get(0));
+        assertEquals(10, frame.getShort(2));
+        assertEquals(0b111, frame.getInt(4));
+        assertEquals(16 + 20 + 10 * 3 * 4, frame.remaining());
+        for (int sample = 1; sample < 10; sample++) {
+            assertEquals(10, frame.getShort(16 + 2 * sample));  // 100 Hz
+        }
+        client.close();
+        assertNotEquals(simulator.getDevice(0).getPort(), simulator.getDevice(1).getPort());
+    }
+
+    @Test
+    public void resumeCommand_isAnsweredWithTheMissedReadings() throws Exception {
+        start(new SimulatorConfig().setSampleRateHz(100));
+        Thread.sleep(300);
+        TestClient client = TestClient.connect(simulator.getDevice(0).getUrl(), false);
+        String live = client.texts.poll(5, TimeUnit.SECONDS);
+        long timestamp = Long.parseLong(live.replaceAll("^\\{\"timestamp\": (\\d+),.*", "$1"));
+
+        client.send("RESUME_FROM:" + (timestamp - 100));
+        String backfill;
+        do {
+            backfill = client.texts.poll(5, TimeUnit.SECONDS);
+            assertNotNull(backfill);
+        } while (!backfill.startsWith("{\"backfill\""));
+        assertTrue(backfill, backfill.contains("\"timestamp\": " + (timestamp - 90) + ","));
+        assertTrue(backfill, backfill.contains("\"timestamp\": " + timestamp + ","));
+        assertFalse(backfill, backfill.contains("\"timestamp\": " + (timestamp - 100) + ","));
+        client.close();
+    }
+
+    @Test
+    public void ledCommands_areRecordedPerChannel() throws Exception {
+        start(new SimulatorConfig());
+        TestClient client = TestClient.connect(simulator.getDevice(0).getUrl(), false);
+        client.send("TEMP_IN_THRESHOLD:21.50");
+        client.send("HUM_OUT_THRESHOLD:91.00");
+        client.send("TEMP_THRESHOLDS_DISABLED:22.00");
+
+        SimulatedDevice device = simulator.getDevice(0);
+        assertEquals("TEMP_IN_THRESHOLD:21.50", device.pollCommand(5, TimeUnit.SECONDS));
+        assertEquals("HUM_OUT_THRESHOLD:91.00", device.pollCommand(5, TimeUnit.SECONDS));
+        assertEquals("TEMP_THRESHOLDS_DISABLED:22.00", device.pollCommand(5, TimeUnit.SECONDS));
+        assertEquals("TEMP_THRESHOLDS_DISABLED:22.00", device.getLedState("TEMP"));
+        assertEquals("HUM_OUT_THRESHOLD:91.00", device.getLedState("HUM"));
+        assertNull(device.getLedState("PRES"));
+        client.close();
+    }
+
+    @Test
+    public void batchedCommands_areRecordedOneByOne() throws Exception {
+        start(new SimulatorConfig());
+        TestClient client = TestClient.connect(simulator.getDevice(0).getUrl(), false);
+        client.send("TEMP_IN_THRESHOLD:21.50" + SimulatedDevice.COMMAND_SEPARATOR + "HUM_OUT_THRESHOLD:91.00");
+
+        SimulatedDevice device = simulator.getDevice(0);
+        assertEquals("TEMP_IN_THRESHOLD:21.50", device.pollCommand(5, TimeUnit.SECONDS));
+        assertEquals("HUM_OUT_THRESHOLD:91.00", device.pollCommand(5, TimeUnit.SECONDS));
+        assertEquals("HUM_OUT_THRESHOLD:91.00", device.getLedState("HUM"));
+        assertEquals(1, device.getCommandFrames());
+        client.close();
+    }
+
+    @Test
+    public void connectionsOverTheLimit_areClosed() throws Exception {
+        start(new SimulatorConfig().setMaxConnections(1));
+        TestClient first = TestClient.connect(simulator.getDevice(0).getUrl(), false);
+        TestClient second = TestClient.connect(simulator.getDevice(0).getUrl(), false);
+
+        assertTrue(second.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, simulator.getDevice(0).getConnectionsRejected());
+        assertEquals(1, simulator.getDevice(0).getConnectionCount());
+        first.close();
+    }
+
+    @Test
+    public void outage_closesConnectionsAndComesBackOnTheSamePort() throws Exception {
+        start(new SimulatorConfig().setSampleRateHz(20));
+        SimulatedDevice device = simulator.getDevice(0);
+        int port = device.getPort();
+        TestClient client = TestClient.connect(device.getUrl(), false);
+
+        device.startOutage(300);
+        assertTrue(client.closed.await(5, TimeUnit.SECONDS));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!device.isUp() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(port, device.getPort());
+        TestClient again = TestClient.connect(device.getUrl(), false);
+        assertNotNull(again.texts.poll(5, TimeUnit.SECONDS));
+        again.close();
+    }
+
+    @Test
+    public void channel_followsDriftAndWave() {
+        Random random = new Random(1);
+        SimulatedChannel drifting = new SimulatedChannel("temperature", 20, 0, 0, 6, 0);
+        assertEquals(20, drifting.valueAt(0, random), 0);
+        assertEquals(21, drifting.valueAt(10_000, random), 0);
+
+        SimulatedChannel wave = new SimulatedChannel("humidity", 50, 10, 4000, 0, 0);
+        assertEquals(60, wave.valueAt(1000, random), 1e-9);
+        assertEquals(40, wave.valueAt(3000, random), 1e-9);
+
+        SimulatedChannel noisy = SimulatedChannel.temperature().withNoise(1);
+        double[] values = new double[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = noisy.valueAt(0, random);
+        }
+        Arrays.sort(values);
+        assertTrue(values[values.length - 1] - values[0] > 2);
+    }
+
+    /**
+     * A bare client that offers the binary subprotocol or not and collects what it receives.
+     */
+    private static class TestClient extends WebSocketClient {
+        final CountDownLatch opened = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final BlockingQueue<String> texts = new LinkedBlockingQueue<>();
+        final BlockingQueue<ByteBuffer> frames = new LinkedBlockingQueue<>();
+
+        TestClient(String url, boolean binary) {
+            super(URI.create(url), binary
+                    ? new Draft_6455(Collections.emptyList(), Collections.singletonList(new Protocol(SimulatedDevice.SUBPROTOCOL)))
+                    : new Draft_6455());
+        }
+
+        static TestClient connect(String url, boolean binary) throws InterruptedException {
+            TestClient client = new TestClient(url, binary);
+            client.connect();
+            assertTrue("not connected", client.opened.await(5, TimeUnit.SECONDS));
+            return client;
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+            opened.countDown();
+        }
+
+        @Override
+        public void onMessage(String message) {
+            texts.add(message);
+        }
+
+        @Override
+        public void onMessage(ByteBuffer bytes) {
+            frames.add(bytes);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+            closed.countDown();
+        }
+
+        @Override
+        public void onError(Exception ex) {
+        }
+    }
+}
@@ -1,4 +1,7 @@
 import asyncio
+import struct
+import time
+from collections import deque
 import websockets
 from sense_hat import SenseHat
 
@@ -9,76 +12,196 @@ green = [0, 255, 0]
 blue = [0, 0, 80]
 grey = [128, 128, 128]
 
+# Clients offering this subprotocol get compact binary frames instead of JSON:
+# version, flags, 2 reserved bytes, channel mask, timestamp and one float per channel, little-endian
+BINARY_SUBPROTOCOL = "sensor-frame.v1"
+BINARY_FRAME = struct.Struct("<BBxxIq3f")
+ALL_CHANNELS = 0b111  # temperature, humidity, pressure
+
+# Clients offering this one get the same frames with flag 1 set and the sensor time (the Pi's
+# monotonic clock at the reading, in microseconds) appended, so they can measure how stale a
+# reading is. JSON frames always carry it as "sensor_time".
+SENSOR_TIME_SUBPROTOCOL = "sensor-frame.v1+time"
+FLAG_SENSOR_TIME = 1
+SENSOR_TIME = struct.Struct("<q")
+
+# Readings taken per second. Above one, binary clients get the samples in batch frames:
+# version 2, sample count, channel mask, base timestamp, one u16 millisecond offset per sample
+# (padded to 4 bytes), then the floats of every sample. JSON clients get the newest sample.
+SAMPLE_RATE_HZ = 1
+BATCHES_PER_SECOND = min(10, SAMPLE_RATE_HZ)
+SAMPLES_PER_BATCH = SAMPLE_RATE_HZ // BATCHES_PER_SECOND
+BATCH_HEADER = struct.Struct("<BBHIq")
+
+# The last hour, as (timestamp, JSON frame, binary frame, binary frame with the sensor time)
+# with the newest sample of each batch, so reconnecting clients can backfill
+history = deque(maxlen=3600 * BATCHES_PER_SECOND)
+new_reading = None  # asyncio.Condition, created in start_server
+
+# The newest LED command per channel prefix (e.g. "TEMP"), oldest first, shown one after the other
+# by show_commands(). A client sends several commands at once separated by newlines.
+COMMAND_SEPARATOR = "\n"
+pending_commands = {}
+commands_waiting = None  # asyncio.Event, created in start_server
+
 # Function to get sensor readings
-def get_sensor_data():
+def get_sensor_data(timestamp):
     temperature = round(sense.get_temperature(), 2)
     humidity = round(sense.get_humidity(), 2)
     pressure = round(sense.get_pressure(), 2)
+    sensor_time = time.monotonic_ns() // 1000
+    return timestamp, sensor_time, temperature, humidity, pressure
+
+# Function creating a JSON frame and the binary frames without and with the sensor time for one reading
+def encode_reading(reading):
+    timestamp, sensor_time, temperature, humidity, pressure = reading
     
     # Create a JSON-formatted string to send multiple values
-    data = f'{{"temperature": {temperature}, "humidity": {humidity}, "pressure": {pressure}}}'
-    return data
+    data = f'{{"timestamp": {timestamp}, "sensor_time": {sensor_time}, "temperature": {temperature}, "humidity": {humidity}, "pressure": {pressure}}}'
+    binary = BINARY_FRAME.pack(1, 0, ALL_CHANNELS, timestamp, temperature, humidity, pressure)
+    timed = (BINARY_FRAME.pack(1, FLAG_SENSOR_TIME, ALL_CHANNELS, timestamp, temperature, humidity, pressure)
+             + SENSOR_TIME.pack(sensor_time))
+    return data, binary, timed
+
+# Function packing consecutive readings into one binary batch frame,
+# optionally followed by the sensor time of the newest one
+def encode_batch(readings, with_sensor_time=False):
+    count = len(readings)
+    deltas = [0] + [readings[i][0] - readings[i - 1][0] for i in range(1, count)]
+    padding = bytes((-2 * count) % 4)
+    values = [value for reading in readings for value in reading[2:]]
+    flags = FLAG_SENSOR_TIME if with_sensor_time else 0
+    frame = (BATCH_HEADER.pack(2, flags, count, ALL_CHANNELS, readings[0][0])
+             + struct.pack(f"<{count}H", *deltas) + padding
+             + struct.pack(f"<{len(values)}f", *values))
+    return frame + SENSOR_TIME.pack(readings[-1][1]) if with_sensor_time else frame
+
+# Function taking the readings for all clients and keeping the newest of each batch in the history
+async def sample_data():
+    period = 1 / SAMPLE_RATE_HZ
+    next_sample = time.monotonic()
+    while True:
+        readings = []
+        for _ in range(SAMPLES_PER_BATCH):
+            readings.append(get_sensor_data(int(time.time() * 1000)))
+            next_sample += period
+            await asyncio.sleep(max(0, next_sample - time.monotonic()))  # Keep a steady rate
 
-# Function to send sensor data every second
+        data, binary, timed = encode_reading(readings[-1])
+        if len(readings) > 1:
+            binary = encode_batch(readings)
+            timed = encode_batch(readings, with_sensor_time=True)
+        history.append((readings[-1][0], data, binary, timed))
+        async with new_reading:
+            new_reading.notify_all()
+
+# Function to send sensor data every second, or every batch
 async def send_data(websocket):
     print("\nClient Connected!\n")	# Debugging output
     
     while True:
-        sensor_data = get_sensor_data()
+        async with new_reading:
+            await new_reading.wait()
+        _, data, binary, timed = history[-1]
+        if websocket.subprotocol == SENSOR_TIME_SUBPROTOCOL:
+            sensor_data = timed
+        elif websocket.subprotocol == BINARY_SUBPROTOCOL:
+            sensor_data = binary
+        else:
+            sensor_data = data
         await websocket.send(sensor_data)
 #         print(f"Sent data: {sensor_data}")	# Debugging output
-        await asyncio.sleep(1)  # Send data every second
+
+# Function sending the readings taken after the given timestamp, for a client that reconnected
+async def send_backfill(websocket, since):
+    frames = [data for timestamp, data, _, _ in list(history) if timestamp > since]
+    await websocket.send('{"backfill": [' + ", ".join(frames) + ']}')
 
 # Function to handle specific client commands
+# LED commands are not shown here: a newer command for the same channel replaces one still waiting,
+# so the display never falls behind showing values that are already stale
 async def get_data(websocket):
     while True:
         message = await websocket.recv()  # Wait for client commands
 #         print(f"Received message: {message}")	# Debugging output
 
-        try:
-            if message.startswith("TEMP_IN_THRESHOLD:"):
-                temp_value = message.split(":")[1]
-                sense.show_message(f"{temp_value} C", text_colour=green, back_colour=blue)
+        for command in message.split(COMMAND_SEPARATOR):
+            try:
+                if command.startswith("RESUME_FROM:"):
+                    await send_backfill(websocket, int(command.split(":")[1]))
+                    continue
+
+                prefix = command.split("_")[0]
+                pending_commands.pop(prefix, None)
+                pending_commands[prefix] = command
+                commands_waiting.set()
+            except Exception as e:
+                print(f"Unknown message format: {e}")
+
+# Function showing the waiting LED commands, one at a time, in a worker thread so the scrolling
+# text does not hold up the readings
+async def show_commands():
+    while True:
+        await commands_waiting.wait()
+        prefix = next(iter(pending_commands))
+        message = pending_commands.pop(prefix)
+        if not pending_commands:
+            commands_waiting.clear()
+        await asyncio.to_thread(show_command, message)
+
+# Function showing one LED command on the Sense HAT
+def show_command(message):
+    try:
+        if message.startswith("TEMP_IN_THRESHOLD:"):
+            temp_value = message.split(":")[1]
+            sense.show_message(f"{temp_value} C", text_colour=green, back_colour=blue)
 #                 print(f"Temperature: {temp_value} C")	# Debugging output
-            elif message.startswith("TEMP_OUT_THRESHOLD:"):
-                temp_value = message.split(":")[1]
-                sense.show_message(f"{temp_value} C", text_colour=red, back_colour=blue)
+        elif message.startswith("TEMP_OUT_THRESHOLD:"):
+            temp_value = message.split(":")[1]
+            sense.show_message(f"{temp_value} C", text_colour=red, back_colour=blue)
 #                 print(f"Temperature: {temp_value} C")	# Debugging output
-            elif message.startswith("TEMP_THRESHOLDS_DISABLED:"):
-                temp_value = message.split(":")[1]
-                sense.show_message(f"{temp_value} C", text_colour=grey, back_colour=blue)
+        elif message.startswith("TEMP_THRESHOLDS_DISABLED:"):
+            temp_value = message.split(":")[1]
+            sense.show_message(f"{temp_value} C", text_colour=grey, back_colour=blue)
 #                 print(f"Temperature: {temp_value} C")	# Debugging output
-                
-            if message.startswith("HUM_IN_THRESHOLD:"):
-                hum_value = message.split(":")[1]
-                sense.show_message(f"{hum_value} %", text_colour=green, back_colour=blue)
+            
+        if message.startswith("HUM_IN_THRESHOLD:"):
+            hum_value = message.split(":")[1]
+            sense.show_message(f"{hum_value} %", text_colour=green, back_colour=blue)
 #                 print(f"Humidity: {hum_value} %")	# Debugging output
-            elif message.startswith("HUM_OUT_THRESHOLD:"):
-                hum_value = message.split(":")[1]
-                sense.show_message(f"{hum_value} %", text_colour=red, back_colour=blue)
+        elif message.startswith("HUM_OUT_THRESHOLD:"):
+            hum_value = message.split(":")[1]
+            sense.show_message(f"{hum_value} %", text_colour=red, back_colour=blue)
 #                 print(f"Humidity: {hum_value} %")	# Debugging output
-            elif message.startswith("HUM_THRESHOLDS_DISABLED:"):
-                hum_value = message.split(":")[1]
-                sense.show_message(f"{hum_value} %", text_colour=grey, back_colour=blue)
+        elif message.startswith("HUM_THRESHOLDS_DISABLED:"):
+            hum_value = message.split(":")[1]
+            sense.show_message(f"{hum_value} %", text_colour=grey, back_colour=blue)
 #                 print(f"Humidity: {hum_value} %")	# Debugging output
-                
-                
-            if message.startswith("PRES_IN_THRESHOLD:"):
-                pres_value = message.split(":")[1]
-                sense.show_message(f"{pres_value} hPa", text_colour=green, back_colour=blue)
+            
+            
+        if message.startswith("PRES_IN_THRESHOLD:"):
+            pres_value = message.split(":")[1]
+            sense.show_message(f"{pres_value} hPa", text_colour=green, back_colour=blue)
 #                 print(f"Pressure: {pres_value} hPa")	# Debugging output
-            elif message.startswith("PRES_OUT_THRESHOLD:"):
-                pres_value = message.split(":")[1]
-                sense.show_message(f"{pres_value} hPa", text_colour=red, back_colour=blue)
+        elif message.startswith("PRES_OUT_THRESHOLD:"):
+            pres_value = message.split(":")[1]
+            sense.show_message(f"{pres_value} hPa", text_colour=red, back_colour=blue)
 #                 print(f"Pressure: {pres_value} hPa")	# Debugging output
-            elif message.startswith("PRES_THRESHOLDS_DISABLED:"):
-                pres_value = message.split(":")[1]
-                sense.show_message(f"{pres_value} hPa", text_colour=grey, back_colour=blue)
+        elif message.startswith("PRES_THRESHOLDS_DISABLED:"):
+            pres_value = message.split(":")[1]
+            sense.show_message(f"{pres_value} hPa", text_colour=grey, back_colour=blue)
 #                 print(f"Pressure: {pres_value} hPa")	# Debugging output
-                
-            sense.clear()
-        except Exception as e:
-            print(f"Unknown message format: {e}")
+            
+        sense.clear()
+    except Exception as e:
+        print(f"Unknown message format: {e}")
+
+# Function picking a binary format if the client offers one, otherwise no subprotocol (JSON)
+def select_subprotocol(connection, subprotocols):
+    for subprotocol in (SENSOR_TIME_SUBPROTOCOL, BINARY_SUBPROTOCOL):
+        if subprotocol in subprotocols:
+            return subprotocol
+    return None
 
 # WebSocket server that runs both tasks concurrently
 async def handle_client(websocket):
@@ -98,8 +221,14 @@ async def start_server():
     ip = input("Enter the IP Address: ")
     port = input("Enter the Port Number: ")
     
+    global new_reading, commands_waiting
+    new_reading = asyncio.Condition()
+    commands_waiting = asyncio.Event()
+    sampler = asyncio.create_task(sample_data())  # Keep references so the tasks are not collected
+    display = asyncio.create_task(show_commands())
+
     # Start the WebSocket server and handle incoming connections
-    server = await websockets.serve(handle_client, ip, port)
+    server = await websockets.serve(handle_client, ip, port, select_subprotocol=select_subprotocol)
     print(f"Server started on {ip}:{port}")
     await server.wait_closed()
 